@@ -0,0 +1,62 @@
+#!/bin/bash
+############################################################
+# Compare the live indexing policy of the receipts containers
+# with the policies owned by this repository
+#
+# Usage: ./check_indexing_policy.sh <dev|uat|prod>
+# Requires: az (logged in on the environment subscription), jq
+# Exit code: 0 if the policies match, 1 if they differ, 2 on usage or az errors
+############################################################
+
+set -o pipefail
+
+env=$1
+case "$env" in
+  dev) env_short="d" ;;
+  uat) env_short="u" ;;
+  prod) env_short="p" ;;
+  *)
+    echo "Usage: $(basename "$0") <dev|uat|prod>"
+    exit 2
+    ;;
+esac
+
+script_dir=$(cd "$(dirname "$0")" && pwd)
+account="pagopa-${env_short}-weu-receipts-ds-cosmos-account"
+database="db"
+containers=("receipts" "cart-for-receipts" "receipts-event-index")
+
+# only the properties owned by the repository are compared, with the paths sorted and the defaults made explicit
+normalize='{
+  indexingMode: (.indexingMode | ascii_downcase),
+  includedPaths: ([.includedPaths[]?.path] | sort),
+  excludedPaths: ([.excludedPaths[]?.path] | sort),
+  compositeIndexes: ([.compositeIndexes[]? | map({path, order: ((.order // "ascending") | ascii_downcase)})] | sort)
+}'
+
+resource_group=$(az cosmosdb list --query "[?name=='${account}'].resourceGroup | [0]" -o tsv) || exit 2
+if [ -z "$resource_group" ]; then
+  echo "Cosmos account ${account} not found in the current subscription"
+  exit 2
+fi
+
+drift=0
+for container in "${containers[@]}"; do
+  expected=$(jq -S "$normalize" "${script_dir}/${container}-indexing-policy.json") || exit 2
+  live=$(az cosmosdb sql container show \
+    --account-name "$account" \
+    --resource-group "$resource_group" \
+    --database-name "$database" \
+    --name "$container" \
+    --query "resource.indexingPolicy" -o json | jq -S "$normalize") || exit 2
+
+  if [ "$expected" == "$live" ]; then
+    echo "${container}: indexing policy up to date"
+  else
+    echo "${container}: the live indexing policy differs from ${container}-indexing-policy.json"
+    diff <(echo "$expected") <(echo "$live") --label expected --label live -u
+    drift=1
+  fi
+done
+
+exit $drift
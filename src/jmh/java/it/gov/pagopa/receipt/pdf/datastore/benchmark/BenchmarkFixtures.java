@@ -0,0 +1,78 @@
+package it.gov.pagopa.receipt.pdf.datastore.benchmark;
+
+import it.gov.pagopa.receipt.pdf.datastore.entity.event.BizEvent;
+import it.gov.pagopa.receipt.pdf.datastore.service.PDVTokenizerServiceRetryWrapper;
+import it.gov.pagopa.receipt.pdf.datastore.utils.ObjectMapperUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Fixtures shared by the benchmarks: a single notice biz-event and the 5 biz-events of a cart
+ */
+final class BenchmarkFixtures {
+
+    static final String SINGLE_NOTICE = "fixtures/biz-event.json";
+    static final String CART_OF_FIVE = "fixtures/cart-biz-events.json";
+
+    private BenchmarkFixtures() {
+    }
+
+    static String readFixture(String path) throws IOException {
+        try (InputStream inputStream = BenchmarkFixtures.class.getClassLoader().getResourceAsStream(path)) {
+            if (inputStream == null) {
+                throw new IOException("Fixture not found: " + path);
+            }
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    static <T> T loadFixture(String path, Class<T> type) throws IOException {
+        return ObjectMapperUtils.mapString(readFixture(path), type);
+    }
+
+    static BizEvent singleNotice() throws IOException {
+        return loadFixture(SINGLE_NOTICE, BizEvent.class);
+    }
+
+    static List<BizEvent> cartOfFive() throws IOException {
+        return Arrays.asList(loadFixture(CART_OF_FIVE, BizEvent[].class));
+    }
+
+    /**
+     * Tokenizer answering from memory, as the tokens cached in-process, so that the benchmarks measure only the
+     * receipt mapping
+     */
+    static class InMemoryTokenizer implements PDVTokenizerServiceRetryWrapper {
+
+        private final Map<String, String> tokens = new ConcurrentHashMap<>();
+
+        @Override
+        public String getTokenWithRetry(String fiscalCode) {
+            return this.tokens.computeIfAbsent(fiscalCode, code -> "token-" + code);
+        }
+
+        @Override
+        public String getFiscalCodeWithRetry(String token) {
+            return token.substring("token-".length());
+        }
+
+        @Override
+        public String generateTokenForFiscalCodeWithRetry(String fiscalCode) {
+            return getTokenWithRetry(fiscalCode);
+        }
+
+        @Override
+        public Map<String, String> generateTokensForFiscalCodesWithRetry(Set<String> fiscalCodes) {
+            return fiscalCodes.stream().collect(Collectors.toMap(Function.identity(), this::getTokenWithRetry));
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package it.gov.pagopa.receipt.pdf.datastore.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import it.gov.pagopa.receipt.pdf.datastore.entity.cart.CartForReceipt;
+import it.gov.pagopa.receipt.pdf.datastore.entity.event.BizEvent;
+import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.Receipt;
+import it.gov.pagopa.receipt.pdf.datastore.exception.PDVTokenizerException;
+import it.gov.pagopa.receipt.pdf.datastore.service.BizEventToReceiptService;
+import it.gov.pagopa.receipt.pdf.datastore.service.impl.BizEventToReceiptServiceImpl;
+import it.gov.pagopa.receipt.pdf.datastore.utils.BizEventToReceiptUtils;
+import it.gov.pagopa.receipt.pdf.datastore.utils.BizEventToReceiptUtils.BizEventValidityCheck;
+import it.gov.pagopa.receipt.pdf.datastore.utils.FiscalCodeValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Per-event CPU and allocation cost of the biz-event to receipt mapping, for a single notice and a 5 items cart.
+ * The PDV tokens are served from memory, as when they are found in the in-process cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BizEventToReceiptBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(BizEventToReceiptBenchmark.class);
+
+    // the regular expressions previously used by isValidFiscalCode, kept as baseline
+    private static final Pattern PATTERN_CF = Pattern.compile(
+            "^[A-Z]{6}[0-9LMNPQRSTUV]{2}[ABCDEHLMPRST][0-9LMNPQRSTUV]{2}[A-Z][0-9LMNPQRSTUV]{3}[A-Z]$", Pattern.CASE_INSENSITIVE);
+    private static final Pattern PATTERN_PIVA = Pattern.compile("^\\d{11}$");
+
+    private BizEvent singleNotice;
+    private BizEvent multiBeneficiaryNotice;
+    private List<BizEvent> cartOfFive;
+    private BizEventToReceiptService service;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.singleNotice = BenchmarkFixtures.singleNotice();
+        this.cartOfFive = BenchmarkFixtures.cartOfFive();
+        // the subject of a multi-beneficiary notice is parsed from the remittance information of its transfers
+        this.multiBeneficiaryNotice = BenchmarkFixtures.singleNotice();
+        this.multiBeneficiaryNotice.getPaymentInfo().setRemittanceInformation("pagamento multibeneficiario");
+        this.service = new BizEventToReceiptServiceImpl(
+                new BenchmarkFixtures.InMemoryTokenizer(), null, null, null, null, null);
+    }
+
+    // after the first invocation the validity of the fiscal codes is read from the per-thread memo of the same instances
+    @Benchmark
+    public BizEventValidityCheck isBizEventInvalid() {
+        return BizEventToReceiptUtils.isBizEventInvalid(this.singleNotice);
+    }
+
+    @Benchmark
+    public void isBizEventInvalidCart(Blackhole blackhole) {
+        for (BizEvent bizEvent : this.cartOfFive) {
+            blackhole.consume(BizEventToReceiptUtils.isBizEventInvalid(bizEvent));
+        }
+    }
+
+    @Benchmark
+    public Receipt createReceipt() {
+        return BizEventToReceiptUtils.createReceipt(this.singleNotice, this.service, logger);
+    }
+
+    @Benchmark
+    public CartForReceipt buildCartFromBizEventList() throws PDVTokenizerException, JsonProcessingException {
+        return this.service.buildCartFromBizEventList(this.cartOfFive);
+    }
+
+    @Benchmark
+    public String getItemSubject() {
+        return BizEventToReceiptUtils.getItemSubject(this.singleNotice);
+    }
+
+    @Benchmark
+    public String getItemSubjectFromTransfers() {
+        return BizEventToReceiptUtils.getItemSubject(this.multiBeneficiaryNotice);
+    }
+
+    @Benchmark
+    public String formatAmount(AmountState state) {
+        return BizEventToReceiptUtils.formatAmount(state.amount);
+    }
+
+    @Benchmark
+    public boolean isValidFiscalCode(FiscalCodeState state) {
+        return BizEventToReceiptUtils.isValidFiscalCode(state.fiscalCode);
+    }
+
+    @Benchmark
+    public boolean isValidFiscalCodeWithChecksum(FiscalCodeState state) {
+        return FiscalCodeValidator.isValid(state.fiscalCode, true);
+    }
+
+    @Benchmark
+    public boolean isValidFiscalCodeRegex(FiscalCodeState state) {
+        return PATTERN_CF.matcher(state.fiscalCode).matches() || PATTERN_PIVA.matcher(state.fiscalCode).matches();
+    }
+
+    @State(Scope.Benchmark)
+    public static class AmountState {
+
+        @Param({"1234.56", "0.5", "1234567.89"})
+        String amount;
+    }
+
+    @State(Scope.Benchmark)
+    public static class FiscalCodeState {
+
+        // natural person, legal person and invalid identifiers
+        @Param({"RSSMRA80A01H501U", "01234567890", "NOT-A-FISCAL-CODE"})
+        String fiscalCode;
+    }
+}
@@ -0,0 +1,105 @@
+package it.gov.pagopa.receipt.pdf.datastore.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import it.gov.pagopa.receipt.pdf.datastore.entity.cart.CartForReceipt;
+import it.gov.pagopa.receipt.pdf.datastore.entity.event.BizEvent;
+import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.Receipt;
+import it.gov.pagopa.receipt.pdf.datastore.exception.PDVTokenizerException;
+import it.gov.pagopa.receipt.pdf.datastore.service.BizEventToReceiptService;
+import it.gov.pagopa.receipt.pdf.datastore.service.impl.BizEventToReceiptServiceImpl;
+import it.gov.pagopa.receipt.pdf.datastore.utils.BizEventToReceiptUtils;
+import it.gov.pagopa.receipt.pdf.datastore.utils.ObjectMapperUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON (de)serialization cost of the documents read from and written to CosmosDB: the biz-events of a single
+ * notice and of a 5 items cart, the receipt and the cart receipt built from them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonSerializationBenchmark {
+
+    private String bizEventJson;
+    private String cartBizEventsJson;
+    private String receiptJson;
+    private String cartForReceiptJson;
+
+    private BizEvent bizEvent;
+    private List<BizEvent> cartBizEvents;
+    private Receipt receipt;
+    private CartForReceipt cartForReceipt;
+
+    @Setup
+    public void setUp() throws IOException, PDVTokenizerException {
+        BizEventToReceiptService service = new BizEventToReceiptServiceImpl(
+                new BenchmarkFixtures.InMemoryTokenizer(), null, null, null, null, null);
+
+        this.bizEventJson = BenchmarkFixtures.readFixture(BenchmarkFixtures.SINGLE_NOTICE);
+        this.cartBizEventsJson = BenchmarkFixtures.readFixture(BenchmarkFixtures.CART_OF_FIVE);
+        this.bizEvent = BenchmarkFixtures.singleNotice();
+        this.cartBizEvents = BenchmarkFixtures.cartOfFive();
+        this.receipt = BizEventToReceiptUtils.createReceipt(
+                this.bizEvent, service, LoggerFactory.getLogger(JsonSerializationBenchmark.class));
+        this.cartForReceipt = service.buildCartFromBizEventList(this.cartBizEvents);
+        this.receiptJson = ObjectMapperUtils.writeValueAsString(this.receipt);
+        this.cartForReceiptJson = ObjectMapperUtils.writeValueAsString(this.cartForReceipt);
+    }
+
+    @Benchmark
+    public BizEvent deserializeBizEvent() throws JsonProcessingException {
+        return ObjectMapperUtils.mapString(this.bizEventJson, BizEvent.class);
+    }
+
+    @Benchmark
+    public BizEvent[] deserializeCartBizEvents() throws JsonProcessingException {
+        return ObjectMapperUtils.mapString(this.cartBizEventsJson, BizEvent[].class);
+    }
+
+    @Benchmark
+    public String serializeBizEvent() {
+        return ObjectMapperUtils.writeValueAsString(this.bizEvent);
+    }
+
+    @Benchmark
+    public String serializeCartBizEvents() {
+        return ObjectMapperUtils.writeValueAsString(this.cartBizEvents);
+    }
+
+    @Benchmark
+    public Receipt deserializeReceipt() throws JsonProcessingException {
+        return ObjectMapperUtils.mapString(this.receiptJson, Receipt.class);
+    }
+
+    @Benchmark
+    public String serializeReceipt() {
+        return ObjectMapperUtils.writeValueAsString(this.receipt);
+    }
+
+    @Benchmark
+    public CartForReceipt deserializeCartForReceipt() throws JsonProcessingException {
+        return ObjectMapperUtils.mapString(this.cartForReceiptJson, CartForReceipt.class);
+    }
+
+    @Benchmark
+    public String serializeCartForReceipt() {
+        return ObjectMapperUtils.writeValueAsString(this.cartForReceipt);
+    }
+}
@@ -0,0 +1,78 @@
+package it.gov.pagopa.receipt.pdf.datastore.benchmark;
+
+import it.gov.pagopa.receipt.pdf.datastore.entity.event.BizEvent;
+import it.gov.pagopa.receipt.pdf.datastore.utils.ObjectMapperUtils;
+import it.gov.pagopa.receipt.pdf.datastore.utils.QueueMessageEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding of the biz-event queue message: the legacy String + MIME Base64 copies against the streaming encoder,
+ * for a single notice and for the message of a 5 items cart.
+ * Run with the GC profiler (default of the benchmark profile) to compare the allocation per message.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QueueMessageEncoderBenchmark {
+
+    private List<BizEvent> bizEvents;
+    private List<BizEvent> cartBizEvents;
+    private QueueMessageEncoder streamingEncoder;
+    private QueueMessageEncoder filteringEncoder;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.bizEvents = Collections.singletonList(BenchmarkFixtures.singleNotice());
+        this.cartBizEvents = BenchmarkFixtures.cartOfFive();
+        this.streamingEncoder = new QueueMessageEncoder(Collections.emptySet());
+        this.filteringEncoder = new QueueMessageEncoder(Set.of("properties", "missingInfo"));
+    }
+
+    @Benchmark
+    public String legacyMimeEncoding() {
+        return Base64.getMimeEncoder().encodeToString(
+                Objects.requireNonNull(ObjectMapperUtils.writeValueAsString(this.bizEvents)).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public String streamingEncoding() {
+        return this.streamingEncoder.encode(this.bizEvents);
+    }
+
+    @Benchmark
+    public String streamingEncodingWithExcludedFields() {
+        return this.filteringEncoder.encode(this.bizEvents);
+    }
+
+    @Benchmark
+    public String legacyMimeEncodingCart() {
+        return Base64.getMimeEncoder().encodeToString(
+                Objects.requireNonNull(ObjectMapperUtils.writeValueAsString(this.cartBizEvents)).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public String streamingEncodingCart() {
+        return this.streamingEncoder.encode(this.cartBizEvents);
+    }
+}
@@ -10,18 +10,33 @@ import it.gov.pagopa.receipt.pdf.datastore.entity.cart.CartForReceipt;
 import it.gov.pagopa.receipt.pdf.datastore.entity.cart.CartStatusType;
 import it.gov.pagopa.receipt.pdf.datastore.entity.event.BizEvent;
 import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.Receipt;
-import it.gov.pagopa.receipt.pdf.datastore.exception.CartNotFoundException;
-import it.gov.pagopa.receipt.pdf.datastore.exception.ReceiptNotFoundException;
+import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.enumeration.ReceiptStatusType;
+import it.gov.pagopa.receipt.pdf.datastore.exception.ReceiptBulkSaveException;
+import it.gov.pagopa.receipt.pdf.datastore.model.BizEventDedupResult;
+import it.gov.pagopa.receipt.pdf.datastore.model.PendingQueueMessage;
 import it.gov.pagopa.receipt.pdf.datastore.service.BizEventToReceiptService;
 import it.gov.pagopa.receipt.pdf.datastore.service.impl.BizEventToReceiptServiceImpl;
 import it.gov.pagopa.receipt.pdf.datastore.utils.BizEventToReceiptUtils;
+import it.gov.pagopa.receipt.pdf.datastore.utils.ParallelExecutionUtils;
+import it.gov.pagopa.receipt.pdf.datastore.utils.PipelineMetrics;
+import it.gov.pagopa.receipt.pdf.datastore.utils.PipelineMetrics.Stage;
+import it.gov.pagopa.receipt.pdf.datastore.utils.TokenCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 import static it.gov.pagopa.receipt.pdf.datastore.utils.BizEventToReceiptUtils.createReceipt;
 import static it.gov.pagopa.receipt.pdf.datastore.utils.BizEventToReceiptUtils.getTotalNotice;
@@ -34,9 +49,17 @@ import static it.gov.pagopa.receipt.pdf.datastore.utils.BizEventToReceiptUtils.i
  */
 public class BizEventToReceipt {
 
+    private static final String RECEIPT_LANE_PREFIX = "receipt-";
+    private static final String CART_LANE_PREFIX = "cart-";
+    private static final int PROCESSING_PARALLELISM =
+            Integer.parseInt(System.getenv().getOrDefault("BIZ_EVENT_PROCESSING_PARALLELISM", "8"));
+    private static final ExecutorService EXECUTOR =
+            ParallelExecutionUtils.newBoundedExecutor("biz-event-processor", PROCESSING_PARALLELISM);
+
     private final Logger logger = LoggerFactory.getLogger(BizEventToReceipt.class);
 
     private final Boolean isCartEnabled = Boolean.parseBoolean(System.getenv().getOrDefault("ENABLE_CART", "false"));
+    private final boolean isCartPatchEnabled = Boolean.parseBoolean(System.getenv().getOrDefault("CART_PATCH_ENABLED", "true"));
 
     private final BizEventToReceiptService bizEventToReceiptService;
 
@@ -57,6 +80,20 @@ public class BizEventToReceipt {
      * - INSERTED if sending the message to the queue succeeded
      * - NOT_QUEUE_SENT if sending the message to the queue failed
      * #
+     * The already processed biz-events are found with a single bulk check on the whole batch
+     * #
+     * The biz-events are processed concurrently (see BIZ_EVENT_PROCESSING_PARALLELISM), except the biz-events
+     * of the same cart that are processed sequentially in order to avoid concurrent updates of the same cart
+     * #
+     * The items of the biz-events of the same cart are appended to the cart with a single write
+     * (see CART_PATCH_ENABLED), that sends at most one cart message
+     * #
+     * The receipts of the whole batch are saved with a single bulk execution and then their queue messages
+     * are sent concurrently, once all the biz-events have been processed
+     * #
+     * If a lane fails, the receipts and carts of the other lanes are still saved and sent, as the biz-events
+     * processed before the failure in a sequential run, and then the error is re-thrown so that the batch is retried
+     * #
      *
      * @param items      Biz-events that triggered the function from the Cosmos
      *                   database
@@ -92,145 +129,434 @@ public class BizEventToReceipt {
             final ExecutionContext context
     ) {
 
-        int itemsDone = 0;
-        List<Receipt> receiptFailed = new ArrayList<>();
-        List<CartForReceipt> cartFailed = new ArrayList<>();
+        long startTime = System.currentTimeMillis();
 
         logger.info("[{}] stat {} function - num events triggered {}",
                 context.getFunctionName(),
                 context.getInvocationId(),
                 items.size());
-        int discarder = 0;
 
-        // Retrieve receipt data from biz-event
+        /*
+        Discard biz-events:
+          - null
+          - not in status DONE
+          - with invalid fiscal codes
+          - eCommerce filter (if enabled)
+          - legacy cart
+          - duplicated in the same batch
+         */
+        long stageStart = System.nanoTime();
+        BatchOutcome batchOutcome = new BatchOutcome();
+        List<BizEvent> validBizEvents = new ArrayList<>(items.size());
+        List<BizEvent> bizEventsToCheck = new ArrayList<>(items.size());
+        Set<String> batchBizEventIds = new HashSet<>();
         for (BizEvent bizEvent : items) {
-
-            /*
-            Discard biz-events:
-              - null
-              - not in status DONE
-              - with invalid fiscal codes
-              - eCommerce filter (if enabled)
-              - legacy cart
-              - already processed
-             */
-            if (isInvalid(bizEvent) || isBizEventAlreadyProcessed(context, bizEvent)) {
-                discarder++;
+            PipelineMetrics.recordChangeFeedLag(bizEvent != null ? bizEvent.getTimestamp() : null);
+            if (isInvalid(bizEvent)) {
+                batchOutcome.discarded++;
                 continue;
             }
+            if (!batchBizEventIds.add(bizEvent.getId())) {
+                PipelineMetrics.countDiscarded("duplicated_in_batch");
+                batchOutcome.discarded++;
+                continue;
+            }
+            validBizEvents.add(bizEvent);
+            if (isProcessable(bizEvent)) {
+                bizEventsToCheck.add(bizEvent);
+            }
+        }
+        PipelineMetrics.recordStage(Stage.VALIDATION, stageStart);
 
-            logger.debug("[{}] function called at {} for event with id {} and status {}",
-                    context.getFunctionName(), LocalDateTime.now(), bizEvent.getId(), bizEvent.getEventStatus());
-
-            Integer totalNotice = getTotalNotice(bizEvent);
-            if (totalNotice == 1) {
-
-                Receipt receipt = createReceipt(bizEvent, this.bizEventToReceiptService, logger);
-
-                if (isReceiptStatusValid(receipt)) {
-                    // Add receipt to items to be saved on CosmosDB
-                    this.bizEventToReceiptService.handleSaveReceipt(receipt);
-                }
+        // Discard the already processed biz-events with a single bulk check
+        stageStart = System.nanoTime();
+        BizEventDedupResult dedupResult = findAlreadyProcessedBizEvents(bizEventsToCheck, context);
+        Set<String> processedBizEventIds = dedupResult.getProcessedBizEventIds();
+        PipelineMetrics.recordStage(Stage.DEDUP, stageStart);
 
-                if (isReceiptStatusValid(receipt)) {
-                    // Send biz event as message to queue (to be processed from the other function)
-                    this.bizEventToReceiptService.handleSendMessageToQueue(Collections.singletonList(bizEvent), receipt);
-                }
+        Map<String, List<BizEvent>> lanes = new LinkedHashMap<>();
+        // the biz-events of the batch, to not read them again when their cart is complete
+        Map<String, BizEvent> batchBizEvents = new HashMap<>();
+        List<BizEvent> bizEventsToTokenize = new ArrayList<>(validBizEvents.size());
+        for (BizEvent bizEvent : validBizEvents) {
+            batchBizEvents.put(bizEvent.getId(), bizEvent);
+            if (processedBizEventIds.contains(bizEvent.getId())) {
+                PipelineMetrics.countDiscarded("already_processed");
+                batchOutcome.discarded++;
+                continue;
+            }
+            lanes.computeIfAbsent(getLaneKey(bizEvent), k -> new ArrayList<>()).add(bizEvent);
+            if (isProcessable(bizEvent)) {
+                bizEventsToTokenize.add(bizEvent);
+            }
+        }
 
-                if (!isReceiptStatusValid(receipt)) {
-                    receiptFailed.add(receipt);
-                }
-            } else if (Boolean.TRUE.equals(isCartEnabled) && totalNotice > 1) {
+        // Tokenize in bulk the fiscal codes of the whole batch, the lanes will find the tokens in cache
+        if (!bizEventsToTokenize.isEmpty()) {
+            stageStart = System.nanoTime();
+            this.bizEventToReceiptService.prefetchFiscalCodeTokens(bizEventsToTokenize);
+            PipelineMetrics.recordStage(Stage.TOKENIZATION, stageStart);
+        }
 
-                CartForReceipt cartForReceipt = this.bizEventToReceiptService.buildCartForReceipt(bizEvent);
+        // Process the lanes concurrently, the events in the same lane are processed sequentially
+        stageStart = System.nanoTime();
+        List<Callable<BatchOutcome>> tasks = new ArrayList<>(lanes.size());
+        for (List<BizEvent> lane : lanes.values()) {
+            tasks.add(() -> processLaneCatchingError(lane, batchBizEvents, context));
+        }
+        ParallelExecutionUtils.invokeAll(EXECUTOR, tasks).forEach(batchOutcome::merge);
+        PipelineMetrics.recordStage(Stage.PROCESSING, stageStart);
 
-                if (isCartStatusValid(cartForReceipt)) {
-                    // saved on CosmosDB
-                    cartForReceipt = this.bizEventToReceiptService.saveCartForReceipt(cartForReceipt, bizEvent);
-                }
+        // Save the receipts of the whole batch with a single bulk execution
+        stageStart = System.nanoTime();
+        saveReceipts(batchOutcome);
+        PipelineMetrics.recordStage(Stage.COSMOS_WRITE, stageStart);
 
-                if (cartForReceipt.getStatus().equals(CartStatusType.INSERTED)) {
-                    // Send biz event as message to queue (to be processed from the other function)
-                    List<BizEvent> bizEvents = this.bizEventToReceiptService.getCartBizEvents(cartForReceipt);
-                    if (isCartStatusValid(cartForReceipt)) {
-                        this.bizEventToReceiptService.handleSendCartMessageToQueue(bizEvents, cartForReceipt);
-                    }
-                }
+        // Send the messages of the whole batch concurrently, each failure updates only its own receipt or cart
+        stageStart = System.nanoTime();
+        sendMessagesToQueue(batchOutcome);
+        PipelineMetrics.recordStage(Stage.QUEUE_SEND, stageStart);
 
-                if (!isCartStatusValid(cartForReceipt)) {
-                    cartFailed.add(cartForReceipt);
-                }
-            }
+        // The failed receipts of the biz-events skipped by the processed events filter are confirmed on CosmosDB
+        discardAlreadySavedFailedReceipts(batchOutcome, dedupResult.getFilterSkippedBizEventIds());
+        countErrors(batchOutcome);
 
-            itemsDone++;
-        }
         // Discarder info
         logger.debug("[{}] itemsDone stat {} function - {} number of events in discarder", context.getFunctionName(),
-                context.getInvocationId(), discarder);
+                context.getInvocationId(), batchOutcome.discarded);
         // Call to queue info
         logger.debug("[{}] itemsDone stat {} function - number of events in DONE sent to the receipt queue {}",
-                context.getFunctionName(), context.getInvocationId(), itemsDone);
+                context.getFunctionName(), context.getInvocationId(), batchOutcome.itemsDone);
         // Call to datastore info
         logger.debug("[{}] stat {} function - number of receipts inserted on the datastore {}",
                 context.getFunctionName(),
-                context.getInvocationId(), itemsDone);
+                context.getInvocationId(), batchOutcome.itemsDone);
 
         // Save failed receipts to CosmosDB
-        if (!receiptFailed.isEmpty()) {
+        if (!batchOutcome.receiptFailed.isEmpty()) {
             // Call to datastore info
             logger.debug("[{}] stat {} function - number of receipts failed inserted on the datastore {}",
                     context.getFunctionName(),
-                    context.getInvocationId(), receiptFailed.size());
-            documentdb.setValue(receiptFailed);
+                    context.getInvocationId(), batchOutcome.receiptFailed.size());
+            documentdb.setValue(batchOutcome.receiptFailed);
         }        // Save failed receipts to CosmosDB
-        if (!cartFailed.isEmpty()) {
+        if (!batchOutcome.cartFailed.isEmpty()) {
             // Call to datastore info
             logger.debug("[{}] stat {} function - number of carts failed inserted on the datastore {}",
                     context.getFunctionName(),
-                    context.getInvocationId(), receiptFailed.size());
-            cartDocumentdb.setValue(cartFailed);
+                    context.getInvocationId(), batchOutcome.cartFailed.size());
+            cartDocumentdb.setValue(batchOutcome.cartFailed);
+        }
+
+        logger.info("[{}] stat {} function - batch of {} events processed in {} lanes in {} ms",
+                context.getFunctionName(),
+                context.getInvocationId(),
+                items.size(),
+                lanes.size(),
+                System.currentTimeMillis() - startTime);
+
+        TokenCache tokenCache = TokenCache.getInstance();
+        logger.info("[{}] stat {} function - PDV token cache {} hits, {} misses, hit ratio {}",
+                context.getFunctionName(),
+                context.getInvocationId(),
+                tokenCache.getHitCount(),
+                tokenCache.getMissCount(),
+                tokenCache.getHitRatio());
+
+        if (batchOutcome.error != null) {
+            // the already saved biz-events are discarded by the already processed check of the retry
+            throw batchOutcome.error;
+        }
+    }
+
+    /**
+     * Single notice biz-events are independent of each other so each one has its own lane,
+     * while all the biz-events of the same cart share the lane identified by the cart id.
+     */
+    private String getLaneKey(BizEvent bizEvent) {
+        if (getTotalNotice(bizEvent) == 1) {
+            return RECEIPT_LANE_PREFIX + bizEvent.getId();
+        }
+        return CART_LANE_PREFIX + bizEvent.getTransactionDetails().getTransaction().getTransactionId();
+    }
+
+    private boolean isCartBizEvent(BizEvent bizEvent) {
+        return Boolean.TRUE.equals(isCartEnabled) && getTotalNotice(bizEvent) > 1;
+    }
+
+    /**
+     * The cart biz-events are not processed if the cart is not enabled
+     */
+    private boolean isProcessable(BizEvent bizEvent) {
+        return getTotalNotice(bizEvent) == 1 || Boolean.TRUE.equals(isCartEnabled);
+    }
+
+    /**
+     * The error of a lane is kept in its outcome, so that the outcomes of the other lanes are not lost
+     */
+    private BatchOutcome processLaneCatchingError(List<BizEvent> lane, Map<String, BizEvent> batchBizEvents,
+                                                  ExecutionContext context) {
+        try {
+            return processLane(lane, batchBizEvents, context);
+        } catch (RuntimeException e) {
+            logger.error("[{}] stat {} function - processing of the lane of biz-event {} failed",
+                    context.getFunctionName(), context.getInvocationId(), lane.get(0).getId(), e);
+            BatchOutcome laneOutcome = new BatchOutcome();
+            laneOutcome.error = e;
+            return laneOutcome;
+        }
+    }
+
+    private BatchOutcome processLane(List<BizEvent> lane, Map<String, BizEvent> batchBizEvents, ExecutionContext context) {
+        BatchOutcome laneOutcome = new BatchOutcome();
+        if (this.isCartPatchEnabled && lane.size() > 1 && isCartBizEvent(lane.get(0))) {
+            processCartLane(lane, batchBizEvents, context, laneOutcome);
+            return laneOutcome;
+        }
+        for (BizEvent bizEvent : lane) {
+            processBizEvent(bizEvent, batchBizEvents, context, laneOutcome);
+        }
+        return laneOutcome;
+    }
+
+    private void processBizEvent(BizEvent bizEvent, Map<String, BizEvent> batchBizEvents, ExecutionContext context,
+                                 BatchOutcome outcome) {
+        logger.debug("[{}] function called at {} for event with id {} and status {}",
+                context.getFunctionName(), LocalDateTime.now(), bizEvent.getId(), bizEvent.getEventStatus());
+
+        Integer totalNotice = getTotalNotice(bizEvent);
+        if (totalNotice == 1) {
+
+            Receipt receipt = createReceipt(bizEvent, this.bizEventToReceiptService, logger);
+
+            if (isReceiptStatusValid(receipt)) {
+                // Receipt to be saved on CosmosDB and biz event to be sent as message to queue
+                outcome.receiptMessages.add(new PendingQueueMessage<>(receipt, Collections.singletonList(bizEvent)));
+            } else {
+                outcome.receiptFailed.add(receipt);
+            }
+        } else if (isCartBizEvent(bizEvent)) {
+            processCartBizEvent(bizEvent, batchBizEvents, outcome);
+        }
+
+        outcome.itemsDone++;
+    }
+
+    /**
+     * The biz-events of the same cart received in the same batch are appended to the cart with a single write,
+     * so that at most one cart message is sent for them
+     */
+    private void processCartLane(List<BizEvent> lane, Map<String, BizEvent> batchBizEvents, ExecutionContext context,
+                                 BatchOutcome outcome) {
+        logger.debug("[{}] function called at {} for {} events of cart {}", context.getFunctionName(), LocalDateTime.now(),
+                lane.size(), lane.get(0).getTransactionDetails().getTransaction().getTransactionId());
+
+        // items appended on CosmosDB
+        CartForReceipt cartForReceipt = this.bizEventToReceiptService.appendToCartForReceipt(lane);
+        if (cartForReceipt == null) {
+            // biz-events already in the cart or rejected by the complete cart, counted by the service
+            outcome.discarded += lane.size();
+        } else {
+            handleCartResult(cartForReceipt, batchBizEvents, outcome);
+        }
+        outcome.itemsDone += lane.size();
+    }
+
+    private void processCartBizEvent(BizEvent bizEvent, Map<String, BizEvent> batchBizEvents, BatchOutcome outcome) {
+        CartForReceipt cartForReceipt;
+        if (this.isCartPatchEnabled) {
+            // item appended on CosmosDB
+            cartForReceipt = this.bizEventToReceiptService.appendToCartForReceipt(Collections.singletonList(bizEvent));
+            if (cartForReceipt == null) {
+                // biz-event already in the cart or rejected by the complete cart, counted by the service
+                outcome.discarded++;
+                return;
+            }
+        } else {
+            cartForReceipt = this.bizEventToReceiptService.buildCartForReceipt(bizEvent);
+
+            if (isCartStatusValid(cartForReceipt)) {
+                // saved on CosmosDB
+                cartForReceipt = this.bizEventToReceiptService.saveCartForReceipt(cartForReceipt, bizEvent);
+            }
+        }
+        handleCartResult(cartForReceipt, batchBizEvents, outcome);
+    }
+
+    private void handleCartResult(CartForReceipt cartForReceipt, Map<String, BizEvent> batchBizEvents, BatchOutcome outcome) {
+        if (cartForReceipt.getStatus().equals(CartStatusType.INSERTED)) {
+            // Biz events to be sent as message to queue (to be processed from the other function)
+            List<BizEvent> bizEvents = this.bizEventToReceiptService.getCartBizEvents(cartForReceipt, batchBizEvents);
+            if (isCartStatusValid(cartForReceipt)) {
+                outcome.cartMessages.add(new PendingQueueMessage<>(cartForReceipt, bizEvents));
+            }
+        }
+
+        if (!isCartStatusValid(cartForReceipt)) {
+            outcome.cartFailed.add(cartForReceipt);
+        }
+    }
+
+    /**
+     * The receipts already present on CosmosDB are discarded, the failed ones are not sent to the queue.
+     * The receipts whose outcome is unknown are neither sent nor written, the batch is retried for them
+     * once the outcomes of the other receipts are completed.
+     */
+    private void saveReceipts(BatchOutcome batchOutcome) {
+        if (batchOutcome.receiptMessages.isEmpty()) {
+            return;
+        }
+        List<Receipt> receipts = batchOutcome.receiptMessages.stream()
+                .map(PendingQueueMessage::getDocument)
+                .toList();
+        Set<Receipt> alreadySaved = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<Receipt> unknownOutcome = Collections.newSetFromMap(new IdentityHashMap<>());
+        try {
+            alreadySaved.addAll(this.bizEventToReceiptService.handleSaveReceipts(receipts));
+        } catch (ReceiptBulkSaveException e) {
+            alreadySaved.addAll(e.getAlreadySavedReceipts());
+            unknownOutcome.addAll(e.getUnknownOutcomeReceipts());
+            if (batchOutcome.error == null) {
+                batchOutcome.error = e;
+            }
+        }
+
+        Iterator<PendingQueueMessage<Receipt>> iterator = batchOutcome.receiptMessages.iterator();
+        while (iterator.hasNext()) {
+            Receipt receipt = iterator.next().getDocument();
+            if (alreadySaved.contains(receipt)) {
+                PipelineMetrics.countDiscarded("already_saved");
+                batchOutcome.discarded++;
+                iterator.remove();
+            } else if (unknownOutcome.contains(receipt)) {
+                iterator.remove();
+            } else if (!isReceiptStatusValid(receipt)) {
+                batchOutcome.receiptFailed.add(receipt);
+                iterator.remove();
+            }
+        }
+    }
+
+    private void sendMessagesToQueue(BatchOutcome batchOutcome) {
+        if (!batchOutcome.receiptMessages.isEmpty()) {
+            this.bizEventToReceiptService.handleSendMessagesToQueue(batchOutcome.receiptMessages);
+            for (PendingQueueMessage<Receipt> message : batchOutcome.receiptMessages) {
+                if (!isReceiptStatusValid(message.getDocument())) {
+                    batchOutcome.receiptFailed.add(message.getDocument());
+                }
+            }
+        }
+        if (!batchOutcome.cartMessages.isEmpty()) {
+            this.bizEventToReceiptService.handleSendCartMessagesToQueue(batchOutcome.cartMessages);
+            for (PendingQueueMessage<CartForReceipt> message : batchOutcome.cartMessages) {
+                if (!isCartStatusValid(message.getDocument())) {
+                    batchOutcome.cartFailed.add(message.getDocument());
+                }
+            }
+        }
+    }
+
+    private void countErrors(BatchOutcome batchOutcome) {
+        for (Receipt receipt : batchOutcome.receiptFailed) {
+            if (receipt.getReasonErr() != null) {
+                PipelineMetrics.countError("receipt", receipt.getReasonErr().getCode());
+            }
+        }
+        for (CartForReceipt cart : batchOutcome.cartFailed) {
+            if (cart.getReasonErr() != null) {
+                PipelineMetrics.countError("cart", cart.getReasonErr().getCode());
+            }
         }
     }
 
     private boolean isInvalid(BizEvent bizEvent) {
         BizEventToReceiptUtils.BizEventValidityCheck bizEventValidityCheck = isBizEventInvalid(bizEvent);
         if (bizEventValidityCheck.invalid()) {
+            PipelineMetrics.countDiscarded(bizEventValidityCheck.reason());
             logger.debug(bizEventValidityCheck.error());
         }
         return bizEventValidityCheck.invalid();
     }
 
-    private boolean isBizEventAlreadyProcessed(ExecutionContext context, BizEvent bizEvent) {
-        Integer totalNotice = getTotalNotice(bizEvent);
-        if (totalNotice == 1) {
-            try {
-                Receipt receipt = this.bizEventToReceiptService.getReceipt(bizEvent.getId());
-                logger.debug("[{}] event with id {} discarded because already processed, receipt already exist with id {}",
-                        context.getFunctionName(), bizEvent.getId(), receipt.getId());
-                return true;
-            } catch (ReceiptNotFoundException ignored) {
-                // the receipt does not exist
+    /**
+     * The failed receipts are upserted, so the ones of the biz-events not read on cosmos thanks to the processed events
+     * filter are written only if their receipt has not been saved in the meantime by another host
+     */
+    private void discardAlreadySavedFailedReceipts(BatchOutcome batchOutcome, Set<String> filterSkippedBizEventIds) {
+        List<String> eventIdsToConfirm = batchOutcome.receiptFailed.stream()
+                .filter(receipt -> receipt.getStatus() == ReceiptStatusType.FAILED)
+                .map(Receipt::getEventId)
+                .filter(filterSkippedBizEventIds::contains)
+                .toList();
+        if (eventIdsToConfirm.isEmpty()) {
+            return;
+        }
+
+        Set<String> alreadySaved;
+        try {
+            alreadySaved = this.bizEventToReceiptService.findSavedReceiptEventIds(eventIdsToConfirm);
+        } catch (RuntimeException e) {
+            // the failed receipts cannot be written safely, the batch is retried for them
+            logger.error("Check of the saved receipts of {} failed biz-events failed", eventIdsToConfirm.size(), e);
+            alreadySaved = new HashSet<>(eventIdsToConfirm);
+            if (batchOutcome.error == null) {
+                batchOutcome.error = e;
             }
-        } else {
-            String transactionId = bizEvent.getTransactionDetails().getTransaction().getTransactionId();
-            try {
-                CartForReceipt cart = this.bizEventToReceiptService.getCartForReceipt(transactionId);
-                if (isBizEventInCart(cart, bizEvent.getId())) {
-                    logger.debug("[{}] event with id {} discarded because already processed, cart-for-receipts already exist with id {}",
-                            context.getFunctionName(), bizEvent.getId(), transactionId);
-                    return true;
-                }
-            } catch (CartNotFoundException ignored) {
-                // the cart does not exist
+        }
+        Iterator<Receipt> iterator = batchOutcome.receiptFailed.iterator();
+        while (iterator.hasNext()) {
+            Receipt receipt = iterator.next();
+            if (receipt.getStatus() == ReceiptStatusType.FAILED && alreadySaved.contains(receipt.getEventId())) {
+                PipelineMetrics.countDiscarded("already_saved");
+                batchOutcome.discarded++;
+                iterator.remove();
             }
         }
-        return false;
     }
 
-    private boolean isBizEventInCart(CartForReceipt cart, String bizEventId) {
-        return cart != null
-                && cart.getPayload() != null
-                && cart.getPayload().getCart() != null
-                && cart.getPayload().getCart().stream().anyMatch(cartPayment -> cartPayment.getBizEventId().equals(bizEventId));
+    private BizEventDedupResult findAlreadyProcessedBizEvents(List<BizEvent> bizEvents, ExecutionContext context) {
+        if (bizEvents.isEmpty()) {
+            return BizEventDedupResult.builder()
+                    .processedBizEventIds(Collections.emptySet())
+                    .build();
+        }
+        BizEventDedupResult dedupResult = this.bizEventToReceiptService.findAlreadyProcessedBizEvents(bizEvents);
+        PipelineMetrics.countDedup(dedupResult.getHitCounter(), dedupResult.getMissCounter());
+        logger.info("[{}] stat {} function - already processed check on {} events: {} hits, {} misses, {} RU, "
+                        + "{} not read thanks to the filter",
+                context.getFunctionName(),
+                context.getInvocationId(),
+                bizEvents.size(),
+                dedupResult.getHitCounter(),
+                dedupResult.getMissCounter(),
+                dedupResult.getRequestCharge(),
+                dedupResult.getFilterSkippedBizEventIds().size());
+        return dedupResult;
+    }
+
+    /**
+     * Collects the result of the processing of a group of biz-events
+     */
+    private static class BatchOutcome {
+        private int discarded;
+        private int itemsDone;
+        private final List<Receipt> receiptFailed = new ArrayList<>();
+        private final List<CartForReceipt> cartFailed = new ArrayList<>();
+        private final List<PendingQueueMessage<Receipt>> receiptMessages = new ArrayList<>();
+        private final List<PendingQueueMessage<CartForReceipt>> cartMessages = new ArrayList<>();
+        // first error of the lanes or of the bulk save, re-thrown once the other outcomes are completed
+        private RuntimeException error;
+
+        private void merge(BatchOutcome other) {
+            if (this.error == null) {
+                this.error = other.error;
+            }
+            this.discarded += other.discarded;
+            this.itemsDone += other.itemsDone;
+            this.receiptFailed.addAll(other.receiptFailed);
+            this.cartFailed.addAll(other.cartFailed);
+            this.receiptMessages.addAll(other.receiptMessages);
+            this.cartMessages.addAll(other.cartMessages);
+        }
     }
 }
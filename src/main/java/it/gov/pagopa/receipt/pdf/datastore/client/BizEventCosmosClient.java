@@ -1,6 +1,7 @@
 package it.gov.pagopa.receipt.pdf.datastore.client;
 
 
+import com.azure.cosmos.models.FeedResponse;
 import it.gov.pagopa.receipt.pdf.datastore.entity.event.BizEvent;
 import it.gov.pagopa.receipt.pdf.datastore.exception.BizEventNotFoundException;
 
@@ -17,6 +18,15 @@ public interface BizEventCosmosClient {
      */
     BizEvent getBizEventDocument(String bizEventId) throws BizEventNotFoundException;
 
+    /**
+     * Retrieve with a single readMany the biz-event documents identified by the given ids,
+     * the ids not found are not part of the response
+     *
+     * @param bizEventIds the ids of the biz-events to retrieve
+     * @return the biz-event documents found with the consumed RU
+     */
+    FeedResponse<BizEvent> getBizEventDocuments(List<String> bizEventIds);
+
     /**
      * Retrieve all biz-event documents related to a specific cart from CosmosDB database
      *
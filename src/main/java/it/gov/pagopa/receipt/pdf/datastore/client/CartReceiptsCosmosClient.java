@@ -1,13 +1,17 @@
 package it.gov.pagopa.receipt.pdf.datastore.client;
 
 import com.azure.cosmos.models.CosmosItemResponse;
+import com.azure.cosmos.models.FeedRange;
 import com.azure.cosmos.models.FeedResponse;
 import it.gov.pagopa.receipt.pdf.datastore.entity.cart.CartForReceipt;
+import it.gov.pagopa.receipt.pdf.datastore.entity.cart.CartPayment;
 import it.gov.pagopa.receipt.pdf.datastore.entity.cart.CartStatusType;
 import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.CartReceiptError;
 import it.gov.pagopa.receipt.pdf.datastore.exception.CartConcurrentUpdateException;
 import it.gov.pagopa.receipt.pdf.datastore.exception.CartNotFoundException;
 
+import java.util.List;
+
 public interface CartReceiptsCosmosClient {
 
     /**
@@ -19,6 +23,14 @@ public interface CartReceiptsCosmosClient {
      */
     CartForReceipt getCartItem(String cartId) throws CartNotFoundException;
 
+    /**
+     * Retrieve with a single readMany the Cart For Receipt documents identified by the given cart ids
+     *
+     * @param cartIds Biz-event transaction ids, that identify the carts
+     * @return the page with the cart-for-receipts documents found, the missing ones are not returned
+     */
+    FeedResponse<CartForReceipt> getCartItems(List<String> cartIds);
+
     /**
      * Update Cart For Receipt on CosmosDB database
      *
@@ -27,6 +39,41 @@ public interface CartReceiptsCosmosClient {
      */
     CosmosItemResponse<CartForReceipt> updateCart(CartForReceipt receipt) throws CartConcurrentUpdateException;
 
+    /**
+     * Create the Cart For Receipt document on CosmosDB database
+     *
+     * @param cart Cart Data to save
+     * @return the created cart-for-receipts document
+     * @throws CartConcurrentUpdateException if a cart with the same id has been created concurrently
+     */
+    CosmosItemResponse<CartForReceipt> createCart(CartForReceipt cart) throws CartConcurrentUpdateException;
+
+    /**
+     * Append the items to the Cart For Receipt with partial document updates, applied only if the cart is still
+     * waiting for biz-events, has room for the items and does not contain an item of the same biz-events.
+     * The items are appended with a single update, or with one update every 10 items (the max number of
+     * operations of a partial document update)
+     *
+     * @param cartId       Biz-event transaction id, that identifies the cart
+     * @param cartPayments the items to append
+     * @return the updated cart-for-receipts document
+     * @throws CartNotFoundException         in case no cart has been found with the given id
+     * @throws CartConcurrentUpdateException if the cart does not satisfy the conditions anymore
+     */
+    CosmosItemResponse<CartForReceipt> appendCartItems(String cartId, List<CartPayment> cartPayments)
+            throws CartNotFoundException, CartConcurrentUpdateException;
+
+    /**
+     * Set the Cart For Receipt status to {@link CartStatusType#INSERTED} with a partial document update, applied only
+     * if the cart is complete and still waiting for biz-events
+     *
+     * @param cartId     Biz-event transaction id, that identifies the cart
+     * @param insertedAt the insert timestamp
+     * @return the updated cart-for-receipts document
+     * @throws CartConcurrentUpdateException if the cart is not complete or has already been moved from waiting
+     */
+    CosmosItemResponse<CartForReceipt> markCartInserted(String cartId, long insertedAt) throws CartConcurrentUpdateException;
+
     /**
      * Retrieve cartReceiptError document from CosmosDB database
      *
@@ -37,37 +84,101 @@ public interface CartReceiptsCosmosClient {
     CartReceiptError getCartReceiptError(String cartId) throws  CartNotFoundException;
 
     /**
-     * Retrieve failed cart receipt documents from CosmosDB database
+     * Retrieve failed cart receipt documents from CosmosDB database, with the provided failed status
+     * ({@link CartStatusType#FAILED} or {@link CartStatusType#NOT_QUEUE_SENT})
      *
      * @param continuationToken Paged query continuation token
+     * @param pageSize the page size
+     * @param status the status of the carts
+     * @param feedRange the feed range to scan, null to scan the whole container
      * @return receipt documents
      */
-    Iterable<FeedResponse<CartForReceipt>> getFailedCartReceiptDocuments(String continuationToken, Integer pageSize);
+    Iterable<FeedResponse<CartForReceipt>> getFailedCartReceiptDocuments(
+            String continuationToken,
+            Integer pageSize,
+            CartStatusType status,
+            FeedRange feedRange
+    );
 
     /**
-     * Retrieve the failed cart  receipt documents with {@link CartStatusType#INSERTED} status
+     * Count the failed cart receipt documents of both the failed statuses, with the same filter of
+     * {@link #getFailedCartReceiptDocuments(String, Integer, CartStatusType, FeedRange)}
+     *
+     * @return the number of documents
+     */
+    long countFailedCartReceiptDocuments();
+
+    /**
+     * Retrieve the failed cart  receipt documents with the provided status
+     * ({@link CartStatusType#INSERTED} or {@link CartStatusType#WAITING_FOR_BIZ_EVENT})
      *
      * @param continuationToken Paged query continuation token
      * @param pageSize the page size
+     * @param status the status of the carts
+     * @param feedRange the feed range to scan, null to scan the whole container
      * @return receipt documents
      */
-    Iterable<FeedResponse<CartForReceipt>> getInsertedCartReceiptDocuments(String continuationToken, Integer pageSize);
+    Iterable<FeedResponse<CartForReceipt>> getInsertedCartReceiptDocuments(
+            String continuationToken,
+            Integer pageSize,
+            CartStatusType status,
+            FeedRange feedRange
+    );
+
+    /**
+     * Count the failed cart receipt documents with {@link CartStatusType#INSERTED} or {@link CartStatusType#WAITING_FOR_BIZ_EVENT} status,
+     * with the same filter of {@link #getInsertedCartReceiptDocuments(String, Integer, CartStatusType, FeedRange)}
+     *
+     * @return the number of documents
+     */
+    long countInsertedCartReceiptDocuments();
 
     /**
      * Retrieve the not notified cart receipt documents with {@link CartStatusType#IO_ERROR_TO_NOTIFY}
      *
      * @param continuationToken Paged query continuation token
      * @param pageSize the page size
+     * @param feedRange the feed range to scan, null to scan the whole container
      * @return cart receipt documents
      */
-    Iterable<FeedResponse<CartForReceipt>> getIOErrorToNotifyCartReceiptDocuments(String continuationToken, Integer pageSize);
+    Iterable<FeedResponse<CartForReceipt>> getIOErrorToNotifyCartReceiptDocuments(
+            String continuationToken,
+            Integer pageSize,
+            FeedRange feedRange
+    );
+
+    /**
+     * Count the not notified cart receipt documents with {@link CartStatusType#IO_ERROR_TO_NOTIFY}, with the same filter of {@link #getIOErrorToNotifyCartReceiptDocuments(String, Integer, FeedRange)}
+     *
+     * @return the number of documents
+     */
+    long countIOErrorToNotifyCartReceiptDocuments();
 
     /**
      * Retrieve the not notified cart receipt documents with {@link CartStatusType#GENERATED}
      *
      * @param continuationToken Paged query continuation token
      * @param pageSize the page size
+     * @param feedRange the feed range to scan, null to scan the whole container
      * @return cart receipt documents
      */
-    Iterable<FeedResponse<CartForReceipt>> getGeneratedCartReceiptDocuments(String continuationToken, Integer pageSize);
+    Iterable<FeedResponse<CartForReceipt>> getGeneratedCartReceiptDocuments(
+            String continuationToken,
+            Integer pageSize,
+            FeedRange feedRange
+    );
+
+    /**
+     * Count the not notified cart receipt documents with {@link CartStatusType#GENERATED}, with the same filter of {@link #getGeneratedCartReceiptDocuments(String, Integer, FeedRange)}
+     *
+     * @return the number of documents
+     */
+    long countGeneratedCartReceiptDocuments();
+
+    /**
+     * Retrieve the feed ranges of the cart-for-receipts container, one for each physical partition
+     *
+     * @return the feed ranges
+     */
+    List<FeedRange> getFeedRanges();
 }
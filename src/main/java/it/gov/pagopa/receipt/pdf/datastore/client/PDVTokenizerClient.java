@@ -4,6 +4,7 @@ import it.gov.pagopa.receipt.pdf.datastore.exception.PDVTokenizerException;
 import it.gov.pagopa.receipt.pdf.datastore.model.tokenizer.PiiResource;
 
 import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Client for invoking PDV Tokenizer service
@@ -36,4 +37,13 @@ public interface PDVTokenizerClient {
      * @throws PDVTokenizerException if an error occur when invoking the PDV Tokenizer service
      */
     HttpResponse<String> createToken(String piiBody) throws PDVTokenizerException;
+
+    /**
+     * Asynchronously create a new token for the specified PII, without blocking the caller thread
+     *
+     * @param piiBody the {@link PiiResource} serialized as String
+     * @return the future {@link HttpResponse} of the PDV Tokenizer service, completed exceptionally with a
+     * {@link PDVTokenizerException} if an error occur when invoking the PDV Tokenizer service
+     */
+    CompletableFuture<HttpResponse<String>> createTokenAsync(String piiBody);
 }
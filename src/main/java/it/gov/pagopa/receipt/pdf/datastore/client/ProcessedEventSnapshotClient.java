@@ -0,0 +1,25 @@
+package it.gov.pagopa.receipt.pdf.datastore.client;
+
+import it.gov.pagopa.receipt.pdf.datastore.model.ProcessedEventSnapshot;
+
+public interface ProcessedEventSnapshotClient {
+
+    /**
+     * Retrieve a snapshot of the filter of the processed biz-events
+     *
+     * @param snapshotId the id of the snapshot (the day of the filter segment)
+     * @return the content of the snapshot with its ETag, null if there is no snapshot
+     */
+    ProcessedEventSnapshot getSnapshot(String snapshotId);
+
+    /**
+     * Save a snapshot of the filter of the processed biz-events, overwriting the previous one only if it has not
+     * changed since it was read
+     *
+     * @param snapshotId the id of the snapshot (the day of the filter segment)
+     * @param snapshot   the content of the snapshot
+     * @param eTag       the ETag of the snapshot read, null if there was no snapshot
+     * @return true if the snapshot has been saved, false if it has been saved by another host in the meantime
+     */
+    boolean saveSnapshot(String snapshotId, byte[] snapshot, String eTag);
+}
@@ -1,16 +1,24 @@
 package it.gov.pagopa.receipt.pdf.datastore.client;
 
+import com.azure.cosmos.models.CosmosBulkOperationResponse;
 import com.azure.cosmos.models.CosmosItemResponse;
+import com.azure.cosmos.models.FeedRange;
 import com.azure.cosmos.models.FeedResponse;
 import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.Receipt;
 import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.ReceiptError;
+import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.ReceiptEventIndex;
 import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.enumeration.ReceiptStatusType;
 import it.gov.pagopa.receipt.pdf.datastore.exception.ReceiptNotFoundException;
+import it.gov.pagopa.receipt.pdf.datastore.model.ReceiptProjection;
+
+import java.util.List;
 
 public interface ReceiptCosmosClient {
 
     /**
-     * Retrieve receipt document from CosmosDB database
+     * Retrieve receipt document from CosmosDB database.
+     * The receipts saved with an id different from the biz-event id are looked up, after the point read miss,
+     * with a point read on the event index if RECEIPT_EVENT_INDEX_ENABLED or with a cross partition query otherwise
      *
      * @param eventId Biz-event id
      * @return receipt document
@@ -18,6 +26,28 @@ public interface ReceiptCosmosClient {
      */
     Receipt getReceiptDocument(String eventId) throws ReceiptNotFoundException;
 
+    /**
+     * Retrieve with a single readMany the receipt documents identified by the given biz-event ids,
+     * using the biz-event id as both document id and partition key
+     *
+     * @param eventIds Biz-event ids
+     * @return the page with the receipt documents found, the missing ones are not returned
+     */
+    FeedResponse<Receipt> getReceiptDocuments(List<String> eventIds);
+
+    /**
+     * Retrieve the event index of the receipts saved with one of the given biz-event ids,
+     * as fallback of {@link #getReceiptDocuments(List)} for the documents saved with an id different from the biz-event id.
+     * <p>
+     * If RECEIPT_EVENT_INDEX_ENABLED the index documents are read with a single readMany on the event index container,
+     * otherwise they are projected from the receipts with a cross partition query on the eventId property
+     * </p>
+     *
+     * @param eventIds Biz-event ids
+     * @return the pages of the event index documents found
+     */
+    Iterable<FeedResponse<ReceiptEventIndex>> getReceiptEventIndexes(List<String> eventIds);
+
     /**
      * Retrieve receiptError document from CosmosDB database
      *
@@ -28,15 +58,34 @@ public interface ReceiptCosmosClient {
     ReceiptError getReceiptError(String bizEventId) throws  ReceiptNotFoundException;
 
     /**
-     * Retrieve failed receipt documents from CosmosDB database
+     * Retrieve the failed receipts from CosmosDB database, with the provided failed status
+     * ({@link ReceiptStatusType#FAILED} or {@link ReceiptStatusType#NOT_QUEUE_SENT}).
+     * The documents are projected on the properties of {@link ReceiptProjection} only.
      *
      * @param continuationToken Paged query continuation token
-     * @return receipt documents
+     * @param pageSize the page size
+     * @param status the status of the receipts
+     * @param feedRange the feed range to scan, null to scan the whole container
+     * @return receipt projections
      */
-    Iterable<FeedResponse<Receipt>> getFailedReceiptDocuments(String continuationToken, Integer pageSize);
+    Iterable<FeedResponse<ReceiptProjection>> getFailedReceiptProjections(
+            String continuationToken,
+            Integer pageSize,
+            ReceiptStatusType status,
+            FeedRange feedRange
+    );
 
     /**
-     * Save Receipts on CosmosDB database
+     * Count the failed receipt documents of both the failed statuses, with the same filter of
+     * {@link #getFailedReceiptProjections(String, Integer, ReceiptStatusType, FeedRange)}
+     *
+     * @return the number of documents
+     */
+    long countFailedReceiptDocuments();
+
+    /**
+     * Save Receipts on CosmosDB database, the receipt saved with an id different from the biz-event id
+     * is added to the event index before the receipt itself
      *
      * @param receipt Receipts to save
      * @return receipt documents
@@ -44,7 +93,18 @@ public interface ReceiptCosmosClient {
     CosmosItemResponse<Receipt> saveReceipts(Receipt receipt);
 
     /**
-     * Update Receipts on CosmosDB database
+     * Create with a single bulk execution the given receipts on CosmosDB database.
+     * The receipts are never overwritten: an already existing receipt is reported with status 409.
+     * The receipts with an id different from the biz-event id are added to the event index before the bulk execution
+     *
+     * @param receipts Receipts to save
+     * @return the outcome of each creation, with the saved receipt as operation context
+     */
+    Iterable<CosmosBulkOperationResponse<Receipt>> saveReceipts(List<Receipt> receipts);
+
+    /**
+     * Update Receipts on CosmosDB database, the receipt saved with an id different from the biz-event id
+     * is added to the event index before the receipt itself
      *
      * @param receipt Receipts to update
      * @return receipt documents
@@ -52,29 +112,86 @@ public interface ReceiptCosmosClient {
     CosmosItemResponse<Receipt> updateReceipts(Receipt receipt);
 
     /**
-     * Retrieve the not notified receipt documents with {@link ReceiptStatusType#GENERATED}
+     * Reset with a bulk of patch operations the notification of the given receipts, setting
+     * {@link ReceiptStatusType#GENERATED} status, no notification retries and no errors.
+     * Only the receipts still in {@link ReceiptStatusType#GENERATED} or {@link ReceiptStatusType#IO_ERROR_TO_NOTIFY}
+     * status are patched, the others fail with precondition failed.
+     *
+     * @param receipts Receipts to reset
+     * @return the outcome of each patch operation, with the receipt as context
+     */
+    Iterable<CosmosBulkOperationResponse<ReceiptProjection>> resetReceiptsNotification(List<ReceiptProjection> receipts);
+
+    /**
+     * Retrieve the not notified receipts with {@link ReceiptStatusType#GENERATED}.
+     * The documents are projected on the properties of {@link ReceiptProjection} only.
      *
      * @param continuationToken Paged query continuation token
      * @param pageSize the page size
-     * @return receipt documents
+     * @param feedRange the feed range to scan, null to scan the whole container
+     * @return receipt projections
      */
-    Iterable<FeedResponse<Receipt>> getGeneratedReceiptDocuments(String continuationToken, Integer pageSize);
+    Iterable<FeedResponse<ReceiptProjection>> getGeneratedReceiptProjections(
+            String continuationToken,
+            Integer pageSize,
+            FeedRange feedRange
+    );
 
     /**
-     * Retrieve the receipt not notified documents with {@link ReceiptStatusType#IO_ERROR_TO_NOTIFY}
+     * Count the not notified receipt documents with {@link ReceiptStatusType#GENERATED}, with the same filter of {@link #getGeneratedReceiptProjections(String, Integer, FeedRange)}
+     *
+     * @return the number of documents
+     */
+    long countGeneratedReceiptDocuments();
+
+    /**
+     * Retrieve the not notified receipts with {@link ReceiptStatusType#IO_ERROR_TO_NOTIFY}.
+     * The documents are projected on the properties of {@link ReceiptProjection} only.
      *
      * @param continuationToken Paged query continuation token
      * @param pageSize the page size
-     * @return receipt documents
+     * @param feedRange the feed range to scan, null to scan the whole container
+     * @return receipt projections
      */
-    Iterable<FeedResponse<Receipt>> getIOErrorToNotifyReceiptDocuments(String continuationToken, Integer pageSize);
+    Iterable<FeedResponse<ReceiptProjection>> getIOErrorToNotifyReceiptProjections(
+            String continuationToken,
+            Integer pageSize,
+            FeedRange feedRange
+    );
 
     /**
-     * Retrieve the failed receipt documents with {@link ReceiptStatusType#INSERTED} status
+     * Count the not notified receipt documents with {@link ReceiptStatusType#IO_ERROR_TO_NOTIFY}, with the same filter of {@link #getIOErrorToNotifyReceiptProjections(String, Integer, FeedRange)}
+     *
+     * @return the number of documents
+     */
+    long countIOErrorToNotifyReceiptDocuments();
+
+    /**
+     * Retrieve the receipts with {@link ReceiptStatusType#INSERTED} status.
+     * The documents are projected on the properties of {@link ReceiptProjection} only.
      *
      * @param continuationToken Paged query continuation token
      * @param pageSize the page size
-     * @return receipt documents
+     * @param feedRange the feed range to scan, null to scan the whole container
+     * @return receipt projections
+     */
+    Iterable<FeedResponse<ReceiptProjection>> getInsertedReceiptProjections(
+            String continuationToken,
+            Integer pageSize,
+            FeedRange feedRange
+    );
+
+    /**
+     * Count the failed receipt documents with {@link ReceiptStatusType#INSERTED} status, with the same filter of {@link #getInsertedReceiptProjections(String, Integer, FeedRange)}
+     *
+     * @return the number of documents
+     */
+    long countInsertedReceiptDocuments();
+
+    /**
+     * Retrieve the feed ranges of the receipts container, one for each physical partition
+     *
+     * @return the feed ranges
      */
-    Iterable<FeedResponse<Receipt>> getInsertedReceiptDocuments(String continuationToken, Integer pageSize);
+    List<FeedRange> getFeedRanges();
 }
@@ -2,8 +2,17 @@ package it.gov.pagopa.receipt.pdf.datastore.client;
 
 import com.azure.core.http.rest.Response;
 import com.azure.storage.queue.models.SendMessageResult;
+import reactor.core.publisher.Mono;
 
 public interface ReceiptQueueClient {
 
     Response<SendMessageResult> sendMessageToQueue(String messageText);
+
+    /**
+     * @param messageText the message to send to the queue with the list of bizEvents
+     * @return the publisher of the response from the queue service, the message is sent on subscription
+     * <p>
+     * This method sends asynchronously a message to the receipt queue, so that many messages can be in flight at once.
+     */
+    Mono<Response<SendMessageResult>> sendMessageToQueueAsync(String messageText);
 }
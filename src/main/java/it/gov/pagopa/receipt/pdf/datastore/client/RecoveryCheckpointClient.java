@@ -0,0 +1,29 @@
+package it.gov.pagopa.receipt.pdf.datastore.client;
+
+public interface RecoveryCheckpointClient {
+
+    /**
+     * Retrieve the continuation token saved by the last invocation of a massive recovery
+     *
+     * @param checkpointId the id of the massive recovery (operation and status)
+     * @return the continuation token from which the recovery has to resume, null if there is no checkpoint
+     */
+    String getContinuationToken(String checkpointId);
+
+    /**
+     * Save the continuation token of the next page to recover, so that the next invocation can resume from it.
+     * If the continuation token is null the recovery is complete and the checkpoint is removed.
+     *
+     * @param checkpointId      the id of the massive recovery (operation and status)
+     * @param continuationToken the continuation token of the next page
+     */
+    void saveContinuationToken(String checkpointId, String continuationToken);
+
+    /**
+     * Delete all the checkpoints whose id starts with the specified prefix
+     *
+     * @param checkpointPrefix the prefix of the checkpoint ids
+     * @return the number of checkpoints deleted
+     */
+    int deleteCheckpoints(String checkpointPrefix);
+}
@@ -0,0 +1,30 @@
+package it.gov.pagopa.receipt.pdf.datastore.client;
+
+import it.gov.pagopa.receipt.pdf.datastore.exception.RecoveryJobNotFoundException;
+import it.gov.pagopa.receipt.pdf.datastore.model.RecoveryJob;
+
+public interface RecoveryJobClient {
+
+    /**
+     * Retrieve the recovery job with the provided id
+     *
+     * @param jobId the job id
+     * @return the recovery job
+     * @throws RecoveryJobNotFoundException if the job does not exist
+     */
+    RecoveryJob getJob(String jobId) throws RecoveryJobNotFoundException;
+
+    /**
+     * Create or overwrite the recovery job
+     *
+     * @param job the job to save
+     */
+    void saveJob(RecoveryJob job);
+
+    /**
+     * Send the job id to the recovery job queue, so that the worker runs (or continues) the job
+     *
+     * @param jobId the job id
+     */
+    void sendJobMessage(String jobId);
+}
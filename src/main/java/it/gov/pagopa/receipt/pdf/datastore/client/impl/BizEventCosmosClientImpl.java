@@ -4,13 +4,16 @@ import com.azure.cosmos.CosmosClientBuilder;
 import com.azure.cosmos.CosmosContainer;
 import com.azure.cosmos.CosmosDatabase;
 import com.azure.cosmos.CosmosException;
+import com.azure.cosmos.models.CosmosItemIdentity;
 import com.azure.cosmos.models.CosmosQueryRequestOptions;
+import com.azure.cosmos.models.FeedResponse;
 import com.azure.cosmos.models.PartitionKey;
 import com.azure.cosmos.models.SqlParameter;
 import com.azure.cosmos.models.SqlQuerySpec;
 import it.gov.pagopa.receipt.pdf.datastore.client.BizEventCosmosClient;
 import it.gov.pagopa.receipt.pdf.datastore.entity.event.BizEvent;
 import it.gov.pagopa.receipt.pdf.datastore.exception.BizEventNotFoundException;
+import it.gov.pagopa.receipt.pdf.datastore.utils.CosmosDiagnosticsRecorder;
 
 import java.util.List;
 
@@ -30,10 +33,12 @@ public class BizEventCosmosClientImpl implements BizEventCosmosClient {
         String databaseId = System.getenv("COSMOS_BIZ_EVENT_DB_NAME");
         String containerId = System.getenv("COSMOS_BIZ_EVENT_CONTAINER_NAME");
 
-        CosmosDatabase database = new CosmosClientBuilder()
+        CosmosClientBuilder builder = new CosmosClientBuilder()
                 .endpoint(serviceEndpoint)
                 .key(azureKey)
-                .preferredRegions(List.of(readRegion))
+                .preferredRegions(List.of(readRegion));
+        // the operations exceeding the diagnostics thresholds are kept for the helpdesk
+        CosmosDatabase database = CosmosDiagnosticsRecorder.getInstance().configure(builder)
                 .buildClient()
                 .getDatabase(databaseId);
 
@@ -75,6 +80,17 @@ public class BizEventCosmosClientImpl implements BizEventCosmosClient {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public FeedResponse<BizEvent> getBizEventDocuments(List<String> bizEventIds) {
+        List<CosmosItemIdentity> identities = bizEventIds.stream()
+                .map(bizEventId -> new CosmosItemIdentity(new PartitionKey(bizEventId), bizEventId))
+                .toList();
+        return bizEventContainer.readMany(identities, BizEvent.class);
+    }
+
     /**
      * {@inheritDoc}
      */
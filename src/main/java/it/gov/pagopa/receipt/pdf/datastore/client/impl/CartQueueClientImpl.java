@@ -1,11 +1,14 @@
 package it.gov.pagopa.receipt.pdf.datastore.client.impl;
 
 import com.azure.core.http.rest.Response;
+import com.azure.storage.queue.QueueAsyncClient;
 import com.azure.storage.queue.QueueClient;
 import com.azure.storage.queue.QueueClientBuilder;
 import com.azure.storage.queue.models.SendMessageResult;
 import it.gov.pagopa.receipt.pdf.datastore.client.CartQueueClient;
 
+import reactor.core.publisher.Mono;
+
 import java.time.Duration;
 import java.time.temporal.ChronoUnit;
 
@@ -17,19 +20,27 @@ public class CartQueueClientImpl implements CartQueueClient {
     private final int cartQueueDelay = Integer.parseInt(System.getenv().getOrDefault("CART_RECEIPT_QUEUE_DELAY", "1"));
 
     private final QueueClient cartQueueClient;
+    private final QueueAsyncClient cartQueueAsyncClient;
 
     private CartQueueClientImpl() {
         String cartQueueConnString = System.getenv("RECEIPT_QUEUE_CONN_STRING");
         String cartQueueTopic = System.getenv("CART_QUEUE_TOPIC");
 
-        this.cartQueueClient = new QueueClientBuilder()
+        QueueClientBuilder builder = new QueueClientBuilder()
                 .connectionString(cartQueueConnString)
-                .queueName(cartQueueTopic)
-                .buildClient();
+                .queueName(cartQueueTopic);
+
+        this.cartQueueClient = builder.buildClient();
+        this.cartQueueAsyncClient = builder.buildAsyncClient();
     }
 
     public CartQueueClientImpl(QueueClient cartQueueClient) {
+        this(cartQueueClient, null);
+    }
+
+    public CartQueueClientImpl(QueueClient cartQueueClient, QueueAsyncClient cartQueueAsyncClient) {
         this.cartQueueClient = cartQueueClient;
+        this.cartQueueAsyncClient = cartQueueAsyncClient;
     }
 
     public static CartQueueClientImpl getInstance() {
@@ -57,4 +68,18 @@ public class CartQueueClientImpl implements CartQueueClient {
                 null, null, null);
 
     }
+
+    /**
+     * Send asynchronously string message to the queue
+     *
+     * @param messageText Biz-event encoded to base64 string
+     * @return publisher of the response from the queue
+     */
+    public Mono<Response<SendMessageResult>> sendMessageToQueueAsync(String messageText) {
+
+        return this.cartQueueAsyncClient.sendMessageWithResponse(
+                messageText, Duration.of(cartQueueDelay, ChronoUnit.SECONDS),
+                null);
+
+    }
 }
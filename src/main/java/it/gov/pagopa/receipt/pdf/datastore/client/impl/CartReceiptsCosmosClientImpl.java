@@ -6,27 +6,45 @@ import com.azure.cosmos.CosmosContainer;
 import com.azure.cosmos.CosmosDatabase;
 import com.azure.cosmos.CosmosException;
 import com.azure.cosmos.implementation.PreconditionFailedException;
+import com.azure.cosmos.models.CosmosItemIdentity;
 import com.azure.cosmos.models.CosmosItemRequestOptions;
 import com.azure.cosmos.models.CosmosItemResponse;
+import com.azure.cosmos.models.CosmosPatchItemRequestOptions;
+import com.azure.cosmos.models.CosmosPatchOperations;
 import com.azure.cosmos.models.CosmosQueryRequestOptions;
+import com.azure.cosmos.models.FeedRange;
 import com.azure.cosmos.models.FeedResponse;
 import com.azure.cosmos.models.PartitionKey;
 import com.azure.cosmos.models.SqlParameter;
 import com.azure.cosmos.models.SqlQuerySpec;
 import it.gov.pagopa.receipt.pdf.datastore.client.CartReceiptsCosmosClient;
 import it.gov.pagopa.receipt.pdf.datastore.entity.cart.CartForReceipt;
+import it.gov.pagopa.receipt.pdf.datastore.entity.cart.CartPayment;
 import it.gov.pagopa.receipt.pdf.datastore.entity.cart.CartStatusType;
 import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.CartReceiptError;
 import it.gov.pagopa.receipt.pdf.datastore.exception.CartConcurrentUpdateException;
 import it.gov.pagopa.receipt.pdf.datastore.exception.CartNotFoundException;
+import it.gov.pagopa.receipt.pdf.datastore.utils.CosmosDiagnosticsRecorder;
+import it.gov.pagopa.receipt.pdf.datastore.utils.ParallelExecutionUtils;
 
 import java.time.OffsetDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 public class CartReceiptsCosmosClientImpl implements CartReceiptsCosmosClient {
 
     private static final String DOCUMENT_NOT_FOUND_ERR_MSG = "Document not found in the defined container";
+    private static final String SELECT_ALL = "SELECT * FROM c ";
+    private static final String SELECT_COUNT = "SELECT VALUE COUNT(1) FROM c ";
+    // max number of operations of a single partial document update
+    private static final int MAX_PATCH_OPERATIONS = 10;
+    private static final String WAITING_CART_FILTER = "FROM c WHERE c.status = '" + CartStatusType.WAITING_FOR_BIZ_EVENT + "'";
+    // the statuses recovered together are read with a query each, so that they are served by the (status, inserted_at) composite index
+    private static final List<CartStatusType> FAILED_STATUSES = List.of(CartStatusType.FAILED, CartStatusType.NOT_QUEUE_SENT);
+    private static final List<CartStatusType> INSERTED_STATUSES = List.of(CartStatusType.INSERTED, CartStatusType.WAITING_FOR_BIZ_EVENT);
+    private static final ExecutorService QUERY_EXECUTOR = ParallelExecutionUtils.newBoundedExecutor("cart-status-query", 2);
 
     private final String millisDiff = System.getenv().getOrDefault("MAX_DATE_DIFF_MILLIS", "1800000");
     private final String millisNotifyDif = System.getenv().getOrDefault("MAX_DATE_DIFF_NOTIFY_MILLIS", "1800000");
@@ -46,11 +64,13 @@ public class CartReceiptsCosmosClientImpl implements CartReceiptsCosmosClient {
         String cartForReceiptContainerName = System.getenv("CART_FOR_RECEIPT_CONTAINER_NAME");
         String cartReceiptsMessageErrorsContainerName = System.getenv("CART_RECEIPTS_MESSAGE_ERRORS_CONTAINER_NAME");
 
-        CosmosDatabase database = new CosmosClientBuilder()
+        CosmosClientBuilder builder = new CosmosClientBuilder()
                 .endpoint(serviceEndpoint)
                 .key(azureKey)
                 .consistencyLevel(ConsistencyLevel.BOUNDED_STALENESS)
-                .preferredRegions(List.of(readRegion))
+                .preferredRegions(List.of(readRegion));
+        // the operations exceeding the diagnostics thresholds are kept for the helpdesk
+        CosmosDatabase database = CosmosDiagnosticsRecorder.getInstance().configure(builder)
                 .buildClient()
                 .getDatabase(databaseId);
 
@@ -94,6 +114,17 @@ public class CartReceiptsCosmosClientImpl implements CartReceiptsCosmosClient {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public FeedResponse<CartForReceipt> getCartItems(List<String> cartIds) {
+        List<CosmosItemIdentity> identities = cartIds.stream()
+                .map(cartId -> new CosmosItemIdentity(new PartitionKey(cartId), cartId))
+                .toList();
+        return cartForReceiptContainer.readMany(identities, CartForReceipt.class);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -106,6 +137,83 @@ public class CartReceiptsCosmosClientImpl implements CartReceiptsCosmosClient {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CosmosItemResponse<CartForReceipt> createCart(CartForReceipt cart) throws CartConcurrentUpdateException {
+        try {
+            return cartForReceiptContainer.createItem(cart, new PartitionKey(cart.getId()), new CosmosItemRequestOptions());
+        } catch (CosmosException e) {
+            if (e.getStatusCode() != 409) {
+                throw e;
+            }
+            throw new CartConcurrentUpdateException("The cart has been created concurrently", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CosmosItemResponse<CartForReceipt> appendCartItems(String cartId, List<CartPayment> cartPayments)
+            throws CartNotFoundException, CartConcurrentUpdateException {
+        CosmosItemResponse<CartForReceipt> response = null;
+        for (int from = 0; from < cartPayments.size(); from += MAX_PATCH_OPERATIONS) {
+            response = patchCartItems(cartId, cartPayments.subList(from, Math.min(from + MAX_PATCH_OPERATIONS, cartPayments.size())));
+        }
+        return response;
+    }
+
+    private CosmosItemResponse<CartForReceipt> patchCartItems(String cartId, List<CartPayment> cartPayments)
+            throws CartNotFoundException, CartConcurrentUpdateException {
+        CosmosPatchOperations operations = CosmosPatchOperations.create();
+        StringBuilder filterPredicate = new StringBuilder(WAITING_CART_FILTER)
+                .append(" AND ARRAY_LENGTH(c.payload.cart) + ").append(cartPayments.size())
+                .append(" <= c.payload.totalNotice");
+        for (CartPayment cartPayment : cartPayments) {
+            String bizEventId = cartPayment.getBizEventId().replace("\\", "\\\\").replace("\"", "\\\"");
+            filterPredicate.append(" AND NOT ARRAY_CONTAINS(c.payload.cart, {\"bizEventId\": \"")
+                    .append(bizEventId).append("\"}, true)");
+            operations.add("/payload/cart/-", cartPayment);
+        }
+        CosmosPatchItemRequestOptions options = new CosmosPatchItemRequestOptions();
+        options.setFilterPredicate(filterPredicate.toString());
+        try {
+            return cartForReceiptContainer.patchItem(cartId, new PartitionKey(cartId), operations, options, CartForReceipt.class);
+        } catch (CosmosException e) {
+            if (e.getStatusCode() == 404) {
+                throw new CartNotFoundException(DOCUMENT_NOT_FOUND_ERR_MSG, e);
+            }
+            if (e.getStatusCode() == 412) {
+                throw new CartConcurrentUpdateException("The cart does not accept the items anymore", e);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CosmosItemResponse<CartForReceipt> markCartInserted(String cartId, long insertedAt)
+            throws CartConcurrentUpdateException {
+        CosmosPatchItemRequestOptions options = new CosmosPatchItemRequestOptions();
+        options.setFilterPredicate(WAITING_CART_FILTER + " AND ARRAY_LENGTH(c.payload.cart) = c.payload.totalNotice");
+        try {
+            return cartForReceiptContainer.patchItem(cartId, new PartitionKey(cartId),
+                    CosmosPatchOperations.create()
+                            .set("/status", CartStatusType.INSERTED)
+                            .set("/inserted_at", insertedAt),
+                    options, CartForReceipt.class);
+        } catch (CosmosException e) {
+            if (e.getStatusCode() != 412) {
+                throw e;
+            }
+            throw new CartConcurrentUpdateException("The cart has already been moved from waiting", e);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -127,36 +235,111 @@ public class CartReceiptsCosmosClientImpl implements CartReceiptsCosmosClient {
     @Override
     public Iterable<FeedResponse<CartForReceipt>> getFailedCartReceiptDocuments(
             String continuationToken,
-            Integer pageSize
+            Integer pageSize,
+            CartStatusType status,
+            FeedRange feedRange
     ) {
+        return executePagedQuery(failedCartsQuery(SELECT_ALL, status), continuationToken, pageSize, feedRange);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long countFailedCartReceiptDocuments() {
+        return executeCountQueries(FAILED_STATUSES.stream()
+                .map(status -> failedCartsQuery(SELECT_COUNT, status))
+                .toList());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterable<FeedResponse<CartForReceipt>> getInsertedCartReceiptDocuments(
+            String continuationToken,
+            Integer pageSize,
+            CartStatusType status,
+            FeedRange feedRange
+    ) {
+        return executePagedQuery(insertedCartsQuery(SELECT_ALL, status), continuationToken, pageSize, feedRange);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long countInsertedCartReceiptDocuments() {
+        return executeCountQueries(INSERTED_STATUSES.stream()
+                .map(status -> insertedCartsQuery(SELECT_COUNT, status))
+                .toList());
+    }
+
+    @Override
+    public Iterable<FeedResponse<CartForReceipt>> getIOErrorToNotifyCartReceiptDocuments(
+            String continuationToken,
+            Integer pageSize,
+            FeedRange feedRange
+    ) {
+        return executePagedQuery(ioErrorToNotifyCartsQuery(SELECT_ALL), continuationToken, pageSize, feedRange);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long countIOErrorToNotifyCartReceiptDocuments() {
+        return executeCountQuery(ioErrorToNotifyCartsQuery(SELECT_COUNT));
+    }
+
+    @Override
+    public Iterable<FeedResponse<CartForReceipt>> getGeneratedCartReceiptDocuments(
+            String continuationToken,
+            Integer pageSize,
+            FeedRange feedRange
+    ) {
+        return executePagedQuery(generatedCartsQuery(SELECT_ALL), continuationToken, pageSize, feedRange);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long countGeneratedCartReceiptDocuments() {
+        return executeCountQuery(generatedCartsQuery(SELECT_COUNT));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<FeedRange> getFeedRanges() {
+        return cartForReceiptContainer.getFeedRanges();
+    }
+
+    /**
+     * PRIVATE METHODS
+     */
+
+    private SqlQuerySpec failedCartsQuery(String select, CartStatusType status) {
         long daysAgo = OffsetDateTime.now()
                 .truncatedTo(ChronoUnit.DAYS)
                 .minusDays(Long.parseLong(numDaysRecoverFailed))
                 .toInstant()
                 .toEpochMilli();
 
-        SqlQuerySpec querySpec = new SqlQuerySpec(
-                "SELECT * FROM c " +
-                        "WHERE (c.status = @statusFailed OR c.status = @statusNotQueueSent) " +
-                        "   AND c.inserted_at >= @minInsertedAt ",
+        return new SqlQuerySpec(
+                select +
+                        "WHERE c.status = @status " +
+                        "  AND c.inserted_at >= @minInsertedAt ",
                 List.of(
-                        new SqlParameter("@statusFailed", CartStatusType.FAILED.name()),
-                        new SqlParameter("@statusNotQueueSent", CartStatusType.NOT_QUEUE_SENT.name()),
+                        new SqlParameter("@status", status.name()),
                         new SqlParameter("@minInsertedAt", daysAgo)
                 )
         );
-
-        return executePagedQuery(querySpec, continuationToken, pageSize);
     }
 
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public Iterable<FeedResponse<CartForReceipt>> getInsertedCartReceiptDocuments(
-            String continuationToken,
-            Integer pageSize
-    ) {
+    private SqlQuerySpec insertedCartsQuery(String select, CartStatusType status) {
         OffsetDateTime currentDateTime = OffsetDateTime.now();
         long daysAgo = currentDateTime
                 .truncatedTo(ChronoUnit.DAYS)
@@ -167,35 +350,28 @@ public class CartReceiptsCosmosClientImpl implements CartReceiptsCosmosClient {
         // (now - c.inserted_at) >= millisDiff  <=>  c.inserted_at <= now - millisDiff
         long maxInsertedAt = currentDateTime.toInstant().toEpochMilli() - Long.parseLong(millisDiff);
 
-        SqlQuerySpec querySpec = new SqlQuerySpec(
-                "SELECT * FROM c " +
-                        "WHERE (c.status = @statusInserted OR c.status = @statusWaitingForBizEvent) " +
+        return new SqlQuerySpec(
+                select +
+                        "WHERE c.status = @status " +
                         "  AND c.inserted_at >= @minInsertedAt " +
                         "  AND c.inserted_at <= @maxInsertedAt",
                 List.of(
-                        new SqlParameter("@statusInserted", CartStatusType.INSERTED.name()),
-                        new SqlParameter("@statusWaitingForBizEvent", CartStatusType.WAITING_FOR_BIZ_EVENT.name()),
+                        new SqlParameter("@status", status.name()),
                         new SqlParameter("@minInsertedAt", daysAgo),
                         new SqlParameter("@maxInsertedAt", maxInsertedAt)
                 )
         );
-
-        return executePagedQuery(querySpec, continuationToken, pageSize);
     }
 
-    @Override
-    public Iterable<FeedResponse<CartForReceipt>> getIOErrorToNotifyCartReceiptDocuments(
-            String continuationToken,
-            Integer pageSize
-    ) {
+    private SqlQuerySpec ioErrorToNotifyCartsQuery(String select) {
         long daysAgo = OffsetDateTime.now()
                 .truncatedTo(ChronoUnit.DAYS)
                 .minusDays(Long.parseLong(numDaysRecoverNotNotified))
                 .toInstant()
                 .toEpochMilli();
 
-        SqlQuerySpec querySpec = new SqlQuerySpec(
-                "SELECT * FROM c " +
+        return new SqlQuerySpec(
+                select +
                         "WHERE c.status = @statusIoErrorToNotify " +
                         "  AND c.generated_at >= @generatedAt",
                 List.of(
@@ -203,15 +379,9 @@ public class CartReceiptsCosmosClientImpl implements CartReceiptsCosmosClient {
                         new SqlParameter("@generatedAt", daysAgo)
                 )
         );
-
-        return executePagedQuery(querySpec, continuationToken, pageSize);
     }
 
-    @Override
-    public Iterable<FeedResponse<CartForReceipt>> getGeneratedCartReceiptDocuments(
-            String continuationToken,
-            Integer pageSize
-    ) {
+    private SqlQuerySpec generatedCartsQuery(String select) {
         OffsetDateTime currentDateTime = OffsetDateTime.now();
         long daysAgo = currentDateTime
                 .truncatedTo(ChronoUnit.DAYS)
@@ -222,8 +392,8 @@ public class CartReceiptsCosmosClientImpl implements CartReceiptsCosmosClient {
         // (now - c.generated_at) >= millisNotifyDif  <=>  c.generated_at <= now - millisNotifyDif
         long maxGeneratedAt = currentDateTime.toInstant().toEpochMilli() - Long.parseLong(millisNotifyDif);
 
-        SqlQuerySpec querySpec = new SqlQuerySpec(
-                "SELECT * FROM c " +
+        return new SqlQuerySpec(
+                select +
                         "WHERE c.status = @statusGenerated " +
                         "  AND c.generated_at >= @minGeneratedAt " +
                         "  AND c.generated_at <= @maxGeneratedAt",
@@ -233,21 +403,40 @@ public class CartReceiptsCosmosClientImpl implements CartReceiptsCosmosClient {
                         new SqlParameter("@maxGeneratedAt", maxGeneratedAt)
                 )
         );
-
-        return executePagedQuery(querySpec, continuationToken, pageSize);
     }
 
-    /**
-     * PRIVATE METHODS
-     */
-
     private Iterable<FeedResponse<CartForReceipt>> executePagedQuery(
             SqlQuerySpec querySpec,
             String continuationToken,
-            Integer pageSize
+            Integer pageSize,
+            FeedRange feedRange
     ) {
+        CosmosQueryRequestOptions options = new CosmosQueryRequestOptions();
+        if (feedRange != null) {
+            options.setFeedRange(feedRange);
+        }
         return cartForReceiptContainer
-                .queryItems(querySpec, new CosmosQueryRequestOptions(), CartForReceipt.class)
+                .queryItems(querySpec, options, CartForReceipt.class)
                 .iterableByPage(continuationToken, pageSize);
     }
+
+    /**
+     * Execute the count queries in parallel and sum their results
+     */
+    private long executeCountQueries(List<SqlQuerySpec> querySpecs) {
+        List<Callable<Long>> tasks = querySpecs.stream()
+                .<Callable<Long>>map(querySpec -> () -> executeCountQuery(querySpec))
+                .toList();
+        return ParallelExecutionUtils.invokeAll(QUERY_EXECUTOR, tasks).stream()
+                .mapToLong(Long::longValue)
+                .sum();
+    }
+
+    private long executeCountQuery(SqlQuerySpec querySpec) {
+        return cartForReceiptContainer
+                .queryItems(querySpec, new CosmosQueryRequestOptions(), Long.class)
+                .stream()
+                .findFirst()
+                .orElse(0L);
+    }
 }
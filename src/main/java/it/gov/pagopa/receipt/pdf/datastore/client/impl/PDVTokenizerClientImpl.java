@@ -1,8 +1,11 @@
 package it.gov.pagopa.receipt.pdf.datastore.client.impl;
 
+import com.azure.core.util.Context;
+import com.azure.core.util.tracing.SpanKind;
 import it.gov.pagopa.receipt.pdf.datastore.client.PDVTokenizerClient;
 import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.enumeration.ReasonErrorCode;
 import it.gov.pagopa.receipt.pdf.datastore.exception.PDVTokenizerException;
+import it.gov.pagopa.receipt.pdf.datastore.utils.PipelineTracing;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -11,6 +14,8 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * {@inheritDoc}
@@ -26,6 +31,8 @@ public class PDVTokenizerClientImpl implements PDVTokenizerClient {
     private static final String FIND_PII_ENDPOINT = System.getenv().getOrDefault("PDV_TOKENIZER_FIND_PII_ENDPOINT", "/tokens/%s/pii");
     private static final String CREATE_TOKEN_ENDPOINT = System.getenv().getOrDefault("PDV_TOKENIZER_CREATE_TOKEN_ENDPOINT", "/tokens");
 
+    private static final String SPAN_NAME = "PDV Tokenizer";
+
     private final HttpClient client;
 
     private PDVTokenizerClientImpl() {
@@ -89,27 +96,64 @@ public class PDVTokenizerClientImpl implements PDVTokenizerClient {
      */
     @Override
     public HttpResponse<String> createToken(String piiBody) throws PDVTokenizerException {
+        return makeCall(buildCreateTokenRequest(piiBody));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<HttpResponse<String>> createTokenAsync(String piiBody) {
+        Context span = PipelineTracing.startSpan(SPAN_NAME, SpanKind.CLIENT);
+        return client.sendAsync(withTraceContext(buildCreateTokenRequest(piiBody), span), HttpResponse.BodyHandlers.ofString())
+                .whenComplete((response, e) -> PipelineTracing.endSpan(span, e))
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    if (cause instanceof IOException) {
+                        throw new CompletionException(new PDVTokenizerException(
+                                "I/O error when invoking PDV Tokenizer", ReasonErrorCode.ERROR_PDV_IO.getCode(), cause));
+                    }
+                    throw new CompletionException(new PDVTokenizerException(
+                            "Unexpected error when invoking PDV Tokenizer", ReasonErrorCode.ERROR_PDV_UNEXPECTED.getCode(), cause));
+                });
+    }
+
+    private HttpRequest buildCreateTokenRequest(String piiBody) {
         String uri = String.format("%s%s", BASE_PATH, CREATE_TOKEN_ENDPOINT);
 
-        HttpRequest request = HttpRequest.newBuilder()
+        return HttpRequest.newBuilder()
                 .uri(URI.create(uri))
                 .version(HttpClient.Version.HTTP_2)
                 .header(SUBSCRIPTION_KEY_HEADER, SUBSCRIPTION_KEY)
                 .PUT(HttpRequest.BodyPublishers.ofString(piiBody))
                 .build();
-
-        return makeCall(request);
     }
 
     private HttpResponse<String> makeCall(HttpRequest request) throws PDVTokenizerException {
+        Context span = PipelineTracing.startSpan(SPAN_NAME, SpanKind.CLIENT);
+        Exception error = null;
         try {
-            return client.send(request, HttpResponse.BodyHandlers.ofString());
+            return client.send(withTraceContext(request, span), HttpResponse.BodyHandlers.ofString());
         } catch (IOException e) {
+            error = e;
             throw new PDVTokenizerException("I/O error when invoking PDV Tokenizer", ReasonErrorCode.ERROR_PDV_IO.getCode(), e);
         } catch (InterruptedException e) {
+            error = e;
             logger.warn("This thread was interrupted, restoring the state");
             Thread.currentThread().interrupt();
             throw new PDVTokenizerException("Unexpected error when invoking PDV Tokenizer, the thread was interrupted", ReasonErrorCode.ERROR_PDV_UNEXPECTED.getCode(), e);
+        } finally {
+            PipelineTracing.endSpan(span, error);
         }
     }
+
+    private HttpRequest withTraceContext(HttpRequest request, Context span) {
+        String traceparent = PipelineTracing.getTraceparent(span);
+        if (traceparent == null) {
+            return request;
+        }
+        return HttpRequest.newBuilder(request, (name, value) -> true)
+                .header(PipelineTracing.TRACEPARENT, traceparent)
+                .build();
+    }
 }
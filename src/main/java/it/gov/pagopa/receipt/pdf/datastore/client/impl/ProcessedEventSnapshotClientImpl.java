@@ -0,0 +1,94 @@
+package it.gov.pagopa.receipt.pdf.datastore.client.impl;
+
+import com.azure.core.util.BinaryData;
+import com.azure.core.util.Context;
+import com.azure.storage.blob.BlobContainerClient;
+import com.azure.storage.blob.BlobServiceClientBuilder;
+import com.azure.storage.blob.models.BlobDownloadContentResponse;
+import com.azure.storage.blob.models.BlobRequestConditions;
+import com.azure.storage.blob.models.BlobStorageException;
+import com.azure.storage.blob.options.BlobParallelUploadOptions;
+import it.gov.pagopa.receipt.pdf.datastore.client.ProcessedEventSnapshotClient;
+import it.gov.pagopa.receipt.pdf.datastore.model.ProcessedEventSnapshot;
+
+/**
+ * Client for the Blob Storage container of the snapshots of the processed biz-events filter, one blob for each day
+ */
+public class ProcessedEventSnapshotClientImpl implements ProcessedEventSnapshotClient {
+
+    private final BlobContainerClient snapshotContainer;
+
+    private ProcessedEventSnapshotClientImpl() {
+        String connectionString = System.getenv("BIZ_EVENT_DEDUP_FILTER_SNAPSHOT_CONN_STRING");
+        String containerName = System.getenv().getOrDefault(
+                "BIZ_EVENT_DEDUP_FILTER_SNAPSHOT_CONTAINER_NAME", "biz-event-dedup-filter");
+
+        this.snapshotContainer = new BlobServiceClientBuilder()
+                .connectionString(connectionString)
+                .buildClient()
+                .getBlobContainerClient(containerName);
+    }
+
+    /**
+     * Test-only constructor. Package-private visibility so it is only reachable from tests
+     * in the same package.
+     */
+    ProcessedEventSnapshotClientImpl(BlobContainerClient snapshotContainer) {
+        this.snapshotContainer = snapshotContainer;
+    }
+
+    public static ProcessedEventSnapshotClientImpl getInstance() {
+        return SingletonHelper.INSTANCE;
+    }
+
+    /**
+     * Bill Pugh singleton holder: the JVM guarantees that the class is loaded
+     * (and therefore INSTANCE initialized) lazily and in a thread-safe way.
+     */
+    private static class SingletonHelper {
+        private static final ProcessedEventSnapshotClientImpl INSTANCE = new ProcessedEventSnapshotClientImpl();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ProcessedEventSnapshot getSnapshot(String snapshotId) {
+        try {
+            BlobDownloadContentResponse response = this.snapshotContainer.getBlobClient(snapshotId)
+                    .downloadContentWithResponse(null, null, null, Context.NONE);
+            return ProcessedEventSnapshot.builder()
+                    .content(response.getValue().toBytes())
+                    .eTag(response.getDeserializedHeaders().getETag())
+                    .build();
+        } catch (BlobStorageException e) {
+            if (e.getStatusCode() != 404) {
+                throw e;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean saveSnapshot(String snapshotId, byte[] snapshot, String eTag) {
+        // without a snapshot read the upload must not overwrite the one saved by another host in the meantime
+        BlobRequestConditions conditions = eTag != null
+                ? new BlobRequestConditions().setIfMatch(eTag)
+                : new BlobRequestConditions().setIfNoneMatch("*");
+        try {
+            this.snapshotContainer.getBlobClient(snapshotId).uploadWithResponse(
+                    new BlobParallelUploadOptions(BinaryData.fromBytes(snapshot)).setRequestConditions(conditions),
+                    null, Context.NONE);
+            return true;
+        } catch (BlobStorageException e) {
+            // 412 if the snapshot changed since it was read, 409 if it has been created since it was found missing
+            if (e.getStatusCode() != 412 && e.getStatusCode() != 409) {
+                throw e;
+            }
+            return false;
+        }
+    }
+}
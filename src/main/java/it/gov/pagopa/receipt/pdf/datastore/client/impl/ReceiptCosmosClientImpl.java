@@ -4,8 +4,17 @@ import com.azure.cosmos.CosmosClientBuilder;
 import com.azure.cosmos.CosmosContainer;
 import com.azure.cosmos.CosmosDatabase;
 import com.azure.cosmos.CosmosException;
+import com.azure.cosmos.models.CosmosBulkExecutionOptions;
+import com.azure.cosmos.models.CosmosBulkOperationResponse;
+import com.azure.cosmos.models.CosmosBulkOperations;
+import com.azure.cosmos.models.CosmosBulkPatchItemRequestOptions;
+import com.azure.cosmos.models.CosmosItemIdentity;
+import com.azure.cosmos.models.CosmosItemOperation;
+import com.azure.cosmos.models.CosmosItemRequestOptions;
 import com.azure.cosmos.models.CosmosItemResponse;
+import com.azure.cosmos.models.CosmosPatchOperations;
 import com.azure.cosmos.models.CosmosQueryRequestOptions;
+import com.azure.cosmos.models.FeedRange;
 import com.azure.cosmos.models.FeedResponse;
 import com.azure.cosmos.models.PartitionKey;
 import com.azure.cosmos.models.SqlParameter;
@@ -13,13 +22,19 @@ import com.azure.cosmos.models.SqlQuerySpec;
 import it.gov.pagopa.receipt.pdf.datastore.client.ReceiptCosmosClient;
 import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.Receipt;
 import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.ReceiptError;
+import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.ReceiptEventIndex;
 import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.enumeration.ReceiptStatusType;
 import it.gov.pagopa.receipt.pdf.datastore.exception.ReceiptNotFoundException;
+import it.gov.pagopa.receipt.pdf.datastore.model.ReceiptProjection;
+import it.gov.pagopa.receipt.pdf.datastore.utils.CosmosDiagnosticsRecorder;
+import it.gov.pagopa.receipt.pdf.datastore.utils.ParallelExecutionUtils;
 
 import java.time.OffsetDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Client for the CosmosDB database
@@ -27,14 +42,27 @@ import java.util.Optional;
 public class ReceiptCosmosClientImpl implements ReceiptCosmosClient {
 
     private static final String DOCUMENT_NOT_FOUND_ERR_MSG = "Document not found in the defined container";
+    private static final String SELECT_COUNT = "SELECT VALUE COUNT(1) FROM c ";
+    private static final String SELECT_PROJECTION = "SELECT c.id, c.eventId, c.status FROM c ";
+    private static final String NOT_NOTIFIED_FILTER = String.format("FROM c WHERE c.status IN ('%s', '%s')",
+            ReceiptStatusType.GENERATED, ReceiptStatusType.IO_ERROR_TO_NOTIFY);
+    // the failed statuses are read with a query each, so that they are served by the (status, inserted_at) composite index
+    private static final List<ReceiptStatusType> FAILED_STATUSES = List.of(ReceiptStatusType.FAILED, ReceiptStatusType.NOT_QUEUE_SENT);
+    private static final ExecutorService QUERY_EXECUTOR =
+            ParallelExecutionUtils.newBoundedExecutor("receipt-status-query", FAILED_STATUSES.size());
 
     private final String millisDiff = System.getenv().getOrDefault("MAX_DATE_DIFF_MILLIS", "1800000");
     private final String millisNotifyDif = System.getenv().getOrDefault("MAX_DATE_DIFF_NOTIFY_MILLIS", "1800000");
     private final String numDaysRecoverFailed = System.getenv().getOrDefault("RECOVER_FAILED_MASSIVE_MAX_DAYS", "0");
     private final String numDaysRecoverNotNotified = System.getenv().getOrDefault("RECOVER_NOT_NOTIFIED_MASSIVE_MAX_DAYS", "0");
+    // max concurrent micro batches of a bulk for each partition, from 1 to 5
+    private final int bulkConcurrency = Integer.parseInt(System.getenv().getOrDefault("MASSIVE_RECOVERY_BULK_CONCURRENCY", "2"));
+    // look up the receipts saved with an id different from the biz-event id on the event index instead of a cross partition query
+    private final boolean eventIndexEnabled = Boolean.parseBoolean(System.getenv().getOrDefault("RECEIPT_EVENT_INDEX_ENABLED", "false"));
 
     private final CosmosContainer receiptContainer;
     private final CosmosContainer receiptErrorContainer;
+    private final CosmosContainer receiptEventIndexContainer;
 
     @SuppressWarnings("resource") // CosmosClient lifecycle == singleton lifecycle; never closed on purpose
     private ReceiptCosmosClientImpl() {
@@ -46,16 +74,21 @@ public class ReceiptCosmosClientImpl implements ReceiptCosmosClient {
         String containerId = System.getenv("COSMOS_RECEIPT_CONTAINER_NAME");
         String containerReceiptErrorId = System.getenv()
                 .getOrDefault("COSMOS_RECEIPT_ERROR_CONTAINER_NAME", "receipts-message-errors");
+        String containerReceiptEventIndexId = System.getenv()
+                .getOrDefault("COSMOS_RECEIPT_EVENT_INDEX_CONTAINER_NAME", "receipts-event-index");
 
-        CosmosDatabase database = new CosmosClientBuilder()
+        CosmosClientBuilder builder = new CosmosClientBuilder()
                 .endpoint(serviceEndpoint)
                 .key(azureKey)
-                .preferredRegions(List.of(readRegion))
+                .preferredRegions(List.of(readRegion));
+        // the operations exceeding the diagnostics thresholds are kept for the helpdesk
+        CosmosDatabase database = CosmosDiagnosticsRecorder.getInstance().configure(builder)
                 .buildClient()
                 .getDatabase(databaseId);
 
         this.receiptContainer = database.getContainer(containerId);
         this.receiptErrorContainer = database.getContainer(containerReceiptErrorId);
+        this.receiptEventIndexContainer = database.getContainer(containerReceiptEventIndexId);
     }
 
     /**
@@ -64,10 +97,12 @@ public class ReceiptCosmosClientImpl implements ReceiptCosmosClient {
      */
     ReceiptCosmosClientImpl(
             CosmosContainer receiptContainer,
-            CosmosContainer receiptErrorContainer
+            CosmosContainer receiptErrorContainer,
+            CosmosContainer receiptEventIndexContainer
     ) {
         this.receiptContainer = receiptContainer;
         this.receiptErrorContainer = receiptErrorContainer;
+        this.receiptEventIndexContainer = receiptEventIndexContainer;
     }
 
     public static ReceiptCosmosClientImpl getInstance() {
@@ -95,6 +130,9 @@ public class ReceiptCosmosClientImpl implements ReceiptCosmosClient {
                 throw e;
             }
         }
+        if (eventIndexEnabled) {
+            return getReceiptDocumentByEventIndex(eventId);
+        }
         // if not found use fallback query
         SqlQuerySpec querySpec = new SqlQuerySpec(
                 "SELECT * FROM c WHERE c.eventId = @eventId",
@@ -105,6 +143,38 @@ public class ReceiptCosmosClientImpl implements ReceiptCosmosClient {
                 .orElseThrow(() -> new ReceiptNotFoundException(DOCUMENT_NOT_FOUND_ERR_MSG));
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public FeedResponse<Receipt> getReceiptDocuments(List<String> eventIds) {
+        List<CosmosItemIdentity> identities = eventIds.stream()
+                .map(eventId -> new CosmosItemIdentity(new PartitionKey(eventId), eventId))
+                .toList();
+        return receiptContainer.readMany(identities, Receipt.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterable<FeedResponse<ReceiptEventIndex>> getReceiptEventIndexes(List<String> eventIds) {
+        if (eventIndexEnabled) {
+            List<CosmosItemIdentity> identities = eventIds.stream()
+                    .map(eventId -> new CosmosItemIdentity(new PartitionKey(eventId), eventId))
+                    .toList();
+            return List.of(receiptEventIndexContainer.readMany(identities, ReceiptEventIndex.class));
+        }
+        SqlQuerySpec querySpec = new SqlQuerySpec(
+                "SELECT c.eventId AS id, c.id AS receiptId FROM c WHERE ARRAY_CONTAINS(@eventIds, c.eventId)",
+                List.of(new SqlParameter("@eventIds", eventIds))
+        );
+
+        return receiptContainer
+                .queryItems(querySpec, new CosmosQueryRequestOptions(), ReceiptEventIndex.class)
+                .iterableByPage();
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -123,25 +193,23 @@ public class ReceiptCosmosClientImpl implements ReceiptCosmosClient {
      * {@inheritDoc}
      */
     @Override
-    public Iterable<FeedResponse<Receipt>> getFailedReceiptDocuments(String continuationToken, Integer pageSize) {
-        long daysAgo = OffsetDateTime.now()
-                .truncatedTo(ChronoUnit.DAYS)
-                .minusDays(Long.parseLong(numDaysRecoverFailed))
-                .toInstant()
-                .toEpochMilli();
-
-        SqlQuerySpec querySpec = new SqlQuerySpec(
-                "SELECT * FROM c " +
-                        "WHERE (c.status = @statusFailed OR c.status = @statusNotQueueSent) " +
-                        "   AND c.inserted_at >= @minInsertedAt ",
-                List.of(
-                        new SqlParameter("@statusFailed", ReceiptStatusType.FAILED.name()),
-                        new SqlParameter("@statusNotQueueSent", ReceiptStatusType.NOT_QUEUE_SENT.name()),
-                        new SqlParameter("@minInsertedAt", daysAgo)
-                )
-        );
+    public Iterable<FeedResponse<ReceiptProjection>> getFailedReceiptProjections(
+            String continuationToken,
+            Integer pageSize,
+            ReceiptStatusType status,
+            FeedRange feedRange
+    ) {
+        return executePagedQuery(failedReceiptsQuery(SELECT_PROJECTION, status), continuationToken, pageSize, feedRange, ReceiptProjection.class);
+    }
 
-        return executePagedQuery(querySpec, continuationToken, pageSize);
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long countFailedReceiptDocuments() {
+        return executeCountQueries(FAILED_STATUSES.stream()
+                .map(status -> failedReceiptsQuery(SELECT_COUNT, status))
+                .toList());
     }
 
     /**
@@ -149,14 +217,28 @@ public class ReceiptCosmosClientImpl implements ReceiptCosmosClient {
      */
     @Override
     public CosmosItemResponse<Receipt> saveReceipts(Receipt receipt) {
+        saveReceiptEventIndex(receipt);
         return receiptContainer.createItem(receipt);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterable<CosmosBulkOperationResponse<Receipt>> saveReceipts(List<Receipt> receipts) {
+        receipts.forEach(this::saveReceiptEventIndex);
+        List<CosmosItemOperation> operations = receipts.stream()
+                .map(receipt -> CosmosBulkOperations.getCreateItemOperation(receipt, new PartitionKey(receipt.getId()), receipt))
+                .toList();
+        return receiptContainer.executeBulkOperations(operations);
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public CosmosItemResponse<Receipt> updateReceipts(Receipt receipt) {
+        saveReceiptEventIndex(receipt);
         return receiptContainer.upsertItem(receipt);
     }
 
@@ -164,7 +246,107 @@ public class ReceiptCosmosClientImpl implements ReceiptCosmosClient {
      * {@inheritDoc}
      */
     @Override
-    public Iterable<FeedResponse<Receipt>> getGeneratedReceiptDocuments(String continuationToken, Integer pageSize) {
+    public Iterable<CosmosBulkOperationResponse<ReceiptProjection>> resetReceiptsNotification(List<ReceiptProjection> receipts) {
+        CosmosPatchOperations patch = CosmosPatchOperations.create()
+                .set("/status", ReceiptStatusType.GENERATED)
+                .set("/notificationNumRetry", 0)
+                .set("/notified_at", 0)
+                .set("/reasonErr", null)
+                .set("/reasonErrPayer", null);
+        CosmosBulkPatchItemRequestOptions options = new CosmosBulkPatchItemRequestOptions()
+                .setFilterPredicate(NOT_NOTIFIED_FILTER);
+
+        List<CosmosItemOperation> operations = receipts.stream()
+                .map(receipt -> CosmosBulkOperations.getPatchItemOperation(
+                        receipt.getId(), new PartitionKey(receipt.getId()), patch, options, receipt))
+                .toList();
+        return receiptContainer.executeBulkOperations(operations,
+                new CosmosBulkExecutionOptions().setMaxMicroBatchConcurrency(bulkConcurrency));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterable<FeedResponse<ReceiptProjection>> getGeneratedReceiptProjections(
+            String continuationToken,
+            Integer pageSize,
+            FeedRange feedRange
+    ) {
+        return executePagedQuery(generatedReceiptsQuery(SELECT_PROJECTION), continuationToken, pageSize, feedRange, ReceiptProjection.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long countGeneratedReceiptDocuments() {
+        return executeCountQuery(generatedReceiptsQuery(SELECT_COUNT));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterable<FeedResponse<ReceiptProjection>> getIOErrorToNotifyReceiptProjections(
+            String continuationToken,
+            Integer pageSize,
+            FeedRange feedRange
+    ) {
+        return executePagedQuery(ioErrorToNotifyReceiptsQuery(SELECT_PROJECTION), continuationToken, pageSize, feedRange, ReceiptProjection.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long countIOErrorToNotifyReceiptDocuments() {
+        return executeCountQuery(ioErrorToNotifyReceiptsQuery(SELECT_COUNT));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterable<FeedResponse<ReceiptProjection>> getInsertedReceiptProjections(
+            String continuationToken,
+            Integer pageSize,
+            FeedRange feedRange
+    ) {
+        return executePagedQuery(insertedReceiptsQuery(SELECT_PROJECTION), continuationToken, pageSize, feedRange, ReceiptProjection.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long countInsertedReceiptDocuments() {
+        return executeCountQuery(insertedReceiptsQuery(SELECT_COUNT));
+    }
+
+    /**
+     * PRIVATE METHODS
+     */
+
+    private SqlQuerySpec failedReceiptsQuery(String select, ReceiptStatusType status) {
+        long daysAgo = OffsetDateTime.now()
+                .truncatedTo(ChronoUnit.DAYS)
+                .minusDays(Long.parseLong(numDaysRecoverFailed))
+                .toInstant()
+                .toEpochMilli();
+
+        return new SqlQuerySpec(
+                select +
+                        "WHERE c.status = @status " +
+                        "  AND c.inserted_at >= @minInsertedAt ",
+                List.of(
+                        new SqlParameter("@status", status.name()),
+                        new SqlParameter("@minInsertedAt", daysAgo)
+                )
+        );
+    }
+
+    private SqlQuerySpec generatedReceiptsQuery(String select) {
         OffsetDateTime currentDateTime = OffsetDateTime.now();
         long daysAgo = currentDateTime
                 .truncatedTo(ChronoUnit.DAYS)
@@ -175,8 +357,8 @@ public class ReceiptCosmosClientImpl implements ReceiptCosmosClient {
         // (now - c.generated_at) >= millisNotifyDif  <=>  c.generated_at <= now - millisNotifyDif
         long maxGeneratedAt = currentDateTime.toInstant().toEpochMilli() - Long.parseLong(millisNotifyDif);
 
-        SqlQuerySpec querySpec = new SqlQuerySpec(
-                "SELECT * FROM c " +
+        return new SqlQuerySpec(
+                select +
                         "WHERE c.status = @statusGenerated " +
                         "  AND c.generated_at >= @minGeneratedAt " +
                         "  AND c.generated_at <= @maxGeneratedAt",
@@ -186,26 +368,17 @@ public class ReceiptCosmosClientImpl implements ReceiptCosmosClient {
                         new SqlParameter("@maxGeneratedAt", maxGeneratedAt)
                 )
         );
-
-        return executePagedQuery(querySpec, continuationToken, pageSize);
     }
 
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public Iterable<FeedResponse<Receipt>> getIOErrorToNotifyReceiptDocuments(
-            String continuationToken,
-            Integer pageSize
-    ) {
+    private SqlQuerySpec ioErrorToNotifyReceiptsQuery(String select) {
         long daysAgo = OffsetDateTime.now()
                 .truncatedTo(ChronoUnit.DAYS)
                 .minusDays(Long.parseLong(numDaysRecoverNotNotified))
                 .toInstant()
                 .toEpochMilli();
 
-        SqlQuerySpec querySpec = new SqlQuerySpec(
-                "SELECT * FROM c " +
+        return new SqlQuerySpec(
+                select +
                         "WHERE c.status = @statusIoErrorToNotify " +
                         "  AND c.generated_at >= @generatedAt",
                 List.of(
@@ -213,15 +386,9 @@ public class ReceiptCosmosClientImpl implements ReceiptCosmosClient {
                         new SqlParameter("@generatedAt", daysAgo)
                 )
         );
-
-        return executePagedQuery(querySpec, continuationToken, pageSize);
     }
 
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public Iterable<FeedResponse<Receipt>> getInsertedReceiptDocuments(String continuationToken, Integer pageSize) {
+    private SqlQuerySpec insertedReceiptsQuery(String select) {
         OffsetDateTime currentDateTime = OffsetDateTime.now();
         long daysAgo = currentDateTime
                 .truncatedTo(ChronoUnit.DAYS)
@@ -232,8 +399,8 @@ public class ReceiptCosmosClientImpl implements ReceiptCosmosClient {
         // (now - c.inserted_at) >= millisDiff  <=>  c.inserted_at <= now - millisDiff
         long maxInsertedAt = currentDateTime.toInstant().toEpochMilli() - Long.parseLong(millisDiff);
 
-        SqlQuerySpec querySpec = new SqlQuerySpec(
-                "SELECT * FROM c " +
+        return new SqlQuerySpec(
+                select +
                         "WHERE c.status = @statusInserted " +
                         "  AND c.inserted_at >= @minInsertedAt " +
                         "  AND c.inserted_at <= @maxInsertedAt",
@@ -243,13 +410,44 @@ public class ReceiptCosmosClientImpl implements ReceiptCosmosClient {
                         new SqlParameter("@maxInsertedAt", maxInsertedAt)
                 )
         );
+    }
 
-        return executePagedQuery(querySpec, continuationToken, pageSize);
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<FeedRange> getFeedRanges() {
+        return receiptContainer.getFeedRanges();
+    }
+
+    private Receipt getReceiptDocumentByEventIndex(String eventId) throws ReceiptNotFoundException {
+        try {
+            ReceiptEventIndex eventIndex = receiptEventIndexContainer
+                    .readItem(eventId, new PartitionKey(eventId), ReceiptEventIndex.class)
+                    .getItem();
+            return receiptContainer
+                    .readItem(eventIndex.getReceiptId(), new PartitionKey(eventIndex.getReceiptId()), Receipt.class)
+                    .getItem();
+        } catch (CosmosException e) {
+            if (e.getStatusCode() != 404) {
+                throw e;
+            }
+            throw new ReceiptNotFoundException(DOCUMENT_NOT_FOUND_ERR_MSG, e);
+        }
     }
 
     /**
-     * PRIVATE METHODS
+     * The event index is written before the receipt, so that a saved receipt is always found by its biz-event id
+     * (an index without receipt is read as not found). The receipts with id equal to the biz-event id are not indexed,
+     * they are found with the point read.
      */
+    private void saveReceiptEventIndex(Receipt receipt) {
+        if (receipt.getEventId() == null || receipt.getEventId().equals(receipt.getId())) {
+            return;
+        }
+        receiptEventIndexContainer.upsertItem(new ReceiptEventIndex(receipt.getEventId(), receipt.getId()),
+                new PartitionKey(receipt.getEventId()), new CosmosItemRequestOptions());
+    }
 
     private <T> Optional<T> getDocumentByFilter(CosmosContainer container, SqlQuerySpec querySpec, Class<T> classType) {
         // use stream() to convert iterable and find first element
@@ -259,13 +457,39 @@ public class ReceiptCosmosClientImpl implements ReceiptCosmosClient {
                 .findFirst();
     }
 
-    private Iterable<FeedResponse<Receipt>> executePagedQuery(
+    private <T> Iterable<FeedResponse<T>> executePagedQuery(
             SqlQuerySpec querySpec,
             String continuationToken,
-            Integer pageSize
+            Integer pageSize,
+            FeedRange feedRange,
+            Class<T> classType
     ) {
+        CosmosQueryRequestOptions options = new CosmosQueryRequestOptions();
+        if (feedRange != null) {
+            options.setFeedRange(feedRange);
+        }
         return receiptContainer
-                .queryItems(querySpec, new CosmosQueryRequestOptions(), Receipt.class)
+                .queryItems(querySpec, options, classType)
                 .iterableByPage(continuationToken, pageSize);
     }
+
+    /**
+     * Execute the count queries in parallel and sum their results
+     */
+    private long executeCountQueries(List<SqlQuerySpec> querySpecs) {
+        List<Callable<Long>> tasks = querySpecs.stream()
+                .<Callable<Long>>map(querySpec -> () -> executeCountQuery(querySpec))
+                .toList();
+        return ParallelExecutionUtils.invokeAll(QUERY_EXECUTOR, tasks).stream()
+                .mapToLong(Long::longValue)
+                .sum();
+    }
+
+    private long executeCountQuery(SqlQuerySpec querySpec) {
+        return receiptContainer
+                .queryItems(querySpec, new CosmosQueryRequestOptions(), Long.class)
+                .stream()
+                .findFirst()
+                .orElse(0L);
+    }
 }
@@ -1,11 +1,14 @@
 package it.gov.pagopa.receipt.pdf.datastore.client.impl;
 
 import com.azure.core.http.rest.Response;
+import com.azure.storage.queue.QueueAsyncClient;
 import com.azure.storage.queue.QueueClient;
 import com.azure.storage.queue.QueueClientBuilder;
 import com.azure.storage.queue.models.SendMessageResult;
 import it.gov.pagopa.receipt.pdf.datastore.client.ReceiptQueueClient;
 
+import reactor.core.publisher.Mono;
+
 import java.time.Duration;
 import java.time.temporal.ChronoUnit;
 
@@ -17,19 +20,27 @@ public class ReceiptQueueClientImpl implements ReceiptQueueClient {
     private final int receiptQueueDelay = Integer.parseInt(System.getenv().getOrDefault("RECEIPT_QUEUE_DELAY", "1"));
 
     private final QueueClient queueClient;
+    private final QueueAsyncClient queueAsyncClient;
 
     private ReceiptQueueClientImpl() {
         String receiptQueueConnString = System.getenv("RECEIPT_QUEUE_CONN_STRING");
         String receiptQueueTopic = System.getenv("RECEIPT_QUEUE_TOPIC");
 
-        this.queueClient = new QueueClientBuilder()
+        QueueClientBuilder builder = new QueueClientBuilder()
                 .connectionString(receiptQueueConnString)
-                .queueName(receiptQueueTopic)
-                .buildClient();
+                .queueName(receiptQueueTopic);
+
+        this.queueClient = builder.buildClient();
+        this.queueAsyncClient = builder.buildAsyncClient();
     }
 
     public ReceiptQueueClientImpl(QueueClient queueClient) {
+        this(queueClient, null);
+    }
+
+    public ReceiptQueueClientImpl(QueueClient queueClient, QueueAsyncClient queueAsyncClient) {
         this.queueClient = queueClient;
+        this.queueAsyncClient = queueAsyncClient;
     }
 
     public static ReceiptQueueClientImpl getInstance() {
@@ -57,4 +68,18 @@ public class ReceiptQueueClientImpl implements ReceiptQueueClient {
                 null, null, null);
 
     }
+
+    /**
+     * Send asynchronously string message to the queue
+     *
+     * @param messageText Biz-event encoded to base64 string
+     * @return publisher of the response from the queue
+     */
+    public Mono<Response<SendMessageResult>> sendMessageToQueueAsync(String messageText) {
+
+        return this.queueAsyncClient.sendMessageWithResponse(
+                messageText, Duration.of(receiptQueueDelay, ChronoUnit.SECONDS),
+                null);
+
+    }
 }
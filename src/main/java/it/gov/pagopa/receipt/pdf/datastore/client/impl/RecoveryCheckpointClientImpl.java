@@ -0,0 +1,88 @@
+package it.gov.pagopa.receipt.pdf.datastore.client.impl;
+
+import com.azure.core.util.BinaryData;
+import com.azure.storage.blob.BlobContainerClient;
+import com.azure.storage.blob.BlobServiceClientBuilder;
+import com.azure.storage.blob.models.BlobItem;
+import com.azure.storage.blob.models.BlobStorageException;
+import com.azure.storage.blob.models.ListBlobsOptions;
+import it.gov.pagopa.receipt.pdf.datastore.client.RecoveryCheckpointClient;
+
+/**
+ * Client for the Blob Storage container of the massive recovery checkpoints, one blob for each checkpoint
+ */
+public class RecoveryCheckpointClientImpl implements RecoveryCheckpointClient {
+
+    private final BlobContainerClient checkpointContainer;
+
+    private RecoveryCheckpointClientImpl() {
+        String connectionString = System.getenv("RECOVERY_CHECKPOINT_CONN_STRING");
+        String containerName = System.getenv().getOrDefault("RECOVERY_CHECKPOINT_CONTAINER_NAME", "recovery-checkpoints");
+
+        this.checkpointContainer = new BlobServiceClientBuilder()
+                .connectionString(connectionString)
+                .buildClient()
+                .getBlobContainerClient(containerName);
+    }
+
+    /**
+     * Test-only constructor. Package-private visibility so it is only reachable from tests
+     * in the same package.
+     */
+    RecoveryCheckpointClientImpl(BlobContainerClient checkpointContainer) {
+        this.checkpointContainer = checkpointContainer;
+    }
+
+    public static RecoveryCheckpointClientImpl getInstance() {
+        return SingletonHelper.INSTANCE;
+    }
+
+    /**
+     * Bill Pugh singleton holder: the JVM guarantees that the class is loaded
+     * (and therefore INSTANCE initialized) lazily and in a thread-safe way.
+     */
+    private static class SingletonHelper {
+        private static final RecoveryCheckpointClientImpl INSTANCE = new RecoveryCheckpointClientImpl();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getContinuationToken(String checkpointId) {
+        try {
+            return this.checkpointContainer.getBlobClient(checkpointId).downloadContent().toString();
+        } catch (BlobStorageException e) {
+            if (e.getStatusCode() != 404) {
+                throw e;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void saveContinuationToken(String checkpointId, String continuationToken) {
+        if (continuationToken == null) {
+            this.checkpointContainer.getBlobClient(checkpointId).deleteIfExists();
+            return;
+        }
+        this.checkpointContainer.getBlobClient(checkpointId).upload(BinaryData.fromString(continuationToken), true);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int deleteCheckpoints(String checkpointPrefix) {
+        int deleted = 0;
+        for (BlobItem blob : this.checkpointContainer.listBlobs(new ListBlobsOptions().setPrefix(checkpointPrefix), null)) {
+            if (this.checkpointContainer.getBlobClient(blob.getName()).deleteIfExists()) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+}
@@ -0,0 +1,98 @@
+package it.gov.pagopa.receipt.pdf.datastore.client.impl;
+
+import com.azure.core.util.BinaryData;
+import com.azure.storage.blob.BlobContainerClient;
+import com.azure.storage.blob.BlobServiceClientBuilder;
+import com.azure.storage.blob.models.BlobStorageException;
+import com.azure.storage.queue.QueueClient;
+import com.azure.storage.queue.QueueClientBuilder;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import it.gov.pagopa.receipt.pdf.datastore.client.RecoveryJobClient;
+import it.gov.pagopa.receipt.pdf.datastore.exception.RecoveryJobNotFoundException;
+import it.gov.pagopa.receipt.pdf.datastore.model.RecoveryJob;
+import it.gov.pagopa.receipt.pdf.datastore.utils.ObjectMapperUtils;
+
+/**
+ * Client for the recovery jobs: the jobs are stored as JSON blobs and dispatched to the worker through a queue
+ */
+public class RecoveryJobClientImpl implements RecoveryJobClient {
+
+    private static final String JOB_NOT_FOUND_ERR_MSG = "Recovery job %s not found";
+
+    private final BlobContainerClient jobContainer;
+    private final QueueClient jobQueue;
+
+    private RecoveryJobClientImpl() {
+        String connectionString = System.getenv("RECOVERY_JOB_CONN_STRING");
+        String containerName = System.getenv().getOrDefault("RECOVERY_JOB_CONTAINER_NAME", "recovery-jobs");
+        String queueName = System.getenv().getOrDefault("RECOVERY_JOB_QUEUE_TOPIC", "recovery-jobs");
+
+        this.jobContainer = new BlobServiceClientBuilder()
+                .connectionString(connectionString)
+                .buildClient()
+                .getBlobContainerClient(containerName);
+        this.jobQueue = new QueueClientBuilder()
+                .connectionString(connectionString)
+                .queueName(queueName)
+                .buildClient();
+    }
+
+    /**
+     * Test-only constructor. Package-private visibility so it is only reachable from tests
+     * in the same package.
+     */
+    RecoveryJobClientImpl(BlobContainerClient jobContainer, QueueClient jobQueue) {
+        this.jobContainer = jobContainer;
+        this.jobQueue = jobQueue;
+    }
+
+    public static RecoveryJobClientImpl getInstance() {
+        return SingletonHelper.INSTANCE;
+    }
+
+    /**
+     * Bill Pugh singleton holder: the JVM guarantees that the class is loaded
+     * (and therefore INSTANCE initialized) lazily and in a thread-safe way.
+     */
+    private static class SingletonHelper {
+        private static final RecoveryJobClientImpl INSTANCE = new RecoveryJobClientImpl();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public RecoveryJob getJob(String jobId) throws RecoveryJobNotFoundException {
+        String json;
+        try {
+            json = this.jobContainer.getBlobClient(jobId).downloadContent().toString();
+        } catch (BlobStorageException e) {
+            if (e.getStatusCode() != 404) {
+                throw e;
+            }
+            throw new RecoveryJobNotFoundException(String.format(JOB_NOT_FOUND_ERR_MSG, jobId), e);
+        }
+        try {
+            return ObjectMapperUtils.mapString(json, RecoveryJob.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(String.format("Recovery job %s is not readable", jobId), e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void saveJob(RecoveryJob job) {
+        this.jobContainer.getBlobClient(job.getId())
+                .upload(BinaryData.fromString(ObjectMapperUtils.writeValueAsString(job)), true);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void sendJobMessage(String jobId) {
+        this.jobQueue.sendMessage(jobId);
+    }
+}
@@ -0,0 +1,20 @@
+package it.gov.pagopa.receipt.pdf.datastore.entity.receipt;
+
+import lombok.*;
+
+/**
+ * Lookup document of a receipt saved with an id different from its biz-event id,
+ * identified and partitioned by the biz-event id
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReceiptEventIndex {
+
+    // the biz-event id
+    private String id;
+    private String receiptId;
+
+}
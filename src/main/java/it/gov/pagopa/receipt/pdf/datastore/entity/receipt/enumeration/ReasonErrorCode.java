@@ -7,7 +7,8 @@ public enum ReasonErrorCode {
     ERROR_COSMOS_ETAG_MISMATCH(905),
     ERROR_PDV_IO(800),
     ERROR_PDV_UNEXPECTED(801),
-    ERROR_PDV_MAPPING(802);
+    ERROR_PDV_MAPPING(802),
+    ERROR_PDV_UNAVAILABLE(803);
 
     private final int code;
 
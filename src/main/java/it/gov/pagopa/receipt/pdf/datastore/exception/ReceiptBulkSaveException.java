@@ -0,0 +1,37 @@
+package it.gov.pagopa.receipt.pdf.datastore.exception;
+
+import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.Receipt;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Thrown in case the bulk save of the receipts on CosmosDB failed before the outcome of each receipt was received
+ */
+@Getter
+public class ReceiptBulkSaveException extends RuntimeException {
+
+    /**
+     * Receipts not saved because already present on CosmosDB
+     */
+    private final transient List<Receipt> alreadySavedReceipts;
+
+    /**
+     * Receipts whose outcome is unknown, they may or may not have been saved
+     */
+    private final transient List<Receipt> unknownOutcomeReceipts;
+
+    /**
+     * Constructs new exception with provided receipts and cause
+     *
+     * @param alreadySavedReceipts   Receipts already present on CosmosDB
+     * @param unknownOutcomeReceipts Receipts whose outcome is unknown
+     * @param cause                  Exception thrown by the bulk execution
+     */
+    public ReceiptBulkSaveException(List<Receipt> alreadySavedReceipts, List<Receipt> unknownOutcomeReceipts, Throwable cause) {
+        super(String.format("Bulk save of receipts on cosmos failed, %s receipts with unknown outcome",
+                unknownOutcomeReceipts.size()), cause);
+        this.alreadySavedReceipts = alreadySavedReceipts;
+        this.unknownOutcomeReceipts = unknownOutcomeReceipts;
+    }
+}
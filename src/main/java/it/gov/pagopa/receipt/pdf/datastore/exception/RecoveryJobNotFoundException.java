@@ -0,0 +1,26 @@
+package it.gov.pagopa.receipt.pdf.datastore.exception;
+
+/**
+ * Thrown in case no recovery job is found in the Blob Storage container
+ */
+public class RecoveryJobNotFoundException extends Exception {
+
+    /**
+     * Constructs new exception with provided message and cause
+     *
+     * @param message Detail message
+     */
+    public RecoveryJobNotFoundException(String message) {
+        super(message);
+    }
+
+    /**
+     * Constructs new exception with provided message and cause
+     *
+     * @param message Detail message
+     * @param cause   Exception thrown
+     */
+    public RecoveryJobNotFoundException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
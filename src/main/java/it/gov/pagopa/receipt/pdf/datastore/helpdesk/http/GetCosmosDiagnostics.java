@@ -0,0 +1,58 @@
+package it.gov.pagopa.receipt.pdf.datastore.helpdesk.http;
+
+import com.microsoft.azure.functions.ExecutionContext;
+import com.microsoft.azure.functions.HttpMethod;
+import com.microsoft.azure.functions.HttpRequestMessage;
+import com.microsoft.azure.functions.HttpResponseMessage;
+import com.microsoft.azure.functions.HttpStatus;
+import com.microsoft.azure.functions.annotation.AuthorizationLevel;
+import com.microsoft.azure.functions.annotation.FunctionName;
+import com.microsoft.azure.functions.annotation.HttpTrigger;
+import it.gov.pagopa.receipt.pdf.datastore.utils.CosmosDiagnosticsRecorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Azure Functions with HTTP Trigger.
+ */
+public class GetCosmosDiagnostics {
+
+    private final Logger logger = LoggerFactory.getLogger(GetCosmosDiagnostics.class);
+
+    private final CosmosDiagnosticsRecorder cosmosDiagnosticsRecorder;
+
+    public GetCosmosDiagnostics() {
+        this.cosmosDiagnosticsRecorder = CosmosDiagnosticsRecorder.getInstance();
+    }
+
+    GetCosmosDiagnostics(CosmosDiagnosticsRecorder cosmosDiagnosticsRecorder) {
+        this.cosmosDiagnosticsRecorder = cosmosDiagnosticsRecorder;
+    }
+
+    /**
+     * This function will be invoked when a Http Trigger occurs.
+     * <p>
+     * It returns the last Cosmos operations of this instance that exceeded the diagnostics thresholds, from the most
+     * recent one, with their duration, request charge, contacted regions, retries and the diagnostics of the requests.
+     *
+     * @return response with {@link HttpStatus#OK} and the operations
+     */
+    @FunctionName("GetCosmosDiagnostics")
+    public HttpResponseMessage run(
+            @HttpTrigger(name = "GetCosmosDiagnosticsTrigger",
+                    methods = {HttpMethod.GET},
+                    route = "diagnostics/cosmos",
+                    authLevel = AuthorizationLevel.ANONYMOUS)
+            HttpRequestMessage<Optional<String>> request,
+            final ExecutionContext context
+    ) {
+        logger.info("[{}] function called at {}", context.getFunctionName(), LocalDateTime.now());
+
+        return request.createResponseBuilder(HttpStatus.OK)
+                .body(this.cosmosDiagnosticsRecorder.getOperations())
+                .build();
+    }
+}
@@ -0,0 +1,74 @@
+package it.gov.pagopa.receipt.pdf.datastore.helpdesk.http;
+
+import com.microsoft.azure.functions.ExecutionContext;
+import com.microsoft.azure.functions.HttpMethod;
+import com.microsoft.azure.functions.HttpRequestMessage;
+import com.microsoft.azure.functions.HttpResponseMessage;
+import com.microsoft.azure.functions.HttpStatus;
+import com.microsoft.azure.functions.annotation.AuthorizationLevel;
+import com.microsoft.azure.functions.annotation.BindingName;
+import com.microsoft.azure.functions.annotation.FunctionName;
+import com.microsoft.azure.functions.annotation.HttpTrigger;
+import it.gov.pagopa.receipt.pdf.datastore.exception.RecoveryJobNotFoundException;
+import it.gov.pagopa.receipt.pdf.datastore.model.RecoveryJob;
+import it.gov.pagopa.receipt.pdf.datastore.service.RecoveryJobService;
+import it.gov.pagopa.receipt.pdf.datastore.service.impl.RecoveryJobServiceImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static it.gov.pagopa.receipt.pdf.datastore.utils.HelpdeskUtils.buildErrorResponse;
+
+/**
+ * Azure Functions with HTTP Trigger.
+ */
+public class GetRecoveryJob {
+
+    private final Logger logger = LoggerFactory.getLogger(GetRecoveryJob.class);
+
+    private final RecoveryJobService recoveryJobService;
+
+    public GetRecoveryJob() {
+        this.recoveryJobService = new RecoveryJobServiceImpl();
+    }
+
+    GetRecoveryJob(RecoveryJobService recoveryJobService) {
+        this.recoveryJobService = recoveryJobService;
+    }
+
+    /**
+     * This function will be invoked when a Http Trigger occurs.
+     * <p>
+     * It returns the status of the massive recovery job with the specified id: the processed, recovered and failed
+     * items, the throughput in items per second and the estimated seconds to completion.
+     *
+     * @return response with {@link HttpStatus#OK} and the job, or {@link HttpStatus#NOT_FOUND} if the job does not exist
+     */
+    @FunctionName("GetRecoveryJob")
+    public HttpResponseMessage run(
+            @HttpTrigger(name = "GetRecoveryJobTrigger",
+                    methods = {HttpMethod.GET},
+                    route = "jobs/{job-id}",
+                    authLevel = AuthorizationLevel.ANONYMOUS)
+            HttpRequestMessage<Optional<String>> request,
+            @BindingName("job-id") String jobId,
+            final ExecutionContext context
+    ) {
+        logger.info("[{}] function called at {}", context.getFunctionName(), LocalDateTime.now());
+
+        RecoveryJob job;
+        try {
+            job = this.recoveryJobService.getJob(jobId);
+        } catch (RecoveryJobNotFoundException e) {
+            String errMsg = String.format("Unable to retrieve the recovery job with id %s", jobId);
+            logger.warn("[{}] {}", context.getFunctionName(), errMsg, e);
+            return buildErrorResponse(request, HttpStatus.NOT_FOUND, errMsg);
+        }
+
+        return request.createResponseBuilder(HttpStatus.OK)
+                .body(job)
+                .build();
+    }
+}
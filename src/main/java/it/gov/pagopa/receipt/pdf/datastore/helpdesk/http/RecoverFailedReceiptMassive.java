@@ -5,26 +5,23 @@ import com.microsoft.azure.functions.HttpMethod;
 import com.microsoft.azure.functions.HttpRequestMessage;
 import com.microsoft.azure.functions.HttpResponseMessage;
 import com.microsoft.azure.functions.HttpStatus;
-import com.microsoft.azure.functions.OutputBinding;
 import com.microsoft.azure.functions.annotation.AuthorizationLevel;
-import com.microsoft.azure.functions.annotation.CosmosDBOutput;
 import com.microsoft.azure.functions.annotation.FunctionName;
 import com.microsoft.azure.functions.annotation.HttpTrigger;
-import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.Receipt;
 import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.enumeration.ReceiptStatusType;
 import it.gov.pagopa.receipt.pdf.datastore.exception.InvalidParameterException;
-import it.gov.pagopa.receipt.pdf.datastore.model.MassiveRecoverResult;
-import it.gov.pagopa.receipt.pdf.datastore.model.ProblemJson;
-import it.gov.pagopa.receipt.pdf.datastore.service.HelpdeskService;
-import it.gov.pagopa.receipt.pdf.datastore.service.impl.HelpdeskServiceImpl;
+import it.gov.pagopa.receipt.pdf.datastore.model.RecoveryJob;
+import it.gov.pagopa.receipt.pdf.datastore.model.enumeration.RecoveryJobType;
+import it.gov.pagopa.receipt.pdf.datastore.service.RecoveryJobService;
+import it.gov.pagopa.receipt.pdf.datastore.service.impl.RecoveryJobServiceImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.time.LocalDateTime;
-import java.util.List;
 import java.util.Optional;
 
 import static it.gov.pagopa.receipt.pdf.datastore.utils.HelpdeskUtils.buildErrorResponse;
+import static it.gov.pagopa.receipt.pdf.datastore.utils.HelpdeskUtils.buildRecoveryJobResponse;
 import static it.gov.pagopa.receipt.pdf.datastore.utils.HelpdeskUtils.validateReceiptStatusParam;
 
 
@@ -35,14 +32,14 @@ public class RecoverFailedReceiptMassive {
 
     private final Logger logger = LoggerFactory.getLogger(RecoverFailedReceiptMassive.class);
 
-    private final HelpdeskService helpdeskService;
+    private final RecoveryJobService recoveryJobService;
 
     public RecoverFailedReceiptMassive() {
-        this.helpdeskService = new HelpdeskServiceImpl();
+        this.recoveryJobService = new RecoveryJobServiceImpl();
     }
 
-    RecoverFailedReceiptMassive(HelpdeskService helpdeskService) {
-        this.helpdeskService = helpdeskService;
+    RecoverFailedReceiptMassive(RecoveryJobService recoveryJobService) {
+        this.recoveryJobService = recoveryJobService;
     }
 
     /**
@@ -56,8 +53,10 @@ public class RecoverFailedReceiptMassive {
      * </ul>
      * <p>
      * It creates the receipts if not exist and send on queue the event in order to proceed with the receipt generation.
+     * <p>
+     * The recovery runs asynchronously as a job, whose progress can be polled with {@link GetRecoveryJob}.
      *
-     * @return response with {@link HttpStatus#OK} if the operation succeeded
+     * @return response with {@link HttpStatus#ACCEPTED} and the queued job
      */
     @FunctionName("RecoverFailedReceiptMassive")
     public HttpResponseMessage run(
@@ -66,12 +65,6 @@ public class RecoverFailedReceiptMassive {
                     route = "receipts/recover-failed",
                     authLevel = AuthorizationLevel.ANONYMOUS)
             HttpRequestMessage<Optional<String>> request,
-            @CosmosDBOutput(
-                    name = "ReceiptDatastore",
-                    databaseName = "db",
-                    containerName = "receipts",
-                    connection = "COSMOS_RECEIPTS_CONN_STRING")
-            OutputBinding<List<Receipt>> documentdb,
             final ExecutionContext context
     ) {
         logger.info("[{}] function called at {}", context.getFunctionName(), LocalDateTime.now());
@@ -93,28 +86,16 @@ public class RecoverFailedReceiptMassive {
             return buildErrorResponse(request, HttpStatus.UNPROCESSABLE_ENTITY, message);
         }
 
-        MassiveRecoverResult recoverResult = this.helpdeskService.massiveRecoverFailedReceipt(status);
-
-        int successCounter = recoverResult.getSuccessCounter();
-        int errorCounter = recoverResult.getErrorCounter();
-
-        if (errorCounter > 0) {
-            documentdb.setValue(recoverResult.getFailedReceiptList());
-
-            String msg = String.format("Recovered %s receipts but %s encountered an error.", successCounter, errorCounter);
-            logger.error("[{}] {}", context.getFunctionName(), msg);
-            return request
-                    .createResponseBuilder(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(ProblemJson.builder()
-                            .title("Partial OK")
-                            .detail(msg)
-                            .status(HttpStatus.MULTI_STATUS.value())
-                            .build())
-                    .build();
+        RecoveryJob job;
+        try {
+            job = this.recoveryJobService.createJob(RecoveryJobType.FAILED_RECEIPT, status.name());
+        } catch (Exception e) {
+            String errMsg = String.format("Unable to create the recovery job for the receipts with status %s", status);
+            logger.error("[{}] {}", context.getFunctionName(), errMsg, e);
+            return buildErrorResponse(request, HttpStatus.INTERNAL_SERVER_ERROR, errMsg);
         }
-        String responseMsg = String.format("Recovered %s receipts", successCounter);
-        return request.createResponseBuilder(HttpStatus.OK)
-                .body(responseMsg)
-                .build();
+
+        logger.info("[{}] Recovery job {} created for the receipts with status {}", context.getFunctionName(), job.getId(), status);
+        return buildRecoveryJobResponse(request, job);
     }
 }
\ No newline at end of file
@@ -10,10 +10,10 @@ import com.microsoft.azure.functions.annotation.FunctionName;
 import com.microsoft.azure.functions.annotation.HttpTrigger;
 import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.enumeration.ReceiptStatusType;
 import it.gov.pagopa.receipt.pdf.datastore.exception.InvalidParameterException;
-import it.gov.pagopa.receipt.pdf.datastore.model.MassiveRecoverResult;
-import it.gov.pagopa.receipt.pdf.datastore.model.ProblemJson;
-import it.gov.pagopa.receipt.pdf.datastore.service.HelpdeskService;
-import it.gov.pagopa.receipt.pdf.datastore.service.impl.HelpdeskServiceImpl;
+import it.gov.pagopa.receipt.pdf.datastore.model.RecoveryJob;
+import it.gov.pagopa.receipt.pdf.datastore.model.enumeration.RecoveryJobType;
+import it.gov.pagopa.receipt.pdf.datastore.service.RecoveryJobService;
+import it.gov.pagopa.receipt.pdf.datastore.service.impl.RecoveryJobServiceImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -21,6 +21,7 @@ import java.time.LocalDateTime;
 import java.util.Optional;
 
 import static it.gov.pagopa.receipt.pdf.datastore.utils.HelpdeskUtils.buildErrorResponse;
+import static it.gov.pagopa.receipt.pdf.datastore.utils.HelpdeskUtils.buildRecoveryJobResponse;
 import static it.gov.pagopa.receipt.pdf.datastore.utils.HelpdeskUtils.validateReceiptStatusParam;
 
 
@@ -31,14 +32,14 @@ public class RecoverNotNotifiedReceiptMassive {
 
     private final Logger logger = LoggerFactory.getLogger(RecoverNotNotifiedReceiptMassive.class);
 
-    private final HelpdeskService helpdeskService;
+    private final RecoveryJobService recoveryJobService;
 
     public RecoverNotNotifiedReceiptMassive() {
-        this.helpdeskService = new HelpdeskServiceImpl();
+        this.recoveryJobService = new RecoveryJobServiceImpl();
     }
 
-    RecoverNotNotifiedReceiptMassive(HelpdeskService helpdeskService) {
-        this.helpdeskService = helpdeskService;
+    RecoverNotNotifiedReceiptMassive(RecoveryJobService recoveryJobService) {
+        this.recoveryJobService = recoveryJobService;
     }
 
     /**
@@ -49,8 +50,10 @@ public class RecoverNotNotifiedReceiptMassive {
      * It recovers the receipt with failed notification ({@link ReceiptStatusType#IO_ERROR_TO_NOTIFY}) or notification
      * not triggered ({@link ReceiptStatusType#GENERATED} by clearing the errors and update the status to the
      * previous step ({@link ReceiptStatusType#GENERATED}).
+     * <p>
+     * The recovery runs asynchronously as a job, whose progress can be polled with {@link GetRecoveryJob}.
      *
-     * @return response with {@link HttpStatus#OK} if the operation succeeded
+     * @return response with {@link HttpStatus#ACCEPTED} and the queued job
      */
     @FunctionName("RecoverNotNotifiedReceiptMassive")
     public HttpResponseMessage run(
@@ -80,26 +83,16 @@ public class RecoverNotNotifiedReceiptMassive {
             return buildErrorResponse(request, HttpStatus.UNPROCESSABLE_ENTITY, message);
         }
 
-        MassiveRecoverResult recoverResult = this.helpdeskService.massiveRecoverNoNotifiedReceipt(status);
-
-        int successCounter = recoverResult.getSuccessCounter();
-        int errorCounter = recoverResult.getErrorCounter();
-
-        if (errorCounter > 0) {
-            String msg = String.format("Recovered %s receipts but %s encountered an error.", successCounter, errorCounter);
-            logger.error("[{}] {}", context.getFunctionName(), msg);
-            return request
-                    .createResponseBuilder(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(ProblemJson.builder()
-                            .title("Partial OK")
-                            .detail(msg)
-                            .status(HttpStatus.MULTI_STATUS.value())
-                            .build())
-                    .build();
+        RecoveryJob job;
+        try {
+            job = this.recoveryJobService.createJob(RecoveryJobType.NOT_NOTIFIED_RECEIPT, status.name());
+        } catch (Exception e) {
+            String errMsg = String.format("Unable to create the recovery job for the receipts with status %s", status);
+            logger.error("[{}] {}", context.getFunctionName(), errMsg, e);
+            return buildErrorResponse(request, HttpStatus.INTERNAL_SERVER_ERROR, errMsg);
         }
-        String responseMsg = String.format("Recovered %s receipts with success", successCounter);
-        return request.createResponseBuilder(HttpStatus.OK)
-                .body(responseMsg)
-                .build();
+
+        logger.info("[{}] Recovery job {} created for the receipts with status {}", context.getFunctionName(), job.getId(), status);
+        return buildRecoveryJobResponse(request, job);
     }
 }
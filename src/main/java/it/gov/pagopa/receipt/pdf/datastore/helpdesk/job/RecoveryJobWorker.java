@@ -0,0 +1,143 @@
+package it.gov.pagopa.receipt.pdf.datastore.helpdesk.job;
+
+import com.microsoft.azure.functions.ExecutionContext;
+import com.microsoft.azure.functions.OutputBinding;
+import com.microsoft.azure.functions.annotation.CosmosDBOutput;
+import com.microsoft.azure.functions.annotation.FunctionName;
+import com.microsoft.azure.functions.annotation.QueueTrigger;
+import it.gov.pagopa.receipt.pdf.datastore.entity.cart.CartForReceipt;
+import it.gov.pagopa.receipt.pdf.datastore.entity.cart.CartStatusType;
+import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.Receipt;
+import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.enumeration.ReceiptStatusType;
+import it.gov.pagopa.receipt.pdf.datastore.exception.RecoveryJobNotFoundException;
+import it.gov.pagopa.receipt.pdf.datastore.model.MassiveCartRecoverResult;
+import it.gov.pagopa.receipt.pdf.datastore.model.MassiveRecoverResult;
+import it.gov.pagopa.receipt.pdf.datastore.model.RecoveryJob;
+import it.gov.pagopa.receipt.pdf.datastore.service.HelpdeskService;
+import it.gov.pagopa.receipt.pdf.datastore.service.RecoveryJobService;
+import it.gov.pagopa.receipt.pdf.datastore.service.impl.HelpdeskServiceImpl;
+import it.gov.pagopa.receipt.pdf.datastore.service.impl.RecoveryJobServiceImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+
+/**
+ * Azure Functions with Azure Queue trigger.
+ */
+public class RecoveryJobWorker {
+
+    private final Logger logger = LoggerFactory.getLogger(RecoveryJobWorker.class);
+
+    private final HelpdeskService helpdeskService;
+    private final RecoveryJobService recoveryJobService;
+
+    public RecoveryJobWorker() {
+        this.helpdeskService = new HelpdeskServiceImpl();
+        this.recoveryJobService = new RecoveryJobServiceImpl();
+    }
+
+    RecoveryJobWorker(HelpdeskService helpdeskService, RecoveryJobService recoveryJobService) {
+        this.helpdeskService = helpdeskService;
+        this.recoveryJobService = recoveryJobService;
+    }
+
+    /**
+     * This function will be invoked when a message with the id of a recovery job is sent to the recovery job queue.
+     * <p>
+     * It runs the massive recovery of the job up to the max processable items or duration, then it updates the job
+     * counters. If the recovery was interrupted the job is sent again to the queue, so that the next invocation
+     * resumes it from the last checkpoint. The checkpoints of the job are its own, they do not interfere with the
+     * scheduled recoveries of the same status and are deleted when the job is completed or failed.
+     * The receipts and carts that failed the recovery are saved with their error.
+     */
+    @FunctionName("RecoveryJobWorker")
+    public void run(
+            @QueueTrigger(
+                    name = "RecoveryJobTrigger",
+                    queueName = "%RECOVERY_JOB_QUEUE_TOPIC%",
+                    connection = "RECOVERY_JOB_CONN_STRING")
+            String jobId,
+            @CosmosDBOutput(
+                    name = "ReceiptDatastore",
+                    databaseName = "db",
+                    containerName = "receipts",
+                    connection = "COSMOS_RECEIPTS_CONN_STRING")
+            OutputBinding<List<Receipt>> receiptDocumentdb,
+            @CosmosDBOutput(
+                    name = "CartReceiptDatastore",
+                    databaseName = "db",
+                    containerName = "cart-for-receipts",
+                    connection = "COSMOS_RECEIPTS_CONN_STRING")
+            OutputBinding<List<CartForReceipt>> cartDocumentdb,
+            final ExecutionContext context
+    ) {
+        logger.info("[{}] function called at {} for job {}", context.getFunctionName(), LocalDateTime.now(), jobId);
+
+        RecoveryJob job;
+        try {
+            job = this.recoveryJobService.startJob(jobId);
+        } catch (RecoveryJobNotFoundException e) {
+            logger.warn("[{}] Recovery job {} not found, the message is discarded", context.getFunctionName(), jobId, e);
+            return;
+        }
+        if (job.getJobStatus().isTerminal()) {
+            logger.info("[{}] Recovery job {} already {}", context.getFunctionName(), jobId, job.getJobStatus());
+            return;
+        }
+
+        try {
+            switch (job.getType()) {
+                case FAILED_RECEIPT -> {
+                    MassiveRecoverResult result = this.helpdeskService
+                            .massiveRecoverFailedReceipt(ReceiptStatusType.valueOf(job.getStatus()), jobId);
+                    if (result.getErrorCounter() > 0) {
+                        receiptDocumentdb.setValue(result.getFailedReceiptList());
+                    }
+                    updateJobProgress(job, result, context);
+                }
+                case NOT_NOTIFIED_RECEIPT -> updateJobProgress(job, this.helpdeskService
+                        .massiveRecoverNoNotifiedReceipt(ReceiptStatusType.valueOf(job.getStatus()), jobId), context);
+                case FAILED_CART -> {
+                    MassiveCartRecoverResult result = this.helpdeskService
+                            .massiveRecoverFailedCart(CartStatusType.valueOf(job.getStatus()), jobId);
+                    if (result.getErrorCounter() > 0) {
+                        cartDocumentdb.setValue(result.getFailedCartList());
+                    }
+                    updateJobProgress(job, result, context);
+                }
+                case NOT_NOTIFIED_CART -> updateJobProgress(job, this.helpdeskService
+                        .massiveRecoverNoNotifiedCart(CartStatusType.valueOf(job.getStatus()), jobId), context);
+            }
+        } catch (Exception e) {
+            logger.error("[{}] Recovery job {} failed", context.getFunctionName(), jobId, e);
+            this.recoveryJobService.failJob(job, e.getMessage());
+            this.helpdeskService.deleteRecoveryJobCheckpoints(jobId);
+        }
+    }
+
+    private void updateJobProgress(RecoveryJob job, MassiveRecoverResult result, ExecutionContext context) {
+        updateJobProgress(job, result.getProcessedCounter(), result.getSuccessCounter(), result.getErrorCounter(),
+                result.isInterrupted(), context);
+    }
+
+    private void updateJobProgress(RecoveryJob job, MassiveCartRecoverResult result, ExecutionContext context) {
+        updateJobProgress(job, result.getProcessedCounter(), result.getSuccessCounter(), result.getErrorCounter(),
+                result.isInterrupted(), context);
+    }
+
+    private void updateJobProgress(
+            RecoveryJob job, int processedCount, int successCount, int errorCount, boolean interrupted,
+            ExecutionContext context
+    ) {
+        this.recoveryJobService.updateJobProgress(job, processedCount, successCount, errorCount, interrupted);
+        logger.info("[{}] Recovery job {} {}: {} items processed, {} recovered, {} errors", context.getFunctionName(),
+                job.getId(), interrupted ? "continues" : "completed", job.getProcessedCounter(),
+                job.getSuccessCounter(), job.getErrorCounter());
+        if (!interrupted) {
+            this.helpdeskService.deleteRecoveryJobCheckpoints(job.getId());
+        }
+    }
+}
@@ -61,6 +61,11 @@ public class RecoverNotNotifiedReceiptScheduled {
         int successCounter = recoverResult.getSuccessCounter();
         int errorCounter = recoverResult.getErrorCounter();
 
+        if (recoverResult.isInterrupted()) {
+            logger.info("Recovered {} receipts for status {} processing {} items in {} ms, the recovery will resume " +
+                    "from the last checkpoint at the next run", successCounter, status, recoverResult.getProcessedCounter(),
+                    recoverResult.getElapsedMillis());
+        }
         if (errorCounter > 0) {
             logger.warn("Recovered {} receipts for status {} but {} encountered an error.", successCounter, status, errorCounter);
         }
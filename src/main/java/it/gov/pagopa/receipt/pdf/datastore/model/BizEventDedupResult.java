@@ -0,0 +1,26 @@
+package it.gov.pagopa.receipt.pdf.datastore.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.HashSet;
+import java.util.Set;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class BizEventDedupResult {
+
+    private Set<String> processedBizEventIds;
+    private int hitCounter;
+    private int missCounter;
+    private double requestCharge;
+    /**
+     * Biz-events not read on cosmos because not recorded by the processed events filter
+     */
+    @Builder.Default
+    private Set<String> filterSkippedBizEventIds = new HashSet<>();
+}
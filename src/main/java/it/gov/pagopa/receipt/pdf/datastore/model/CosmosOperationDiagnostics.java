@@ -0,0 +1,32 @@
+package it.gov.pagopa.receipt.pdf.datastore.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Cosmos operation that exceeded the diagnostics thresholds, with the diagnostics of its requests
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class CosmosOperationDiagnostics {
+
+    private long capturedAt;
+    private String databaseName;
+    private String containerName;
+    private String operationType;
+    private String resourceType;
+    private int statusCode;
+    private int subStatusCode;
+    private long durationMillis;
+    private float requestCharge;
+    private int retryCount;
+    private List<String> contactedRegions;
+    // diagnostics of all the requests of the operation, as returned by the SDK
+    private String diagnostics;
+}
@@ -17,4 +17,9 @@ public class MassiveCartRecoverResult {
     private List<CartForReceipt> failedCartList;
     private int errorCounter;
     private int successCounter;
+    // number of items processed by this invocation
+    private int processedCounter;
+    // true if the recovery stopped before the last page, the next invocation resumes from the checkpoint
+    private boolean interrupted;
+    private long elapsedMillis;
 }
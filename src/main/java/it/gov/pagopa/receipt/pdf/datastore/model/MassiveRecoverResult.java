@@ -15,6 +15,13 @@ import java.util.List;
 public class MassiveRecoverResult {
 
     private List<Receipt> failedReceiptList;
+    // event ids of the receipts not recovered because their biz-event was not found
+    private List<String> missingBizEventIds;
     private int errorCounter;
     private int successCounter;
+    // number of items processed by this invocation
+    private int processedCounter;
+    // true if the recovery stopped before the last page, the next invocation resumes from the checkpoint
+    private boolean interrupted;
+    private long elapsedMillis;
 }
@@ -0,0 +1,24 @@
+package it.gov.pagopa.receipt.pdf.datastore.model;
+
+import it.gov.pagopa.receipt.pdf.datastore.entity.event.BizEvent;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Message to be sent to a queue, bound to the document (receipt or cart) updated with the sending outcome
+ *
+ * @param <T> the type of the document
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class PendingQueueMessage<T> {
+
+    private T document;
+    private List<BizEvent> bizEvents;
+}
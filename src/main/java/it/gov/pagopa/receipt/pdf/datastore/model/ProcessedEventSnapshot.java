@@ -0,0 +1,20 @@
+package it.gov.pagopa.receipt.pdf.datastore.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Snapshot of the filter of the processed biz-events, with the ETag of the stored version
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ProcessedEventSnapshot {
+
+    private byte[] content;
+    // the snapshot is saved again only if it is still the version read
+    private String eTag;
+}
@@ -0,0 +1,22 @@
+package it.gov.pagopa.receipt.pdf.datastore.model;
+
+import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.enumeration.ReceiptStatusType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Projection of a receipt document on the properties needed to scan the receipts to recover,
+ * the id is also the partition key of the receipt
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ReceiptProjection {
+
+    private String id;
+    private String eventId;
+    private ReceiptStatusType status;
+}
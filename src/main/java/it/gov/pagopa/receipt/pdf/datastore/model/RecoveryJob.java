@@ -0,0 +1,38 @@
+package it.gov.pagopa.receipt.pdf.datastore.model;
+
+import it.gov.pagopa.receipt.pdf.datastore.model.enumeration.RecoveryJobStatus;
+import it.gov.pagopa.receipt.pdf.datastore.model.enumeration.RecoveryJobType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Asynchronous massive recovery, run by the queue triggered worker across as many invocations as needed
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class RecoveryJob {
+
+    private String id;
+    private RecoveryJobType type;
+    // status of the receipts or carts to recover
+    private String status;
+    private RecoveryJobStatus jobStatus;
+    // items to recover counted when the job starts, null if the count failed
+    private Long totalCounter;
+    private long processedCounter;
+    private long successCounter;
+    private long errorCounter;
+    private long createdAt;
+    private long startedAt;
+    private long updatedAt;
+    private long completedAt;
+    private String errorMessage;
+    // items processed per second since the job started, computed when the job is read
+    private Double throughput;
+    // estimated seconds to the end of the job, computed when the job is read
+    private Long etaSeconds;
+}
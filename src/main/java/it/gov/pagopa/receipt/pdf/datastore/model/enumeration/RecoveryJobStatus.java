@@ -0,0 +1,12 @@
+package it.gov.pagopa.receipt.pdf.datastore.model.enumeration;
+
+public enum RecoveryJobStatus {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED;
+
+    public boolean isTerminal() {
+        return this == COMPLETED || this == FAILED;
+    }
+}
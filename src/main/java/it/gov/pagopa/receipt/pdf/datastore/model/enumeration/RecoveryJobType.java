@@ -0,0 +1,11 @@
+package it.gov.pagopa.receipt.pdf.datastore.model.enumeration;
+
+/**
+ * Massive recovery operations that can be run as asynchronous jobs
+ */
+public enum RecoveryJobType {
+    FAILED_RECEIPT,
+    FAILED_CART,
+    NOT_NOTIFIED_RECEIPT,
+    NOT_NOTIFIED_CART
+}
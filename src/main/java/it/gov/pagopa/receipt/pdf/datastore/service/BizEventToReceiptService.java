@@ -11,9 +11,14 @@ import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.ReasonError;
 import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.Receipt;
 import it.gov.pagopa.receipt.pdf.datastore.exception.CartNotFoundException;
 import it.gov.pagopa.receipt.pdf.datastore.exception.PDVTokenizerException;
+import it.gov.pagopa.receipt.pdf.datastore.exception.ReceiptBulkSaveException;
 import it.gov.pagopa.receipt.pdf.datastore.exception.ReceiptNotFoundException;
+import it.gov.pagopa.receipt.pdf.datastore.model.BizEventDedupResult;
+import it.gov.pagopa.receipt.pdf.datastore.model.PendingQueueMessage;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public interface BizEventToReceiptService {
 
@@ -34,6 +39,22 @@ public interface BizEventToReceiptService {
      */
     void handleSendCartMessageToQueue(List<BizEvent> bizEventList, CartForReceipt cartForReceipt);
 
+    /**
+     * Handles sending concurrently the biz-events of many receipts as messages to the queue, with at most
+     * QUEUE_MAX_IN_FLIGHT messages in flight, and updates the status of each receipt with its own outcome
+     *
+     * @param messages the messages to send, each one bound to the receipt to update
+     */
+    void handleSendMessagesToQueue(List<PendingQueueMessage<Receipt>> messages);
+
+    /**
+     * Handles sending concurrently the biz-events of many carts as messages to the cart queue, with at most
+     * QUEUE_MAX_IN_FLIGHT messages in flight, and updates the status of each cart with its own outcome
+     *
+     * @param messages the messages to send, each one bound to the cart to update
+     */
+    void handleSendCartMessagesToQueue(List<PendingQueueMessage<CartForReceipt>> messages);
+
     /**
      * Recovers a receipt from the CosmosDB by the property eventId
      *
@@ -43,6 +64,34 @@ public interface BizEventToReceiptService {
      */
     Receipt getReceipt(String bizEventId) throws ReceiptNotFoundException;
 
+    /**
+     * Find which of the provided biz-events have already been processed, resolving the whole list with
+     * one readMany on the receipts and one on the carts.
+     * <p>
+     * A single notice biz-event is processed if a receipt with its id exists, a cart biz-event is processed
+     * if the cart identified by its transaction id already contains it.
+     * The fallback query by eventId is executed only for the receipts not found by the readMany.
+     * Once the in-process filter of the processed biz-events is warm, the single notice biz-events it has not
+     * recorded are not read at all.
+     * </p>
+     *
+     * @param bizEventList the biz-events to check
+     * @return the ids of the already processed biz-events with the hit/miss counters and the consumed RU
+     */
+    BizEventDedupResult findAlreadyProcessedBizEvents(List<BizEvent> bizEventList);
+
+    /**
+     * Finds on CosmosDB the receipts of the provided biz-events, without relying on the processed events filter.
+     * <p>
+     * It is used to confirm that a biz-event skipped by the filter has no receipt before writing its failed receipt,
+     * as the failed receipts are upserted and would overwrite a receipt saved by another host.
+     * </p>
+     *
+     * @param eventIds the ids of the biz-events to check
+     * @return the ids of the biz-events whose receipt is already saved
+     */
+    Set<String> findSavedReceiptEventIds(List<String> eventIds);
+
     /**
      * Saves receipts on CosmosDB using {@link ReceiptCosmosClient}
      *
@@ -50,6 +99,24 @@ public interface BizEventToReceiptService {
      */
     void handleSaveReceipt(Receipt receipt);
 
+    /**
+     * Saves with a single bulk execution the receipts on CosmosDB using {@link ReceiptCosmosClient}
+     * and updates the status of each receipt with its own outcome.
+     * <p>
+     * The already existing receipts (409) are not overwritten and their status is not updated,
+     * the other failures set the status to FAILED with the Cosmos status code as reason error.
+     * </p>
+     * <p>
+     * If the bulk execution fails before all the outcomes are received, the receipts without an outcome
+     * are left untouched, as they may have been saved, and are reported with a {@link ReceiptBulkSaveException}.
+     * </p>
+     *
+     * @param receipts Receipts to save
+     * @return the receipts not saved because already present on CosmosDB
+     * @throws ReceiptBulkSaveException if the outcome of some receipts is unknown
+     */
+    List<Receipt> handleSaveReceipts(List<Receipt> receipts);
+
     /**
      * Update receipts on CosmosDB using {@link ReceiptCosmosClient}
      *
@@ -80,6 +147,19 @@ public interface BizEventToReceiptService {
             EventData eventData
     ) throws JsonProcessingException, PDVTokenizerException;
 
+    /**
+     * Generates in bulk the tokens of the distinct debtor and payer fiscal codes of the provided biz-events,
+     * so that the following calls of {@link #tokenizeFiscalCodes(BizEvent, Receipt, EventData)} and
+     * {@link #buildCartForReceipt(BizEvent)} find them in the in-process token cache.
+     * <p>
+     * The fiscal codes that fail the tokenization are ignored, they will be tokenized again by the single biz-event
+     * processing that will handle the error.
+     * </p>
+     *
+     * @param bizEventList the biz-events that are going to be processed
+     */
+    void prefetchFiscalCodeTokens(List<BizEvent> bizEventList);
+
     /**
      * Search for a cart associated with the provided transaction id, if present
      * it updates the cart section {@link Payload#getCart()} with the biz-event info
@@ -102,12 +182,17 @@ public interface BizEventToReceiptService {
     CartForReceipt buildCartFromBizEventList(List<BizEvent> bizEventList) throws PDVTokenizerException, JsonProcessingException;
 
     /**
-     * Retrieve all events that are associated to the cart with the specified id
+     * Retrieve all events that are associated to the cart with the specified id.
+     * <p>
+     * The biz-events already loaded (e.g. the ones of the trigger batch) are not read again, the missing ones
+     * are read from CosmosDB with a single readMany.
+     * </p>
      *
-     * @param cart the cart
-     * @return a list of biz-events
+     * @param cart             the cart
+     * @param loadedBizEvents  the biz-events already loaded, by id
+     * @return a list of biz-events, in the order of the cart items
      */
-    List<BizEvent> getCartBizEvents(CartForReceipt cart);
+    List<BizEvent> getCartBizEvents(CartForReceipt cart, Map<String, BizEvent> loadedBizEvents);
 
     /**
      * This method saves the provided CartForReceipt object to the datastore.
@@ -115,7 +200,7 @@ public interface BizEventToReceiptService {
      * <p>
      * If the operation fail for concurrent update, it tries to rebuild a cart object
      * by invoking {@link #buildCartForReceipt(BizEvent)} with the provided biz event
-     * and then saves it on Cosmos.
+     * and then saves it on Cosmos, up to CART_UPDATE_MAX_ATTEMPTS times with a jittered backoff.
      * If the operation fail again or with another error it change the {@link CartForReceipt#getStatus()}
      * to {@link CartStatusType#FAILED} and add a {@link ReasonError}
      * </p>
@@ -126,6 +211,23 @@ public interface BizEventToReceiptService {
      */
     CartForReceipt saveCartForReceipt(CartForReceipt cartForReceipt, BizEvent bizEvent);
 
+    /**
+     * Appends the items of the biz-events of the same cart with a single partial document update, creating the cart
+     * if it does not exist.
+     *
+     * <p>
+     * When the appended items are the last ones the cart status is moved to {@link CartStatusType#INSERTED}, only the
+     * call that performs the transition returns the cart INSERTED. The items already in the cart are skipped and the
+     * concurrent updates are retried with a bounded jittered backoff, then an {@link IllegalStateException} is thrown
+     * so that the batch is retried. The items rejected by a cart that is already complete are discarded without
+     * changing the cart, the unexpected Cosmos errors are re-thrown.
+     * </p>
+     *
+     * @param bizEventList the biz-events of the same cart
+     * @return the updated cart, or null if the items of all the biz-events were already in the cart or were rejected
+     */
+    CartForReceipt appendToCartForReceipt(List<BizEvent> bizEventList);
+
     /**
      * This method saves the provided CartForReceipt object to the datastore without attempting a retry on failure.
      *
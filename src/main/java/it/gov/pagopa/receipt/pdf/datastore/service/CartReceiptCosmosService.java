@@ -1,5 +1,6 @@
 package it.gov.pagopa.receipt.pdf.datastore.service;
 
+import com.azure.cosmos.models.FeedRange;
 import com.azure.cosmos.models.FeedResponse;
 import it.gov.pagopa.receipt.pdf.datastore.client.ReceiptCosmosClient;
 import it.gov.pagopa.receipt.pdf.datastore.entity.cart.CartForReceipt;
@@ -7,6 +8,8 @@ import it.gov.pagopa.receipt.pdf.datastore.entity.cart.CartStatusType;
 import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.CartReceiptError;
 import it.gov.pagopa.receipt.pdf.datastore.exception.CartNotFoundException;
 
+import java.util.List;
+
 /**
  * Service that handle the input and output for the {@link ReceiptCosmosClient}
  */
@@ -27,28 +30,50 @@ public interface CartReceiptCosmosService {
      * @param continuationToken Paged query continuation token
      * @param pageSize the page size
      * @param statusType the status of the cart receipts
+     * @param feedRange the feed range to scan, null to scan the whole container
      * @return cart receipt documents
      */
     Iterable<FeedResponse<CartForReceipt>> getNotNotifiedCartReceiptByStatus(
             String continuationToken,
             Integer pageSize,
-            CartStatusType statusType
+            CartStatusType statusType,
+            FeedRange feedRange
     );
 
     /**
-     * Retrieve the failed cart receipt with the provided {@link CartStatusType} status
+     * Retrieve the failed cart receipt with exactly the provided {@link CartStatusType} status
      *
      * @param continuationToken Paged query continuation token
      * @param pageSize          the page size
      * @param statusType        the status of the receipts
+     * @param feedRange         the feed range to scan, null to scan the whole container
      * @return receipt documents
      */
     Iterable<FeedResponse<CartForReceipt>> getFailedCartReceiptByStatus(
             String continuationToken,
             Integer pageSize,
-            CartStatusType statusType
+            CartStatusType statusType,
+            FeedRange feedRange
     );
 
+    /**
+     * Count the not notified cart receipts with the provided {@link CartStatusType} status
+     *
+     * @param statusType the status of the cart receipts
+     * @return the number of carts returned by {@link #getNotNotifiedCartReceiptByStatus(String, Integer, CartStatusType, FeedRange)}
+     */
+    long countNotNotifiedCartReceiptByStatus(CartStatusType statusType);
+
+    /**
+     * Count the failed cart receipts recovered together with the provided {@link CartStatusType} status,
+     * {@link CartStatusType#FAILED} and {@link CartStatusType#NOT_QUEUE_SENT} are counted together as well as
+     * {@link CartStatusType#INSERTED} and {@link CartStatusType#WAITING_FOR_BIZ_EVENT}
+     *
+     * @param statusType the status of the cart receipts
+     * @return the number of carts returned by {@link #getFailedCartReceiptByStatus(String, Integer, CartStatusType, FeedRange)}
+     * for the statuses recovered together
+     */
+    long countFailedCartReceiptByStatus(CartStatusType statusType);
 
     /**
      * Retrieve the cart with the provided id
@@ -58,4 +83,11 @@ public interface CartReceiptCosmosService {
      * @throws CartNotFoundException if the cart was not found or the retrieved cart is null
      */
     CartForReceipt getCart(String cartId) throws CartNotFoundException;
+
+    /**
+     * Retrieve the feed ranges of the cart-for-receipts container, used to scan its physical partitions concurrently
+     *
+     * @return the feed ranges
+     */
+    List<FeedRange> getFeedRanges();
 }
@@ -3,6 +3,7 @@ package it.gov.pagopa.receipt.pdf.datastore.service;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import it.gov.pagopa.receipt.pdf.datastore.entity.cart.CartForReceipt;
 import it.gov.pagopa.receipt.pdf.datastore.entity.cart.CartStatusType;
+import it.gov.pagopa.receipt.pdf.datastore.entity.event.BizEvent;
 import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.Receipt;
 import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.enumeration.ReceiptStatusType;
 import it.gov.pagopa.receipt.pdf.datastore.exception.BizEventBadRequestException;
@@ -33,6 +34,21 @@ public interface HelpdeskService {
     Receipt recoverFailedReceipt(Receipt existingReceipt)
             throws BizEventUnprocessableEntityException, BizEventBadRequestException, BizEventNotFoundException;
 
+    /**
+     * Recover the receipt with the specified id from its already retrieved biz event.
+     * <p>
+     * It rebuilds {@link Receipt} model, saves it and sends message on queue for PDF generation
+     * </p>
+     *
+     * @param receiptId the id of the receipt to recover
+     * @param bizEvent  the biz event of the receipt
+     * @return the recover receipt
+     * @throws BizEventUnprocessableEntityException in case the biz event does not have the correct total notice
+     * @throws BizEventBadRequestException          in case the biz event is invalid for receipt generation
+     */
+    Receipt recoverFailedReceipt(String receiptId, BizEvent bizEvent)
+            throws BizEventUnprocessableEntityException, BizEventBadRequestException;
+
     /**
      * Recover the specified cart.
      * <p>
@@ -69,7 +85,8 @@ public interface HelpdeskService {
     CartForReceipt recoverNoNotifiedCart(CartForReceipt cart);
 
     /**
-     * Massive recover all failed receipt with the specified status {@link ReceiptStatusType}
+     * Massive recover all failed receipt with the specified status {@link ReceiptStatusType},
+     * {@link ReceiptStatusType#FAILED} and {@link ReceiptStatusType#NOT_QUEUE_SENT} are recovered together
      *
      * @param status the status to be recovered
      * @return the recover result
@@ -77,13 +94,35 @@ public interface HelpdeskService {
     MassiveRecoverResult massiveRecoverFailedReceipt(ReceiptStatusType status);
 
     /**
-     * Massive recover all failed cart with the specified status {@link CartStatusType}
+     * Massive recover all failed receipt with the specified status {@link ReceiptStatusType} on behalf of a recovery job,
+     * the checkpoints of the recovery are scoped to the job (see {@link #deleteRecoveryJobCheckpoints(String)})
+     *
+     * @param status the status to be recovered
+     * @param jobId  the id of the recovery job
+     * @return the recover result
+     */
+    MassiveRecoverResult massiveRecoverFailedReceipt(ReceiptStatusType status, String jobId);
+
+    /**
+     * Massive recover all failed cart with the specified status {@link CartStatusType},
+     * {@link CartStatusType#FAILED} and {@link CartStatusType#NOT_QUEUE_SENT} are recovered together as well as
+     * {@link CartStatusType#INSERTED} and {@link CartStatusType#WAITING_FOR_BIZ_EVENT}
      *
      * @param status the status to be recovered
      * @return the recover result
      */
     MassiveCartRecoverResult massiveRecoverFailedCart(CartStatusType status);
 
+    /**
+     * Massive recover all failed cart with the specified status {@link CartStatusType} on behalf of a recovery job,
+     * the checkpoints of the recovery are scoped to the job (see {@link #deleteRecoveryJobCheckpoints(String)})
+     *
+     * @param status the status to be recovered
+     * @param jobId  the id of the recovery job
+     * @return the recover result
+     */
+    MassiveCartRecoverResult massiveRecoverFailedCart(CartStatusType status, String jobId);
+
     /**
      * Massive recover all not notified receipt with the specified status {@link ReceiptStatusType}
      *
@@ -92,6 +131,16 @@ public interface HelpdeskService {
      */
     MassiveRecoverResult massiveRecoverNoNotifiedReceipt(ReceiptStatusType status);
 
+    /**
+     * Massive recover all not notified receipt with the specified status {@link ReceiptStatusType} on behalf of a
+     * recovery job, the checkpoints of the recovery are scoped to the job (see {@link #deleteRecoveryJobCheckpoints(String)})
+     *
+     * @param status the status to be recovered
+     * @param jobId  the id of the recovery job
+     * @return the recover result
+     */
+    MassiveRecoverResult massiveRecoverNoNotifiedReceipt(ReceiptStatusType status, String jobId);
+
     /**
      * Massive recover all not notified cart receipt with the specified status {@link CartStatusType}
      *
@@ -99,4 +148,22 @@ public interface HelpdeskService {
      * @return the recover result
      */
     MassiveCartRecoverResult massiveRecoverNoNotifiedCart(CartStatusType status);
+
+    /**
+     * Massive recover all not notified cart receipt with the specified status {@link CartStatusType} on behalf of a
+     * recovery job, the checkpoints of the recovery are scoped to the job (see {@link #deleteRecoveryJobCheckpoints(String)})
+     *
+     * @param status the status to be recovered
+     * @param jobId  the id of the recovery job
+     * @return the recover result
+     */
+    MassiveCartRecoverResult massiveRecoverNoNotifiedCart(CartStatusType status, String jobId);
+
+    /**
+     * Delete the checkpoints left by the massive recoveries of a recovery job, once the job is completed or failed.
+     * The checkpoints of the scheduled massive recoveries are not affected.
+     *
+     * @param jobId the id of the recovery job
+     */
+    void deleteRecoveryJobCheckpoints(String jobId);
 }
@@ -4,6 +4,8 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import it.gov.pagopa.receipt.pdf.datastore.client.PDVTokenizerClient;
 import it.gov.pagopa.receipt.pdf.datastore.exception.PDVTokenizerException;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Service that handle the input and output for the {@link PDVTokenizerClient}
  */
@@ -38,4 +40,15 @@ public interface PDVTokenizerService {
      * @throws PDVTokenizerException   if an error occur when invoking the PDV Tokenizer
      */
     String generateTokenForFiscalCode(String fiscalCode) throws PDVTokenizerException, JsonProcessingException;
+
+    /**
+     * Asynchronously generate a token for the specified fiscal code by calling
+     * {@link PDVTokenizerClient#createTokenAsync(String)}
+     *
+     * @param fiscalCode the fiscal code
+     * @return the future generated token, completed exceptionally with a {@link JsonProcessingException}
+     * if an error occur when parsing input or output or with a {@link PDVTokenizerException}
+     * if an error occur when invoking the PDV Tokenizer
+     */
+    CompletableFuture<String> generateTokenForFiscalCodeAsync(String fiscalCode);
 }
@@ -3,13 +3,19 @@ package it.gov.pagopa.receipt.pdf.datastore.service;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import it.gov.pagopa.receipt.pdf.datastore.exception.PDVTokenizerException;
 
+import java.util.Map;
+import java.util.Set;
+
 /**
- * Service that wrap the {@link PDVTokenizerService} for adding retry logic for tokenizer responses with 429 status code
+ * Service that wrap the {@link PDVTokenizerService} for adding retry logic for tokenizer responses with 429 status code,
+ * an adaptive concurrency limit and a circuit breaker that fails fast with {@code ERROR_PDV_UNAVAILABLE} (803)
+ * when the PDV Tokenizer is unhealthy
  */
 public interface PDVTokenizerServiceRetryWrapper {
 
     /**
-     * Call {@link PDVTokenizerService#getToken(String)} with retry on failure
+     * Call {@link PDVTokenizerService#getToken(String)} with retry on failure,
+     * the token is served from the in-process token cache if present
      *
      * @param fiscalCode the fiscal code
      * @return the token associated to the fiscal code
@@ -29,7 +35,8 @@ public interface PDVTokenizerServiceRetryWrapper {
     String getFiscalCodeWithRetry(String token) throws PDVTokenizerException, JsonProcessingException;
 
     /**
-     * Call {@link PDVTokenizerService#generateTokenForFiscalCode(String)} with retry on failure
+     * Call {@link PDVTokenizerService#generateTokenForFiscalCode(String)} with retry on failure,
+     * the token is served from the in-process token cache if present
      *
      * @param fiscalCode the fiscal code
      * @return the generated token
@@ -37,4 +44,18 @@ public interface PDVTokenizerServiceRetryWrapper {
      * @throws PDVTokenizerException   if an error occur when invoking the PDV Tokenizer
      */
     String generateTokenForFiscalCodeWithRetry(String fiscalCode) throws PDVTokenizerException, JsonProcessingException;
+
+    /**
+     * Call asynchronously {@link PDVTokenizerService#generateTokenForFiscalCodeAsync(String)} for all the provided
+     * fiscal codes not already in the in-process token cache, with retry on failure of each fiscal code.
+     * <p>
+     * The number of concurrent requests to the PDV Tokenizer is bounded by the adaptive concurrency limiter and the
+     * fiscal codes are skipped when the circuit breaker is open.
+     * The generated tokens are added to the token cache.
+     * </p>
+     *
+     * @param fiscalCodes the distinct fiscal codes
+     * @return the generated tokens mapped by fiscal code, the fiscal codes that failed the tokenization are not present
+     */
+    Map<String, String> generateTokensForFiscalCodesWithRetry(Set<String> fiscalCodes);
 }
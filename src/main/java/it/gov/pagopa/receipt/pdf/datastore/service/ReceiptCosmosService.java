@@ -1,11 +1,15 @@
 package it.gov.pagopa.receipt.pdf.datastore.service;
 
+import com.azure.cosmos.models.FeedRange;
 import com.azure.cosmos.models.FeedResponse;
 import it.gov.pagopa.receipt.pdf.datastore.client.ReceiptCosmosClient;
 import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.Receipt;
 import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.ReceiptError;
 import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.enumeration.ReceiptStatusType;
 import it.gov.pagopa.receipt.pdf.datastore.exception.ReceiptNotFoundException;
+import it.gov.pagopa.receipt.pdf.datastore.model.ReceiptProjection;
+
+import java.util.List;
 
 /**
  * Service that handle the input and output for the {@link ReceiptCosmosClient}
@@ -31,30 +35,70 @@ public interface ReceiptCosmosService {
     ReceiptError getReceiptError(String eventId) throws ReceiptNotFoundException;
 
     /**
-     * Retrieve the not notified receipt with the provided {@link ReceiptStatusType} status
+     * Retrieve the not notified receipt with the provided {@link ReceiptStatusType} status,
+     * projected on the properties of {@link ReceiptProjection}
      *
      * @param continuationToken Paged query continuation token
      * @param pageSize          the page size
      * @param statusType        the status of the receipts
-     * @return receipt documents
+     * @param feedRange         the feed range to scan, null to scan the whole container
+     * @return receipt projections
      */
-    Iterable<FeedResponse<Receipt>> getNotNotifiedReceiptByStatus(
+    Iterable<FeedResponse<ReceiptProjection>> getNotNotifiedReceiptByStatus(
             String continuationToken,
             Integer pageSize,
-            ReceiptStatusType statusType
+            ReceiptStatusType statusType,
+            FeedRange feedRange
     );
 
     /**
-     * Retrieve the failed receipt with the provided {@link ReceiptStatusType} status
+     * Retrieve the failed receipt with exactly the provided {@link ReceiptStatusType} status,
+     * projected on the properties of {@link ReceiptProjection}
      *
      * @param continuationToken Paged query continuation token
      * @param pageSize          the page size
      * @param statusType        the status of the receipts
-     * @return receipt documents
+     * @param feedRange         the feed range to scan, null to scan the whole container
+     * @return receipt projections
      */
-    Iterable<FeedResponse<Receipt>> getFailedReceiptByStatus(
+    Iterable<FeedResponse<ReceiptProjection>> getFailedReceiptByStatus(
             String continuationToken,
             Integer pageSize,
-            ReceiptStatusType statusType
+            ReceiptStatusType statusType,
+            FeedRange feedRange
     );
+
+    /**
+     * Count the not notified receipts with the provided {@link ReceiptStatusType} status
+     *
+     * @param statusType the status of the receipts
+     * @return the number of receipts returned by {@link #getNotNotifiedReceiptByStatus(String, Integer, ReceiptStatusType, FeedRange)}
+     */
+    long countNotNotifiedReceiptByStatus(ReceiptStatusType statusType);
+
+    /**
+     * Count the failed receipts recovered together with the provided {@link ReceiptStatusType} status,
+     * {@link ReceiptStatusType#FAILED} and {@link ReceiptStatusType#NOT_QUEUE_SENT} are counted together
+     *
+     * @param statusType the status of the receipts
+     * @return the number of receipts returned by {@link #getFailedReceiptByStatus(String, Integer, ReceiptStatusType, FeedRange)}
+     * for the statuses recovered together
+     */
+    long countFailedReceiptByStatus(ReceiptStatusType statusType);
+
+    /**
+     * Reset the notification of the given not notified receipts with a bulk of patch operations,
+     * that update only the status, the notification retries and the errors of the receipts
+     *
+     * @param receipts the receipts to reset
+     * @return the receipts that have not been reset
+     */
+    List<ReceiptProjection> resetReceiptsNotification(List<ReceiptProjection> receipts);
+
+    /**
+     * Retrieve the feed ranges of the receipts container, used to scan its physical partitions concurrently
+     *
+     * @return the feed ranges
+     */
+    List<FeedRange> getFeedRanges();
 }
@@ -0,0 +1,60 @@
+package it.gov.pagopa.receipt.pdf.datastore.service;
+
+import it.gov.pagopa.receipt.pdf.datastore.exception.RecoveryJobNotFoundException;
+import it.gov.pagopa.receipt.pdf.datastore.model.RecoveryJob;
+import it.gov.pagopa.receipt.pdf.datastore.model.enumeration.RecoveryJobType;
+
+/**
+ * Service that handle the lifecycle of the asynchronous massive recovery jobs
+ */
+public interface RecoveryJobService {
+
+    /**
+     * Create a queued recovery job and send it to the worker
+     *
+     * @param type   the massive recovery to run
+     * @param status the status of the receipts or carts to recover
+     * @return the created job
+     */
+    RecoveryJob createJob(RecoveryJobType type, String status);
+
+    /**
+     * Retrieve the recovery job with its current throughput and estimated time to completion
+     *
+     * @param jobId the job id
+     * @return the recovery job
+     * @throws RecoveryJobNotFoundException if the job does not exist
+     */
+    RecoveryJob getJob(String jobId) throws RecoveryJobNotFoundException;
+
+    /**
+     * Mark the recovery job as running before a worker invocation.
+     * On the first invocation the items to recover are counted, in order to estimate the time to completion.
+     *
+     * @param jobId the job id
+     * @return the running job, or the job unchanged if it is already completed or failed
+     * @throws RecoveryJobNotFoundException if the job does not exist
+     */
+    RecoveryJob startJob(String jobId) throws RecoveryJobNotFoundException;
+
+    /**
+     * Add the outcome of a worker invocation to the job counters.
+     * If the recovery was interrupted the job is sent again to the worker, that resumes it from the last checkpoint,
+     * otherwise the job is completed.
+     *
+     * @param job            the running job
+     * @param processedCount the items processed by the invocation
+     * @param successCount   the items recovered by the invocation
+     * @param errorCount     the items not recovered by the invocation
+     * @param interrupted    true if the recovery has to continue
+     */
+    void updateJobProgress(RecoveryJob job, int processedCount, int successCount, int errorCount, boolean interrupted);
+
+    /**
+     * Mark the recovery job as failed
+     *
+     * @param job          the running job
+     * @param errorMessage the cause of the failure
+     */
+    void failJob(RecoveryJob job, String errorMessage);
+}
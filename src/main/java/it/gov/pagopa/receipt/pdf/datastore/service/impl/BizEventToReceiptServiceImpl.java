@@ -1,7 +1,12 @@
 package it.gov.pagopa.receipt.pdf.datastore.service.impl;
 
 import com.azure.core.http.rest.Response;
+import com.azure.core.util.Context;
+import com.azure.core.util.tracing.SpanKind;
+import com.azure.cosmos.CosmosException;
+import com.azure.cosmos.models.CosmosBulkOperationResponse;
 import com.azure.cosmos.models.CosmosItemResponse;
+import com.azure.cosmos.models.FeedResponse;
 import com.azure.storage.queue.models.SendMessageResult;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.microsoft.azure.functions.HttpStatus;
@@ -15,28 +20,44 @@ import it.gov.pagopa.receipt.pdf.datastore.entity.event.BizEvent;
 import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.EventData;
 import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.ReasonError;
 import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.Receipt;
+import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.ReceiptEventIndex;
 import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.enumeration.ReasonErrorCode;
 import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.enumeration.ReceiptStatusType;
-import it.gov.pagopa.receipt.pdf.datastore.exception.BizEventNotFoundException;
 import it.gov.pagopa.receipt.pdf.datastore.exception.CartConcurrentUpdateException;
 import it.gov.pagopa.receipt.pdf.datastore.exception.CartNotFoundException;
 import it.gov.pagopa.receipt.pdf.datastore.exception.PDVTokenizerException;
+import it.gov.pagopa.receipt.pdf.datastore.exception.ReceiptBulkSaveException;
 import it.gov.pagopa.receipt.pdf.datastore.exception.ReceiptNotFoundException;
+import it.gov.pagopa.receipt.pdf.datastore.model.BizEventDedupResult;
+import it.gov.pagopa.receipt.pdf.datastore.model.PendingQueueMessage;
 import it.gov.pagopa.receipt.pdf.datastore.service.BizEventToReceiptService;
 import it.gov.pagopa.receipt.pdf.datastore.service.PDVTokenizerServiceRetryWrapper;
-import it.gov.pagopa.receipt.pdf.datastore.utils.ObjectMapperUtils;
+import it.gov.pagopa.receipt.pdf.datastore.utils.PipelineMetrics;
+import it.gov.pagopa.receipt.pdf.datastore.utils.PipelineTracing;
+import it.gov.pagopa.receipt.pdf.datastore.utils.ProcessedEventFilter;
+import it.gov.pagopa.receipt.pdf.datastore.utils.QueueMessageEncoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
-import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
 
 import static it.gov.pagopa.receipt.pdf.datastore.utils.BizEventToReceiptUtils.*;
 
 public class BizEventToReceiptServiceImpl implements BizEventToReceiptService {
 
     public static final String FISCAL_CODE_ANONYMOUS = "ANONIMO";
+    private static final int QUEUE_MAX_IN_FLIGHT = Integer.parseInt(System.getenv().getOrDefault("QUEUE_MAX_IN_FLIGHT", "16"));
+    private static final int CART_UPDATE_MAX_ATTEMPTS =
+            Integer.parseInt(System.getenv().getOrDefault("CART_UPDATE_MAX_ATTEMPTS", "5"));
+    private static final long CART_UPDATE_RETRY_BASE_MILLIS =
+            Long.parseLong(System.getenv().getOrDefault("CART_UPDATE_RETRY_BASE_MILLIS", "50"));
+    private static final String RECEIPT_QUEUE_SPAN = "receipt queue send";
+    private static final String CART_QUEUE_SPAN = "cart queue send";
     private final Logger logger = LoggerFactory.getLogger(BizEventToReceiptServiceImpl.class);
 
     private final PDVTokenizerServiceRetryWrapper pdvTokenizerService;
@@ -47,6 +68,8 @@ public class BizEventToReceiptServiceImpl implements BizEventToReceiptService {
 
     private final ReceiptQueueClient queueClient;
     private final CartQueueClient cartQueueClient;
+    private final QueueMessageEncoder queueMessageEncoder = QueueMessageEncoder.getInstance();
+    private final ProcessedEventFilter processedEventFilter;
 
     public BizEventToReceiptServiceImpl() {
         this.pdvTokenizerService = new PDVTokenizerServiceRetryWrapperImpl();
@@ -55,6 +78,7 @@ public class BizEventToReceiptServiceImpl implements BizEventToReceiptService {
         this.bizEventCosmosClient = BizEventCosmosClientImpl.getInstance();
         this.queueClient = ReceiptQueueClientImpl.getInstance();
         this.cartQueueClient = CartQueueClientImpl.getInstance();
+        this.processedEventFilter = ProcessedEventFilter.getInstance();
     }
 
     public BizEventToReceiptServiceImpl(PDVTokenizerServiceRetryWrapper pdvTokenizerService,
@@ -63,12 +87,24 @@ public class BizEventToReceiptServiceImpl implements BizEventToReceiptService {
                                         BizEventCosmosClient bizEventCosmosClient,
                                         ReceiptQueueClient queueClient,
                                         CartQueueClientImpl cartQueueClient) {
+        this(pdvTokenizerService, receiptCosmosClient, cartReceiptsCosmosClient, bizEventCosmosClient,
+                queueClient, cartQueueClient, ProcessedEventFilter.getInstance());
+    }
+
+    public BizEventToReceiptServiceImpl(PDVTokenizerServiceRetryWrapper pdvTokenizerService,
+                                        ReceiptCosmosClient receiptCosmosClient,
+                                        CartReceiptsCosmosClient cartReceiptsCosmosClient,
+                                        BizEventCosmosClient bizEventCosmosClient,
+                                        ReceiptQueueClient queueClient,
+                                        CartQueueClientImpl cartQueueClient,
+                                        ProcessedEventFilter processedEventFilter) {
         this.pdvTokenizerService = pdvTokenizerService;
         this.receiptCosmosClient = receiptCosmosClient;
         this.cartReceiptsCosmosClient = cartReceiptsCosmosClient;
         this.bizEventCosmosClient = bizEventCosmosClient;
         this.queueClient = queueClient;
         this.cartQueueClient = cartQueueClient;
+        this.processedEventFilter = processedEventFilter;
     }
 
     /**
@@ -76,46 +112,115 @@ public class BizEventToReceiptServiceImpl implements BizEventToReceiptService {
      */
     @Override
     public void handleSendMessageToQueue(List<BizEvent> bizEventList, Receipt receipt) {
-        //Encode biz-event to base64 string
-        String messageText = Base64.getMimeEncoder().encodeToString(
-                Objects.requireNonNull(ObjectMapperUtils.writeValueAsString(bizEventList)).getBytes(StandardCharsets.UTF_8));
-
-        //Add message to the queue
+        Context span = PipelineTracing.startSpan(RECEIPT_QUEUE_SPAN, SpanKind.PRODUCER);
         int statusCode;
+        Exception error = null;
         try {
+            //Encode biz-event to base64 string, its failure is handled as the failure of the message
+            String messageText = encodeMessage(bizEventList, span);
+
+            //Add message to the queue
             Response<SendMessageResult> sendMessageResult = queueClient.sendMessageToQueue(messageText);
             statusCode = sendMessageResult.getStatusCode();
         } catch (Exception e) {
+            error = e;
             statusCode = ReasonErrorCode.ERROR_QUEUE.getCode();
             logger.warn("Sending BizEvent with id {} to queue failed", bizEventList.get(0).getId(), e);
         }
+        PipelineTracing.endSpan(span, error);
 
-        if (statusCode != HttpStatus.CREATED.value()) {
-            String errorString = String.format(
-                    "[BizEventToReceiptService] Error sending message to queue for receipt with eventId %s",
-                    receipt.getEventId());
-            handleError(receipt, ReceiptStatusType.NOT_QUEUE_SENT, errorString, statusCode);
-            //Error info
-            logger.error(errorString);
-        }
+        handleReceiptQueueResult(receipt, statusCode);
     }
 
     @Override
     public void handleSendCartMessageToQueue(List<BizEvent> bizEventList, CartForReceipt cartForReceipt) {
-        //Encode biz-event to base64 string
-        String messageText = Base64.getMimeEncoder().encodeToString(
-                Objects.requireNonNull(ObjectMapperUtils.writeValueAsString(bizEventList)).getBytes(StandardCharsets.UTF_8));
-
-        //Add message to the queue
+        Context span = PipelineTracing.startSpan(CART_QUEUE_SPAN, SpanKind.PRODUCER);
         int statusCode;
+        Exception error = null;
         try {
+            //Encode biz-event to base64 string, its failure is handled as the failure of the message
+            String messageText = encodeMessage(bizEventList, span);
+
+            //Add message to the queue
             Response<SendMessageResult> sendMessageResult = cartQueueClient.sendMessageToQueue(messageText);
             statusCode = sendMessageResult.getStatusCode();
         } catch (Exception e) {
+            error = e;
             statusCode = ReasonErrorCode.ERROR_QUEUE.getCode();
             logger.warn("Failed to enqueue cart with id {}", cartForReceipt.getCartId(), e);
         }
+        PipelineTracing.endSpan(span, error);
+
+        handleCartQueueResult(cartForReceipt, statusCode);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void handleSendMessagesToQueue(List<PendingQueueMessage<Receipt>> messages) {
+        Flux.fromIterable(messages)
+                .flatMap(message -> sendAsync(RECEIPT_QUEUE_SPAN, message.getBizEvents(), queueClient::sendMessageToQueueAsync)
+                        .onErrorResume(e -> {
+                            logger.warn("Sending BizEvent with id {} to queue failed", message.getBizEvents().get(0).getId(), e);
+                            return Mono.just(ReasonErrorCode.ERROR_QUEUE.getCode());
+                        })
+                        .doOnNext(statusCode -> handleReceiptQueueResult(message.getDocument(), statusCode)),
+                        QUEUE_MAX_IN_FLIGHT)
+                .blockLast();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void handleSendCartMessagesToQueue(List<PendingQueueMessage<CartForReceipt>> messages) {
+        Flux.fromIterable(messages)
+                .flatMap(message -> sendAsync(CART_QUEUE_SPAN, message.getBizEvents(), cartQueueClient::sendMessageToQueueAsync)
+                        .onErrorResume(e -> {
+                            logger.warn("Failed to enqueue cart with id {}", message.getDocument().getCartId(), e);
+                            return Mono.just(ReasonErrorCode.ERROR_QUEUE.getCode());
+                        })
+                        .doOnNext(statusCode -> handleCartQueueResult(message.getDocument(), statusCode)),
+                        QUEUE_MAX_IN_FLIGHT)
+                .blockLast();
+    }
+
+    private Mono<Integer> sendAsync(
+            String spanName,
+            List<BizEvent> bizEventList,
+            Function<String, Mono<Response<SendMessageResult>>> sender
+    ) {
+        // the encoding is deferred so that its failure is handled as the failure of the single message
+        return Mono.defer(() -> {
+            Context span = PipelineTracing.startSpan(spanName, SpanKind.PRODUCER);
+            return Mono.fromCallable(() -> encodeMessage(bizEventList, span))
+                    .flatMap(sender)
+                    .map(Response::getStatusCode)
+                    .doOnSuccess(statusCode -> PipelineTracing.endSpan(span, null))
+                    .doOnError(e -> PipelineTracing.endSpan(span, e));
+        });
+    }
+
+    /**
+     * The trace context of the send span travels in the message, so that the downstream functions continue the trace
+     */
+    private String encodeMessage(List<BizEvent> bizEventList, Context span) {
+        return queueMessageEncoder.encode(bizEventList, PipelineTracing.getTraceparent(span));
+    }
+
+    private void handleReceiptQueueResult(Receipt receipt, int statusCode) {
+        if (statusCode != HttpStatus.CREATED.value()) {
+            String errorString = String.format(
+                    "[BizEventToReceiptService] Error sending message to queue for receipt with eventId %s",
+                    receipt.getEventId());
+            handleError(receipt, ReceiptStatusType.NOT_QUEUE_SENT, errorString, statusCode);
+            //Error info
+            logger.error(errorString);
+        }
+    }
 
+    private void handleCartQueueResult(CartForReceipt cartForReceipt, int statusCode) {
         if (statusCode != HttpStatus.CREATED.value()) {
             String errorString = String.format(
                     "[BizEventToReceiptService] Error sending message to queue for cartForReceipt with eventId %s",
@@ -135,7 +240,7 @@ public class BizEventToReceiptServiceImpl implements BizEventToReceiptService {
     public Receipt getReceipt(String bizEventId) throws ReceiptNotFoundException {
         Receipt receipt;
         try {
-            receipt = receiptCosmosClient.getReceiptDocument(bizEventId);
+            receipt = PipelineTracing.trace("cosmos receipts read", () -> receiptCosmosClient.getReceiptDocument(bizEventId));
         } catch (ReceiptNotFoundException e) {
             String errorMsg = String.format("Receipt not found with the biz-event id %s", bizEventId);
             throw new ReceiptNotFoundException(errorMsg, e);
@@ -148,6 +253,48 @@ public class BizEventToReceiptServiceImpl implements BizEventToReceiptService {
         return receipt;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BizEventDedupResult findAlreadyProcessedBizEvents(List<BizEvent> bizEventList) {
+        BizEventDedupResult result = BizEventDedupResult.builder()
+                .processedBizEventIds(new HashSet<>())
+                .build();
+
+        Set<String> receiptEventIds = new LinkedHashSet<>();
+        Map<String, List<BizEvent>> cartEvents = new LinkedHashMap<>();
+        for (BizEvent bizEvent : bizEventList) {
+            if (getTotalNotice(bizEvent) == 1) {
+                receiptEventIds.add(bizEvent.getId());
+            } else {
+                cartEvents.computeIfAbsent(
+                        bizEvent.getTransactionDetails().getTransaction().getTransactionId(),
+                        k -> new ArrayList<>()
+                ).add(bizEvent);
+            }
+        }
+
+        if (!receiptEventIds.isEmpty()) {
+            findAlreadyProcessedReceipts(receiptEventIds, result);
+        }
+        if (!cartEvents.isEmpty()) {
+            findAlreadyProcessedCartEvents(cartEvents, result);
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<String> findSavedReceiptEventIds(List<String> eventIds) {
+        Set<String> saved = new HashSet<>();
+        readSavedReceiptEventIds(eventIds, saved);
+        saved.forEach(this.processedEventFilter::put);
+        return saved;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -158,7 +305,9 @@ public class BizEventToReceiptServiceImpl implements BizEventToReceiptService {
         try {
             receipt.setStatus(ReceiptStatusType.INSERTED);
             receipt.setInserted_at(System.currentTimeMillis());
-            CosmosItemResponse<Receipt> response = receiptCosmosClient.saveReceipts(receipt);
+            CosmosItemResponse<Receipt> response =
+                    PipelineTracing.trace("cosmos receipts create", () -> receiptCosmosClient.saveReceipts(receipt));
+            PipelineMetrics.recordRequestCharge("receipt_create", response.getRequestCharge());
 
             statusCode = response.getStatusCode();
         } catch (Exception e) {
@@ -167,20 +316,97 @@ public class BizEventToReceiptServiceImpl implements BizEventToReceiptService {
         }
 
         if (statusCode != HttpStatus.CREATED.value()) {
-            String errorString = String.format(
-                    "[BizEventToReceiptService] Error saving receipt to cosmos for receipt with eventId %s, cosmos client responded with status %s",
-                    receipt.getEventId(), statusCode);
-            handleError(receipt, ReceiptStatusType.FAILED, errorString, statusCode);
-            //Error info
-            logger.error(errorString);
+            handleSaveReceiptError(receipt, statusCode);
+        } else {
+            this.processedEventFilter.put(receipt.getEventId());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Receipt> handleSaveReceipts(List<Receipt> receipts) {
+        long insertedAt = System.currentTimeMillis();
+        for (Receipt receipt : receipts) {
+            receipt.setStatus(ReceiptStatusType.INSERTED);
+            receipt.setInserted_at(insertedAt);
+        }
+
+        List<Receipt> alreadySaved = new ArrayList<>();
+        Set<Receipt> handled = Collections.newSetFromMap(new IdentityHashMap<>());
+        // the bulk responses are collected in the span, as the bulk is executed while they are iterated,
+        // and they are kept even if the iteration fails so that the outcomes already received are not lost
+        List<CosmosBulkOperationResponse<Receipt>> responses = new ArrayList<>(receipts.size());
+        Exception bulkError = null;
+        try {
+            PipelineTracing.trace("cosmos receipts bulk create", () -> {
+                receiptCosmosClient.saveReceipts(receipts).forEach(responses::add);
+                return responses;
+            });
+        } catch (Exception e) {
+            logger.warn("Bulk save of {} receipts on cosmos failed after {} outcomes", receipts.size(), responses.size(), e);
+            bulkError = e;
+        }
+
+        double requestCharge = 0;
+        for (CosmosBulkOperationResponse<Receipt> response : responses) {
+            Receipt receipt = response.getOperation().getContext();
+            int statusCode = getBulkStatusCode(response);
+            if (response.getResponse() != null) {
+                requestCharge += response.getResponse().getRequestCharge();
+            }
+            handled.add(receipt);
+
+            if (statusCode == HttpStatus.CONFLICT.value()) {
+                logger.info("Receipt with eventId {} already saved on cosmos, it will not be overwritten", receipt.getEventId());
+                alreadySaved.add(receipt);
+                this.processedEventFilter.put(receipt.getEventId());
+            } else if (statusCode != HttpStatus.CREATED.value()) {
+                handleSaveReceiptError(receipt, statusCode);
+            } else {
+                this.processedEventFilter.put(receipt.getEventId());
+            }
+        }
+        logger.debug("Bulk save of {} receipts on cosmos consumed {} RU", receipts.size(), requestCharge);
+        PipelineMetrics.recordRequestCharge("receipt_bulk_create", requestCharge);
+
+        if (bulkError != null) {
+            // the receipts without an outcome may have been saved, so they are not marked as failed
+            List<Receipt> unknownOutcome = receipts.stream()
+                    .filter(receipt -> !handled.contains(receipt))
+                    .toList();
+            throw new ReceiptBulkSaveException(alreadySaved, unknownOutcome, bulkError);
+        }
+        return alreadySaved;
+    }
+
+    private int getBulkStatusCode(CosmosBulkOperationResponse<Receipt> response) {
+        if (response.getResponse() != null) {
+            return response.getResponse().getStatusCode();
         }
+        if (response.getException() instanceof CosmosException cosmosException) {
+            return cosmosException.getStatusCode();
+        }
+        logger.warn("Bulk save of receipt on cosmos failed", response.getException());
+        return ReasonErrorCode.ERROR_COSMOS.getCode();
+    }
+
+    private void handleSaveReceiptError(Receipt receipt, int statusCode) {
+        String errorString = String.format(
+                "[BizEventToReceiptService] Error saving receipt to cosmos for receipt with eventId %s, cosmos client responded with status %s",
+                receipt.getEventId(), statusCode);
+        handleError(receipt, ReceiptStatusType.FAILED, errorString, statusCode);
+        //Error info
+        logger.error(errorString);
     }
 
     @Override
     public Receipt updateReceipt(Receipt receipt) {
         int statusCode;
         try {
-            CosmosItemResponse<Receipt> response = this.receiptCosmosClient.updateReceipts(receipt);
+            CosmosItemResponse<Receipt> response =
+                    PipelineTracing.trace("cosmos receipts update", () -> this.receiptCosmosClient.updateReceipts(receipt));
             statusCode = response.getStatusCode();
         } catch (Exception e) {
             statusCode = ReasonErrorCode.ERROR_COSMOS.getCode();
@@ -232,6 +458,27 @@ public class BizEventToReceiptServiceImpl implements BizEventToReceiptService {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void prefetchFiscalCodeTokens(List<BizEvent> bizEventList) {
+        Set<String> fiscalCodes = new HashSet<>();
+        for (BizEvent bizEvent : bizEventList) {
+            String debtorFiscalCode = getDebtorFiscalCode(bizEvent);
+            if (debtorFiscalCode != null) {
+                fiscalCodes.add(debtorFiscalCode);
+            }
+            String payerFiscalCode = getPayerFiscalCode(bizEvent);
+            if (payerFiscalCode != null) {
+                fiscalCodes.add(payerFiscalCode);
+            }
+        }
+        if (!fiscalCodes.isEmpty()) {
+            this.pdvTokenizerService.generateTokensForFiscalCodesWithRetry(fiscalCodes);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -286,23 +533,57 @@ public class BizEventToReceiptServiceImpl implements BizEventToReceiptService {
         return cartForReceipt;
     }
 
+    /**
+     * {@inheritDoc}
+     */
     @Override
-    public List<BizEvent> getCartBizEvents(CartForReceipt cart) {
-        List<BizEvent> bizEventList = new ArrayList<>();
-        try {
-            for (CartPayment item : cart.getPayload().getCart()) {
-                BizEvent bizEvent = this.bizEventCosmosClient.getBizEventDocument(item.getBizEventId());
-                bizEventList.add(bizEvent);
+    public List<BizEvent> getCartBizEvents(CartForReceipt cart, Map<String, BizEvent> loadedBizEvents) {
+        long startTime = System.currentTimeMillis();
+        List<CartPayment> cartItems = cart.getPayload().getCart();
+
+        Map<String, BizEvent> bizEventsById = new HashMap<>();
+        List<String> missingBizEventIds = new ArrayList<>();
+        for (CartPayment item : cartItems) {
+            BizEvent bizEvent = loadedBizEvents.get(item.getBizEventId());
+            if (bizEvent != null) {
+                bizEventsById.put(item.getBizEventId(), bizEvent);
+            } else {
+                missingBizEventIds.add(item.getBizEventId());
+            }
+        }
+
+        double requestCharge = 0;
+        if (!missingBizEventIds.isEmpty()) {
+            FeedResponse<BizEvent> response = PipelineTracing.trace("cosmos biz-events readMany",
+                    () -> this.bizEventCosmosClient.getBizEventDocuments(missingBizEventIds));
+            requestCharge = response.getRequestCharge();
+            PipelineMetrics.recordRequestCharge("biz_event_read_many", requestCharge);
+            response.getResults().forEach(bizEvent -> bizEventsById.put(bizEvent.getId(), bizEvent));
+        }
+
+        List<BizEvent> bizEventList = new ArrayList<>(cartItems.size());
+        for (CartPayment item : cartItems) {
+            BizEvent bizEvent = bizEventsById.get(item.getBizEventId());
+            if (bizEvent == null) {
+                String errMsg = String.format("Error while fetching cart with event id %s biz-events: biz-event %s not found",
+                        cart.getCartId(), item.getBizEventId());
+                logger.error("{}", errMsg);
+                cart.setStatus(CartStatusType.FAILED);
+                cart.setReasonErr(ReasonError.builder()
+                        .code(ReasonErrorCode.GENERIC_ERROR.getCode())
+                        .message(errMsg)
+                        .build());
+                return bizEventList;
             }
-        } catch (BizEventNotFoundException e) {
-            String errMsg = String.format("Error while fetching cart with event id %s biz-events: %s", cart.getCartId(), e.getMessage());
-            logger.error("{}", errMsg, e);
-            cart.setStatus(CartStatusType.FAILED);
-            cart.setReasonErr(ReasonError.builder()
-                    .code(ReasonErrorCode.GENERIC_ERROR.getCode())
-                    .message(errMsg)
-                    .build());
+            bizEventList.add(bizEvent);
         }
+
+        logger.info("Cart {} biz-events loaded in {} ms: {} already loaded, {} read with {} RU",
+                cart.getCartId(),
+                System.currentTimeMillis() - startTime,
+                cartItems.size() - missingBizEventIds.size(),
+                missingBizEventIds.size(),
+                requestCharge);
         return bizEventList;
     }
 
@@ -315,7 +596,10 @@ public class BizEventToReceiptServiceImpl implements BizEventToReceiptService {
 
         statusCode = trySaveCart(cartForReceipt);
 
-        if (statusCode == ReasonErrorCode.ERROR_COSMOS_ETAG_MISMATCH.getCode()) {
+        for (int attempt = 1;
+             statusCode == ReasonErrorCode.ERROR_COSMOS_ETAG_MISMATCH.getCode() && attempt < CART_UPDATE_MAX_ATTEMPTS;
+             attempt++) {
+            backOffCartUpdate(attempt);
             logger.debug("Fetch again cart with cartId {} and then retry save on cosmos", cartForReceipt.getCartId());
             cartForReceipt = buildCartForReceipt(bizEvent);
 
@@ -330,6 +614,62 @@ public class BizEventToReceiptServiceImpl implements BizEventToReceiptService {
         return cartForReceipt;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CartForReceipt appendToCartForReceipt(List<BizEvent> bizEventList) {
+        BizEvent bizEvent = bizEventList.get(0);
+        String transactionId = bizEvent.getTransactionDetails().getTransaction().getTransactionId();
+        List<CartPayment> cartPayments = new ArrayList<>(bizEventList.size());
+        try {
+            for (BizEvent cartBizEvent : bizEventList) {
+                cartPayments.add(buildCartPayment(cartBizEvent));
+            }
+        } catch (PDVTokenizerException e) {
+            return buildCartWithFailedStatus(transactionId, null, e.getStatusCode(), e.getMessage(), e);
+        } catch (JsonProcessingException e) {
+            return buildCartWithFailedStatus(transactionId, null, ReasonErrorCode.ERROR_PDV_MAPPING.getCode(), e.getMessage(), e);
+        }
+
+        CartForReceipt current = null;
+        for (int attempt = 1; attempt <= CART_UPDATE_MAX_ATTEMPTS; attempt++) {
+            try {
+                CartForReceipt cart = appendOrCreateCart(bizEvent, transactionId, cartPayments);
+                if (cart != null) {
+                    return cart;
+                }
+            } catch (CartConcurrentUpdateException e) {
+                // the cart already contains some items or does not accept them anymore
+                current = findCart(transactionId);
+                if (current != null) {
+                    List<CartPayment> missingCartPayments = removeCartItems(current, cartPayments);
+                    PipelineMetrics.countDiscarded("already_in_cart", cartPayments.size() - missingCartPayments.size());
+                    cartPayments = missingCartPayments;
+                    if (cartPayments.isEmpty()) {
+                        return handleAlreadyAddedCartItems(current);
+                    }
+                    if (!isCartWaitingForItems(current, cartPayments.size())) {
+                        return handleRejectedCartItems(current, cartPayments);
+                    }
+                }
+            } catch (PDVTokenizerException e) {
+                return buildCartWithFailedStatus(transactionId, current, e.getStatusCode(), e.getMessage(), e);
+            } catch (JsonProcessingException e) {
+                return buildCartWithFailedStatus(transactionId, current, ReasonErrorCode.ERROR_PDV_MAPPING.getCode(), e.getMessage(), e);
+            }
+            // the unexpected errors (e.g. cosmos 429 or 503 after the SDK retries) are not handled: they can happen
+            // before or after the items are appended, so the batch is retried instead of writing the cart as failed
+            logger.debug("Append of {} biz-events to cart {} failed for concurrent update, attempt {}",
+                    cartPayments.size(), transactionId, attempt);
+            backOffCartUpdate(attempt);
+        }
+        // the last read cart may already be stale, it is not written back as failed: the batch is retried
+        throw new IllegalStateException(String.format(
+                "Append of %s biz-events to cart %s failed for concurrent update after %s attempts",
+                cartPayments.size(), transactionId, CART_UPDATE_MAX_ATTEMPTS));
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -350,7 +690,7 @@ public class BizEventToReceiptServiceImpl implements BizEventToReceiptService {
     public CartForReceipt getCartForReceipt(String cartId) throws CartNotFoundException {
         CartForReceipt cart;
         try {
-            cart = this.cartReceiptsCosmosClient.getCartItem(cartId);
+            cart = PipelineTracing.trace("cosmos carts read", () -> this.cartReceiptsCosmosClient.getCartItem(cartId));
         } catch (CartNotFoundException e) {
             String errorMsg = String.format("CartForReceipt not found with the event id %s", cartId);
             throw new CartNotFoundException(errorMsg, e);
@@ -363,10 +703,102 @@ public class BizEventToReceiptServiceImpl implements BizEventToReceiptService {
         return cart;
     }
 
+    private void findAlreadyProcessedReceipts(Set<String> eventIds, BizEventDedupResult result) {
+        Set<String> processed = result.getProcessedBizEventIds();
+
+        // once the filter covers its whole window, the biz-events it has not recorded are not read, the positive
+        // answers are confirmed on cosmos and the receipt creation conflict guards the biz-events processed elsewhere,
+        // while their failed receipts are confirmed on cosmos before being upserted
+        List<String> eventIdsToRead = new ArrayList<>(eventIds.size());
+        boolean filterWarm = this.processedEventFilter.isWarm();
+        for (String eventId : eventIds) {
+            if (!filterWarm || this.processedEventFilter.mightContain(eventId)) {
+                eventIdsToRead.add(eventId);
+            } else {
+                result.getFilterSkippedBizEventIds().add(eventId);
+            }
+        }
+
+        if (!eventIdsToRead.isEmpty()) {
+            result.setRequestCharge(result.getRequestCharge() + readSavedReceiptEventIds(eventIdsToRead, processed));
+        }
+
+        for (String eventId : eventIds) {
+            if (processed.contains(eventId)) {
+                result.setHitCounter(result.getHitCounter() + 1);
+                this.processedEventFilter.put(eventId);
+            } else {
+                result.setMissCounter(result.getMissCounter() + 1);
+            }
+        }
+    }
+
+    /**
+     * Reads the receipts of the biz-events, by id and then by event id for the receipts saved with a different id
+     *
+     * @return the consumed RU
+     */
+    private double readSavedReceiptEventIds(List<String> eventIds, Set<String> saved) {
+        FeedResponse<Receipt> response = PipelineTracing.trace("cosmos receipts readMany",
+                () -> this.receiptCosmosClient.getReceiptDocuments(eventIds));
+        PipelineMetrics.recordRequestCharge("receipt_read_many", response.getRequestCharge());
+        double requestCharge = response.getRequestCharge();
+        for (Receipt receipt : response.getResults()) {
+            saved.add(receipt.getEventId() != null ? receipt.getEventId() : receipt.getId());
+        }
+
+        // fallback query only for the receipts saved with an id different from the biz-event id
+        List<String> missingEventIds = eventIds.stream().filter(id -> !saved.contains(id)).toList();
+        if (!missingEventIds.isEmpty()) {
+            List<FeedResponse<ReceiptEventIndex>> pages = PipelineTracing.trace("cosmos receipts event index read", () -> {
+                List<FeedResponse<ReceiptEventIndex>> eventIndexPages = new ArrayList<>();
+                this.receiptCosmosClient.getReceiptEventIndexes(missingEventIds).forEach(eventIndexPages::add);
+                return eventIndexPages;
+            });
+            for (FeedResponse<ReceiptEventIndex> page : pages) {
+                PipelineMetrics.recordRequestCharge("receipt_event_index_read", page.getRequestCharge());
+                requestCharge += page.getRequestCharge();
+                page.getResults().forEach(eventIndex -> saved.add(eventIndex.getId()));
+            }
+        }
+        return requestCharge;
+    }
+
+    private void findAlreadyProcessedCartEvents(Map<String, List<BizEvent>> cartEvents, BizEventDedupResult result) {
+        FeedResponse<CartForReceipt> response = PipelineTracing.trace("cosmos carts readMany",
+                () -> this.cartReceiptsCosmosClient.getCartItems(new ArrayList<>(cartEvents.keySet())));
+        PipelineMetrics.recordRequestCharge("cart_read_many", response.getRequestCharge());
+        result.setRequestCharge(result.getRequestCharge() + response.getRequestCharge());
+
+        Map<String, CartForReceipt> cartsById = new HashMap<>();
+        response.getResults().forEach(cart -> cartsById.put(cart.getId(), cart));
+
+        cartEvents.forEach((cartId, bizEvents) -> {
+            CartForReceipt cart = cartsById.get(cartId);
+            for (BizEvent bizEvent : bizEvents) {
+                if (isBizEventInCart(cart, bizEvent.getId())) {
+                    result.getProcessedBizEventIds().add(bizEvent.getId());
+                    result.setHitCounter(result.getHitCounter() + 1);
+                } else {
+                    result.setMissCounter(result.getMissCounter() + 1);
+                }
+            }
+        });
+    }
+
+    private boolean isBizEventInCart(CartForReceipt cart, String bizEventId) {
+        return cart != null
+                && cart.getPayload() != null
+                && cart.getPayload().getCart() != null
+                && cart.getPayload().getCart().stream().anyMatch(cartPayment -> cartPayment.getBizEventId().equals(bizEventId));
+    }
+
     private int trySaveCart(CartForReceipt cartForReceipt) {
         int statusCode;
         try {
-            CosmosItemResponse<CartForReceipt> response = this.cartReceiptsCosmosClient.updateCart(cartForReceipt);
+            CosmosItemResponse<CartForReceipt> response =
+                    PipelineTracing.trace("cosmos carts update", () -> this.cartReceiptsCosmosClient.updateCart(cartForReceipt));
+            PipelineMetrics.recordRequestCharge("cart_update", response.getRequestCharge());
 
             statusCode = response.getStatusCode();
         } catch (CartConcurrentUpdateException e) {
@@ -405,6 +837,115 @@ public class BizEventToReceiptServiceImpl implements BizEventToReceiptService {
         receipt.setReasonErr(reasonError);
     }
 
+    /**
+     * Append the items to the cart or, if the cart does not exist, create it with the items as first ones
+     *
+     * @return the updated cart, null if the cart has been created concurrently
+     */
+    private CartForReceipt appendOrCreateCart(BizEvent bizEvent, String transactionId, List<CartPayment> cartPayments)
+            throws CartConcurrentUpdateException, PDVTokenizerException, JsonProcessingException {
+        CosmosItemResponse<CartForReceipt> response;
+        Context span = PipelineTracing.startSpan("cosmos carts append", SpanKind.CLIENT);
+        try {
+            response = this.cartReceiptsCosmosClient.appendCartItems(transactionId, cartPayments);
+            PipelineTracing.endSpan(span, null);
+        } catch (CartNotFoundException e) {
+            PipelineTracing.endSpan(span, null);
+            return tryCreateCart(bizEvent, transactionId, cartPayments);
+        } catch (CartConcurrentUpdateException | RuntimeException e) {
+            PipelineTracing.endSpan(span, e);
+            throw e;
+        }
+        PipelineMetrics.recordRequestCharge("cart_append", response.getRequestCharge());
+        return completeCartIfFull(response.getItem());
+    }
+
+    /**
+     * Create the cart with the items, if the items are all the cart ones it is created directly INSERTED
+     *
+     * @return the created cart, null if the cart has been created concurrently
+     */
+    private CartForReceipt tryCreateCart(BizEvent bizEvent, String transactionId, List<CartPayment> cartPayments)
+            throws PDVTokenizerException, JsonProcessingException {
+        CartForReceipt cart = buildCart(bizEvent, transactionId, new ArrayList<>(cartPayments));
+        if (cartPayments.size() >= cart.getPayload().getTotalNotice()) {
+            cart.setStatus(CartStatusType.INSERTED);
+            cart.setInserted_at(System.currentTimeMillis());
+        }
+        try {
+            return PipelineTracing.trace("cosmos carts create", () -> this.cartReceiptsCosmosClient.createCart(cart)).getItem();
+        } catch (CartConcurrentUpdateException e) {
+            logger.debug("Cart {} created concurrently, its items will be appended", transactionId);
+            return null;
+        }
+    }
+
+    /**
+     * Set the cart status to INSERTED if it contains all its items. Only the call that performs the transition
+     * returns the cart INSERTED, so that the cart message is sent once.
+     */
+    private CartForReceipt completeCartIfFull(CartForReceipt cart) {
+        if (cart.getStatus() != CartStatusType.WAITING_FOR_BIZ_EVENT
+                || cart.getPayload().getCart().size() < cart.getPayload().getTotalNotice()) {
+            return cart;
+        }
+        try {
+            return PipelineTracing.trace("cosmos carts mark inserted",
+                    () -> this.cartReceiptsCosmosClient.markCartInserted(cart.getCartId(), System.currentTimeMillis())).getItem();
+        } catch (CartConcurrentUpdateException e) {
+            logger.debug("Cart {} already completed by a concurrent update", cart.getCartId());
+            return cart;
+        }
+    }
+
+    /**
+     * All the items were already in the cart
+     *
+     * @return the cart if this call moved it to INSERTED, null otherwise
+     */
+    private CartForReceipt handleAlreadyAddedCartItems(CartForReceipt cart) {
+        logger.info("Biz-events already added to cart {}", cart.getCartId());
+        // the transition to INSERTED could have failed after the last item was added
+        CartForReceipt completed = completeCartIfFull(cart);
+        return completed.getStatus() == CartStatusType.INSERTED && cart.getStatus() != CartStatusType.INSERTED
+                ? completed
+                : null;
+    }
+
+    /**
+     * The append has been rejected because the cart is complete or has no room for the items: the biz-events are
+     * discarded, the stored cart is never written back as failed because it can be already generated and notified
+     *
+     * @return null, the cart is not changed
+     */
+    private CartForReceipt handleRejectedCartItems(CartForReceipt cart, List<CartPayment> cartPayments) {
+        logger.error("Cart {} with status {} does not accept the items of biz-events {}, they are discarded",
+                cart.getCartId(), cart.getStatus(), cartPayments.stream().map(CartPayment::getBizEventId).toList());
+        PipelineMetrics.countDiscarded("rejected_by_cart", cartPayments.size());
+        return null;
+    }
+
+    private boolean isCartWaitingForItems(CartForReceipt cart, int itemsCount) {
+        return cart.getStatus() == CartStatusType.WAITING_FOR_BIZ_EVENT
+                && cart.getPayload().getCart().size() + itemsCount <= cart.getPayload().getTotalNotice();
+    }
+
+    private List<CartPayment> removeCartItems(CartForReceipt cart, List<CartPayment> cartPayments) {
+        return cartPayments.stream()
+                .filter(cartPayment -> !isBizEventInCart(cart, cartPayment.getBizEventId()))
+                .toList();
+    }
+
+    private void backOffCartUpdate(int attempt) {
+        // full jitter exponential backoff, so that the concurrent writers of the same cart do not retry together
+        long bound = CART_UPDATE_RETRY_BASE_MILLIS << Math.min(attempt - 1, 10);
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(bound + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     /**
      * @param cartForReceipt the cart to update with failed status
      * @param code           the error code
@@ -460,13 +1001,19 @@ public class BizEventToReceiptServiceImpl implements BizEventToReceiptService {
     }
 
     private String tokenizerDebtorFiscalCode(BizEvent bizEvent) throws PDVTokenizerException, JsonProcessingException {
-        if (isBizEventDebtorFiscalCodeValid(bizEvent.getDebtor())) {
-            String debtorFiscalCodeUpperCase = bizEvent.getDebtor().getEntityUniqueIdentifierValue().toUpperCase();
-            return this.pdvTokenizerService.generateTokenForFiscalCodeWithRetry(debtorFiscalCodeUpperCase);
+        String debtorFiscalCode = getDebtorFiscalCode(bizEvent);
+        if (debtorFiscalCode != null) {
+            return this.pdvTokenizerService.generateTokenForFiscalCodeWithRetry(debtorFiscalCode);
         }
         return FISCAL_CODE_ANONYMOUS;
     }
 
+    private String getDebtorFiscalCode(BizEvent bizEvent) {
+        if (isBizEventDebtorFiscalCodeValid(bizEvent)) {
+            return bizEvent.getDebtor().getEntityUniqueIdentifierValue().toUpperCase();
+        }
+        return null;
+    }
 
     /**
      * Find cart by transaction id in CosmosDB
@@ -476,7 +1023,7 @@ public class BizEventToReceiptServiceImpl implements BizEventToReceiptService {
      */
     private CartForReceipt findCart(String transactionId) {
         try {
-            return cartReceiptsCosmosClient.getCartItem(transactionId);
+            return PipelineTracing.trace("cosmos carts read", () -> cartReceiptsCosmosClient.getCartItem(transactionId));
         } catch (CartNotFoundException e) {
             return null;
         }
@@ -484,14 +1031,20 @@ public class BizEventToReceiptServiceImpl implements BizEventToReceiptService {
 
     private String tokenizerPayerFiscalCode(BizEvent bizEvent) throws PDVTokenizerException, JsonProcessingException {
         //Tokenize Payer
+        String payerFiscalCode = getPayerFiscalCode(bizEvent);
+        if (payerFiscalCode != null) {
+            return this.pdvTokenizerService.generateTokenForFiscalCodeWithRetry(payerFiscalCode);
+        }
+        return null;
+    }
+
+    private String getPayerFiscalCode(BizEvent bizEvent) {
         if (isValidChannelOrigin(bizEvent)) {
-            if (isBizEventUserFiscalCodeValid(bizEvent.getTransactionDetails())) {
-                String userFiscalCodeUpperCase = bizEvent.getTransactionDetails().getUser().getFiscalCode().toUpperCase();
-                return this.pdvTokenizerService.generateTokenForFiscalCodeWithRetry(userFiscalCodeUpperCase);
+            if (isBizEventUserFiscalCodeValid(bizEvent)) {
+                return bizEvent.getTransactionDetails().getUser().getFiscalCode().toUpperCase();
             }
-            if (isBizEventPayerFiscalCodeValid(bizEvent.getPayer())) {
-                String payerFiscalCodeUpperCase = bizEvent.getPayer().getEntityUniqueIdentifierValue().toUpperCase();
-                return this.pdvTokenizerService.generateTokenForFiscalCodeWithRetry(payerFiscalCodeUpperCase);
+            if (isBizEventPayerFiscalCodeValid(bizEvent)) {
+                return bizEvent.getPayer().getEntityUniqueIdentifierValue().toUpperCase();
             }
         }
         return null;
@@ -1,5 +1,6 @@
 package it.gov.pagopa.receipt.pdf.datastore.service.impl;
 
+import com.azure.cosmos.models.FeedRange;
 import com.azure.cosmos.models.FeedResponse;
 import it.gov.pagopa.receipt.pdf.datastore.client.CartReceiptsCosmosClient;
 import it.gov.pagopa.receipt.pdf.datastore.client.impl.CartReceiptsCosmosClientImpl;
@@ -9,6 +10,8 @@ import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.CartReceiptError;
 import it.gov.pagopa.receipt.pdf.datastore.exception.CartNotFoundException;
 import it.gov.pagopa.receipt.pdf.datastore.service.CartReceiptCosmosService;
 
+import java.util.List;
+
 public class CartReceiptCosmosServiceImpl implements CartReceiptCosmosService {
 
     private final CartReceiptsCosmosClient cartReceiptsCosmosClient;
@@ -48,16 +51,17 @@ public class CartReceiptCosmosServiceImpl implements CartReceiptCosmosService {
     public Iterable<FeedResponse<CartForReceipt>> getNotNotifiedCartReceiptByStatus(
             String continuationToken,
             Integer pageSize,
-            CartStatusType statusType
+            CartStatusType statusType,
+            FeedRange feedRange
     ) {
         if (statusType == null) {
             throw new IllegalArgumentException("at least one status must be specified");
         }
         if (statusType.equals(CartStatusType.IO_ERROR_TO_NOTIFY)) {
-            return this.cartReceiptsCosmosClient.getIOErrorToNotifyCartReceiptDocuments(continuationToken, pageSize);
+            return this.cartReceiptsCosmosClient.getIOErrorToNotifyCartReceiptDocuments(continuationToken, pageSize, feedRange);
         }
         if (statusType.equals(CartStatusType.GENERATED)) {
-            return this.cartReceiptsCosmosClient.getGeneratedCartReceiptDocuments(continuationToken, pageSize);
+            return this.cartReceiptsCosmosClient.getGeneratedCartReceiptDocuments(continuationToken, pageSize, feedRange);
         }
         String errMsg = String.format("Unexpected status for retrieving not notified receipt: %s", statusType);
         throw new IllegalStateException(errMsg);
@@ -70,21 +74,58 @@ public class CartReceiptCosmosServiceImpl implements CartReceiptCosmosService {
     public Iterable<FeedResponse<CartForReceipt>> getFailedCartReceiptByStatus(
             String continuationToken,
             Integer pageSize,
-            CartStatusType statusType
+            CartStatusType statusType,
+            FeedRange feedRange
     ) {
         if (statusType == null) {
             throw new IllegalArgumentException("at least one status must be specified");
         }
         if (statusType.equals(CartStatusType.FAILED) || statusType.equals(CartStatusType.NOT_QUEUE_SENT)) {
-            return this.cartReceiptsCosmosClient.getFailedCartReceiptDocuments(continuationToken, pageSize);
+            return this.cartReceiptsCosmosClient.getFailedCartReceiptDocuments(continuationToken, pageSize, statusType, feedRange);
         }
         if (statusType.equals(CartStatusType.INSERTED)  || statusType.equals(CartStatusType.WAITING_FOR_BIZ_EVENT)) {
-            return this.cartReceiptsCosmosClient.getInsertedCartReceiptDocuments(continuationToken, pageSize);
+            return this.cartReceiptsCosmosClient.getInsertedCartReceiptDocuments(continuationToken, pageSize, statusType, feedRange);
         }
         String errMsg = String.format("Unexpected status for retrieving failed receipt: %s", statusType);
         throw new IllegalStateException(errMsg);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long countNotNotifiedCartReceiptByStatus(CartStatusType statusType) {
+        if (statusType == null) {
+            throw new IllegalArgumentException("at least one status must be specified");
+        }
+        if (statusType.equals(CartStatusType.IO_ERROR_TO_NOTIFY)) {
+            return this.cartReceiptsCosmosClient.countIOErrorToNotifyCartReceiptDocuments();
+        }
+        if (statusType.equals(CartStatusType.GENERATED)) {
+            return this.cartReceiptsCosmosClient.countGeneratedCartReceiptDocuments();
+        }
+        String errMsg = String.format("Unexpected status for counting not notified receipt: %s", statusType);
+        throw new IllegalStateException(errMsg);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long countFailedCartReceiptByStatus(CartStatusType statusType) {
+        if (statusType == null) {
+            throw new IllegalArgumentException("at least one status must be specified");
+        }
+        if (statusType.equals(CartStatusType.FAILED) || statusType.equals(CartStatusType.NOT_QUEUE_SENT)) {
+            return this.cartReceiptsCosmosClient.countFailedCartReceiptDocuments();
+        }
+        if (statusType.equals(CartStatusType.INSERTED) || statusType.equals(CartStatusType.WAITING_FOR_BIZ_EVENT)) {
+            return this.cartReceiptsCosmosClient.countInsertedCartReceiptDocuments();
+        }
+        String errMsg = String.format("Unexpected status for counting failed receipt: %s", statusType);
+        throw new IllegalStateException(errMsg);
+    }
+
     @Override
     public CartForReceipt getCart(String cartId) throws CartNotFoundException {
         CartForReceipt cartForReceipt;
@@ -101,4 +142,12 @@ public class CartReceiptCosmosServiceImpl implements CartReceiptCosmosService {
         }
         return cartForReceipt;
     }
-}
\ No newline at end of file
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<FeedRange> getFeedRanges() {
+        return this.cartReceiptsCosmosClient.getFeedRanges();
+    }
+}
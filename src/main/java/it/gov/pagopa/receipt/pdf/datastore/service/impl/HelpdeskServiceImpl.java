@@ -1,9 +1,12 @@
 package it.gov.pagopa.receipt.pdf.datastore.service.impl;
 
+import com.azure.cosmos.models.FeedRange;
 import com.azure.cosmos.models.FeedResponse;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import it.gov.pagopa.receipt.pdf.datastore.client.BizEventCosmosClient;
+import it.gov.pagopa.receipt.pdf.datastore.client.RecoveryCheckpointClient;
 import it.gov.pagopa.receipt.pdf.datastore.client.impl.BizEventCosmosClientImpl;
+import it.gov.pagopa.receipt.pdf.datastore.client.impl.RecoveryCheckpointClientImpl;
 import it.gov.pagopa.receipt.pdf.datastore.entity.cart.CartForReceipt;
 import it.gov.pagopa.receipt.pdf.datastore.entity.cart.CartStatusType;
 import it.gov.pagopa.receipt.pdf.datastore.entity.event.BizEvent;
@@ -15,17 +18,34 @@ import it.gov.pagopa.receipt.pdf.datastore.exception.BizEventUnprocessableEntity
 import it.gov.pagopa.receipt.pdf.datastore.exception.PDVTokenizerException;
 import it.gov.pagopa.receipt.pdf.datastore.model.MassiveCartRecoverResult;
 import it.gov.pagopa.receipt.pdf.datastore.model.MassiveRecoverResult;
+import it.gov.pagopa.receipt.pdf.datastore.model.ReceiptProjection;
 import it.gov.pagopa.receipt.pdf.datastore.service.BizEventToReceiptService;
 import it.gov.pagopa.receipt.pdf.datastore.service.CartReceiptCosmosService;
 import it.gov.pagopa.receipt.pdf.datastore.service.HelpdeskService;
 import it.gov.pagopa.receipt.pdf.datastore.service.ReceiptCosmosService;
 import it.gov.pagopa.receipt.pdf.datastore.utils.BizEventToReceiptUtils;
+import it.gov.pagopa.receipt.pdf.datastore.utils.ParallelExecutionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static it.gov.pagopa.receipt.pdf.datastore.utils.BizEventToReceiptUtils.createReceipt;
 import static it.gov.pagopa.receipt.pdf.datastore.utils.BizEventToReceiptUtils.isCartStatusValid;
@@ -33,32 +53,51 @@ import static it.gov.pagopa.receipt.pdf.datastore.utils.BizEventToReceiptUtils.i
 
 public class HelpdeskServiceImpl implements HelpdeskService {
 
-    public static final String RECOVERY_INTERRUPTED_MSG = "Max processable items reached ({}), the massive recovery will be interrupted";
+    public static final String RECOVERY_INTERRUPTED_MSG =
+            "Max processable items or duration reached ({} items in {} ms), the massive recovery will be interrupted";
+    private static final int PAGE_SIZE = 100;
+    // the checkpoints of the recovery jobs are kept apart from the ones of the scheduled recoveries
+    private static final String JOB_CHECKPOINT_PREFIX = "job-";
+    private static final int RECOVERY_PARALLELISM =
+            Integer.parseInt(System.getenv().getOrDefault("MASSIVE_RECOVERY_PARALLELISM", "8"));
+    private static final ExecutorService RECOVERY_EXECUTOR =
+            ParallelExecutionUtils.newBoundedExecutor("massive-recovery", RECOVERY_PARALLELISM);
+    // the statuses recovered together and the feed ranges of the container are scanned in parallel, with a query each
+    private static final int SCAN_PARALLELISM =
+            Integer.parseInt(System.getenv().getOrDefault("MASSIVE_RECOVERY_SCAN_PARALLELISM", "4"));
+    private static final ExecutorService SCAN_EXECUTOR =
+            ParallelExecutionUtils.newBoundedExecutor("massive-recovery-scan", SCAN_PARALLELISM);
+
     private final Logger logger = LoggerFactory.getLogger(HelpdeskServiceImpl.class);
 
     private final int massiveOperationMaxProcessableItems = Integer.parseInt(System.getenv().getOrDefault("MASSIVE_OPERATION_MAX_PROCESSABLE_ITEMS", "5000"));
+    private final int massiveOperationMaxDurationSeconds = Integer.parseInt(System.getenv().getOrDefault("MASSIVE_OPERATION_MAX_DURATION_SECONDS", "200"));
 
     private final ReceiptCosmosService receiptCosmosService;
     private final CartReceiptCosmosService cartReceiptCosmosService;
     private final BizEventToReceiptService bizEventToReceiptService;
     private final BizEventCosmosClient bizEventCosmosClient;
+    private final RecoveryCheckpointClient recoveryCheckpointClient;
 
     public HelpdeskServiceImpl() {
         this.receiptCosmosService = new ReceiptCosmosServiceImpl();
         this.cartReceiptCosmosService = new CartReceiptCosmosServiceImpl();
         this.bizEventToReceiptService = new BizEventToReceiptServiceImpl();
         this.bizEventCosmosClient = BizEventCosmosClientImpl.getInstance();
+        this.recoveryCheckpointClient = RecoveryCheckpointClientImpl.getInstance();
     }
 
     public HelpdeskServiceImpl(
             ReceiptCosmosService receiptCosmosService, CartReceiptCosmosService cartReceiptCosmosService,
             BizEventToReceiptService bizEventToReceiptService,
-            BizEventCosmosClient bizEventCosmosClient
+            BizEventCosmosClient bizEventCosmosClient,
+            RecoveryCheckpointClient recoveryCheckpointClient
     ) {
         this.receiptCosmosService = receiptCosmosService;
         this.cartReceiptCosmosService = cartReceiptCosmosService;
         this.bizEventToReceiptService = bizEventToReceiptService;
         this.bizEventCosmosClient = bizEventCosmosClient;
+        this.recoveryCheckpointClient = recoveryCheckpointClient;
     }
 
     @Override
@@ -67,11 +106,17 @@ public class HelpdeskServiceImpl implements HelpdeskService {
         // retrieve biz-event with the specified cartId
 
         BizEvent bizEvent = this.bizEventCosmosClient.getBizEventDocument(existingReceipt.getEventId());
+        return recoverFailedReceipt(existingReceipt.getId(), bizEvent);
+    }
+
+    @Override
+    public Receipt recoverFailedReceipt(String receiptId, BizEvent bizEvent)
+            throws BizEventUnprocessableEntityException, BizEventBadRequestException {
         validateBizEvent(bizEvent, 1);
 
         Receipt receipt = createReceipt(bizEvent, bizEventToReceiptService, logger);
         // override generated id to avoid receipt duplication
-        receipt.setId(existingReceipt.getId());
+        receipt.setId(receiptId);
 
         if (isReceiptStatusValid(receipt)) {
             receipt.setStatus(ReceiptStatusType.INSERTED);
@@ -136,168 +181,436 @@ public class HelpdeskServiceImpl implements HelpdeskService {
 
     @Override
     public MassiveRecoverResult massiveRecoverFailedReceipt(ReceiptStatusType status) {
-        List<Receipt> failedReceipts = new ArrayList<>();
-        int successCounter = 0;
-        int errorCounter = 0;
-        int processedItems = 0;
-
-        Iterable<FeedResponse<Receipt>> feedResponseIterator =
-                this.receiptCosmosService.getFailedReceiptByStatus(null, 100, status);
-
-        for (FeedResponse<Receipt> page : feedResponseIterator) {
-            for (Receipt receipt : page.getResults()) {
-                if (processedItems >= massiveOperationMaxProcessableItems) {
-                    break;
-                }
-
-                try {
-                    Receipt restored = recoverFailedReceipt(receipt);
-
-                    if (isReceiptStatusValid(restored)) {
-                        successCounter++;
-                    } else {
-                        failedReceipts.add(restored);
-                        errorCounter++;
-                        logger.warn("Recover for receipt {} failed, returned invalid status", restored.getEventId());
-                    }
-                } catch (Exception e) {
-                    logger.warn("Recover for receipt {} failed", receipt.getEventId(), e);
-                    errorCounter++;
-                } finally {
-                    processedItems++;
-                }
-            }
-            if (processedItems >= massiveOperationMaxProcessableItems) {
-                logger.warn(RECOVERY_INTERRUPTED_MSG, massiveOperationMaxProcessableItems);
-                break;
-            }
-        }
+        return massiveRecoverFailedReceipt(status, null);
+    }
+
+    @Override
+    public MassiveRecoverResult massiveRecoverFailedReceipt(ReceiptStatusType status, String jobId) {
+        List<String> missingBizEventIds = Collections.synchronizedList(new ArrayList<>());
+        RecoveryRun<Receipt> run = recoverPages(
+                getCheckpointPrefix(jobId, "failed-receipt-"),
+                getFailedStatusesToScan(status),
+                this.receiptCosmosService::getFeedRanges,
+                (scanStatus, feedRange, continuationToken) ->
+                        this.receiptCosmosService.getFailedReceiptByStatus(continuationToken, PAGE_SIZE, scanStatus, feedRange),
+                () -> {
+                    // biz-events of the page under recovery, read by the page preparation before recovering its receipts
+                    Map<String, BizEvent> pageBizEvents = new HashMap<>();
+                    return recoverItems(
+                            receipts -> readPageBizEvents(receipts, pageBizEvents, missingBizEventIds),
+                            receipt -> {
+                                BizEvent bizEvent = pageBizEvents.get(receipt.getEventId());
+                                if (bizEvent == null) {
+                                    // without the page biz-event (readMany failed) fallback to the point read
+                                    bizEvent = this.bizEventCosmosClient.getBizEventDocument(receipt.getEventId());
+                                }
+                                return recoverFailedReceipt(receipt.getId(), bizEvent);
+                            },
+                            BizEventToReceiptUtils::isReceiptStatusValid,
+                            receipt -> "receipt " + receipt.getEventId());
+                });
 
         return MassiveRecoverResult.builder()
-                .failedReceiptList(failedReceipts)
-                .successCounter(successCounter)
-                .errorCounter(errorCounter)
+                .failedReceiptList(run.failedItems)
+                .missingBizEventIds(missingBizEventIds)
+                .successCounter(run.successCounter.get())
+                .errorCounter(run.errorCounter.get())
+                .processedCounter(run.processedCounter.get())
+                .interrupted(run.interrupted)
+                .elapsedMillis(run.elapsedMillis)
                 .build();
     }
 
     @Override
     public MassiveCartRecoverResult massiveRecoverFailedCart(CartStatusType status) {
-        List<CartForReceipt> failedCart = new ArrayList<>();
-        int successCounter = 0;
-        int errorCounter = 0;
-        int processedItems = 0;
-
-        Iterable<FeedResponse<CartForReceipt>> feedResponseIterator =
-                this.cartReceiptCosmosService.getFailedCartReceiptByStatus(null, 100, status);
-
-        for (FeedResponse<CartForReceipt> page : feedResponseIterator) {
-            for (CartForReceipt cart : page.getResults()) {
-                if (processedItems >= massiveOperationMaxProcessableItems) {
-                    break;
-                }
-
-                try {
-                    CartForReceipt recoverCart = recoverFailedCart(cart);
-
-                    if (isCartStatusValid(recoverCart)) {
-                        successCounter++;
-                    } else {
-                        failedCart.add(recoverCart);
-                        errorCounter++;
-                        logger.warn("Recover for cart {} failed, returned invalid status", recoverCart.getCartId());
-                    }
-                } catch (Exception e) {
-                    logger.warn("Recover for cart {} failed", cart.getCartId(), e);
-                    errorCounter++;
-                } finally {
-                    processedItems++;
-                }
-            }
-            if (processedItems >= massiveOperationMaxProcessableItems) {
-                logger.warn(RECOVERY_INTERRUPTED_MSG, massiveOperationMaxProcessableItems);
-                break;
-            }
-        }
+        return massiveRecoverFailedCart(status, null);
+    }
+
+    @Override
+    public MassiveCartRecoverResult massiveRecoverFailedCart(CartStatusType status, String jobId) {
+        RecoveryRun<CartForReceipt> run = recoverPages(
+                getCheckpointPrefix(jobId, "failed-cart-"),
+                getFailedCartStatusesToScan(status),
+                this.cartReceiptCosmosService::getFeedRanges,
+                (scanStatus, feedRange, continuationToken) ->
+                        this.cartReceiptCosmosService.getFailedCartReceiptByStatus(continuationToken, PAGE_SIZE, scanStatus, feedRange),
+                () -> recoverItems(
+                        this::recoverFailedCart,
+                        BizEventToReceiptUtils::isCartStatusValid,
+                        cart -> "cart " + cart.getCartId()));
 
         return MassiveCartRecoverResult.builder()
-                .failedCartList(failedCart)
-                .successCounter(successCounter)
-                .errorCounter(errorCounter)
+                .failedCartList(run.failedItems)
+                .successCounter(run.successCounter.get())
+                .errorCounter(run.errorCounter.get())
+                .processedCounter(run.processedCounter.get())
+                .interrupted(run.interrupted)
+                .elapsedMillis(run.elapsedMillis)
                 .build();
     }
 
     @Override
     public MassiveRecoverResult massiveRecoverNoNotifiedReceipt(ReceiptStatusType status) {
-        int successCounter = 0;
-        int errorCounter = 0;
-        int processedItems = 0;
-
-        Iterable<FeedResponse<Receipt>> feedResponseIterator =
-                this.receiptCosmosService.getNotNotifiedReceiptByStatus(null, 100, status);
-
-        for (FeedResponse<Receipt> page : feedResponseIterator) {
-            for (Receipt receipt : page.getResults()) {
-                if (processedItems >= massiveOperationMaxProcessableItems) {
-                    break;
-                }
-                processedItems++;
-
-                Receipt restoredReceipt = recoverNoNotifiedReceipt(receipt);
-                restoredReceipt = this.bizEventToReceiptService.updateReceipt(restoredReceipt);
-                if (isReceiptStatusValid(restoredReceipt)) {
-                    successCounter++;
-                } else {
-                    logger.warn("Recover for receipt {} failed", receipt.getEventId());
-                    errorCounter++;
-                }
-            }
-            if (processedItems >= massiveOperationMaxProcessableItems) {
-                logger.warn(RECOVERY_INTERRUPTED_MSG, massiveOperationMaxProcessableItems);
-                break;
-            }
-        }
+        return massiveRecoverNoNotifiedReceipt(status, null);
+    }
+
+    @Override
+    public MassiveRecoverResult massiveRecoverNoNotifiedReceipt(ReceiptStatusType status, String jobId) {
+        RecoveryRun<Receipt> run = recoverPages(
+                getCheckpointPrefix(jobId, "not-notified-receipt-"),
+                List.of(status),
+                this.receiptCosmosService::getFeedRanges,
+                (scanStatus, feedRange, continuationToken) ->
+                        this.receiptCosmosService.getNotNotifiedReceiptByStatus(continuationToken, PAGE_SIZE, scanStatus, feedRange),
+                () -> (receipts, recoveryRun) -> {
+                    // the notification fields of the page receipts are reset with a single bulk of patch operations
+                    List<ReceiptProjection> notRecovered = this.receiptCosmosService.resetReceiptsNotification(receipts);
+                    recoveryRun.successCounter.addAndGet(receipts.size() - notRecovered.size());
+                    recoveryRun.errorCounter.addAndGet(notRecovered.size());
+                });
 
         return MassiveRecoverResult.builder()
-                .successCounter(successCounter)
-                .errorCounter(errorCounter)
+                .successCounter(run.successCounter.get())
+                .errorCounter(run.errorCounter.get())
+                .processedCounter(run.processedCounter.get())
+                .interrupted(run.interrupted)
+                .elapsedMillis(run.elapsedMillis)
                 .build();
     }
 
     @Override
     public MassiveCartRecoverResult massiveRecoverNoNotifiedCart(CartStatusType status) {
-        int successCounter = 0;
-        int errorCounter = 0;
-        int processedItems = 0;
-
-        Iterable<FeedResponse<CartForReceipt>> feedResponseIterator =
-                this.cartReceiptCosmosService.getNotNotifiedCartReceiptByStatus(null, 100, status);
-
-        for (FeedResponse<CartForReceipt> page : feedResponseIterator) {
-            for (CartForReceipt cart : page.getResults()) {
-                if (processedItems >= massiveOperationMaxProcessableItems) {
-                    break;
-                }
-                processedItems++;
-
-                CartForReceipt restoredCart = recoverNoNotifiedCart(cart);
-                restoredCart = this.bizEventToReceiptService.saveCartForReceiptWithoutRetry(restoredCart);
-                if (isCartStatusValid(restoredCart)) {
-                    successCounter++;
-                } else {
-                    logger.warn("Recover for cart {} failed", cart.getCartId());
-                    errorCounter++;
-                }
+        return massiveRecoverNoNotifiedCart(status, null);
+    }
+
+    @Override
+    public MassiveCartRecoverResult massiveRecoverNoNotifiedCart(CartStatusType status, String jobId) {
+        RecoveryRun<CartForReceipt> run = recoverPages(
+                getCheckpointPrefix(jobId, "not-notified-cart-"),
+                List.of(status),
+                this.cartReceiptCosmosService::getFeedRanges,
+                (scanStatus, feedRange, continuationToken) ->
+                        this.cartReceiptCosmosService.getNotNotifiedCartReceiptByStatus(continuationToken, PAGE_SIZE, scanStatus, feedRange),
+                () -> recoverItems(
+                        cart -> this.bizEventToReceiptService.saveCartForReceiptWithoutRetry(recoverNoNotifiedCart(cart)),
+                        BizEventToReceiptUtils::isCartStatusValid,
+                        cart -> "cart " + cart.getCartId()));
+
+        return MassiveCartRecoverResult.builder()
+                .successCounter(run.successCounter.get())
+                .errorCounter(run.errorCounter.get())
+                .processedCounter(run.processedCounter.get())
+                .interrupted(run.interrupted)
+                .elapsedMillis(run.elapsedMillis)
+                .build();
+    }
+
+    /**
+     * Recover the items of the query pages of each status, starting from the continuation token saved by the last invocation.
+     * <p>
+     * Each status is scanned by feed range (a physical partition of the container), so that the scan throughput scales with
+     * the partitions rather than being bound to a single cross-partition cursor. The scans of all the statuses and feed ranges
+     * run in parallel (see MASSIVE_RECOVERY_SCAN_PARALLELISM), each one with its own query and checkpoint, share the recovery
+     * budget and submit their items to the shared recovery executor (see MASSIVE_RECOVERY_PARALLELISM).
+     * The pages of a scan are processed sequentially so that after each page its continuation token can be saved as checkpoint,
+     * waiting for the recovery of the page also bounds the items queued by each scan.
+     * The recovery is interrupted after the page that exceeds MASSIVE_OPERATION_MAX_PROCESSABLE_ITEMS or
+     * MASSIVE_OPERATION_MAX_DURATION_SECONDS, the next invocation will resume from the following page.
+     * When the last page is processed the checkpoint is removed and the next invocation starts from the beginning.
+     * </p>
+     * The query items (T) can be projections of the documents recovered (R), that are loaded only by the item recovery.
+     */
+    private <S extends Enum<S>, T, R> RecoveryRun<R> recoverPages(
+            String checkpointPrefix,
+            List<S> statuses,
+            Supplier<List<FeedRange>> feedRangesQuery,
+            PageQuery<S, T> pageQuery,
+            Supplier<PageRecovery<T, R>> pageRecovery
+    ) {
+        RecoveryRun<R> run = new RecoveryRun<>(System.currentTimeMillis());
+        List<FeedRange> feedRanges = getFeedRangesToScan(checkpointPrefix, feedRangesQuery);
+
+        List<Callable<Void>> scans = new ArrayList<>(statuses.size() * feedRanges.size());
+        for (S status : statuses) {
+            for (FeedRange feedRange : feedRanges) {
+                scans.add(() -> {
+                    recoverStatusPages(getCheckpointId(checkpointPrefix, status, feedRange),
+                            continuationToken -> pageQuery.query(status, feedRange, continuationToken), pageRecovery.get(), run);
+                    return null;
+                });
             }
-            if (processedItems >= massiveOperationMaxProcessableItems) {
-                logger.warn(RECOVERY_INTERRUPTED_MSG, massiveOperationMaxProcessableItems);
+        }
+        ParallelExecutionUtils.invokeAll(SCAN_EXECUTOR, scans);
+
+        run.elapsedMillis = System.currentTimeMillis() - run.startTime;
+        return run;
+    }
+
+    private <T, R> void recoverStatusPages(
+            String checkpointId,
+            Function<String, Iterable<FeedResponse<T>>> pageQuery,
+            PageRecovery<T, R> pageRecovery,
+            RecoveryRun<R> run
+    ) {
+        if (run.interrupted) {
+            // the scan was waiting for a free scan thread, it will resume from its checkpoint at the next invocation
+            return;
+        }
+        String continuationToken = getCheckpoint(checkpointId);
+        if (continuationToken != null) {
+            logger.info("Massive recovery {} resumed from the last checkpoint", checkpointId);
+        }
+        boolean checkpointToRemove = continuationToken != null;
+
+        Iterator<FeedResponse<T>> pages = queryPages(checkpointId, continuationToken, pageQuery);
+        while (pages.hasNext()) {
+            FeedResponse<T> page = pages.next();
+            pageRecovery.recover(page.getResults(), run);
+            int processed = run.processedCounter.addAndGet(page.getResults().size());
+
+            continuationToken = page.getContinuationToken();
+            saveCheckpoint(checkpointId, continuationToken);
+            checkpointToRemove = false;
+            long elapsedMillis = System.currentTimeMillis() - run.startTime;
+            logger.info("Massive recovery {} progress: {} items processed, {} recovered, {} errors in {} ms",
+                    checkpointId, processed, run.successCounter.get(), run.errorCounter.get(), elapsedMillis);
+
+            if (continuationToken != null && (run.interrupted || isRecoveryBudgetExhausted(processed, elapsedMillis))) {
+                logger.warn(RECOVERY_INTERRUPTED_MSG, processed, elapsedMillis);
+                // the other scans stop at their next page
+                run.interrupted = true;
                 break;
             }
         }
+        if (checkpointToRemove) {
+            // the checkpoint pointed to the end of the query
+            saveCheckpoint(checkpointId, null);
+        }
+    }
 
-        return MassiveCartRecoverResult.builder()
-                .successCounter(successCounter)
-                .errorCounter(errorCounter)
-                .build();
+    /**
+     * Query the pages of a scan from the continuation token of its checkpoint. If the query resumed from the checkpoint
+     * fails on its first page (e.g. the continuation token is rejected after a change of the query) the checkpoint is
+     * removed and the scan restarts from the beginning, otherwise every invocation would fail on the same checkpoint.
+     */
+    private <T> Iterator<FeedResponse<T>> queryPages(
+            String checkpointId,
+            String continuationToken,
+            Function<String, Iterable<FeedResponse<T>>> pageQuery
+    ) {
+        if (continuationToken == null) {
+            return pageQuery.apply(null).iterator();
+        }
+        try {
+            Iterator<FeedResponse<T>> pages = pageQuery.apply(continuationToken).iterator();
+            if (!pages.hasNext()) {
+                return pages;
+            }
+            FeedResponse<T> firstPage = pages.next();
+            return Stream.concat(Stream.of(firstPage),
+                            StreamSupport.stream(Spliterators.spliteratorUnknownSize(pages, Spliterator.ORDERED), false))
+                    .iterator();
+        } catch (Exception e) {
+            logger.warn("Massive recovery {} cannot resume from the last checkpoint, it restarts from the beginning",
+                    checkpointId, e);
+            saveCheckpoint(checkpointId, null);
+            return pageQuery.apply(null).iterator();
+        }
+    }
+
+    /**
+     * Recover one by one the items of a page, concurrently (see MASSIVE_RECOVERY_PARALLELISM)
+     */
+    private <T, R> PageRecovery<T, R> recoverItems(
+            ItemRecovery<T, R> itemRecovery,
+            Predicate<R> isRecovered,
+            Function<T, String> itemDescription
+    ) {
+        return recoverItems(UnaryOperator.identity(), itemRecovery, isRecovered, itemDescription);
+    }
+
+    /**
+     * Recover one by one the items of a page, concurrently (see MASSIVE_RECOVERY_PARALLELISM).
+     * Before recovering its items the page goes through the page preparation, that returns the items to recover:
+     * the items it discards are counted as errors.
+     */
+    private <T, R> PageRecovery<T, R> recoverItems(
+            UnaryOperator<List<T>> pagePreparation,
+            ItemRecovery<T, R> itemRecovery,
+            Predicate<R> isRecovered,
+            Function<T, String> itemDescription
+    ) {
+        return (page, run) -> {
+            List<T> items = pagePreparation.apply(page);
+            run.errorCounter.addAndGet(page.size() - items.size());
+
+            List<Callable<Void>> tasks = new ArrayList<>(items.size());
+            for (T item : items) {
+                tasks.add(() -> {
+                    recoverItem(item, itemRecovery, isRecovered, itemDescription, run);
+                    return null;
+                });
+            }
+            ParallelExecutionUtils.invokeAll(RECOVERY_EXECUTOR, tasks);
+        };
+    }
+
+    private <T, R> void recoverItem(
+            T item,
+            ItemRecovery<T, R> itemRecovery,
+            Predicate<R> isRecovered,
+            Function<T, String> itemDescription,
+            RecoveryRun<R> run
+    ) {
+        try {
+            R recovered = itemRecovery.recover(item);
+
+            if (isRecovered.test(recovered)) {
+                run.successCounter.incrementAndGet();
+            } else {
+                run.failedItems.add(recovered);
+                run.errorCounter.incrementAndGet();
+                logger.warn("Recover for {} failed, returned invalid status", itemDescription.apply(item));
+            }
+        } catch (Exception e) {
+            logger.warn("Recover for {} failed", itemDescription.apply(item), e);
+            run.errorCounter.incrementAndGet();
+        }
+    }
+
+    /**
+     * Read with a single readMany the biz-events of the receipts of a page, instead of a point read for each receipt.
+     * The receipts whose biz-event is not found are not recovered and their event id is added to the missing ones.
+     * If the readMany fails all the receipts are returned, so that their biz-event is read one by one.
+     */
+    private List<ReceiptProjection> readPageBizEvents(
+            List<ReceiptProjection> receipts, Map<String, BizEvent> pageBizEvents, List<String> missingBizEventIds
+    ) {
+        pageBizEvents.clear();
+        List<String> eventIds = receipts.stream()
+                .map(ReceiptProjection::getEventId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        if (eventIds.isEmpty()) {
+            return receipts;
+        }
+
+        try {
+            FeedResponse<BizEvent> response = this.bizEventCosmosClient.getBizEventDocuments(eventIds);
+            response.getResults().forEach(bizEvent -> pageBizEvents.put(bizEvent.getId(), bizEvent));
+            logger.debug("Read {} biz-events of {} receipts with {} RU",
+                    pageBizEvents.size(), receipts.size(), response.getRequestCharge());
+        } catch (Exception e) {
+            logger.warn("Unable to read the biz-events of {} receipts with a single readMany, they will be read one by one",
+                    receipts.size(), e);
+            return receipts;
+        }
+
+        List<ReceiptProjection> toRecover = new ArrayList<>(receipts.size());
+        List<String> pageMissingBizEventIds = new ArrayList<>();
+        for (ReceiptProjection receipt : receipts) {
+            if (pageBizEvents.containsKey(receipt.getEventId())) {
+                toRecover.add(receipt);
+            } else {
+                pageMissingBizEventIds.add(receipt.getEventId());
+            }
+        }
+        if (!pageMissingBizEventIds.isEmpty()) {
+            logger.warn("Recover for {} receipts failed, biz-event not found: {}",
+                    pageMissingBizEventIds.size(), pageMissingBizEventIds);
+            missingBizEventIds.addAll(pageMissingBizEventIds);
+        }
+        return toRecover;
+    }
+
+    private boolean isRecoveryBudgetExhausted(int processedCounter, long elapsedMillis) {
+        return processedCounter >= massiveOperationMaxProcessableItems
+                || elapsedMillis >= massiveOperationMaxDurationSeconds * 1000L;
+    }
+
+    /**
+     * Retrieve the feed ranges of the container to scan, a single null range (the whole container) if the container has
+     * only one physical partition or its feed ranges cannot be read
+     */
+    private List<FeedRange> getFeedRangesToScan(String checkpointPrefix, Supplier<List<FeedRange>> feedRangesQuery) {
+        try {
+            List<FeedRange> feedRanges = feedRangesQuery.get();
+            if (feedRanges != null && feedRanges.size() > 1) {
+                return feedRanges;
+            }
+        } catch (Exception e) {
+            logger.warn("Unable to read the feed ranges of massive recovery {}, the container will be scanned as a whole",
+                    checkpointPrefix, e);
+        }
+        return Collections.singletonList(null);
+    }
+
+    @Override
+    public void deleteRecoveryJobCheckpoints(String jobId) {
+        String checkpointPrefix = getCheckpointPrefix(jobId, "");
+        try {
+            int deleted = this.recoveryCheckpointClient.deleteCheckpoints(checkpointPrefix);
+            logger.info("Deleted {} checkpoints of massive recovery {}", deleted, checkpointPrefix);
+        } catch (Exception e) {
+            logger.warn("Unable to delete the checkpoints of massive recovery {}", checkpointPrefix, e);
+        }
+    }
+
+    /**
+     * The recoveries run by a job have their own checkpoints, so that they neither resume from nor overwrite the
+     * checkpoints of the scheduled recoveries of the same status
+     */
+    private String getCheckpointPrefix(String jobId, String recoveryPrefix) {
+        if (jobId == null) {
+            return recoveryPrefix;
+        }
+        return JOB_CHECKPOINT_PREFIX + jobId + "/" + recoveryPrefix;
+    }
+
+    /**
+     * The checkpoint of a feed range scan is identified by a hash of the range, after a partition split the new ranges
+     * start from the beginning (the recoveries are idempotent) and the checkpoints of the old ranges are no longer read
+     */
+    private String getCheckpointId(String checkpointPrefix, Enum<?> status, FeedRange feedRange) {
+        if (feedRange == null) {
+            return checkpointPrefix + status;
+        }
+        return checkpointPrefix + status + "-" + Integer.toHexString(feedRange.toString().hashCode());
+    }
+
+    private List<ReceiptStatusType> getFailedStatusesToScan(ReceiptStatusType status) {
+        if (status == ReceiptStatusType.FAILED || status == ReceiptStatusType.NOT_QUEUE_SENT) {
+            return List.of(ReceiptStatusType.FAILED, ReceiptStatusType.NOT_QUEUE_SENT);
+        }
+        return List.of(status);
+    }
+
+    private List<CartStatusType> getFailedCartStatusesToScan(CartStatusType status) {
+        if (status == CartStatusType.FAILED || status == CartStatusType.NOT_QUEUE_SENT) {
+            return List.of(CartStatusType.FAILED, CartStatusType.NOT_QUEUE_SENT);
+        }
+        if (status == CartStatusType.INSERTED || status == CartStatusType.WAITING_FOR_BIZ_EVENT) {
+            return List.of(CartStatusType.INSERTED, CartStatusType.WAITING_FOR_BIZ_EVENT);
+        }
+        return List.of(status);
+    }
+
+    private String getCheckpoint(String checkpointId) {
+        try {
+            return this.recoveryCheckpointClient.getContinuationToken(checkpointId);
+        } catch (Exception e) {
+            logger.warn("Unable to read the checkpoint of massive recovery {}, it will start from the beginning", checkpointId, e);
+            return null;
+        }
+    }
+
+    private void saveCheckpoint(String checkpointId, String continuationToken) {
+        try {
+            this.recoveryCheckpointClient.saveContinuationToken(checkpointId, continuationToken);
+        } catch (Exception e) {
+            logger.warn("Unable to save the checkpoint of massive recovery {}", checkpointId, e);
+        }
     }
 
     private void validateCartBizEvents(List<BizEvent> bizEvents) throws BizEventBadRequestException, BizEventUnprocessableEntityException {
@@ -327,4 +640,36 @@ public class HelpdeskServiceImpl implements HelpdeskService {
             throw new BizEventUnprocessableEntityException(errMsg);
         }
     }
+
+    @FunctionalInterface
+    private interface ItemRecovery<T, R> {
+        R recover(T item) throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface PageQuery<S, T> {
+        Iterable<FeedResponse<T>> query(S status, FeedRange feedRange, String continuationToken);
+    }
+
+    @FunctionalInterface
+    private interface PageRecovery<T, R> {
+        void recover(List<T> page, RecoveryRun<R> run);
+    }
+
+    /**
+     * Progress of a massive recovery, updated concurrently by the scans of its statuses and feed ranges and the recovery of their items
+     */
+    private static class RecoveryRun<T> {
+        private final long startTime;
+        private final AtomicInteger successCounter = new AtomicInteger();
+        private final AtomicInteger errorCounter = new AtomicInteger();
+        private final AtomicInteger processedCounter = new AtomicInteger();
+        private final List<T> failedItems = Collections.synchronizedList(new ArrayList<>());
+        private volatile boolean interrupted;
+        private long elapsedMillis;
+
+        private RecoveryRun(long startTime) {
+            this.startTime = startTime;
+        }
+    }
 }
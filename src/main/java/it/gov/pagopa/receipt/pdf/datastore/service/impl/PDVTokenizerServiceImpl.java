@@ -15,6 +15,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * {@inheritDoc}
@@ -75,6 +77,30 @@ public class PDVTokenizerServiceImpl implements PDVTokenizerService {
 
         HttpResponse<String> httpResponse = pdvTokenizerClient.createToken(tokenizerBody);
 
+        String token = mapGenerateTokenResponse(httpResponse);
+        logger.debug("PDV Tokenizer generateTokenForFiscalCode invocation completed");
+        return token;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<String> generateTokenForFiscalCodeAsync(String fiscalCode) {
+        PiiResource piiResource = PiiResource.builder().pii(fiscalCode).build();
+        String tokenizerBody = ObjectMapperUtils.writeValueAsString(piiResource);
+
+        return pdvTokenizerClient.createTokenAsync(tokenizerBody)
+                .thenApply(httpResponse -> {
+                    try {
+                        return mapGenerateTokenResponse(httpResponse);
+                    } catch (PDVTokenizerException | JsonProcessingException e) {
+                        throw new CompletionException(e);
+                    }
+                });
+    }
+
+    private String mapGenerateTokenResponse(HttpResponse<String> httpResponse) throws JsonProcessingException, PDVTokenizerException {
         if (httpResponse.statusCode() == HttpStatus.SC_BAD_REQUEST
                 || httpResponse.statusCode() == HttpStatus.SC_INTERNAL_SERVER_ERROR) {
             ErrorResponse response = ObjectMapperUtils.mapString(httpResponse.body(), ErrorResponse.class);
@@ -89,7 +115,6 @@ public class PDVTokenizerServiceImpl implements PDVTokenizerService {
             throw new PDVTokenizerException(errMsg, httpResponse.statusCode());
         }
         TokenResource tokenResource = ObjectMapperUtils.mapString(httpResponse.body(), TokenResource.class);
-        logger.debug("PDV Tokenizer generateTokenForFiscalCode invocation completed");
         return tokenResource.getToken();
     }
 
@@ -1,15 +1,40 @@
 package it.gov.pagopa.receipt.pdf.datastore.service.impl;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
 import io.github.resilience4j.core.IntervalFunction;
 import io.github.resilience4j.core.functions.CheckedFunction;
 import io.github.resilience4j.retry.Retry;
 import io.github.resilience4j.retry.RetryConfig;
 import io.github.resilience4j.retry.RetryRegistry;
+import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.enumeration.ReasonErrorCode;
 import it.gov.pagopa.receipt.pdf.datastore.exception.PDVTokenizerException;
 import it.gov.pagopa.receipt.pdf.datastore.exception.PDVTokenizerUnexpectedException;
 import it.gov.pagopa.receipt.pdf.datastore.service.PDVTokenizerService;
 import it.gov.pagopa.receipt.pdf.datastore.service.PDVTokenizerServiceRetryWrapper;
+import it.gov.pagopa.receipt.pdf.datastore.utils.AdaptiveConcurrencyLimiter;
+import it.gov.pagopa.receipt.pdf.datastore.utils.AdaptiveConcurrencyLimiter.Outcome;
+import it.gov.pagopa.receipt.pdf.datastore.utils.PipelineMetrics;
+import it.gov.pagopa.receipt.pdf.datastore.utils.TokenCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 /**
  * {@inheritDoc}
@@ -21,12 +46,50 @@ public class PDVTokenizerServiceRetryWrapperImpl implements PDVTokenizerServiceR
     private static final Double RANDOMIZATION_FACTOR = Double.parseDouble(System.getenv().getOrDefault("PDV_TOKENIZER_RANDOMIZATION_FACTOR", "0.6"));
     private static final Integer MAX_RETRIES = Integer.parseInt(System.getenv().getOrDefault("PDV_TOKENIZER_MAX_RETRIES", "3"));
 
+    private static final Integer MIN_IN_FLIGHT = Integer.parseInt(System.getenv().getOrDefault("PDV_TOKENIZER_MIN_IN_FLIGHT", "1"));
+    private static final Integer MAX_IN_FLIGHT = Integer.parseInt(System.getenv().getOrDefault("PDV_TOKENIZER_MAX_IN_FLIGHT", "16"));
+    private static final Double LIMITER_BACKOFF_RATIO = Double.parseDouble(System.getenv().getOrDefault("PDV_TOKENIZER_LIMITER_BACKOFF_RATIO", "0.5"));
+    private static final Long LIMITER_LATENCY_THRESHOLD = Long.parseLong(System.getenv().getOrDefault("PDV_TOKENIZER_LIMITER_LATENCY_THRESHOLD_MILLIS", "2000"));
+    private static final Long LIMITER_MAX_WAIT = Long.parseLong(System.getenv().getOrDefault("PDV_TOKENIZER_LIMITER_MAX_WAIT_MILLIS", "10000"));
+
+    private static final Float CIRCUIT_BREAKER_FAILURE_RATE = Float.parseFloat(System.getenv().getOrDefault("PDV_TOKENIZER_CIRCUIT_BREAKER_FAILURE_RATE", "50"));
+    private static final Integer CIRCUIT_BREAKER_WINDOW_SIZE = Integer.parseInt(System.getenv().getOrDefault("PDV_TOKENIZER_CIRCUIT_BREAKER_WINDOW_SIZE", "20"));
+    private static final Long CIRCUIT_BREAKER_OPEN_DURATION = Long.parseLong(System.getenv().getOrDefault("PDV_TOKENIZER_CIRCUIT_BREAKER_OPEN_SECONDS", "30"));
+
+    private static final ScheduledExecutorService RETRY_SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "pdv-tokenizer-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Logger logger = LoggerFactory.getLogger(PDVTokenizerServiceRetryWrapperImpl.class);
+
     private final PDVTokenizerService pdvTokenizerService;
     private final Retry retry;
+    private final TokenCache tokenCache;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final CircuitBreaker circuitBreaker;
 
     PDVTokenizerServiceRetryWrapperImpl(PDVTokenizerService pdvTokenizerService, Retry retry) {
+        this(pdvTokenizerService, retry, new TokenCache(0, 0, System::currentTimeMillis));
+    }
+
+    PDVTokenizerServiceRetryWrapperImpl(PDVTokenizerService pdvTokenizerService, Retry retry, TokenCache tokenCache) {
+        this(pdvTokenizerService, retry, tokenCache, buildLimiter(), buildCircuitBreaker());
+    }
+
+    PDVTokenizerServiceRetryWrapperImpl(
+            PDVTokenizerService pdvTokenizerService,
+            Retry retry,
+            TokenCache tokenCache,
+            AdaptiveConcurrencyLimiter limiter,
+            CircuitBreaker circuitBreaker
+    ) {
         this.pdvTokenizerService = pdvTokenizerService;
         this.retry = retry;
+        this.tokenCache = tokenCache;
+        this.limiter = limiter;
+        this.circuitBreaker = circuitBreaker;
     }
 
     public PDVTokenizerServiceRetryWrapperImpl() {
@@ -40,6 +103,20 @@ public class PDVTokenizerServiceRetryWrapperImpl implements PDVTokenizerServiceR
 
         this.pdvTokenizerService = new PDVTokenizerServiceImpl();
         this.retry = registry.retry("tokenizerRetry");
+        this.tokenCache = TokenCache.getInstance();
+        this.limiter = SingletonHelper.LIMITER;
+        this.circuitBreaker = SingletonHelper.CIRCUIT_BREAKER;
+    }
+
+    /**
+     * The limiter and the circuit breaker are shared by all the instances,
+     * so that they track the PDV Tokenizer load generated by the whole host. Their state is exported by the
+     * pipeline metrics.
+     */
+    private static class SingletonHelper {
+        private static final AdaptiveConcurrencyLimiter LIMITER = PipelineMetrics.registerTokenizerLimiter(buildLimiter());
+        private static final CircuitBreaker CIRCUIT_BREAKER =
+                PipelineMetrics.registerTokenizerCircuitBreaker(buildCircuitBreaker());
     }
 
     /**
@@ -47,8 +124,8 @@ public class PDVTokenizerServiceRetryWrapperImpl implements PDVTokenizerServiceR
      */
     @Override
     public String getTokenWithRetry(String fiscalCode) throws JsonProcessingException, PDVTokenizerException {
-        CheckedFunction<String, String> function = Retry.decorateCheckedFunction(retry, pdvTokenizerService::getToken);
-        return runFunction(fiscalCode, function);
+        CheckedFunction<String, String> function = Retry.decorateCheckedFunction(retry, guarded(pdvTokenizerService::getToken));
+        return tokenCache.get(fiscalCode, code -> runFunction(code, function));
     }
 
     /**
@@ -56,7 +133,7 @@ public class PDVTokenizerServiceRetryWrapperImpl implements PDVTokenizerServiceR
      */
     @Override
     public String getFiscalCodeWithRetry(String token) throws PDVTokenizerException, JsonProcessingException {
-        CheckedFunction<String, String> function = Retry.decorateCheckedFunction(retry, pdvTokenizerService::getFiscalCode);
+        CheckedFunction<String, String> function = Retry.decorateCheckedFunction(retry, guarded(pdvTokenizerService::getFiscalCode));
         return runFunction(token, function);
     }
 
@@ -65,8 +142,85 @@ public class PDVTokenizerServiceRetryWrapperImpl implements PDVTokenizerServiceR
      */
     @Override
     public String generateTokenForFiscalCodeWithRetry(String fiscalCode) throws PDVTokenizerException, JsonProcessingException {
-        CheckedFunction<String, String> function = Retry.decorateCheckedFunction(retry, pdvTokenizerService::generateTokenForFiscalCode);
-        return runFunction(fiscalCode, function);
+        CheckedFunction<String, String> function = Retry.decorateCheckedFunction(retry, guarded(pdvTokenizerService::generateTokenForFiscalCode));
+        return tokenCache.get(fiscalCode, code -> runFunction(code, function));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, String> generateTokensForFiscalCodesWithRetry(Set<String> fiscalCodes) {
+        Map<String, String> tokens = new ConcurrentHashMap<>();
+        AtomicInteger failed = new AtomicInteger();
+        List<CompletableFuture<Void>> futures = new ArrayList<>(fiscalCodes.size());
+
+        for (String fiscalCode : fiscalCodes) {
+            String cachedToken = tokenCache.getIfPresent(fiscalCode);
+            if (cachedToken != null) {
+                tokens.put(fiscalCode, cachedToken);
+                continue;
+            }
+            // the permit is held for all the attempts so that the retries do not block the scheduler thread
+            if (!limiter.tryAcquire()) {
+                failed.incrementAndGet();
+                continue;
+            }
+            Supplier<CompletionStage<String>> attempt = CircuitBreaker.decorateCompletionStage(circuitBreaker, () -> {
+                long startNanos = System.nanoTime();
+                return pdvTokenizerService.generateTokenForFiscalCodeAsync(fiscalCode)
+                        .whenComplete((token, error) -> limiter.onSample(startNanos, getOutcome(error)));
+            });
+            CompletableFuture<Void> future = Retry.decorateCompletionStage(retry, RETRY_SCHEDULER, attempt)
+                    .get()
+                    .toCompletableFuture()
+                    .handle((token, error) -> {
+                        limiter.release();
+                        if (error != null || token == null) {
+                            failed.incrementAndGet();
+                            logger.debug("PDV Tokenizer bulk generateTokenForFiscalCode failed", error);
+                        } else {
+                            tokenCache.put(fiscalCode, token);
+                            tokens.put(fiscalCode, token);
+                        }
+                        return null;
+                    });
+            futures.add(future);
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        if (failed.get() > 0) {
+            logger.warn("PDV Tokenizer bulk generateTokenForFiscalCode failed for {} of {} fiscal codes",
+                    failed.get(), fiscalCodes.size());
+        }
+        return tokens;
+    }
+
+    /**
+     * Decorate the function with the circuit breaker and the concurrency limiter,
+     * each attempt of the retry acquires its own permit
+     */
+    private CheckedFunction<String, String> guarded(CheckedFunction<String, String> function) {
+        return CircuitBreaker.decorateCheckedFunction(circuitBreaker, input -> {
+            if (!limiter.tryAcquire()) {
+                throw new PDVTokenizerException(
+                        "PDV Tokenizer concurrency limit reached, no permit acquired in time",
+                        ReasonErrorCode.ERROR_PDV_UNAVAILABLE.getCode());
+            }
+            long startNanos = System.nanoTime();
+            Outcome outcome = Outcome.IGNORED;
+            try {
+                String result = function.apply(input);
+                outcome = Outcome.SUCCESS;
+                return result;
+            } catch (Throwable e) {
+                outcome = getOutcome(e);
+                throw e;
+            } finally {
+                limiter.onSample(startNanos, outcome);
+                limiter.release();
+            }
+        });
     }
 
     private String runFunction(String fiscalCode, CheckedFunction<String, String> function) throws PDVTokenizerException, JsonProcessingException {
@@ -79,7 +233,72 @@ public class PDVTokenizerServiceRetryWrapperImpl implements PDVTokenizerServiceR
             if (e instanceof JsonProcessingException jsonProcessingException) {
                 throw jsonProcessingException;
             }
+            if (e instanceof CallNotPermittedException) {
+                throw new PDVTokenizerException(
+                        "PDV Tokenizer circuit breaker is open, the request has not been sent",
+                        ReasonErrorCode.ERROR_PDV_UNAVAILABLE.getCode(), e);
+            }
             throw new PDVTokenizerUnexpectedException(e);
         }
     }
+
+    private static Outcome getOutcome(Throwable error) {
+        if (error == null) {
+            return Outcome.SUCCESS;
+        }
+        return isThrottled(unwrap(error)) ? Outcome.THROTTLED : Outcome.IGNORED;
+    }
+
+    private static boolean isThrottled(Throwable error) {
+        return error instanceof PDVTokenizerException tokenizerException && tokenizerException.getStatusCode() == 429;
+    }
+
+    /**
+     * The PDV Tokenizer is considered unhealthy when it throttles, fails with a server error or is not reachable.
+     * The errors related to the single request (e.g. 400, 404) and the local limiter timeouts are not recorded.
+     */
+    private static boolean isPDVTokenizerFailure(Throwable error) {
+        if (!(unwrap(error) instanceof PDVTokenizerException tokenizerException)) {
+            return false;
+        }
+        int statusCode = tokenizerException.getStatusCode();
+        return statusCode == 429
+                || (statusCode >= 500 && statusCode < 600)
+                || statusCode == ReasonErrorCode.ERROR_PDV_IO.getCode()
+                || statusCode == ReasonErrorCode.ERROR_PDV_UNEXPECTED.getCode();
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        if ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null) {
+            return error.getCause();
+        }
+        return error;
+    }
+
+    private static AdaptiveConcurrencyLimiter buildLimiter() {
+        return new AdaptiveConcurrencyLimiter(
+                "PDV Tokenizer",
+                MIN_IN_FLIGHT,
+                MAX_IN_FLIGHT,
+                LIMITER_BACKOFF_RATIO,
+                LIMITER_LATENCY_THRESHOLD,
+                LIMITER_MAX_WAIT);
+    }
+
+    private static CircuitBreaker buildCircuitBreaker() {
+        CircuitBreakerConfig config = CircuitBreakerConfig.custom()
+                .failureRateThreshold(CIRCUIT_BREAKER_FAILURE_RATE)
+                .slidingWindowSize(CIRCUIT_BREAKER_WINDOW_SIZE)
+                .minimumNumberOfCalls(CIRCUIT_BREAKER_WINDOW_SIZE)
+                .waitDurationInOpenState(Duration.ofSeconds(CIRCUIT_BREAKER_OPEN_DURATION))
+                .automaticTransitionFromOpenToHalfOpenEnabled(false)
+                .recordException(PDVTokenizerServiceRetryWrapperImpl::isPDVTokenizerFailure)
+                .build();
+
+        CircuitBreaker circuitBreaker = CircuitBreaker.of("tokenizerCircuitBreaker", config);
+        Logger logger = LoggerFactory.getLogger(PDVTokenizerServiceRetryWrapperImpl.class);
+        circuitBreaker.getEventPublisher().onStateTransition(event ->
+                logger.warn("PDV Tokenizer circuit breaker state changed: {}", event.getStateTransition()));
+        return circuitBreaker;
+    }
 }
@@ -1,16 +1,31 @@
 package it.gov.pagopa.receipt.pdf.datastore.service.impl;
 
+import com.azure.cosmos.CosmosException;
+import com.azure.cosmos.models.CosmosBulkOperationResponse;
+import com.azure.cosmos.models.FeedRange;
 import com.azure.cosmos.models.FeedResponse;
+import com.microsoft.azure.functions.HttpStatus;
 import it.gov.pagopa.receipt.pdf.datastore.client.ReceiptCosmosClient;
 import it.gov.pagopa.receipt.pdf.datastore.client.impl.ReceiptCosmosClientImpl;
 import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.Receipt;
 import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.ReceiptError;
 import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.enumeration.ReceiptStatusType;
 import it.gov.pagopa.receipt.pdf.datastore.exception.ReceiptNotFoundException;
+import it.gov.pagopa.receipt.pdf.datastore.model.ReceiptProjection;
 import it.gov.pagopa.receipt.pdf.datastore.service.ReceiptCosmosService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
 
 public class ReceiptCosmosServiceImpl implements ReceiptCosmosService {
 
+    private final Logger logger = LoggerFactory.getLogger(ReceiptCosmosServiceImpl.class);
+
     private final ReceiptCosmosClient receiptCosmosClient;
 
     public ReceiptCosmosServiceImpl() {
@@ -61,19 +76,20 @@ public class ReceiptCosmosServiceImpl implements ReceiptCosmosService {
      * {@inheritDoc}
      */
     @Override
-    public Iterable<FeedResponse<Receipt>> getNotNotifiedReceiptByStatus(
+    public Iterable<FeedResponse<ReceiptProjection>> getNotNotifiedReceiptByStatus(
             String continuationToken,
             Integer pageSize,
-            ReceiptStatusType statusType
+            ReceiptStatusType statusType,
+            FeedRange feedRange
     ) {
         if (statusType == null) {
             throw new IllegalArgumentException("at least one status must be specified");
         }
         if (statusType.equals(ReceiptStatusType.IO_ERROR_TO_NOTIFY)) {
-            return this.receiptCosmosClient.getIOErrorToNotifyReceiptDocuments(continuationToken, pageSize);
+            return this.receiptCosmosClient.getIOErrorToNotifyReceiptProjections(continuationToken, pageSize, feedRange);
         }
         if (statusType.equals(ReceiptStatusType.GENERATED)) {
-            return this.receiptCosmosClient.getGeneratedReceiptDocuments(continuationToken, pageSize);
+            return this.receiptCosmosClient.getGeneratedReceiptProjections(continuationToken, pageSize, feedRange);
         }
         String errMsg = String.format("Unexpected status for retrieving not notified receipt: %s", statusType);
         throw new IllegalStateException(errMsg);
@@ -83,21 +99,113 @@ public class ReceiptCosmosServiceImpl implements ReceiptCosmosService {
      * {@inheritDoc}
      */
     @Override
-    public Iterable<FeedResponse<Receipt>> getFailedReceiptByStatus(
+    public Iterable<FeedResponse<ReceiptProjection>> getFailedReceiptByStatus(
             String continuationToken,
             Integer pageSize,
-            ReceiptStatusType statusType
+            ReceiptStatusType statusType,
+            FeedRange feedRange
     ) {
         if (statusType == null) {
             throw new IllegalArgumentException("at least one status must be specified");
         }
         if (statusType.equals(ReceiptStatusType.FAILED) || statusType.equals(ReceiptStatusType.NOT_QUEUE_SENT)) {
-            return this.receiptCosmosClient.getFailedReceiptDocuments(continuationToken, pageSize);
+            return this.receiptCosmosClient.getFailedReceiptProjections(continuationToken, pageSize, statusType, feedRange);
         }
         if (statusType.equals(ReceiptStatusType.INSERTED)) {
-            return this.receiptCosmosClient.getInsertedReceiptDocuments(continuationToken, pageSize);
+            return this.receiptCosmosClient.getInsertedReceiptProjections(continuationToken, pageSize, feedRange);
         }
         String errMsg = String.format("Unexpected status for retrieving failed receipt: %s", statusType);
         throw new IllegalStateException(errMsg);
     }
-}
\ No newline at end of file
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long countNotNotifiedReceiptByStatus(ReceiptStatusType statusType) {
+        if (statusType == null) {
+            throw new IllegalArgumentException("at least one status must be specified");
+        }
+        if (statusType.equals(ReceiptStatusType.IO_ERROR_TO_NOTIFY)) {
+            return this.receiptCosmosClient.countIOErrorToNotifyReceiptDocuments();
+        }
+        if (statusType.equals(ReceiptStatusType.GENERATED)) {
+            return this.receiptCosmosClient.countGeneratedReceiptDocuments();
+        }
+        String errMsg = String.format("Unexpected status for counting not notified receipt: %s", statusType);
+        throw new IllegalStateException(errMsg);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long countFailedReceiptByStatus(ReceiptStatusType statusType) {
+        if (statusType == null) {
+            throw new IllegalArgumentException("at least one status must be specified");
+        }
+        if (statusType.equals(ReceiptStatusType.FAILED) || statusType.equals(ReceiptStatusType.NOT_QUEUE_SENT)) {
+            return this.receiptCosmosClient.countFailedReceiptDocuments();
+        }
+        if (statusType.equals(ReceiptStatusType.INSERTED)) {
+            return this.receiptCosmosClient.countInsertedReceiptDocuments();
+        }
+        String errMsg = String.format("Unexpected status for counting failed receipt: %s", statusType);
+        throw new IllegalStateException(errMsg);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<ReceiptProjection> resetReceiptsNotification(List<ReceiptProjection> receipts) {
+        List<ReceiptProjection> notReset = new ArrayList<>();
+        Set<ReceiptProjection> handled = Collections.newSetFromMap(new IdentityHashMap<>());
+        double requestCharge = 0;
+        try {
+            for (CosmosBulkOperationResponse<ReceiptProjection> response : this.receiptCosmosClient.resetReceiptsNotification(receipts)) {
+                ReceiptProjection receipt = response.getOperation().getContext();
+                int statusCode = getBulkStatusCode(response);
+                if (response.getResponse() != null) {
+                    requestCharge += response.getResponse().getRequestCharge();
+                }
+                handled.add(receipt);
+
+                if (statusCode != HttpStatus.OK.value()) {
+                    logger.warn("Reset of the notification of receipt {} failed with status {}",
+                            receipt.getEventId(), statusCode, response.getException());
+                    notReset.add(receipt);
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("Bulk reset of the notification of {} receipts failed", receipts.size(), e);
+        }
+
+        // the receipts without an outcome have not been reset
+        for (ReceiptProjection receipt : receipts) {
+            if (!handled.contains(receipt)) {
+                notReset.add(receipt);
+            }
+        }
+        logger.debug("Bulk reset of the notification of {} receipts consumed {} RU", receipts.size(), requestCharge);
+        return notReset;
+    }
+
+    private int getBulkStatusCode(CosmosBulkOperationResponse<ReceiptProjection> response) {
+        if (response.getResponse() != null) {
+            return response.getResponse().getStatusCode();
+        }
+        if (response.getException() instanceof CosmosException cosmosException) {
+            return cosmosException.getStatusCode();
+        }
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<FeedRange> getFeedRanges() {
+        return this.receiptCosmosClient.getFeedRanges();
+    }
+}
@@ -0,0 +1,163 @@
+package it.gov.pagopa.receipt.pdf.datastore.service.impl;
+
+import it.gov.pagopa.receipt.pdf.datastore.client.RecoveryJobClient;
+import it.gov.pagopa.receipt.pdf.datastore.client.impl.RecoveryJobClientImpl;
+import it.gov.pagopa.receipt.pdf.datastore.entity.cart.CartStatusType;
+import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.enumeration.ReceiptStatusType;
+import it.gov.pagopa.receipt.pdf.datastore.exception.RecoveryJobNotFoundException;
+import it.gov.pagopa.receipt.pdf.datastore.model.RecoveryJob;
+import it.gov.pagopa.receipt.pdf.datastore.model.enumeration.RecoveryJobStatus;
+import it.gov.pagopa.receipt.pdf.datastore.model.enumeration.RecoveryJobType;
+import it.gov.pagopa.receipt.pdf.datastore.service.CartReceiptCosmosService;
+import it.gov.pagopa.receipt.pdf.datastore.service.ReceiptCosmosService;
+import it.gov.pagopa.receipt.pdf.datastore.service.RecoveryJobService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.UUID;
+
+public class RecoveryJobServiceImpl implements RecoveryJobService {
+
+    private final Logger logger = LoggerFactory.getLogger(RecoveryJobServiceImpl.class);
+
+    private final RecoveryJobClient recoveryJobClient;
+    private final ReceiptCosmosService receiptCosmosService;
+    private final CartReceiptCosmosService cartReceiptCosmosService;
+
+    public RecoveryJobServiceImpl() {
+        this.recoveryJobClient = RecoveryJobClientImpl.getInstance();
+        this.receiptCosmosService = new ReceiptCosmosServiceImpl();
+        this.cartReceiptCosmosService = new CartReceiptCosmosServiceImpl();
+    }
+
+    RecoveryJobServiceImpl(
+            RecoveryJobClient recoveryJobClient,
+            ReceiptCosmosService receiptCosmosService,
+            CartReceiptCosmosService cartReceiptCosmosService
+    ) {
+        this.recoveryJobClient = recoveryJobClient;
+        this.receiptCosmosService = receiptCosmosService;
+        this.cartReceiptCosmosService = cartReceiptCosmosService;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public RecoveryJob createJob(RecoveryJobType type, String status) {
+        long now = System.currentTimeMillis();
+        RecoveryJob job = RecoveryJob.builder()
+                .id(UUID.randomUUID().toString())
+                .type(type)
+                .status(status)
+                .jobStatus(RecoveryJobStatus.QUEUED)
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+
+        this.recoveryJobClient.saveJob(job);
+        this.recoveryJobClient.sendJobMessage(job.getId());
+        return job;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public RecoveryJob getJob(String jobId) throws RecoveryJobNotFoundException {
+        RecoveryJob job = this.recoveryJobClient.getJob(jobId);
+        if (job.getStartedAt() == 0) {
+            return job;
+        }
+
+        long end = job.getJobStatus().isTerminal() ? job.getCompletedAt() : System.currentTimeMillis();
+        long elapsedMillis = Math.max(end - job.getStartedAt(), 1);
+        double throughput = job.getProcessedCounter() * 1000d / elapsedMillis;
+        job.setThroughput(throughput);
+
+        if (job.getJobStatus().isTerminal()) {
+            job.setEtaSeconds(0L);
+        } else if (job.getTotalCounter() != null && throughput > 0) {
+            long remaining = Math.max(job.getTotalCounter() - job.getProcessedCounter(), 0);
+            job.setEtaSeconds(Math.round(remaining / throughput));
+        }
+        return job;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public RecoveryJob startJob(String jobId) throws RecoveryJobNotFoundException {
+        RecoveryJob job = this.recoveryJobClient.getJob(jobId);
+        if (job.getJobStatus().isTerminal()) {
+            return job;
+        }
+
+        long now = System.currentTimeMillis();
+        if (job.getStartedAt() == 0) {
+            job.setStartedAt(now);
+        }
+        if (job.getTotalCounter() == null) {
+            job.setTotalCounter(countItemsToRecover(job));
+        }
+        job.setJobStatus(RecoveryJobStatus.RUNNING);
+        job.setUpdatedAt(now);
+        this.recoveryJobClient.saveJob(job);
+        return job;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateJobProgress(RecoveryJob job, int processedCount, int successCount, int errorCount, boolean interrupted) {
+        long now = System.currentTimeMillis();
+        job.setProcessedCounter(job.getProcessedCounter() + processedCount);
+        job.setSuccessCounter(job.getSuccessCounter() + successCount);
+        job.setErrorCounter(job.getErrorCounter() + errorCount);
+        job.setUpdatedAt(now);
+        if (!interrupted) {
+            job.setJobStatus(RecoveryJobStatus.COMPLETED);
+            job.setCompletedAt(now);
+        }
+        this.recoveryJobClient.saveJob(job);
+
+        if (interrupted) {
+            // the next worker invocation resumes the recovery from the last checkpoint
+            this.recoveryJobClient.sendJobMessage(job.getId());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void failJob(RecoveryJob job, String errorMessage) {
+        long now = System.currentTimeMillis();
+        job.setJobStatus(RecoveryJobStatus.FAILED);
+        job.setErrorMessage(errorMessage);
+        job.setUpdatedAt(now);
+        job.setCompletedAt(now);
+        this.recoveryJobClient.saveJob(job);
+    }
+
+    private Long countItemsToRecover(RecoveryJob job) {
+        try {
+            return switch (job.getType()) {
+                case FAILED_RECEIPT ->
+                        this.receiptCosmosService.countFailedReceiptByStatus(ReceiptStatusType.valueOf(job.getStatus()));
+                case NOT_NOTIFIED_RECEIPT ->
+                        this.receiptCosmosService.countNotNotifiedReceiptByStatus(ReceiptStatusType.valueOf(job.getStatus()));
+                case FAILED_CART ->
+                        this.cartReceiptCosmosService.countFailedCartReceiptByStatus(CartStatusType.valueOf(job.getStatus()));
+                case NOT_NOTIFIED_CART ->
+                        this.cartReceiptCosmosService.countNotNotifiedCartReceiptByStatus(CartStatusType.valueOf(job.getStatus()));
+            };
+        } catch (Exception e) {
+            // the job can run anyway, without the estimated time to completion
+            logger.warn("Unable to count the items of the recovery job {}", job.getId(), e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package it.gov.pagopa.receipt.pdf.datastore.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limiter that adapts its limit with an AIMD (additive increase, multiplicative decrease) policy.
+ * <p>
+ * Each successful call under the latency threshold increases the limit by 1/limit, so the limit grows by one
+ * when a whole window of calls succeeds. A throttled call or a call slower than the latency threshold multiplies
+ * the limit by the backoff ratio. Only one decrease is applied for the calls started before the previous decrease,
+ * so that a burst of throttled responses to the same congestion does not collapse the limit to the minimum.
+ * </p>
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private final Logger logger = LoggerFactory.getLogger(AdaptiveConcurrencyLimiter.class);
+
+    /**
+     * Outcome of a call executed under the limiter
+     */
+    public enum Outcome {
+        /**
+         * The call succeeded, its latency is used to adapt the limit
+         */
+        SUCCESS,
+        /**
+         * The call has been throttled by the remote service
+         */
+        THROTTLED,
+        /**
+         * The call failed for a reason not related to the remote service load
+         */
+        IGNORED
+    }
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long latencyThresholdNanos;
+    private final long maxWaitNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitReleased = lock.newCondition();
+
+    private double limit;
+    private int inFlight;
+    private boolean decreased;
+    private long lastDecreaseNanos;
+
+    /**
+     * Build a new limiter, the initial limit is the max limit
+     *
+     * @param name                   name used in the logs
+     * @param minLimit               the min concurrency limit
+     * @param maxLimit               the max concurrency limit
+     * @param backoffRatio           the ratio applied to the limit on throttled or slow calls
+     * @param latencyThresholdMillis the latency above which a successful call is considered a congestion signal
+     * @param maxWaitMillis          the max time waited for a permit
+     */
+    public AdaptiveConcurrencyLimiter(
+            String name,
+            int minLimit,
+            int maxLimit,
+            double backoffRatio,
+            long latencyThresholdMillis,
+            long maxWaitMillis
+    ) {
+        this.name = name;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.backoffRatio = backoffRatio;
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMillis);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.limit = this.maxLimit;
+    }
+
+    /**
+     * Acquire a permit, waiting at most the configured max wait time
+     *
+     * @return true if the permit has been acquired, false if the wait timed out or the thread was interrupted
+     */
+    public boolean tryAcquire() {
+        lock.lock();
+        try {
+            long remainingNanos = maxWaitNanos;
+            while (inFlight >= (int) limit) {
+                if (remainingNanos <= 0) {
+                    return false;
+                }
+                remainingNanos = permitReleased.awaitNanos(remainingNanos);
+            }
+            inFlight++;
+            return true;
+        } catch (InterruptedException e) {
+            logger.warn("This thread was interrupted, restoring the state");
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Release a permit previously acquired with {@link #tryAcquire()}
+     */
+    public void release() {
+        lock.lock();
+        try {
+            inFlight--;
+            permitReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adapt the limit with the outcome of a call
+     *
+     * @param startNanos the {@link System#nanoTime()} at the start of the call
+     * @param outcome    the outcome of the call
+     */
+    public void onSample(long startNanos, Outcome outcome) {
+        long now = System.nanoTime();
+        boolean congestion = outcome == Outcome.THROTTLED
+                || (outcome == Outcome.SUCCESS && now - startNanos > latencyThresholdNanos);
+
+        lock.lock();
+        try {
+            if (congestion) {
+                if (decreased && startNanos - lastDecreaseNanos <= 0) {
+                    // the call started before the last decrease, the congestion has already been handled
+                    return;
+                }
+                double previousLimit = limit;
+                limit = Math.max(minLimit, limit * backoffRatio);
+                decreased = true;
+                lastDecreaseNanos = now;
+                if ((int) previousLimit != (int) limit) {
+                    logger.info("{} concurrency limit decreased from {} to {} after {}",
+                            name, (int) previousLimit, (int) limit, outcome == Outcome.THROTTLED ? "throttling" : "slow response");
+                }
+            } else if (outcome == Outcome.SUCCESS) {
+                double previousLimit = limit;
+                limit = Math.min(maxLimit, limit + 1 / limit);
+                if ((int) previousLimit != (int) limit) {
+                    logger.debug("{} concurrency limit increased to {}", name, (int) limit);
+                    permitReleased.signalAll();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the current concurrency limit
+     */
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of permits currently acquired
+     */
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
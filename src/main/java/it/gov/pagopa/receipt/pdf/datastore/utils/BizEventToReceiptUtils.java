@@ -32,11 +32,8 @@ public class BizEventToReceiptUtils {
 
     private static final Logger logger = LoggerFactory.getLogger(BizEventToReceiptUtils.class);
 
-    private static final String CF_REGEX = "^[A-Z]{6}[0-9LMNPQRSTUV]{2}[ABCDEHLMPRST][0-9LMNPQRSTUV]{2}[A-Z][0-9LMNPQRSTUV]{3}[A-Z]$";
-    private static final Pattern PATTERN_PIVA = Pattern.compile("^\\d{11}$");
     private static final String REMITTANCE_INFORMATION_REGEX = "/TXT/(.*)";
 
-    private static final Pattern PATTERN_CF = Pattern.compile(CF_REGEX, Pattern.CASE_INSENSITIVE);
     private static final Pattern PATTERN_REMITTANCE_INFO = Pattern.compile(REMITTANCE_INFORMATION_REGEX);
 
     private static final Boolean ECOMMERCE_FILTER_ENABLED =
@@ -46,6 +43,10 @@ public class BizEventToReceiptUtils {
     private static final List<String> UNWANTED_REMITTANCE_INFO =
             Arrays.asList(System.getenv().getOrDefault("UNWANTED_REMITTANCE_INFO", "pagamento multibeneficiario,pagamento bpay").split(","));
     private static final List<String> ECOMMERCE = Arrays.asList("CHECKOUT", "CHECKOUT_CART");
+    private static final boolean FISCAL_CODE_CHECKSUM_ENABLED =
+            Boolean.parseBoolean(System.getenv().getOrDefault("FISCAL_CODE_CHECKSUM_ENABLED", "false"));
+    private static final ThreadLocal<FiscalCodeValidityMemo> FISCAL_CODES_VALIDITY =
+            ThreadLocal.withInitial(FiscalCodeValidityMemo::new);
 
 
     private BizEventToReceiptUtils() {
@@ -104,6 +105,7 @@ public class BizEventToReceiptUtils {
             return BizEventValidityCheck.builder()
                     .invalid(true)
                     .error("Biz event is null")
+                    .reason("null")
                     .build();
         }
 
@@ -111,6 +113,7 @@ public class BizEventToReceiptUtils {
             return BizEventValidityCheck.builder()
                     .invalid(true)
                     .error(String.format("Biz event is in invalid status %s", bizEvent.getEventStatus()))
+                    .reason("invalid_status")
                     .build();
         }
 
@@ -118,6 +121,7 @@ public class BizEventToReceiptUtils {
             return BizEventValidityCheck.builder()
                     .invalid(true)
                     .error("Biz event is in invalid because debtor's and payer's identifiers are missing or not valid")
+                    .reason("invalid_fiscal_code")
                     .build();
         }
 
@@ -129,6 +133,7 @@ public class BizEventToReceiptUtils {
             return BizEventValidityCheck.builder()
                     .invalid(true)
                     .error("Biz event is in invalid because it is from e-commerce and e-commerce filter is enabled")
+                    .reason("ecommerce")
                     .build();
         }
 
@@ -136,6 +141,7 @@ public class BizEventToReceiptUtils {
             return BizEventValidityCheck.builder()
                     .invalid(true)
                     .error("Biz event is in invalid because contain either an invalid amount value or it is a legacy cart element")
+                    .reason("legacy_cart")
                     .build();
         }
 
@@ -150,42 +156,59 @@ public class BizEventToReceiptUtils {
             return BizEventValidityCheck.builder()
                     .invalid(true)
                     .error("Biz event is in invalid because it represents a cart but has null cart identifier")
+                    .reason("cart_without_id")
                     .build();
         }
 
-        return new BizEventValidityCheck(false, null);
+        return new BizEventValidityCheck(false, null, null);
     }
 
+    /**
+     * @param invalid true if the biz-event has to be discarded
+     * @param error   the description of the failed check
+     * @param reason  the short name of the failed check, used as metric tag
+     */
     @Builder
-    public record BizEventValidityCheck(boolean invalid, String error) {
+    public record BizEventValidityCheck(boolean invalid, String error, String reason) {
 
     }
     private static boolean hasAtLeastAValidFiscalCode(BizEvent bizEvent) {
-        if (isBizEventDebtorFiscalCodeValid(bizEvent.getDebtor())) {
+        if (isBizEventDebtorFiscalCodeValid(bizEvent)) {
             return true;
         }
         if (isValidChannelOrigin(bizEvent)) {
-            if (isBizEventUserFiscalCodeValid(bizEvent.getTransactionDetails())) {
+            if (isBizEventUserFiscalCodeValid(bizEvent)) {
                 return true;
             }
 
-            return isBizEventPayerFiscalCodeValid(bizEvent.getPayer());
+            return isBizEventPayerFiscalCodeValid(bizEvent);
         }
         return false;
     }
 
-    public static boolean isBizEventDebtorFiscalCodeValid(Debtor debtor) {
-        return debtor != null && isValidFiscalCode(debtor.getEntityUniqueIdentifierValue());
+    public static boolean isBizEventDebtorFiscalCodeValid(BizEvent bizEvent) {
+        Debtor debtor = bizEvent.getDebtor();
+        return debtor != null && isMemoizedFiscalCodeValid(debtor.getEntityUniqueIdentifierValue());
     }
 
-    public static boolean isBizEventPayerFiscalCodeValid(Payer payer) {
-        return payer != null && isValidFiscalCode(payer.getEntityUniqueIdentifierValue());
+    public static boolean isBizEventPayerFiscalCodeValid(BizEvent bizEvent) {
+        Payer payer = bizEvent.getPayer();
+        return payer != null && isMemoizedFiscalCodeValid(payer.getEntityUniqueIdentifierValue());
     }
 
-    public static boolean isBizEventUserFiscalCodeValid(TransactionDetails transactionDetails) {
+    public static boolean isBizEventUserFiscalCodeValid(BizEvent bizEvent) {
+        TransactionDetails transactionDetails = bizEvent.getTransactionDetails();
         return transactionDetails != null
                 && transactionDetails.getUser() != null
-                && isValidFiscalCode(transactionDetails.getUser().getFiscalCode());
+                && isMemoizedFiscalCodeValid(transactionDetails.getUser().getFiscalCode());
+    }
+
+    /**
+     * Validates one of the fiscal codes of the biz-event, the result is kept in a small per-thread memo so that the
+     * same identifier of the event is not validated again by the following checks
+     */
+    private static boolean isMemoizedFiscalCodeValid(String fiscalCode) {
+        return fiscalCode != null && FISCAL_CODES_VALIDITY.get().isValid(fiscalCode);
     }
 
     public static Integer getTotalNotice(BizEvent bizEvent) {
@@ -295,11 +318,7 @@ public class BizEventToReceiptUtils {
     }
 
     public static boolean isValidFiscalCode(String fiscalCode) {
-        if (fiscalCode != null && !fiscalCode.isEmpty()) {
-            return PATTERN_CF.matcher(fiscalCode).matches() || PATTERN_PIVA.matcher(fiscalCode).matches();
-        }
-
-        return false;
+        return FiscalCodeValidator.isValid(fiscalCode, FISCAL_CODE_CHECKSUM_ENABLED);
     }
 
     /**
@@ -347,4 +366,25 @@ public class BizEventToReceiptUtils {
 
         return isAuthenticated;
     }
+
+    /**
+     * Direct mapped memo of the last validated fiscal codes, matched by reference: the fiscal codes of an event are
+     * the same string instances in all the checks, so they are found without hashing or comparing their content
+     * and without allocating anything
+     */
+    private static class FiscalCodeValidityMemo {
+        private static final int SLOTS = 8;
+
+        private final String[] fiscalCodes = new String[SLOTS];
+        private final boolean[] validity = new boolean[SLOTS];
+
+        private boolean isValid(String fiscalCode) {
+            int slot = System.identityHashCode(fiscalCode) & (SLOTS - 1);
+            if (this.fiscalCodes[slot] != fiscalCode) {
+                this.validity[slot] = isValidFiscalCode(fiscalCode);
+                this.fiscalCodes[slot] = fiscalCode;
+            }
+            return this.validity[slot];
+        }
+    }
 }
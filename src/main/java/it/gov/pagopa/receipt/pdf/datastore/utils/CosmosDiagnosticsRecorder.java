@@ -0,0 +1,165 @@
+package it.gov.pagopa.receipt.pdf.datastore.utils;
+
+import com.azure.core.util.Context;
+import com.azure.cosmos.CosmosClientBuilder;
+import com.azure.cosmos.CosmosDiagnosticsContext;
+import com.azure.cosmos.CosmosDiagnosticsHandler;
+import com.azure.cosmos.CosmosDiagnosticsThresholds;
+import com.azure.cosmos.models.CosmosClientTelemetryConfig;
+import it.gov.pagopa.receipt.pdf.datastore.model.CosmosOperationDiagnostics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * Diagnostics handler of the Cosmos clients that keeps the last operations exceeding the diagnostics thresholds
+ * (latency, request charge or failure) in a fixed size ring buffer, so that the latency spikes can be explained
+ * from the diagnostics of the requests without reproducing them.
+ * <p>
+ * The thresholds are configured with COSMOS_DIAGNOSTICS_POINT_LATENCY_THRESHOLD_MILLIS,
+ * COSMOS_DIAGNOSTICS_NON_POINT_LATENCY_THRESHOLD_MILLIS and COSMOS_DIAGNOSTICS_REQUEST_CHARGE_THRESHOLD, the
+ * fraction of the operations evaluated with COSMOS_DIAGNOSTICS_SAMPLE_RATE.
+ * </p>
+ */
+public class CosmosDiagnosticsRecorder implements CosmosDiagnosticsHandler {
+
+    private final Logger logger = LoggerFactory.getLogger(CosmosDiagnosticsRecorder.class);
+
+    private final boolean enabled;
+    private final Duration pointLatencyThreshold;
+    private final Duration nonPointLatencyThreshold;
+    private final float requestChargeThreshold;
+    private final double sampleRate;
+    private final LongSupplier clock;
+
+    private final CosmosOperationDiagnostics[] buffer;
+    private int next;
+    private int size;
+
+    private CosmosDiagnosticsRecorder() {
+        this(Boolean.parseBoolean(System.getenv().getOrDefault("COSMOS_DIAGNOSTICS_ENABLED", "true")),
+                Integer.parseInt(System.getenv().getOrDefault("COSMOS_DIAGNOSTICS_BUFFER_SIZE", "100")),
+                Duration.ofMillis(Long.parseLong(System.getenv().getOrDefault("COSMOS_DIAGNOSTICS_POINT_LATENCY_THRESHOLD_MILLIS", "1000"))),
+                Duration.ofMillis(Long.parseLong(System.getenv().getOrDefault("COSMOS_DIAGNOSTICS_NON_POINT_LATENCY_THRESHOLD_MILLIS", "3000"))),
+                Float.parseFloat(System.getenv().getOrDefault("COSMOS_DIAGNOSTICS_REQUEST_CHARGE_THRESHOLD", "1000")),
+                Double.parseDouble(System.getenv().getOrDefault("COSMOS_DIAGNOSTICS_SAMPLE_RATE", "1")),
+                System::currentTimeMillis);
+    }
+
+    /**
+     * Build a new recorder
+     *
+     * @param enabled                  false to leave the Cosmos clients without the diagnostics handler
+     * @param bufferSize               the number of operations kept, the oldest ones are overwritten
+     * @param pointLatencyThreshold    the latency threshold of the point operations
+     * @param nonPointLatencyThreshold the latency threshold of the queries and of the other non point operations
+     * @param requestChargeThreshold   the request charge threshold
+     * @param sampleRate               the fraction of the operations whose diagnostics are evaluated, from 0 to 1
+     * @param clock                    the clock, in milliseconds
+     */
+    public CosmosDiagnosticsRecorder(
+            boolean enabled,
+            int bufferSize,
+            Duration pointLatencyThreshold,
+            Duration nonPointLatencyThreshold,
+            float requestChargeThreshold,
+            double sampleRate,
+            LongSupplier clock
+    ) {
+        this.enabled = enabled && bufferSize > 0;
+        this.pointLatencyThreshold = pointLatencyThreshold;
+        this.nonPointLatencyThreshold = nonPointLatencyThreshold;
+        this.requestChargeThreshold = requestChargeThreshold;
+        this.sampleRate = sampleRate;
+        this.clock = clock;
+        this.buffer = new CosmosOperationDiagnostics[Math.max(bufferSize, 0)];
+    }
+
+    public static CosmosDiagnosticsRecorder getInstance() {
+        return SingletonHelper.INSTANCE;
+    }
+
+    /**
+     * Bill Pugh singleton holder: the JVM guarantees that the class is loaded
+     * (and therefore INSTANCE initialized) lazily and in a thread-safe way.
+     */
+    private static class SingletonHelper {
+        private static final CosmosDiagnosticsRecorder INSTANCE = new CosmosDiagnosticsRecorder();
+    }
+
+    /**
+     * Configure the diagnostics thresholds and this handler on the builder of a Cosmos client
+     *
+     * @param builder the builder of the Cosmos client
+     * @return the same builder
+     */
+    public CosmosClientBuilder configure(CosmosClientBuilder builder) {
+        if (!this.enabled) {
+            return builder;
+        }
+        CosmosDiagnosticsThresholds thresholds = new CosmosDiagnosticsThresholds()
+                .setPointOperationLatencyThreshold(this.pointLatencyThreshold)
+                .setNonPointOperationLatencyThreshold(this.nonPointLatencyThreshold)
+                .setRequestChargeThreshold(this.requestChargeThreshold);
+        return builder.clientTelemetryConfig(new CosmosClientTelemetryConfig()
+                .diagnosticsThresholds(thresholds)
+                .diagnosticsHandler(this)
+                .sampleDiagnostics(this.sampleRate));
+    }
+
+    /**
+     * Record the operation if it exceeded the diagnostics thresholds
+     *
+     * @param diagnosticsContext the diagnostics of the completed operation
+     * @param traceContext       the trace context of the operation
+     */
+    @Override
+    public void handleDiagnostics(CosmosDiagnosticsContext diagnosticsContext, Context traceContext) {
+        if (diagnosticsContext == null || !diagnosticsContext.isThresholdViolated()) {
+            return;
+        }
+        CosmosOperationDiagnostics operation = CosmosOperationDiagnostics.builder()
+                .capturedAt(this.clock.getAsLong())
+                .databaseName(diagnosticsContext.getDatabaseName())
+                .containerName(diagnosticsContext.getContainerName())
+                .operationType(diagnosticsContext.getOperationType())
+                .resourceType(diagnosticsContext.getResourceType())
+                .statusCode(diagnosticsContext.getStatusCode())
+                .subStatusCode(diagnosticsContext.getSubStatusCode())
+                .durationMillis(diagnosticsContext.getDuration() != null ? diagnosticsContext.getDuration().toMillis() : 0)
+                .requestCharge(diagnosticsContext.getTotalRequestCharge())
+                .retryCount(diagnosticsContext.getRetryCount())
+                .contactedRegions(diagnosticsContext.getContactedRegionNames() != null
+                        ? new ArrayList<>(diagnosticsContext.getContactedRegionNames()) : List.of())
+                .diagnostics(diagnosticsContext.toJson())
+                .build();
+        logger.debug("Cosmos {} on {} exceeded the diagnostics thresholds: {} ms, {} RU, {} retries",
+                operation.getOperationType(), operation.getContainerName(), operation.getDurationMillis(),
+                operation.getRequestCharge(), operation.getRetryCount());
+        add(operation);
+    }
+
+    /**
+     * @return the recorded operations, from the most recent one
+     */
+    public synchronized List<CosmosOperationDiagnostics> getOperations() {
+        List<CosmosOperationDiagnostics> operations = new ArrayList<>(this.size);
+        for (int i = 1; i <= this.size; i++) {
+            operations.add(this.buffer[Math.floorMod(this.next - i, this.buffer.length)]);
+        }
+        return operations;
+    }
+
+    private synchronized void add(CosmosOperationDiagnostics operation) {
+        if (this.buffer.length == 0) {
+            return;
+        }
+        this.buffer[this.next] = operation;
+        this.next = (this.next + 1) % this.buffer.length;
+        this.size = Math.min(this.size + 1, this.buffer.length);
+    }
+}
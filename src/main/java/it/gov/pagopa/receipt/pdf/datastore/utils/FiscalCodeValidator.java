@@ -0,0 +1,123 @@
+package it.gov.pagopa.receipt.pdf.datastore.utils;
+
+/**
+ * Allocation free validator of the Italian fiscal identifiers: the codice fiscale of the natural persons
+ * (16 chars, case-insensitive) and the partita IVA of the legal persons (11 digits).
+ * <p>
+ * The format checks are the same of the previous regular expressions, the check characters are verified only
+ * if requested.
+ * </p>
+ */
+public class FiscalCodeValidator {
+
+    private static final int CODICE_FISCALE_LENGTH = 16;
+    private static final int PARTITA_IVA_LENGTH = 11;
+
+    // chars replacing the digits of the omocodic codici fiscali, the index is the replaced digit
+    private static final String OMOCODIA_CHARS = "LMNPQRSTUV";
+    private static final String MONTH_CHARS = "ABCDEHLMPRST";
+    // check values of the chars in odd position, for A-Z and for 0-9 (that have the same values of A-J)
+    private static final int[] ODD_CHECK_VALUES = {
+            1, 0, 5, 7, 9, 13, 15, 17, 19, 21, 2, 4, 18, 20, 11, 3, 6, 8, 12, 14, 16, 10, 22, 25, 24, 23
+    };
+
+    private FiscalCodeValidator() {
+    }
+
+    /**
+     * Checks if the identifier is a valid codice fiscale or partita IVA
+     *
+     * @param fiscalCode     the identifier to validate
+     * @param verifyChecksum if true also the check character (or digit) is verified
+     * @return true if the identifier is valid
+     */
+    public static boolean isValid(String fiscalCode, boolean verifyChecksum) {
+        if (fiscalCode == null) {
+            return false;
+        }
+        return switch (fiscalCode.length()) {
+            case CODICE_FISCALE_LENGTH -> isValidCodiceFiscale(fiscalCode, verifyChecksum);
+            case PARTITA_IVA_LENGTH -> isValidPartitaIva(fiscalCode, verifyChecksum);
+            default -> false;
+        };
+    }
+
+    /**
+     * Checks if the identifier is a valid codice fiscale, pattern
+     * {@code [A-Z]{6}[0-9LMNPQRSTUV]{2}[ABCDEHLMPRST][0-9LMNPQRSTUV]{2}[A-Z][0-9LMNPQRSTUV]{3}[A-Z]} case-insensitive
+     *
+     * @param fiscalCode     the identifier to validate
+     * @param verifyChecksum if true also the check character is verified
+     * @return true if the identifier is valid
+     */
+    public static boolean isValidCodiceFiscale(String fiscalCode, boolean verifyChecksum) {
+        if (fiscalCode == null || fiscalCode.length() != CODICE_FISCALE_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < CODICE_FISCALE_LENGTH; i++) {
+            char c = toUpperCase(fiscalCode.charAt(i));
+            boolean valid = switch (i) {
+                // surname, name, birth place letter and check character
+                case 0, 1, 2, 3, 4, 5, 11, 15 -> isLetter(c);
+                case 8 -> MONTH_CHARS.indexOf(c) >= 0;
+                // year, day and birth place number, whose digits can be replaced in the omocodic codici fiscali
+                default -> isDigit(c) || OMOCODIA_CHARS.indexOf(c) >= 0;
+            };
+            if (!valid) {
+                return false;
+            }
+        }
+        return !verifyChecksum || toUpperCase(fiscalCode.charAt(15)) == codiceFiscaleCheckChar(fiscalCode);
+    }
+
+    /**
+     * Checks if the identifier is a valid partita IVA, pattern {@code \d{11}}
+     *
+     * @param fiscalCode     the identifier to validate
+     * @param verifyChecksum if true also the check digit is verified
+     * @return true if the identifier is valid
+     */
+    public static boolean isValidPartitaIva(String fiscalCode, boolean verifyChecksum) {
+        if (fiscalCode == null || fiscalCode.length() != PARTITA_IVA_LENGTH) {
+            return false;
+        }
+        int sum = 0;
+        for (int i = 0; i < PARTITA_IVA_LENGTH; i++) {
+            char c = fiscalCode.charAt(i);
+            if (!isDigit(c)) {
+                return false;
+            }
+            if (i < PARTITA_IVA_LENGTH - 1) {
+                int digit = c - '0';
+                if (i % 2 == 1) {
+                    digit = digit * 2 > 9 ? digit * 2 - 9 : digit * 2;
+                }
+                sum += digit;
+            }
+        }
+        return !verifyChecksum || (10 - sum % 10) % 10 == fiscalCode.charAt(PARTITA_IVA_LENGTH - 1) - '0';
+    }
+
+    private static char codiceFiscaleCheckChar(String fiscalCode) {
+        int sum = 0;
+        for (int i = 0; i < CODICE_FISCALE_LENGTH - 1; i++) {
+            char c = toUpperCase(fiscalCode.charAt(i));
+            int value = isDigit(c) ? c - '0' : c - 'A';
+            // the positions are counted from 1, so the even indexes are the odd positions
+            sum += i % 2 == 0 ? ODD_CHECK_VALUES[value] : value;
+        }
+        return (char) ('A' + sum % 26);
+    }
+
+    private static char toUpperCase(char c) {
+        return c >= 'a' && c <= 'z' ? (char) (c - ('a' - 'A')) : c;
+    }
+
+    private static boolean isLetter(char c) {
+        return c >= 'A' && c <= 'Z';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
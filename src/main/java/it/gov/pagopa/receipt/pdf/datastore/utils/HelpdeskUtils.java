@@ -7,6 +7,7 @@ import it.gov.pagopa.receipt.pdf.datastore.entity.cart.CartStatusType;
 import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.enumeration.ReceiptStatusType;
 import it.gov.pagopa.receipt.pdf.datastore.exception.InvalidParameterException;
 import it.gov.pagopa.receipt.pdf.datastore.model.ProblemJson;
+import it.gov.pagopa.receipt.pdf.datastore.model.RecoveryJob;
 
 import java.util.Optional;
 
@@ -27,6 +28,22 @@ public class HelpdeskUtils {
                 .build();
     }
 
+    /**
+     * Build the response of a massive recovery run asynchronously: {@link HttpStatus#ACCEPTED} with the queued job
+     * and its status endpoint as location
+     *
+     * @param request the http request
+     * @param job     the queued recovery job
+     * @return the http response
+     */
+    public static HttpResponseMessage buildRecoveryJobResponse(HttpRequestMessage<Optional<String>> request, RecoveryJob job) {
+        return request
+                .createResponseBuilder(HttpStatus.ACCEPTED)
+                .header("Location", "/jobs/" + job.getId())
+                .body(job)
+                .build();
+    }
+
     public static CartStatusType validateCartStatusParam(String statusParam) throws InvalidParameterException {
         if (statusParam == null) {
             throw new InvalidParameterException("Please pass a status to recover");
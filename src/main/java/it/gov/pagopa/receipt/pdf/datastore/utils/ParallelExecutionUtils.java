@@ -0,0 +1,109 @@
+package it.gov.pagopa.receipt.pdf.datastore.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Utility methods to run independent tasks on a bounded pool of threads
+ */
+public class ParallelExecutionUtils {
+
+    private ParallelExecutionUtils() {
+    }
+
+    /**
+     * Build a fixed size pool of daemon threads, so that the pool never prevents the host shutdown.
+     *
+     * @param threadNamePrefix prefix of the thread names, useful to recognize them in logs and thread dumps
+     * @param parallelism      max number of tasks executed concurrently
+     * @return the executor or null if the parallelism is lower than 2 (the tasks will be executed on the caller thread)
+     */
+    public static ExecutorService newBoundedExecutor(String threadNamePrefix, int parallelism) {
+        if (parallelism < 2) {
+            return null;
+        }
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, String.format("%s-%d", threadNamePrefix, counter.incrementAndGet()));
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newFixedThreadPool(parallelism, threadFactory);
+    }
+
+    /**
+     * Execute all the provided tasks on the executor and wait for their completion.
+     * <p>
+     * If the executor is null or there is only one task, the tasks are executed sequentially on the caller thread.
+     * If one of the tasks fails, the method waits for the other tasks to complete and then re-throws the first error,
+     * unwrapped from the {@link ExecutionException}, so that the caller sees the same exception of a sequential run.
+     * </p>
+     *
+     * @param executor the executor, may be null
+     * @param tasks    the tasks to execute
+     * @param <T>      the type of the task result
+     * @return the task results, in the same order of the provided tasks
+     */
+    public static <T> List<T> invokeAll(ExecutorService executor, List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<>(tasks.size());
+        if (executor == null || tasks.size() < 2) {
+            for (Callable<T> task : tasks) {
+                results.add(callUnchecked(task));
+            }
+            return results;
+        }
+
+        List<Future<T>> futures = new ArrayList<>(tasks.size());
+        for (Callable<T> task : tasks) {
+            futures.add(executor.submit(task));
+        }
+
+        RuntimeException firstError = null;
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(f -> f.cancel(true));
+                throw new IllegalStateException("Interrupted while waiting for the parallel tasks completion", e);
+            } catch (ExecutionException | CancellationException e) {
+                if (firstError == null) {
+                    firstError = toRuntimeException(e instanceof ExecutionException ? e.getCause() : e);
+                }
+                results.add(null);
+            }
+        }
+        if (firstError != null) {
+            throw firstError;
+        }
+        return results;
+    }
+
+    private static <T> T callUnchecked(Callable<T> task) {
+        try {
+            return task.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static RuntimeException toRuntimeException(Throwable throwable) {
+        if (throwable instanceof RuntimeException runtimeException) {
+            return runtimeException;
+        }
+        if (throwable instanceof Error error) {
+            throw error;
+        }
+        return new IllegalStateException(throwable);
+    }
+}
@@ -0,0 +1,251 @@
+package it.gov.pagopa.receipt.pdf.datastore.utils;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.enumeration.ReasonErrorCode;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metrics of the biz-event to receipt pipeline, registered on the Micrometer global registry.
+ * <p>
+ * The OpenTelemetry java agent attached to the host bridges the global registry, so that the metrics are exported
+ * with OTLP together with the traces, without changes to the code. Without the agent the metrics are only kept
+ * in memory.
+ * </p>
+ */
+public class PipelineMetrics {
+
+    private static final String PREFIX = "receipt.datastore.";
+    private static final Duration MAX_EXPECTED_STAGE_DURATION = Duration.ofMinutes(2);
+    private static final Duration MAX_EXPECTED_LAG = Duration.ofHours(1);
+
+    private static final MeterRegistry REGISTRY = Metrics.globalRegistry;
+
+    /**
+     * Stages of the processing of a batch of biz-events
+     */
+    public enum Stage {
+        VALIDATION("validation"),
+        DEDUP("dedup"),
+        TOKENIZATION("tokenization"),
+        PROCESSING("processing"),
+        COSMOS_WRITE("cosmos_write"),
+        QUEUE_SEND("queue_send");
+
+        private final String tag;
+
+        Stage(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private PipelineMetrics() {
+    }
+
+    /**
+     * Record the duration of a stage of the processing of a batch
+     *
+     * @param stage      the stage
+     * @param startNanos the start of the stage, from {@link System#nanoTime()}
+     */
+    public static void recordStage(Stage stage, long startNanos) {
+        Timer.builder(PREFIX + "stage.duration")
+                .description("Duration of a stage of the processing of a batch of biz-events")
+                .tag("stage", stage.tag)
+                .publishPercentileHistogram()
+                .maximumExpectedValue(MAX_EXPECTED_STAGE_DURATION)
+                .register(REGISTRY)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Record the biz-events received by the change feed trigger and their lag, from their creation to now
+     *
+     * @param timestamp the creation timestamp of the biz-event in milliseconds, ignored if null
+     */
+    public static void recordChangeFeedLag(Long timestamp) {
+        Counter.builder(PREFIX + "biz_events.received")
+                .description("Biz-events received by the change feed trigger")
+                .register(REGISTRY)
+                .increment();
+        if (timestamp != null) {
+            Timer.builder(PREFIX + "change_feed.lag")
+                    .description("Time from the creation of a biz-event to its processing")
+                    .publishPercentileHistogram()
+                    .maximumExpectedValue(MAX_EXPECTED_LAG)
+                    .register(REGISTRY)
+                    .record(Math.max(0, System.currentTimeMillis() - timestamp), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Count a biz-event discarded by the pipeline
+     *
+     * @param reason the reason of the discard (e.g. the check failed by the biz-event or already_processed)
+     */
+    public static void countDiscarded(String reason) {
+        countDiscarded(reason, 1);
+    }
+
+    /**
+     * Count the biz-events discarded by the pipeline for the same reason
+     *
+     * @param reason the reason of the discard
+     * @param count  the number of biz-events discarded
+     */
+    public static void countDiscarded(String reason, int count) {
+        if (count <= 0) {
+            return;
+        }
+        Counter.builder(PREFIX + "biz_events.discarded")
+                .description("Biz-events discarded by the pipeline")
+                .tag("reason", reason)
+                .register(REGISTRY)
+                .increment(count);
+    }
+
+    /**
+     * Count a receipt or cart that failed, by the code of its reason error
+     *
+     * @param type the type of document, receipt or cart
+     * @param code the code of the reason error, a {@link ReasonErrorCode} or the status code of the failed call
+     */
+    public static void countError(String type, int code) {
+        Counter.builder(PREFIX + "errors")
+                .description("Receipts and carts failed, by reason error code")
+                .tag("type", type)
+                .tag("code", String.valueOf(code))
+                .tag("reason", getReason(code))
+                .register(REGISTRY)
+                .increment();
+    }
+
+    /**
+     * Record the request units consumed by a Cosmos operation
+     *
+     * @param operation     the operation
+     * @param requestCharge the request charge of the operation response
+     */
+    public static void recordRequestCharge(String operation, double requestCharge) {
+        DistributionSummary.builder(PREFIX + "cosmos.request_charge")
+                .description("Request units consumed by the Cosmos operations")
+                .baseUnit("RU")
+                .tag("operation", operation)
+                .register(REGISTRY)
+                .record(requestCharge);
+    }
+
+    /**
+     * Count the outcome of the already processed check of a batch of biz-events
+     *
+     * @param hits   the biz-events found already processed
+     * @param misses the biz-events not yet processed
+     */
+    public static void countDedup(int hits, int misses) {
+        Counter.builder(PREFIX + "dedup.lookups")
+                .description("Biz-events checked by the already processed check, by result")
+                .tag("result", "hit")
+                .register(REGISTRY)
+                .increment(hits);
+        Counter.builder(PREFIX + "dedup.lookups")
+                .description("Biz-events checked by the already processed check, by result")
+                .tag("result", "miss")
+                .register(REGISTRY)
+                .increment(misses);
+    }
+
+    /**
+     * Register the gauges of the concurrency limiter of the PDV Tokenizer calls
+     *
+     * @param limiter the limiter shared by the host
+     * @return the provided limiter
+     */
+    public static AdaptiveConcurrencyLimiter registerTokenizerLimiter(AdaptiveConcurrencyLimiter limiter) {
+        Gauge.builder(PREFIX + "pdv_tokenizer.limiter.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Current concurrency limit of the PDV Tokenizer calls")
+                .strongReference(true)
+                .register(REGISTRY);
+        Gauge.builder(PREFIX + "pdv_tokenizer.limiter.in_flight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+                .description("PDV Tokenizer calls in flight")
+                .strongReference(true)
+                .register(REGISTRY);
+        return limiter;
+    }
+
+    /**
+     * Register the gauge of the state of the circuit breaker of the PDV Tokenizer calls, one time series for each
+     * state with value 1 for the current one and 0 for the others
+     *
+     * @param circuitBreaker the circuit breaker shared by the host
+     * @return the provided circuit breaker
+     */
+    public static CircuitBreaker registerTokenizerCircuitBreaker(CircuitBreaker circuitBreaker) {
+        for (CircuitBreaker.State state : CircuitBreaker.State.values()) {
+            Gauge.builder(PREFIX + "pdv_tokenizer.circuit_breaker.state", circuitBreaker,
+                            breaker -> breaker.getState() == state ? 1 : 0)
+                    .description("State of the circuit breaker of the PDV Tokenizer calls")
+                    .tag("state", state.name().toLowerCase())
+                    .strongReference(true)
+                    .register(REGISTRY);
+        }
+        return circuitBreaker;
+    }
+
+    /**
+     * Register the counters and the hit ratio of the cache of the PDV tokens
+     *
+     * @param tokenCache the cache shared by the host
+     * @return the provided cache
+     */
+    public static TokenCache registerTokenCache(TokenCache tokenCache) {
+        FunctionCounter.builder(PREFIX + "pdv_tokenizer.cache.lookups", tokenCache, TokenCache::getHitCount)
+                .description("Lookups of the PDV token cache, by result")
+                .tag("result", "hit")
+                .register(REGISTRY);
+        FunctionCounter.builder(PREFIX + "pdv_tokenizer.cache.lookups", tokenCache, TokenCache::getMissCount)
+                .description("Lookups of the PDV token cache, by result")
+                .tag("result", "miss")
+                .register(REGISTRY);
+        Gauge.builder(PREFIX + "pdv_tokenizer.cache.hit_ratio", tokenCache, TokenCache::getHitRatio)
+                .description("Ratio between the hits and the lookups of the PDV token cache")
+                .strongReference(true)
+                .register(REGISTRY);
+        return tokenCache;
+    }
+
+    /**
+     * Register the gauges of the memory and the estimated false positive rate of the processed biz-events filter
+     *
+     * @param filter the filter shared by the host
+     * @return the provided filter
+     */
+    public static ProcessedEventFilter registerProcessedEventFilter(ProcessedEventFilter filter) {
+        Gauge.builder(PREFIX + "dedup.filter.memory", filter, ProcessedEventFilter::getMemoryBytes)
+                .description("Memory allocated by the processed biz-events filter")
+                .baseUnit("bytes")
+                .strongReference(true)
+                .register(REGISTRY);
+        Gauge.builder(PREFIX + "dedup.filter.false_positive_rate", filter, ProcessedEventFilter::getFalsePositiveRate)
+                .description("False positive rate of the processed biz-events filter, estimated from its bits set")
+                .strongReference(true)
+                .register(REGISTRY);
+        return filter;
+    }
+
+    private static String getReason(int code) {
+        for (ReasonErrorCode reasonErrorCode : ReasonErrorCode.values()) {
+            if (reasonErrorCode.getCode() == code) {
+                return reasonErrorCode.name();
+            }
+        }
+        return "HTTP_STATUS";
+    }
+}
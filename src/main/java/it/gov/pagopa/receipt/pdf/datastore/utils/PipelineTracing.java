@@ -0,0 +1,103 @@
+package it.gov.pagopa.receipt.pdf.datastore.utils;
+
+import com.azure.core.util.Context;
+import com.azure.core.util.tracing.SpanKind;
+import com.azure.core.util.tracing.StartSpanOptions;
+import com.azure.core.util.tracing.Tracer;
+import com.azure.core.util.tracing.TracerProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Spans of the calls to Cosmos, PDV Tokenizer and the queues, with the W3C trace context propagation.
+ * <p>
+ * The spans are created with the azure-core tracing API, that is implemented by the OpenTelemetry java agent
+ * attached to the host: the spans are children of the current span and are exported with OTLP. Without the agent
+ * the tracer is a no-op and no trace context is propagated.
+ * </p>
+ */
+public class PipelineTracing {
+
+    public static final String TRACEPARENT = "traceparent";
+
+    private static final Logger logger = LoggerFactory.getLogger(PipelineTracing.class);
+    private static final Tracer TRACER =
+            TracerProvider.getDefaultProvider().createTracer("pagopa-receipt-pdf-datastore", null, null, null);
+
+    private PipelineTracing() {
+    }
+
+    /**
+     * Call traced by a span
+     */
+    @FunctionalInterface
+    public interface TracedCall<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    /**
+     * Execute the call in a client span, current for the whole call so that the spans of the SDKs are its children
+     *
+     * @param spanName the name of the span
+     * @param call     the call
+     * @return the result of the call
+     * @throws E if the call fails, the error is recorded on the span
+     */
+    public static <T, E extends Exception> T trace(String spanName, TracedCall<T, E> call) throws E {
+        Context span = startSpan(spanName, SpanKind.CLIENT);
+        AutoCloseable scope = TRACER.makeSpanCurrent(span);
+        Throwable error = null;
+        try {
+            return call.call();
+        } catch (Exception e) {
+            error = e;
+            throw e;
+        } finally {
+            close(scope);
+            endSpan(span, error);
+        }
+    }
+
+    /**
+     * Start a span, child of the current one
+     *
+     * @param spanName the name of the span
+     * @param kind     the kind of the span, {@link SpanKind#PRODUCER} for the queue messages
+     * @return the context of the span
+     */
+    public static Context startSpan(String spanName, SpanKind kind) {
+        return TRACER.start(spanName, new StartSpanOptions(kind), Context.NONE);
+    }
+
+    /**
+     * End a span
+     *
+     * @param span  the context of the span
+     * @param error the error of the traced operation, null if it succeeded
+     */
+    public static void endSpan(Context span, Throwable error) {
+        TRACER.end(null, error, span);
+    }
+
+    /**
+     * @param span the context of the span
+     * @return the W3C traceparent of the span, null if the tracing is disabled
+     */
+    public static String getTraceparent(Context span) {
+        String[] traceparent = new String[1];
+        TRACER.injectContext((name, value) -> {
+            if (TRACEPARENT.equals(name)) {
+                traceparent[0] = value;
+            }
+        }, span);
+        return traceparent[0];
+    }
+
+    private static void close(AutoCloseable scope) {
+        try {
+            scope.close();
+        } catch (Exception e) {
+            logger.debug("Unable to close the scope of the span", e);
+        }
+    }
+}
@@ -0,0 +1,513 @@
+package it.gov.pagopa.receipt.pdf.datastore.utils;
+
+import it.gov.pagopa.receipt.pdf.datastore.client.ProcessedEventSnapshotClient;
+import it.gov.pagopa.receipt.pdf.datastore.client.impl.ProcessedEventSnapshotClientImpl;
+import it.gov.pagopa.receipt.pdf.datastore.model.ProcessedEventSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * In-process filter of the recently processed biz-events, shared by all the function invocations of the host.
+ * <p>
+ * The filter is a time-partitioned scalable Bloom filter: one segment for each of the last days (see
+ * BIZ_EVENT_DEDUP_FILTER_DAYS), the segment of the oldest day is cleared when a new day starts. Each segment starts
+ * with a slice sized for the expected biz-events of a day and, once a slice is half full, a new slice with half the
+ * false positive rate is added, so that the false positive rate of a segment stays below the configured one even if
+ * more biz-events than expected are processed.
+ * </p>
+ * <p>
+ * A biz-event not found by the filter has not been processed by the host since the filter records the biz-events.
+ * The negative answers are therefore reliable only once the filter has recorded the whole retention window
+ * (see {@link #isWarm()}), while the positive answers always have to be confirmed.
+ * The segments can be saved as snapshots on a Blob Storage container, so that a new host warms up loading them.
+ * The snapshots of the shared filter are saved by a background thread, off the processing of the biz-events.
+ * </p>
+ */
+public class ProcessedEventFilter {
+
+    private static final boolean ENABLED =
+            Boolean.parseBoolean(System.getenv().getOrDefault("BIZ_EVENT_DEDUP_FILTER_ENABLED", "false"));
+    private static final int EXPECTED_ITEMS =
+            Integer.parseInt(System.getenv().getOrDefault("BIZ_EVENT_DEDUP_FILTER_EXPECTED_ITEMS", "1000000"));
+    private static final double FALSE_POSITIVE_RATE =
+            Double.parseDouble(System.getenv().getOrDefault("BIZ_EVENT_DEDUP_FILTER_FALSE_POSITIVE_RATE", "0.01"));
+    private static final int DAYS =
+            Integer.parseInt(System.getenv().getOrDefault("BIZ_EVENT_DEDUP_FILTER_DAYS", "2"));
+    private static final long SNAPSHOT_INTERVAL_MILLIS = Long.parseLong(
+            System.getenv().getOrDefault("BIZ_EVENT_DEDUP_FILTER_SNAPSHOT_INTERVAL_SECONDS", "300")) * 1000;
+    private static final String SNAPSHOT_CONN_STRING = System.getenv("BIZ_EVENT_DEDUP_FILTER_SNAPSHOT_CONN_STRING");
+
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final String SNAPSHOT_PREFIX = "processed-biz-events-";
+    private static final int MAX_SLICES = 8;
+    private static final int SNAPSHOT_SAVE_ATTEMPTS = 3;
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    private final Logger logger = LoggerFactory.getLogger(ProcessedEventFilter.class);
+
+    private final int expectedItems;
+    private final double falsePositiveRate;
+    private final int days;
+    private final LongSupplier clock;
+    private final ProcessedEventSnapshotClient snapshotClient;
+    private final long snapshotIntervalMillis;
+
+    private final Segment[] segments;
+    private final AtomicBoolean snapshotRunning = new AtomicBoolean();
+    private long coveredSince;
+    private long lastSnapshotAt;
+
+    /**
+     * Build a new filter
+     *
+     * @param expectedItems          expected number of biz-events processed by the host in a day
+     * @param falsePositiveRate      max false positive rate of the segment of a day
+     * @param days                   number of days retained, if lower than 1 the filter is disabled
+     * @param clock                  the source of the current time in milliseconds
+     * @param snapshotClient         the client of the snapshots, null to not save and load snapshots
+     * @param snapshotIntervalMillis min interval in milliseconds between two snapshots
+     */
+    public ProcessedEventFilter(int expectedItems, double falsePositiveRate, int days, LongSupplier clock,
+                                ProcessedEventSnapshotClient snapshotClient, long snapshotIntervalMillis) {
+        this.expectedItems = Math.max(1, expectedItems);
+        this.falsePositiveRate = falsePositiveRate;
+        this.days = Math.max(0, days);
+        this.clock = clock;
+        this.snapshotClient = snapshotClient;
+        this.snapshotIntervalMillis = snapshotIntervalMillis;
+        this.segments = new Segment[this.days];
+        this.coveredSince = clock.getAsLong();
+        this.lastSnapshotAt = this.coveredSince;
+    }
+
+    public static ProcessedEventFilter getInstance() {
+        return SingletonHelper.INSTANCE;
+    }
+
+    /**
+     * Bill Pugh singleton holder: the JVM guarantees that the class is loaded
+     * (and therefore INSTANCE initialized) lazily and in a thread-safe way.
+     */
+    private static class SingletonHelper {
+        private static final ProcessedEventFilter INSTANCE = create();
+
+        private static ProcessedEventFilter create() {
+            ProcessedEventSnapshotClient snapshotClient = ENABLED && SNAPSHOT_CONN_STRING != null && !SNAPSHOT_CONN_STRING.isBlank()
+                    ? ProcessedEventSnapshotClientImpl.getInstance()
+                    : null;
+            ProcessedEventFilter filter = new ProcessedEventFilter(EXPECTED_ITEMS, FALSE_POSITIVE_RATE, ENABLED ? DAYS : 0,
+                    System::currentTimeMillis, snapshotClient, SNAPSHOT_INTERVAL_MILLIS);
+            filter.loadSnapshots();
+            if (snapshotClient != null) {
+                ScheduledExecutorService snapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "biz-event-dedup-filter-snapshot");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                long delayMillis = Math.max(1000, SNAPSHOT_INTERVAL_MILLIS);
+                snapshotScheduler.scheduleWithFixedDelay(filter::snapshotIfDue, delayMillis, delayMillis, TimeUnit.MILLISECONDS);
+            }
+            return PipelineMetrics.registerProcessedEventFilter(filter);
+        }
+    }
+
+    /**
+     * @return true if the filter records the processed biz-events
+     */
+    public boolean isEnabled() {
+        return this.days > 0;
+    }
+
+    /**
+     * The negative answers of the filter can be trusted only if it has recorded the processed biz-events
+     * since the start of the oldest retained day, by itself or from the loaded snapshots
+     *
+     * @return true if the filter covers the whole retention window
+     */
+    public synchronized boolean isWarm() {
+        return isEnabled() && this.coveredSince <= getDayStart(getToday() - this.days + 1);
+    }
+
+    /**
+     * Check if the provided biz-event may have been processed in the retention window
+     *
+     * @param bizEventId the biz-event id
+     * @return false if the biz-event has certainly not been recorded, true if it may have been (or the filter is disabled)
+     */
+    public synchronized boolean mightContain(String bizEventId) {
+        if (!isEnabled()) {
+            return true;
+        }
+        long hash = hash(bizEventId);
+        long today = getToday();
+        for (Segment segment : this.segments) {
+            if (segment != null && segment.day > today - this.days && segment.mightContain(hash)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Record the provided biz-event as processed today
+     *
+     * @param bizEventId the biz-event id
+     */
+    public synchronized void put(String bizEventId) {
+        if (isEnabled()) {
+            getSegment(getToday()).put(hash(bizEventId));
+        }
+    }
+
+    /**
+     * @return the memory allocated by the segments of the filter in bytes
+     */
+    public synchronized long getMemoryBytes() {
+        long bytes = 0;
+        for (Segment segment : this.segments) {
+            if (segment != null) {
+                for (Slice slice : segment.slices) {
+                    bytes += slice.words.length * 8L;
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @return the false positive rate of the filter, estimated from the bits set in the retained segments
+     */
+    public synchronized double getFalsePositiveRate() {
+        long today = getToday();
+        double trueNegativeRate = 1;
+        for (Segment segment : this.segments) {
+            if (segment != null && segment.day > today - this.days) {
+                for (Slice slice : segment.slices) {
+                    trueNegativeRate *= 1 - slice.getFalsePositiveRate();
+                }
+            }
+        }
+        return 1 - trueNegativeRate;
+    }
+
+    /**
+     * Merge the snapshots of the retained days into the filter. If the snapshots cover the days from the oldest
+     * retained one to today, the filter becomes warm. Failures are logged and ignored.
+     */
+    public void loadSnapshots() {
+        if (!isEnabled() || this.snapshotClient == null) {
+            return;
+        }
+        long today = getToday();
+        long covered = Long.MAX_VALUE;
+        long oldestLoadedDay = today + 1;
+        try {
+            // only a run of snapshots without gaps up to today extends the coverage of the filter
+            for (long day = today; day > today - this.days; day--) {
+                ProcessedEventSnapshot snapshot = this.snapshotClient.getSnapshot(getSnapshotId(day));
+                Long snapshotCoveredSince = snapshot != null ? merge(day, snapshot.getContent()) : null;
+                if (snapshotCoveredSince == null) {
+                    break;
+                }
+                covered = Math.min(covered, snapshotCoveredSince);
+                oldestLoadedDay = day;
+            }
+        } catch (Exception e) {
+            logger.warn("Load of the processed biz-events filter snapshots failed", e);
+        }
+        if (oldestLoadedDay <= today) {
+            synchronized (this) {
+                this.coveredSince = Math.min(this.coveredSince, Math.max(covered, getDayStart(oldestLoadedDay)));
+            }
+            logger.info("Processed biz-events filter loaded from the snapshots since day {}, warm {}",
+                    oldestLoadedDay, isWarm());
+        }
+    }
+
+    /**
+     * Save the segments updated since the last snapshot, if the snapshot interval has elapsed.
+     * Each segment is merged with its current snapshot before being saved, so that the snapshots collect the
+     * biz-events processed by all the hosts: the snapshot is saved only if it has not been saved by another host since
+     * it was read, otherwise it is read and merged again. Only one thread at a time saves the snapshots, failures are logged
+     * and the segments are saved again at the next interval.
+     */
+    public void snapshotIfDue() {
+        if (!isEnabled() || this.snapshotClient == null) {
+            return;
+        }
+        long now = this.clock.getAsLong();
+        synchronized (this) {
+            if (now - this.lastSnapshotAt < this.snapshotIntervalMillis) {
+                return;
+            }
+        }
+        if (!this.snapshotRunning.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            synchronized (this) {
+                this.lastSnapshotAt = now;
+            }
+            for (long day : getDirtyDays()) {
+                saveSnapshot(day);
+            }
+        } finally {
+            this.snapshotRunning.set(false);
+        }
+    }
+
+    private void saveSnapshot(long day) {
+        String snapshotId = getSnapshotId(day);
+        try {
+            for (int attempt = 1; attempt <= SNAPSHOT_SAVE_ATTEMPTS; attempt++) {
+                ProcessedEventSnapshot current = this.snapshotClient.getSnapshot(snapshotId);
+                byte[] snapshot;
+                synchronized (this) {
+                    if (current != null) {
+                        merge(day, current.getContent());
+                    }
+                    Segment segment = getSegment(day);
+                    segment.dirty = false;
+                    snapshot = serialize(segment);
+                }
+                if (this.snapshotClient.saveSnapshot(snapshotId, snapshot, current != null ? current.getETag() : null)) {
+                    return;
+                }
+                logger.debug("Processed biz-events filter snapshot {} saved by another host, it will be merged again",
+                        snapshotId);
+            }
+            synchronized (this) {
+                getSegment(day).dirty = true;
+            }
+            logger.warn("Save of the processed biz-events filter snapshot {} skipped after {} concurrent updates",
+                    snapshotId, SNAPSHOT_SAVE_ATTEMPTS);
+        } catch (Exception e) {
+            synchronized (this) {
+                getSegment(day).dirty = true;
+            }
+            logger.warn("Save of the processed biz-events filter snapshot {} failed", snapshotId, e);
+        }
+    }
+
+    private synchronized List<Long> getDirtyDays() {
+        long today = getToday();
+        List<Long> dirtyDays = new ArrayList<>();
+        for (Segment segment : this.segments) {
+            if (segment != null && segment.dirty && segment.day > today - this.days) {
+                dirtyDays.add(segment.day);
+            }
+        }
+        return dirtyDays;
+    }
+
+    /**
+     * Merge a snapshot into the segment of the provided day
+     *
+     * @return the time since when the snapshot records the processed biz-events, null if the snapshot is not compatible
+     */
+    private synchronized Long merge(long day, byte[] snapshot) throws IOException {
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(snapshot))) {
+            if (input.readInt() != SNAPSHOT_VERSION || input.readLong() != day) {
+                return null;
+            }
+            long snapshotCoveredSince = input.readLong();
+            int sliceCount = input.readInt();
+            List<Slice> slices = new ArrayList<>(sliceCount);
+            for (int i = 0; i < sliceCount; i++) {
+                Slice slice = newSlice(i);
+                if (input.readInt() != slice.hashes || input.readInt() != slice.words.length) {
+                    // the snapshot has been saved with a different expected items or false positive rate
+                    return null;
+                }
+                for (int w = 0; w < slice.words.length; w++) {
+                    slice.words[w] = input.readLong();
+                }
+                slices.add(slice);
+            }
+
+            Segment segment = getSegment(day);
+            for (int i = 0; i < slices.size(); i++) {
+                if (i < segment.slices.size()) {
+                    segment.slices.get(i).merge(slices.get(i));
+                } else {
+                    segment.slices.add(slices.get(i));
+                }
+            }
+            return snapshotCoveredSince;
+        }
+    }
+
+    private byte[] serialize(Segment segment) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeInt(SNAPSHOT_VERSION);
+            output.writeLong(segment.day);
+            output.writeLong(this.coveredSince);
+            output.writeInt(segment.slices.size());
+            for (Slice slice : segment.slices) {
+                output.writeInt(slice.hashes);
+                output.writeInt(slice.words.length);
+                for (long word : slice.words) {
+                    output.writeLong(word);
+                }
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private Segment getSegment(long day) {
+        int index = (int) Math.floorMod(day, (long) this.days);
+        Segment segment = this.segments[index];
+        if (segment == null || segment.day != day) {
+            // the segment of the day out of the retention window is reused for the new day
+            segment = new Segment(day);
+            segment.slices.add(newSlice(0));
+            this.segments[index] = segment;
+        }
+        return segment;
+    }
+
+    private Slice newSlice(int index) {
+        // each new slice halves the false positive rate, so that the sum over the slices stays below the configured one
+        double sliceFalsePositiveRate = this.falsePositiveRate / Math.pow(2, index + 1d);
+        double ln2 = Math.log(2);
+        long bits = (long) Math.ceil(-this.expectedItems * Math.log(sliceFalsePositiveRate) / (ln2 * ln2));
+        int words = (int) Math.max(1, (bits + 63) / 64);
+        int hashes = (int) Math.max(1, Math.round((words * 64d / this.expectedItems) * ln2));
+        return new Slice(words, hashes);
+    }
+
+    private long getToday() {
+        return Math.floorDiv(this.clock.getAsLong(), MILLIS_PER_DAY);
+    }
+
+    private static long getDayStart(long day) {
+        return day * MILLIS_PER_DAY;
+    }
+
+    private static String getSnapshotId(long day) {
+        return SNAPSHOT_PREFIX + day;
+    }
+
+    /**
+     * 64 bit FNV-1a hash of the id, finalized with the SplitMix64 mixer
+     */
+    private static long hash(String id) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < id.length(); i++) {
+            hash ^= id.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long value) {
+        long z = value;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private class Segment {
+        private final long day;
+        private final List<Slice> slices = new ArrayList<>(2);
+        private boolean dirty;
+
+        private Segment(long day) {
+            this.day = day;
+        }
+
+        private void put(long hash) {
+            if (mightContain(hash)) {
+                return;
+            }
+            Slice slice = this.slices.get(this.slices.size() - 1);
+            if (slice.isFull() && this.slices.size() < MAX_SLICES) {
+                slice = newSlice(this.slices.size());
+                this.slices.add(slice);
+            }
+            slice.put(hash);
+            this.dirty = true;
+        }
+
+        private boolean mightContain(long hash) {
+            for (Slice slice : this.slices) {
+                if (slice.contains(hash)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static class Slice {
+        private final long[] words;
+        private final int hashes;
+        private long bitsSet;
+
+        private Slice(int words, int hashes) {
+            this.words = new long[words];
+            this.hashes = hashes;
+        }
+
+        private void put(long hash) {
+            long bits = this.words.length * 64L;
+            long h1 = hash;
+            long h2 = mix(hash) | 1;
+            for (int i = 0; i < this.hashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bits);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                if ((this.words[word] & mask) == 0) {
+                    this.words[word] |= mask;
+                    this.bitsSet++;
+                }
+            }
+        }
+
+        private boolean contains(long hash) {
+            long bits = this.words.length * 64L;
+            long h1 = hash;
+            long h2 = mix(hash) | 1;
+            for (int i = 0; i < this.hashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bits);
+                if ((this.words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void merge(Slice other) {
+            this.bitsSet = 0;
+            for (int i = 0; i < this.words.length; i++) {
+                this.words[i] |= other.words[i];
+                this.bitsSet += Long.bitCount(this.words[i]);
+            }
+        }
+
+        /**
+         * A slice is full at half of its bits set, the fill ratio at which it has the false positive rate it is sized for
+         */
+        private boolean isFull() {
+            return this.bitsSet * 2 >= this.words.length * 64L;
+        }
+
+        private double getFalsePositiveRate() {
+            return Math.pow((double) this.bitsSet / (this.words.length * 64L), this.hashes);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package it.gov.pagopa.receipt.pdf.datastore.utils;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import it.gov.pagopa.receipt.pdf.datastore.entity.event.BizEvent;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Encoder of the biz-events sent as queue messages.
+ * <p>
+ * The JSON is written by Jackson straight into a per-thread reusable buffer and then Base64 encoded into a second
+ * reusable buffer, so the only copy allocated for each message is the resulting string. The message is encoded
+ * with the basic Base64 alphabet without line separators, that is accepted by the MIME decoders as well.
+ * </p>
+ * <p>
+ * The biz-event fields listed in QUEUE_MESSAGE_EXCLUDED_FIELDS (comma separated) are not written to the message.
+ * </p>
+ * <p>
+ * With QUEUE_MESSAGE_TRACE_CONTEXT_ENABLED the Base64 biz-events are wrapped in a JSON envelope together with the
+ * W3C traceparent of the send, {"traceparent":"...","payload":"..."}, so that the downstream functions continue the
+ * trace. The consumers of the queues have to support the envelope before enabling it.
+ * </p>
+ */
+public class QueueMessageEncoder {
+
+    private static final String BIZ_EVENT_FILTER = "queueMessageBizEventFilter";
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+    private static final byte[] BASE64_ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(StandardCharsets.US_ASCII);
+    private static final short[] BASE64_PAIRS = new short[4096];
+
+    static {
+        for (int i = 0; i < BASE64_PAIRS.length; i++) {
+            BASE64_PAIRS[i] = (short) (BASE64_ALPHABET[i >>> 6] << 8 | BASE64_ALPHABET[i & 0x3f]);
+        }
+    }
+
+    private static final QueueMessageEncoder INSTANCE = new QueueMessageEncoder(
+            parseFields(System.getenv().getOrDefault("QUEUE_MESSAGE_EXCLUDED_FIELDS", "")),
+            Boolean.parseBoolean(System.getenv().getOrDefault("QUEUE_MESSAGE_TRACE_CONTEXT_ENABLED", "false")));
+
+    private final ObjectWriter writer;
+    private final boolean traceContextEnabled;
+    private final ThreadLocal<MessageBuffer> buffers = ThreadLocal.withInitial(MessageBuffer::new);
+
+    /**
+     * Build a new encoder without the trace context envelope
+     *
+     * @param excludedFields the biz-event fields not written to the message
+     */
+    public QueueMessageEncoder(Set<String> excludedFields) {
+        this(excludedFields, false);
+    }
+
+    /**
+     * Build a new encoder
+     *
+     * @param excludedFields      the biz-event fields not written to the message
+     * @param traceContextEnabled true to wrap the biz-events in the envelope with the trace context
+     */
+    public QueueMessageEncoder(Set<String> excludedFields, boolean traceContextEnabled) {
+        this.traceContextEnabled = traceContextEnabled;
+        ObjectMapper mapper = new ObjectMapper();
+        if (excludedFields.isEmpty()) {
+            // the property filter slows down the serialization, it is installed only if needed
+            this.writer = mapper.writer();
+        } else {
+            this.writer = mapper.addMixIn(BizEvent.class, BizEventFilterMixIn.class)
+                    .writer(new SimpleFilterProvider()
+                            .addFilter(BIZ_EVENT_FILTER, SimpleBeanPropertyFilter.serializeAllExcept(excludedFields)));
+        }
+    }
+
+    public static QueueMessageEncoder getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Encode the biz-events to a Base64 string of their JSON representation
+     *
+     * @param bizEventList the biz-events to encode
+     * @return the encoded message
+     */
+    public String encode(List<BizEvent> bizEventList) {
+        MessageBuffer buffer = this.buffers.get();
+        try {
+            this.writer.writeValue(buffer, bizEventList);
+            return buffer.toBase64String();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to encode the biz-events queue message", e);
+        } finally {
+            buffer.recycle();
+        }
+    }
+
+    /**
+     * Encode the biz-events and, if enabled, wrap them in the envelope with the provided trace context
+     *
+     * @param bizEventList the biz-events to encode
+     * @param traceparent  the W3C traceparent of the send, if null the envelope is not used
+     * @return the encoded message
+     */
+    public String encode(List<BizEvent> bizEventList, String traceparent) {
+        String payload = encode(bizEventList);
+        if (!this.traceContextEnabled || traceparent == null) {
+            return payload;
+        }
+        // the traceparent and the Base64 alphabet never need to be escaped in a JSON string
+        return "{\"traceparent\":\"" + traceparent + "\",\"payload\":\"" + payload + "\"}";
+    }
+
+    private static Set<String> parseFields(String fields) {
+        return Arrays.stream(fields.split(","))
+                .map(String::trim)
+                .filter(field -> !field.isEmpty())
+                .collect(Collectors.toSet());
+    }
+
+    @JsonFilter(BIZ_EVENT_FILTER)
+    private abstract static class BizEventFilterMixIn {
+    }
+
+    /**
+     * Not synchronized byte buffer whose backing arrays are reused across the messages encoded by the same thread
+     */
+    private static class MessageBuffer extends OutputStream {
+
+        private static final int INITIAL_SIZE = 8 * 1024;
+
+        private byte[] json = new byte[INITIAL_SIZE];
+        private byte[] base64 = new byte[encodedLength(INITIAL_SIZE)];
+        private int count;
+
+        @Override
+        public void write(int b) {
+            ensureCapacity(this.count + 1);
+            this.json[this.count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ensureCapacity(this.count + len);
+            System.arraycopy(b, off, this.json, this.count, len);
+            this.count += len;
+        }
+
+        /**
+         * Encode the written JSON in the reused Base64 array, the Base64 alphabet is ASCII so each byte is a char
+         */
+        private String toBase64String() {
+            byte[] src = this.json;
+            byte[] dst = this.base64;
+            int fullGroupsEnd = this.count - this.count % 3;
+            int dp = 0;
+            for (int sp = 0; sp < fullGroupsEnd; sp += 3) {
+                int bits = (src[sp] & 0xff) << 16 | (src[sp + 1] & 0xff) << 8 | (src[sp + 2] & 0xff);
+                // each 12 bits are encoded with a single lookup of their two chars
+                int high = BASE64_PAIRS[bits >>> 12];
+                int low = BASE64_PAIRS[bits & 0xfff];
+                dst[dp] = (byte) (high >>> 8);
+                dst[dp + 1] = (byte) high;
+                dst[dp + 2] = (byte) (low >>> 8);
+                dst[dp + 3] = (byte) low;
+                dp += 4;
+            }
+            int remaining = this.count - fullGroupsEnd;
+            if (remaining > 0) {
+                int b0 = src[fullGroupsEnd] & 0xff;
+                int b1 = remaining == 2 ? src[fullGroupsEnd + 1] & 0xff : 0;
+                dst[dp++] = BASE64_ALPHABET[b0 >> 2];
+                dst[dp++] = BASE64_ALPHABET[(b0 << 4 | b1 >> 4) & 0x3f];
+                dst[dp++] = remaining == 2 ? BASE64_ALPHABET[(b1 << 2) & 0x3f] : (byte) '=';
+                dst[dp++] = '=';
+            }
+            return new String(dst, 0, dp, StandardCharsets.ISO_8859_1);
+        }
+
+        /**
+         * Reset the buffer for the next message, releasing its arrays if they grew too much
+         */
+        private void recycle() {
+            this.count = 0;
+            if (this.json.length > MAX_RETAINED_BUFFER_SIZE) {
+                this.json = new byte[INITIAL_SIZE];
+                this.base64 = new byte[encodedLength(INITIAL_SIZE)];
+            }
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > this.json.length) {
+                this.json = Arrays.copyOf(this.json, Math.max(capacity, this.json.length * 2));
+                this.base64 = new byte[encodedLength(this.json.length)];
+            }
+        }
+
+        private static int encodedLength(int length) {
+            return 4 * ((length + 2) / 3);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package it.gov.pagopa.receipt.pdf.datastore.utils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import it.gov.pagopa.receipt.pdf.datastore.exception.PDVTokenizerException;
+import it.gov.pagopa.receipt.pdf.datastore.exception.PDVTokenizerUnexpectedException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * In-process cache of the PDV tokens, shared by all the function invocations of the host.
+ * <p>
+ * The cache is bounded (the least recently used entries are evicted) and each entry expires after the configured TTL.
+ * Concurrent lookups of the same fiscal code not yet cached are deduplicated, only the first one invokes the loader
+ * while the others wait for its result. Failures are never cached.
+ * </p>
+ * <p>
+ * The fiscal codes are never stored: the cache keys are their SHA-256 digests.
+ * </p>
+ */
+public class TokenCache {
+
+    private static final int MAX_SIZE =
+            Integer.parseInt(System.getenv().getOrDefault("PDV_TOKENIZER_CACHE_MAX_SIZE", "10000"));
+    private static final long TTL_MILLIS =
+            Long.parseLong(System.getenv().getOrDefault("PDV_TOKENIZER_CACHE_TTL_SECONDS", "3600")) * 1000;
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+
+    private final Map<String, CacheEntry> entries;
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong hitCounter = new AtomicLong();
+    private final AtomicLong missCounter = new AtomicLong();
+
+    /**
+     * Build a new cache
+     *
+     * @param maxSize   max number of cached tokens, if lower than 1 the cache is disabled
+     * @param ttlMillis time to live of the cached tokens in milliseconds
+     * @param clock     the source of the current time in milliseconds
+     */
+    public TokenCache(int maxSize, long ttlMillis, LongSupplier clock) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                return size() > TokenCache.this.maxSize;
+            }
+        };
+    }
+
+    public static TokenCache getInstance() {
+        return SingletonHelper.INSTANCE;
+    }
+
+    /**
+     * Bill Pugh singleton holder: the JVM guarantees that the class is loaded
+     * (and therefore INSTANCE initialized) lazily and in a thread-safe way.
+     */
+    private static class SingletonHelper {
+        private static final TokenCache INSTANCE =
+                PipelineMetrics.registerTokenCache(new TokenCache(MAX_SIZE, TTL_MILLIS, System::currentTimeMillis));
+    }
+
+    /**
+     * Loader of the token of a fiscal code not yet cached
+     */
+    @FunctionalInterface
+    public interface TokenLoader {
+        String load(String fiscalCode) throws PDVTokenizerException, JsonProcessingException;
+    }
+
+    /**
+     * Return the cached token of the provided fiscal code or load it with the provided loader.
+     * If the same fiscal code is already being loaded by another thread, wait for its result.
+     *
+     * @param fiscalCode the fiscal code
+     * @param loader     the loader invoked on cache miss
+     * @return the token associated to the fiscal code
+     * @throws PDVTokenizerException   if the loader fails with this error
+     * @throws JsonProcessingException if the loader fails with this error
+     */
+    public String get(String fiscalCode, TokenLoader loader) throws PDVTokenizerException, JsonProcessingException {
+        if (this.maxSize < 1) {
+            this.missCounter.incrementAndGet();
+            return loader.load(fiscalCode);
+        }
+
+        String key = hash(fiscalCode);
+        String token = getEntry(key);
+        if (token != null) {
+            this.hitCounter.incrementAndGet();
+            return token;
+        }
+
+        CompletableFuture<String> future = new CompletableFuture<>();
+        CompletableFuture<String> running = this.inFlight.putIfAbsent(key, future);
+        if (running != null) {
+            // another thread is already loading the same token
+            this.hitCounter.incrementAndGet();
+            return await(running);
+        }
+
+        this.missCounter.incrementAndGet();
+        try {
+            token = loader.load(fiscalCode);
+            putEntry(key, token);
+            future.complete(token);
+            return token;
+        } catch (Throwable e) {
+            // the threads waiting for the same token are released with any failure, errors included
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            this.inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * Return the cached token of the provided fiscal code, without loading it if missing
+     *
+     * @param fiscalCode the fiscal code
+     * @return the cached token or null if not present
+     */
+    public String getIfPresent(String fiscalCode) {
+        String token = this.maxSize < 1 ? null : getEntry(hash(fiscalCode));
+        if (token != null) {
+            this.hitCounter.incrementAndGet();
+        } else {
+            this.missCounter.incrementAndGet();
+        }
+        return token;
+    }
+
+    /**
+     * Cache the token of the provided fiscal code, loaded without {@link #get(String, TokenLoader)}
+     *
+     * @param fiscalCode the fiscal code
+     * @param token      the token
+     */
+    public void put(String fiscalCode, String token) {
+        if (this.maxSize > 0) {
+            putEntry(hash(fiscalCode), token);
+        }
+    }
+
+    /**
+     * @return the number of lookups served from the cache
+     */
+    public long getHitCount() {
+        return this.hitCounter.get();
+    }
+
+    /**
+     * @return the number of lookups not served from the cache
+     */
+    public long getMissCount() {
+        return this.missCounter.get();
+    }
+
+    /**
+     * @return the ratio between the hits and the total lookups, 0 if no lookup has been done
+     */
+    public double getHitRatio() {
+        long hits = getHitCount();
+        long total = hits + getMissCount();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * @return the number of cached tokens, including the expired ones not yet evicted
+     */
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    private synchronized String getEntry(String key) {
+        CacheEntry entry = this.entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expireAt() <= this.clock.getAsLong()) {
+            this.entries.remove(key);
+            return null;
+        }
+        return entry.token();
+    }
+
+    private synchronized void putEntry(String key, String token) {
+        if (token != null) {
+            this.entries.put(key, new CacheEntry(token, this.clock.getAsLong() + this.ttlMillis));
+        }
+    }
+
+    private String await(CompletableFuture<String> running) throws PDVTokenizerException, JsonProcessingException {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof PDVTokenizerException tokenizerException) {
+                throw tokenizerException;
+            }
+            if (cause instanceof JsonProcessingException jsonProcessingException) {
+                throw jsonProcessingException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new PDVTokenizerUnexpectedException(cause);
+        }
+    }
+
+    private static String hash(String fiscalCode) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(digest.digest(fiscalCode.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is available on every Java platform
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record CacheEntry(String token, long expireAt) {
+    }
+}
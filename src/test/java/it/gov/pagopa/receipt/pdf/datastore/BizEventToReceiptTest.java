@@ -20,9 +20,10 @@ import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.ReasonError;
 import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.Receipt;
 import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.enumeration.ReasonErrorCode;
 import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.enumeration.ReceiptStatusType;
-import it.gov.pagopa.receipt.pdf.datastore.exception.CartNotFoundException;
 import it.gov.pagopa.receipt.pdf.datastore.exception.PDVTokenizerException;
-import it.gov.pagopa.receipt.pdf.datastore.exception.ReceiptNotFoundException;
+import it.gov.pagopa.receipt.pdf.datastore.exception.ReceiptBulkSaveException;
+import it.gov.pagopa.receipt.pdf.datastore.model.BizEventDedupResult;
+import it.gov.pagopa.receipt.pdf.datastore.model.PendingQueueMessage;
 import it.gov.pagopa.receipt.pdf.datastore.service.impl.BizEventToReceiptServiceImpl;
 import lombok.SneakyThrows;
 import org.junit.jupiter.api.Test;
@@ -32,6 +33,7 @@ import org.junit.jupiter.params.provider.NullSource;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
@@ -44,19 +46,27 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyList;
+import static org.mockito.Mockito.anyMap;
+import static org.mockito.Mockito.argThat;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 @ExtendWith({MockitoExtension.class, SystemStubsExtension.class})
@@ -78,20 +88,25 @@ class BizEventToReceiptTest {
     @SystemStub
     private EnvironmentVariables environmentVariables = new EnvironmentVariables(
             "ECOMMERCE_FILTER_ENABLED", "true",
-            "ENABLE_CART", "true");
+            "ENABLE_CART", "true",
+            "CART_PATCH_ENABLED", "false");
 
     @Mock
     private ExecutionContext context;
     @Mock
     private BizEventToReceiptServiceImpl receiptService;
     @Captor
-    private ArgumentCaptor<Receipt> receiptCaptor;
-    @Captor
     private ArgumentCaptor<CartForReceipt> cartForReceiptCaptor;
     @Captor
     private ArgumentCaptor<List<Receipt>> receiptBindingCaptor;
     @Captor
+    private ArgumentCaptor<List<Receipt>> savedReceiptsCaptor;
+    @Captor
     private ArgumentCaptor<List<CartForReceipt>> cartForReceiptBindingCaptor;
+    @Captor
+    private ArgumentCaptor<List<PendingQueueMessage<CartForReceipt>>> cartMessageCaptor;
+    @Captor
+    private ArgumentCaptor<List<PendingQueueMessage<Receipt>>> receiptMessageCaptor;
     @Spy
     private OutputBinding<List<Receipt>> documentdb;
     @Spy
@@ -105,7 +120,7 @@ class BizEventToReceiptTest {
     @ValueSource(strings = {"1"})
     @NullSource
     void runOkSingleReceipt(String totalNotice) {
-        doThrow(ReceiptNotFoundException.class).when(receiptService).getReceipt(EVENT_ID);
+        doReturn(notProcessed()).when(receiptService).findAlreadyProcessedBizEvents(anyList());
         doAnswer(invocation -> {
             EventData passed = invocation.getArgument(2);
             passed.setDebtorFiscalCode(TOKENIZED_DEBTOR_FISCAL_CODE);
@@ -120,9 +135,9 @@ class BizEventToReceiptTest {
         // test execution
         assertDoesNotThrow(() -> sut.processBizEventToReceipt(bizEventItems, documentdb, cartDocumentdb, context));
 
-        verify(receiptService).handleSaveReceipt(receiptCaptor.capture());
+        verify(receiptService).handleSaveReceipts(savedReceiptsCaptor.capture());
 
-        Receipt savedReceipt = receiptCaptor.getValue();
+        Receipt savedReceipt = savedReceiptsCaptor.getValue().get(0);
         assertNotNull(savedReceipt);
         assertEquals(EVENT_ID, savedReceipt.getEventId());
         assertNotNull(savedReceipt.getEventData());
@@ -133,11 +148,11 @@ class BizEventToReceiptTest {
         assertEquals(1, savedReceipt.getEventData().getCart().size());
         assertEquals(REMITTANCE_INFORMATION, savedReceipt.getEventData().getCart().get(0).getSubject());
 
-        verify(receiptService).handleSendMessageToQueue(any(), any());
+        verify(receiptService).handleSendMessagesToQueue(anyList());
         verify(receiptService, never()).buildCartForReceipt(any());
         verify(receiptService, never()).saveCartForReceipt(any(), any());
-        verify(receiptService, never()).getCartBizEvents(any());
-        verify(receiptService, never()).handleSendCartMessageToQueue(anyList(), any());
+        verify(receiptService, never()).getCartBizEvents(any(), anyMap());
+        verify(receiptService, never()).handleSendCartMessagesToQueue(anyList());
         verify(documentdb, never()).setValue(any());
         verify(cartDocumentdb, never()).setValue(any());
     }
@@ -145,7 +160,7 @@ class BizEventToReceiptTest {
     @Test
     @SneakyThrows
     void runOkPayerInTransactionDetailsSingleReceipt() {
-        doThrow(ReceiptNotFoundException.class).when(receiptService).getReceipt(EVENT_ID);
+        doReturn(notProcessed()).when(receiptService).findAlreadyProcessedBizEvents(anyList());
         doReturn(CREATION_DATE).when(receiptService).getTransactionCreationDate(any());
         doAnswer(invocation -> {
             EventData passed = invocation.getArgument(2);
@@ -160,9 +175,9 @@ class BizEventToReceiptTest {
         // test execution
         assertDoesNotThrow(() -> sut.processBizEventToReceipt(bizEventItems, documentdb, cartDocumentdb, context));
 
-        verify(receiptService).handleSaveReceipt(receiptCaptor.capture());
+        verify(receiptService).handleSaveReceipts(savedReceiptsCaptor.capture());
 
-        Receipt savedReceipt = receiptCaptor.getValue();
+        Receipt savedReceipt = savedReceiptsCaptor.getValue().get(0);
         assertNotNull(savedReceipt);
         assertEquals(EVENT_ID, savedReceipt.getEventId());
         assertNotNull(savedReceipt.getEventData());
@@ -173,11 +188,11 @@ class BizEventToReceiptTest {
         assertEquals(1, savedReceipt.getEventData().getCart().size());
         assertEquals(REMITTANCE_INFORMATION, savedReceipt.getEventData().getCart().get(0).getSubject());
 
-        verify(receiptService).handleSendMessageToQueue(any(), any());
+        verify(receiptService).handleSendMessagesToQueue(anyList());
         verify(receiptService, never()).buildCartForReceipt(any());
         verify(receiptService, never()).saveCartForReceipt(any(), any());
-        verify(receiptService, never()).getCartBizEvents(any());
-        verify(receiptService, never()).handleSendCartMessageToQueue(anyList(), any());
+        verify(receiptService, never()).getCartBizEvents(any(), anyMap());
+        verify(receiptService, never()).handleSendCartMessagesToQueue(anyList());
         verify(documentdb, never()).setValue(any());
         verify(cartDocumentdb, never()).setValue(any());
     }
@@ -190,12 +205,12 @@ class BizEventToReceiptTest {
         // test execution
         assertDoesNotThrow(() -> sut.processBizEventToReceipt(bizEventItems, documentdb, cartDocumentdb, context));
 
-        verify(receiptService, never()).handleSaveReceipt(any());
-        verify(receiptService, never()).handleSendMessageToQueue(any(), any());
+        verify(receiptService, never()).handleSaveReceipts(anyList());
+        verify(receiptService, never()).handleSendMessagesToQueue(anyList());
         verify(receiptService, never()).buildCartForReceipt(any());
         verify(receiptService, never()).saveCartForReceipt(any(), any());
-        verify(receiptService, never()).getCartBizEvents(any());
-        verify(receiptService, never()).handleSendCartMessageToQueue(anyList(), any());
+        verify(receiptService, never()).getCartBizEvents(any(), anyMap());
+        verify(receiptService, never()).handleSendCartMessagesToQueue(anyList());
         verify(documentdb, never()).setValue(any());
         verify(cartDocumentdb, never()).setValue(any());
     }
@@ -209,12 +224,12 @@ class BizEventToReceiptTest {
         // test execution
         assertDoesNotThrow(() -> sut.processBizEventToReceipt(bizEventItems, documentdb, cartDocumentdb, context));
 
-        verify(receiptService, never()).handleSaveReceipt(any());
-        verify(receiptService, never()).handleSendMessageToQueue(any(), any());
+        verify(receiptService, never()).handleSaveReceipts(anyList());
+        verify(receiptService, never()).handleSendMessagesToQueue(anyList());
         verify(receiptService, never()).buildCartForReceipt(any());
         verify(receiptService, never()).saveCartForReceipt(any(), any());
-        verify(receiptService, never()).getCartBizEvents(any());
-        verify(receiptService, never()).handleSendCartMessageToQueue(anyList(), any());
+        verify(receiptService, never()).getCartBizEvents(any(), anyMap());
+        verify(receiptService, never()).handleSendCartMessagesToQueue(anyList());
         verify(documentdb, never()).setValue(any());
         verify(cartDocumentdb, never()).setValue(any());
     }
@@ -232,19 +247,19 @@ class BizEventToReceiptTest {
         // test execution
         assertDoesNotThrow(() -> sut.processBizEventToReceipt(bizEventItems, documentdb, cartDocumentdb, context));
 
-        verify(receiptService, never()).handleSaveReceipt(any());
-        verify(receiptService, never()).handleSendMessageToQueue(any(), any());
+        verify(receiptService, never()).handleSaveReceipts(anyList());
+        verify(receiptService, never()).handleSendMessagesToQueue(anyList());
         verify(receiptService, never()).buildCartForReceipt(any());
         verify(receiptService, never()).saveCartForReceipt(any(), any());
-        verify(receiptService, never()).getCartBizEvents(any());
-        verify(receiptService, never()).handleSendCartMessageToQueue(anyList(), any());
+        verify(receiptService, never()).getCartBizEvents(any(), anyMap());
+        verify(receiptService, never()).handleSendCartMessagesToQueue(anyList());
         verify(documentdb, never()).setValue(any());
         verify(cartDocumentdb, never()).setValue(any());
     }
 
     @Test
-    void runDiscardedWithReceiptAlreadyInserted() throws ReceiptNotFoundException {
-        doReturn(new Receipt()).when(receiptService).getReceipt(EVENT_ID);
+    void runDiscardedWithReceiptAlreadyInserted() {
+        doReturn(processed(EVENT_ID)).when(receiptService).findAlreadyProcessedBizEvents(anyList());
 
         List<BizEvent> bizEventItems = new ArrayList<>();
         bizEventItems.add(generateValidBizEvent("1"));
@@ -252,30 +267,19 @@ class BizEventToReceiptTest {
         // test execution
         assertDoesNotThrow(() -> sut.processBizEventToReceipt(bizEventItems, documentdb, cartDocumentdb, context));
 
-        verify(receiptService, never()).handleSaveReceipt(any());
-        verify(receiptService, never()).handleSendMessageToQueue(any(), any());
+        verify(receiptService, never()).handleSaveReceipts(anyList());
+        verify(receiptService, never()).handleSendMessagesToQueue(anyList());
         verify(receiptService, never()).buildCartForReceipt(any());
         verify(receiptService, never()).saveCartForReceipt(any(), any());
-        verify(receiptService, never()).getCartBizEvents(any());
-        verify(receiptService, never()).handleSendCartMessageToQueue(anyList(), any());
+        verify(receiptService, never()).getCartBizEvents(any(), anyMap());
+        verify(receiptService, never()).handleSendCartMessagesToQueue(anyList());
         verify(documentdb, never()).setValue(any());
         verify(cartDocumentdb, never()).setValue(any());
     }
 
     @Test
-    void runDiscardedWithCartReceiptAlreadyInserted() throws CartNotFoundException {
-        CartForReceipt cart = CartForReceipt.builder()
-                .cartId(CART_ID)
-                .payload(Payload.builder()
-                        .cart(Collections.singletonList(
-                                CartPayment.builder()
-                                        .bizEventId(EVENT_ID)
-                                        .build()
-                        ))
-                        .build())
-                .build();
-
-        doReturn(cart).when(receiptService).getCartForReceipt(CART_ID);
+    void runDiscardedWithCartReceiptAlreadyInserted() {
+        doReturn(processed(EVENT_ID)).when(receiptService).findAlreadyProcessedBizEvents(anyList());
 
         List<BizEvent> bizEventItems = new ArrayList<>();
         bizEventItems.add(generateValidBizEvent("2"));
@@ -283,12 +287,12 @@ class BizEventToReceiptTest {
         // test execution
         assertDoesNotThrow(() -> sut.processBizEventToReceipt(bizEventItems, documentdb, cartDocumentdb, context));
 
-        verify(receiptService, never()).handleSaveReceipt(any());
-        verify(receiptService, never()).handleSendMessageToQueue(any(), any());
+        verify(receiptService, never()).handleSaveReceipts(anyList());
+        verify(receiptService, never()).handleSendMessagesToQueue(anyList());
         verify(receiptService, never()).buildCartForReceipt(any());
         verify(receiptService, never()).saveCartForReceipt(any(), any());
-        verify(receiptService, never()).getCartBizEvents(any());
-        verify(receiptService, never()).handleSendCartMessageToQueue(anyList(), any());
+        verify(receiptService, never()).getCartBizEvents(any(), anyMap());
+        verify(receiptService, never()).handleSendCartMessagesToQueue(anyList());
         verify(documentdb, never()).setValue(any());
         verify(cartDocumentdb, never()).setValue(any());
     }
@@ -301,12 +305,12 @@ class BizEventToReceiptTest {
         // test execution
         assertDoesNotThrow(() -> sut.processBizEventToReceipt(bizEventItems, documentdb, cartDocumentdb, context));
 
-        verify(receiptService, never()).handleSaveReceipt(any());
-        verify(receiptService, never()).handleSendMessageToQueue(any(), any());
+        verify(receiptService, never()).handleSaveReceipts(anyList());
+        verify(receiptService, never()).handleSendMessagesToQueue(anyList());
         verify(receiptService, never()).buildCartForReceipt(any());
         verify(receiptService, never()).saveCartForReceipt(any(), any());
-        verify(receiptService, never()).getCartBizEvents(any());
-        verify(receiptService, never()).handleSendCartMessageToQueue(anyList(), any());
+        verify(receiptService, never()).getCartBizEvents(any(), anyMap());
+        verify(receiptService, never()).handleSendCartMessagesToQueue(anyList());
         verify(documentdb, never()).setValue(any());
         verify(cartDocumentdb, never()).setValue(any());
     }
@@ -319,12 +323,12 @@ class BizEventToReceiptTest {
         // test execution
         assertThrows(NumberFormatException.class, () -> sut.processBizEventToReceipt(bizEventItems, documentdb, cartDocumentdb, context));
 
-        verify(receiptService, never()).handleSaveReceipt(any());
-        verify(receiptService, never()).handleSendMessageToQueue(any(), any());
+        verify(receiptService, never()).handleSaveReceipts(anyList());
+        verify(receiptService, never()).handleSendMessagesToQueue(anyList());
         verify(receiptService, never()).buildCartForReceipt(any());
         verify(receiptService, never()).saveCartForReceipt(any(), any());
-        verify(receiptService, never()).getCartBizEvents(any());
-        verify(receiptService, never()).handleSendCartMessageToQueue(anyList(), any());
+        verify(receiptService, never()).getCartBizEvents(any(), anyMap());
+        verify(receiptService, never()).handleSendCartMessagesToQueue(anyList());
         verify(documentdb, never()).setValue(any());
         verify(cartDocumentdb, never()).setValue(any());
     }
@@ -332,7 +336,7 @@ class BizEventToReceiptTest {
     @Test
     @SneakyThrows
     void errorTokenizingFiscalCodesSingleReceipt() {
-        doThrow(ReceiptNotFoundException.class).when(receiptService).getReceipt(EVENT_ID);
+        doReturn(notProcessed()).when(receiptService).findAlreadyProcessedBizEvents(anyList());
         doThrow(new PDVTokenizerException(HTTP_MESSAGE_ERROR, org.apache.http.HttpStatus.SC_INTERNAL_SERVER_ERROR))
                 .when(receiptService).tokenizeFiscalCodes(any(), any(), any());
 
@@ -342,12 +346,12 @@ class BizEventToReceiptTest {
         // test execution
         assertDoesNotThrow(() -> sut.processBizEventToReceipt(bizEventItems, documentdb, cartDocumentdb, context));
 
-        verify(receiptService, never()).handleSaveReceipt(any());
-        verify(receiptService, never()).handleSendMessageToQueue(any(), any());
+        verify(receiptService, never()).handleSaveReceipts(anyList());
+        verify(receiptService, never()).handleSendMessagesToQueue(anyList());
         verify(receiptService, never()).buildCartForReceipt(any());
         verify(receiptService, never()).saveCartForReceipt(any(), any());
-        verify(receiptService, never()).getCartBizEvents(any());
-        verify(receiptService, never()).handleSendCartMessageToQueue(anyList(), any());
+        verify(receiptService, never()).getCartBizEvents(any(), anyMap());
+        verify(receiptService, never()).handleSendCartMessagesToQueue(anyList());
         verify(documentdb).setValue(receiptBindingCaptor.capture());
 
         Receipt captured = receiptBindingCaptor.getValue().get(0);
@@ -358,10 +362,67 @@ class BizEventToReceiptTest {
         verify(cartDocumentdb, never()).setValue(any());
     }
 
+    @Test
+    @SneakyThrows
+    void errorTokenizingFiscalCodesOfFilterSkippedBizEventWithSavedReceiptIsNotWritten() {
+        doReturn(filterSkipped(EVENT_ID)).when(receiptService).findAlreadyProcessedBizEvents(anyList());
+        doThrow(new PDVTokenizerException(HTTP_MESSAGE_ERROR, org.apache.http.HttpStatus.SC_INTERNAL_SERVER_ERROR))
+                .when(receiptService).tokenizeFiscalCodes(any(), any(), any());
+        // the receipt has been saved by another host after the filter snapshot
+        doReturn(Set.of(EVENT_ID)).when(receiptService).findSavedReceiptEventIds(List.of(EVENT_ID));
+
+        List<BizEvent> bizEventItems = List.of(generateValidBizEvent("1"));
+
+        // test execution
+        assertDoesNotThrow(() -> sut.processBizEventToReceipt(bizEventItems, documentdb, cartDocumentdb, context));
+
+        verify(receiptService).findSavedReceiptEventIds(List.of(EVENT_ID));
+        verify(documentdb, never()).setValue(any());
+        verify(cartDocumentdb, never()).setValue(any());
+    }
+
+    @Test
+    @SneakyThrows
+    void errorTokenizingFiscalCodesOfFilterSkippedBizEventWithoutReceiptIsWritten() {
+        doReturn(filterSkipped(EVENT_ID)).when(receiptService).findAlreadyProcessedBizEvents(anyList());
+        doThrow(new PDVTokenizerException(HTTP_MESSAGE_ERROR, org.apache.http.HttpStatus.SC_INTERNAL_SERVER_ERROR))
+                .when(receiptService).tokenizeFiscalCodes(any(), any(), any());
+        doReturn(Collections.emptySet()).when(receiptService).findSavedReceiptEventIds(List.of(EVENT_ID));
+
+        List<BizEvent> bizEventItems = List.of(generateValidBizEvent("1"));
+
+        // test execution
+        assertDoesNotThrow(() -> sut.processBizEventToReceipt(bizEventItems, documentdb, cartDocumentdb, context));
+
+        verify(documentdb).setValue(receiptBindingCaptor.capture());
+        Receipt captured = receiptBindingCaptor.getValue().get(0);
+        assertEquals(ReceiptStatusType.FAILED, captured.getStatus());
+        assertEquals(EVENT_ID, captured.getEventId());
+    }
+
+    @Test
+    @SneakyThrows
+    void errorCheckingTheReceiptOfFilterSkippedFailedBizEventIsRethrown() {
+        RuntimeException cosmosError = new RuntimeException("cosmos unavailable");
+        doReturn(filterSkipped(EVENT_ID)).when(receiptService).findAlreadyProcessedBizEvents(anyList());
+        doThrow(new PDVTokenizerException(HTTP_MESSAGE_ERROR, org.apache.http.HttpStatus.SC_INTERNAL_SERVER_ERROR))
+                .when(receiptService).tokenizeFiscalCodes(any(), any(), any());
+        doThrow(cosmosError).when(receiptService).findSavedReceiptEventIds(List.of(EVENT_ID));
+
+        List<BizEvent> bizEventItems = List.of(generateValidBizEvent("1"));
+
+        // test execution
+        RuntimeException thrown = assertThrows(RuntimeException.class,
+                () -> sut.processBizEventToReceipt(bizEventItems, documentdb, cartDocumentdb, context));
+
+        assertEquals(cosmosError, thrown);
+        verify(documentdb, never()).setValue(any());
+    }
+
     @Test
     @SneakyThrows
     void errorSavingReceiptToCosmosSingleReceipt() {
-        doThrow(ReceiptNotFoundException.class).when(receiptService).getReceipt(EVENT_ID);
+        doReturn(notProcessed()).when(receiptService).findAlreadyProcessedBizEvents(anyList());
         doAnswer(invocation -> {
             EventData passed = invocation.getArgument(2);
             passed.setDebtorFiscalCode(TOKENIZED_DEBTOR_FISCAL_CODE);
@@ -369,13 +430,15 @@ class BizEventToReceiptTest {
             return null;
         }).when(receiptService).tokenizeFiscalCodes(any(), any(Receipt.class), any(EventData.class));
         doAnswer(invocation -> {
-            Receipt passed = invocation.getArgument(0);
-            passed.setStatus(ReceiptStatusType.FAILED);
-            passed.setReasonErr(ReasonError.builder()
-                    .code(ReasonErrorCode.ERROR_COSMOS.getCode())
-                    .build());
-            return null;
-        }).when(receiptService).handleSaveReceipt(any(Receipt.class));
+            List<Receipt> passed = invocation.getArgument(0);
+            passed.forEach(receipt -> {
+                receipt.setStatus(ReceiptStatusType.FAILED);
+                receipt.setReasonErr(ReasonError.builder()
+                        .code(ReasonErrorCode.ERROR_COSMOS.getCode())
+                        .build());
+            });
+            return Collections.emptyList();
+        }).when(receiptService).handleSaveReceipts(anyList());
 
         List<BizEvent> bizEventItems = new ArrayList<>();
         bizEventItems.add(generateValidBizEvent("1"));
@@ -383,12 +446,12 @@ class BizEventToReceiptTest {
         // test execution
         assertDoesNotThrow(() -> sut.processBizEventToReceipt(bizEventItems, documentdb, cartDocumentdb, context));
 
-        verify(receiptService).handleSaveReceipt(any());
-        verify(receiptService, never()).handleSendMessageToQueue(any(), any());
+        verify(receiptService).handleSaveReceipts(anyList());
+        verify(receiptService, never()).handleSendMessagesToQueue(anyList());
         verify(receiptService, never()).buildCartForReceipt(any());
         verify(receiptService, never()).saveCartForReceipt(any(), any());
-        verify(receiptService, never()).getCartBizEvents(any());
-        verify(receiptService, never()).handleSendCartMessageToQueue(anyList(), any());
+        verify(receiptService, never()).getCartBizEvents(any(), anyMap());
+        verify(receiptService, never()).handleSendCartMessagesToQueue(anyList());
         verify(documentdb).setValue(receiptBindingCaptor.capture());
 
         Receipt captured = receiptBindingCaptor.getValue().get(0);
@@ -407,7 +470,7 @@ class BizEventToReceiptTest {
     @Test
     @SneakyThrows
     void errorAddingMessageToQueueSingleReceipt() {
-        doThrow(ReceiptNotFoundException.class).when(receiptService).getReceipt(EVENT_ID);
+        doReturn(notProcessed()).when(receiptService).findAlreadyProcessedBizEvents(anyList());
         doAnswer(invocation -> {
             EventData passed = invocation.getArgument(2);
             passed.setDebtorFiscalCode(TOKENIZED_DEBTOR_FISCAL_CODE);
@@ -415,13 +478,15 @@ class BizEventToReceiptTest {
             return null;
         }).when(receiptService).tokenizeFiscalCodes(any(), any(Receipt.class), any(EventData.class));
         doAnswer(invocation -> {
-            Receipt passed = invocation.getArgument(1);
-            passed.setStatus(ReceiptStatusType.NOT_QUEUE_SENT);
-            passed.setReasonErr(ReasonError.builder()
-                    .code(ReasonErrorCode.ERROR_QUEUE.getCode())
-                    .build());
+            List<PendingQueueMessage<Receipt>> passed = invocation.getArgument(0);
+            passed.forEach(message -> {
+                message.getDocument().setStatus(ReceiptStatusType.NOT_QUEUE_SENT);
+                message.getDocument().setReasonErr(ReasonError.builder()
+                        .code(ReasonErrorCode.ERROR_QUEUE.getCode())
+                        .build());
+            });
             return null;
-        }).when(receiptService).handleSendMessageToQueue(any(), any(Receipt.class));
+        }).when(receiptService).handleSendMessagesToQueue(anyList());
 
 
         List<BizEvent> bizEventItems = new ArrayList<>();
@@ -430,12 +495,12 @@ class BizEventToReceiptTest {
         // test execution
         assertDoesNotThrow(() -> sut.processBizEventToReceipt(bizEventItems, documentdb, cartDocumentdb, context));
 
-        verify(receiptService).handleSaveReceipt(any());
-        verify(receiptService).handleSendMessageToQueue(any(), any());
+        verify(receiptService).handleSaveReceipts(anyList());
+        verify(receiptService).handleSendMessagesToQueue(anyList());
         verify(receiptService, never()).buildCartForReceipt(any());
         verify(receiptService, never()).saveCartForReceipt(any(), any());
-        verify(receiptService, never()).getCartBizEvents(any());
-        verify(receiptService, never()).handleSendCartMessageToQueue(anyList(), any());
+        verify(receiptService, never()).getCartBizEvents(any(), anyMap());
+        verify(receiptService, never()).handleSendCartMessagesToQueue(anyList());
         verify(documentdb).setValue(receiptBindingCaptor.capture());
 
         Receipt captured = receiptBindingCaptor.getValue().get(0);
@@ -464,12 +529,12 @@ class BizEventToReceiptTest {
         // test execution
         assertDoesNotThrow(() -> function.processBizEventToReceipt(bizEventItems, documentdb, cartDocumentdb, context));
 
-        verify(receiptService, never()).handleSaveReceipt(any());
-        verify(receiptService, never()).handleSendMessageToQueue(any(), any());
+        verify(receiptService, never()).handleSaveReceipts(anyList());
+        verify(receiptService, never()).handleSendMessagesToQueue(anyList());
         verify(receiptService, never()).buildCartForReceipt(any());
         verify(receiptService, never()).saveCartForReceipt(any(), any());
-        verify(receiptService, never()).getCartBizEvents(any());
-        verify(receiptService, never()).handleSendCartMessageToQueue(anyList(), any());
+        verify(receiptService, never()).getCartBizEvents(any(), anyMap());
+        verify(receiptService, never()).handleSendCartMessagesToQueue(anyList());
         verify(documentdb, never()).setValue(any());
         verify(cartDocumentdb, never()).setValue(any());
     }
@@ -485,12 +550,12 @@ class BizEventToReceiptTest {
         // test execution
         assertDoesNotThrow(() -> sut.processBizEventToReceipt(bizEventItems, documentdb, cartDocumentdb, context));
 
-        verify(receiptService, never()).handleSaveReceipt(any());
-        verify(receiptService, never()).handleSendMessageToQueue(any(), any());
+        verify(receiptService, never()).handleSaveReceipts(anyList());
+        verify(receiptService, never()).handleSendMessagesToQueue(anyList());
         verify(receiptService, never()).buildCartForReceipt(any());
         verify(receiptService, never()).saveCartForReceipt(any(), any());
-        verify(receiptService, never()).getCartBizEvents(any());
-        verify(receiptService, never()).handleSendCartMessageToQueue(anyList(), any());
+        verify(receiptService, never()).getCartBizEvents(any(), anyMap());
+        verify(receiptService, never()).handleSendCartMessagesToQueue(anyList());
         verify(documentdb, never()).setValue(any());
         verify(cartDocumentdb, never()).setValue(any());
     }
@@ -501,7 +566,7 @@ class BizEventToReceiptTest {
         CartForReceipt cartForReceipt = buildCartForReceiptWaitingForBiz();
         int totalNotice = cartForReceipt.getPayload().getTotalNotice();
 
-        doThrow(CartNotFoundException.class).when(receiptService).getCartForReceipt(CART_ID);
+        doReturn(notProcessed()).when(receiptService).findAlreadyProcessedBizEvents(anyList());
         doReturn(cartForReceipt).when(receiptService).buildCartForReceipt(any());
         doReturn(cartForReceipt).when(receiptService).saveCartForReceipt(any(), any());
 
@@ -511,8 +576,8 @@ class BizEventToReceiptTest {
         // test execution
         assertDoesNotThrow(() -> sut.processBizEventToReceipt(bizEventItems, documentdb, cartDocumentdb, context));
 
-        verify(receiptService, never()).handleSaveReceipt(any());
-        verify(receiptService, never()).handleSendMessageToQueue(any(), any());
+        verify(receiptService, never()).handleSaveReceipts(anyList());
+        verify(receiptService, never()).handleSendMessagesToQueue(anyList());
         verify(receiptService).buildCartForReceipt(any());
         verify(receiptService).saveCartForReceipt(cartForReceiptCaptor.capture(), any());
 
@@ -531,8 +596,8 @@ class BizEventToReceiptTest {
         assertEquals(TOKENIZED_DEBTOR_FISCAL_CODE, savedCart.getPayload().getCart().get(0).getDebtorFiscalCode());
         assertEquals(REMITTANCE_INFORMATION, savedCart.getPayload().getCart().get(0).getSubject());
 
-        verify(receiptService, never()).getCartBizEvents(any());
-        verify(receiptService, never()).handleSendCartMessageToQueue(anyList(), any());
+        verify(receiptService, never()).getCartBizEvents(any(), anyMap());
+        verify(receiptService, never()).handleSendCartMessagesToQueue(anyList());
         verify(documentdb, never()).setValue(any());
         verify(cartDocumentdb, never()).setValue(any());
     }
@@ -543,7 +608,7 @@ class BizEventToReceiptTest {
         CartForReceipt cartForReceipt = buildCartForReceiptInserted();
         int totalNotice = cartForReceipt.getPayload().getTotalNotice();
 
-        doThrow(CartNotFoundException.class).when(receiptService).getCartForReceipt(CART_ID);
+        doReturn(notProcessed()).when(receiptService).findAlreadyProcessedBizEvents(anyList());
         doReturn(cartForReceipt).when(receiptService).buildCartForReceipt(any());
         doReturn(cartForReceipt).when(receiptService).saveCartForReceipt(any(), any());
 
@@ -553,8 +618,8 @@ class BizEventToReceiptTest {
         // test execution
         assertDoesNotThrow(() -> sut.processBizEventToReceipt(bizEventItems, documentdb, cartDocumentdb, context));
 
-        verify(receiptService, never()).handleSaveReceipt(any());
-        verify(receiptService, never()).handleSendMessageToQueue(any(), any());
+        verify(receiptService, never()).handleSaveReceipts(anyList());
+        verify(receiptService, never()).handleSendMessagesToQueue(anyList());
         verify(receiptService).buildCartForReceipt(any());
         verify(receiptService).saveCartForReceipt(cartForReceiptCaptor.capture(), any());
 
@@ -576,8 +641,8 @@ class BizEventToReceiptTest {
         assertEquals(TOKENIZED_DEBTOR_FISCAL_CODE_2, savedCart.getPayload().getCart().get(1).getDebtorFiscalCode());
         assertEquals(REMITTANCE_INFORMATION_2, savedCart.getPayload().getCart().get(1).getSubject());
 
-        verify(receiptService).getCartBizEvents(any());
-        verify(receiptService).handleSendCartMessageToQueue(anyList(), any());
+        verify(receiptService).getCartBizEvents(any(), anyMap());
+        verify(receiptService).handleSendCartMessagesToQueue(anyList());
         verify(documentdb, never()).setValue(any());
         verify(cartDocumentdb, never()).setValue(any());
     }
@@ -588,7 +653,7 @@ class BizEventToReceiptTest {
         CartForReceipt cartForReceipt = buildCartForReceiptFailed();
         int totalNotice = cartForReceipt.getPayload().getTotalNotice();
 
-        doThrow(CartNotFoundException.class).when(receiptService).getCartForReceipt(CART_ID);
+        doReturn(notProcessed()).when(receiptService).findAlreadyProcessedBizEvents(anyList());
         doReturn(cartForReceipt).when(receiptService).buildCartForReceipt(any());
 
         List<BizEvent> bizEventItems = new ArrayList<>();
@@ -597,12 +662,12 @@ class BizEventToReceiptTest {
         // test execution
         assertDoesNotThrow(() -> sut.processBizEventToReceipt(bizEventItems, documentdb, cartDocumentdb, context));
 
-        verify(receiptService, never()).handleSaveReceipt(any());
-        verify(receiptService, never()).handleSendMessageToQueue(any(), any());
+        verify(receiptService, never()).handleSaveReceipts(anyList());
+        verify(receiptService, never()).handleSendMessagesToQueue(anyList());
         verify(receiptService).buildCartForReceipt(any());
         verify(receiptService, never()).saveCartForReceipt(any(), any());
-        verify(receiptService, never()).getCartBizEvents(any());
-        verify(receiptService, never()).handleSendCartMessageToQueue(anyList(), any());
+        verify(receiptService, never()).getCartBizEvents(any(), anyMap());
+        verify(receiptService, never()).handleSendCartMessagesToQueue(anyList());
         verify(documentdb, never()).setValue(any());
         verify(cartDocumentdb).setValue(cartForReceiptBindingCaptor.capture());
 
@@ -635,7 +700,7 @@ class BizEventToReceiptTest {
                 .code(ReasonErrorCode.ERROR_COSMOS.getCode())
                 .build());
 
-        doThrow(CartNotFoundException.class).when(receiptService).getCartForReceipt(CART_ID);
+        doReturn(notProcessed()).when(receiptService).findAlreadyProcessedBizEvents(anyList());
         doReturn(cartForReceipt).when(receiptService).buildCartForReceipt(any());
         doReturn(errorSaveCart).when(receiptService).saveCartForReceipt(any(), any());
 
@@ -645,12 +710,12 @@ class BizEventToReceiptTest {
         // test execution
         assertDoesNotThrow(() -> sut.processBizEventToReceipt(bizEventItems, documentdb, cartDocumentdb, context));
 
-        verify(receiptService, never()).handleSaveReceipt(any());
-        verify(receiptService, never()).handleSendMessageToQueue(any(), any());
+        verify(receiptService, never()).handleSaveReceipts(anyList());
+        verify(receiptService, never()).handleSendMessagesToQueue(anyList());
         verify(receiptService).buildCartForReceipt(any());
         verify(receiptService).saveCartForReceipt(any(), any());
-        verify(receiptService, never()).getCartBizEvents(any());
-        verify(receiptService, never()).handleSendCartMessageToQueue(anyList(), any());
+        verify(receiptService, never()).getCartBizEvents(any(), anyMap());
+        verify(receiptService, never()).handleSendCartMessagesToQueue(anyList());
         verify(documentdb, never()).setValue(any());
         verify(cartDocumentdb).setValue(cartForReceiptBindingCaptor.capture());
 
@@ -683,7 +748,7 @@ class BizEventToReceiptTest {
         CartForReceipt cartForReceipt = buildCartForReceiptInserted();
         int totalNotice = cartForReceipt.getPayload().getTotalNotice();
 
-        doThrow(CartNotFoundException.class).when(receiptService).getCartForReceipt(CART_ID);
+        doReturn(notProcessed()).when(receiptService).findAlreadyProcessedBizEvents(anyList());
         doReturn(cartForReceipt).when(receiptService).buildCartForReceipt(any());
         doReturn(cartForReceipt).when(receiptService).saveCartForReceipt(any(), any());
         doAnswer(invocation -> {
@@ -693,7 +758,7 @@ class BizEventToReceiptTest {
                     .code(ReasonErrorCode.GENERIC_ERROR.getCode())
                     .build());
             return null;
-        }).when(receiptService).getCartBizEvents(any(CartForReceipt.class));
+        }).when(receiptService).getCartBizEvents(any(CartForReceipt.class), anyMap());
 
         List<BizEvent> bizEventItems = new ArrayList<>();
         bizEventItems.add(generateValidBizEvent(String.valueOf(totalNotice)));
@@ -701,12 +766,12 @@ class BizEventToReceiptTest {
         // test execution
         assertDoesNotThrow(() -> sut.processBizEventToReceipt(bizEventItems, documentdb, cartDocumentdb, context));
 
-        verify(receiptService, never()).handleSaveReceipt(any());
-        verify(receiptService, never()).handleSendMessageToQueue(any(), any());
+        verify(receiptService, never()).handleSaveReceipts(anyList());
+        verify(receiptService, never()).handleSendMessagesToQueue(anyList());
         verify(receiptService).buildCartForReceipt(any());
         verify(receiptService).saveCartForReceipt(any(), any());
-        verify(receiptService).getCartBizEvents(any());
-        verify(receiptService, never()).handleSendCartMessageToQueue(anyList(), any());
+        verify(receiptService).getCartBizEvents(any(), anyMap());
+        verify(receiptService, never()).handleSendCartMessagesToQueue(anyList());
         verify(documentdb, never()).setValue(any());
         verify(cartDocumentdb).setValue(cartForReceiptBindingCaptor.capture());
 
@@ -741,17 +806,19 @@ class BizEventToReceiptTest {
         CartForReceipt cartForReceipt = buildCartForReceiptInserted();
         int totalNotice = cartForReceipt.getPayload().getTotalNotice();
 
-        doThrow(CartNotFoundException.class).when(receiptService).getCartForReceipt(CART_ID);
+        doReturn(notProcessed()).when(receiptService).findAlreadyProcessedBizEvents(anyList());
         doReturn(cartForReceipt).when(receiptService).buildCartForReceipt(any());
         doReturn(cartForReceipt).when(receiptService).saveCartForReceipt(any(), any());
         doAnswer(invocation -> {
-            CartForReceipt passed = invocation.getArgument(1);
-            passed.setStatus(CartStatusType.NOT_QUEUE_SENT);
-            passed.setReasonErr(ReasonError.builder()
-                    .code(ReasonErrorCode.ERROR_QUEUE.getCode())
-                    .build());
+            List<PendingQueueMessage<CartForReceipt>> passed = invocation.getArgument(0);
+            passed.forEach(message -> {
+                message.getDocument().setStatus(CartStatusType.NOT_QUEUE_SENT);
+                message.getDocument().setReasonErr(ReasonError.builder()
+                        .code(ReasonErrorCode.ERROR_QUEUE.getCode())
+                        .build());
+            });
             return null;
-        }).when(receiptService).handleSendCartMessageToQueue(anyList(), any(CartForReceipt.class));
+        }).when(receiptService).handleSendCartMessagesToQueue(anyList());
 
         List<BizEvent> bizEventItems = new ArrayList<>();
         bizEventItems.add(generateValidBizEvent(String.valueOf(totalNotice)));
@@ -759,12 +826,12 @@ class BizEventToReceiptTest {
         // test execution
         assertDoesNotThrow(() -> sut.processBizEventToReceipt(bizEventItems, documentdb, cartDocumentdb, context));
 
-        verify(receiptService, never()).handleSaveReceipt(any());
-        verify(receiptService, never()).handleSendMessageToQueue(any(), any());
+        verify(receiptService, never()).handleSaveReceipts(anyList());
+        verify(receiptService, never()).handleSendMessagesToQueue(anyList());
         verify(receiptService).buildCartForReceipt(any());
         verify(receiptService).saveCartForReceipt(any(), any());
-        verify(receiptService).getCartBizEvents(any());
-        verify(receiptService).handleSendCartMessageToQueue(anyList(), any());
+        verify(receiptService).getCartBizEvents(any(), anyMap());
+        verify(receiptService).handleSendCartMessagesToQueue(anyList());
         verify(documentdb, never()).setValue(any());
         verify(cartDocumentdb).setValue(cartForReceiptBindingCaptor.capture());
 
@@ -793,6 +860,294 @@ class BizEventToReceiptTest {
         assertEquals(ReasonErrorCode.ERROR_QUEUE.getCode(), savedCart.getReasonErr().getCode());
     }
 
+    @Test
+    @SneakyThrows
+    void runOkMultipleSingleReceipts() {
+        doReturn(notProcessed()).when(receiptService).findAlreadyProcessedBizEvents(anyList());
+        doReturn(CREATION_DATE).when(receiptService).getTransactionCreationDate(any());
+
+        List<BizEvent> bizEventItems = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            BizEvent bizEvent = generateValidBizEvent("1");
+            bizEvent.setId(EVENT_ID + i);
+            bizEventItems.add(bizEvent);
+        }
+
+        // test execution
+        assertDoesNotThrow(() -> sut.processBizEventToReceipt(bizEventItems, documentdb, cartDocumentdb, context));
+
+        verify(receiptService).prefetchFiscalCodeTokens(bizEventItems);
+        verify(receiptService).handleSaveReceipts(savedReceiptsCaptor.capture());
+        List<String> savedEventIds = savedReceiptsCaptor.getValue().stream().map(Receipt::getEventId).toList();
+        for (BizEvent bizEvent : bizEventItems) {
+            assertTrue(savedEventIds.contains(bizEvent.getId()));
+        }
+        verify(receiptService).handleSendMessagesToQueue(argThat(messages -> messages.size() == 5));
+        verify(receiptService, never()).buildCartForReceipt(any());
+        verify(documentdb, never()).setValue(any());
+        verify(cartDocumentdb, never()).setValue(any());
+    }
+
+    @Test
+    @SneakyThrows
+    void runOkCartEventsProcessedInTheSameLane() {
+        CartForReceipt cartWaiting = buildCartForReceiptWaitingForBiz();
+        CartForReceipt cartInserted = buildCartForReceiptInserted();
+        int totalNotice = cartWaiting.getPayload().getTotalNotice();
+
+        doReturn(notProcessed()).when(receiptService).findAlreadyProcessedBizEvents(anyList());
+        doReturn(cartWaiting, cartInserted).when(receiptService).buildCartForReceipt(any());
+        doReturn(cartWaiting, cartInserted).when(receiptService).saveCartForReceipt(any(), any());
+
+        BizEvent firstBizEvent = generateValidBizEvent(String.valueOf(totalNotice));
+        BizEvent secondBizEvent = generateValidBizEvent(String.valueOf(totalNotice));
+        secondBizEvent.setId(EVENT_ID_2);
+        List<BizEvent> bizEventItems = List.of(firstBizEvent, secondBizEvent);
+
+        // test execution
+        assertDoesNotThrow(() -> sut.processBizEventToReceipt(bizEventItems, documentdb, cartDocumentdb, context));
+
+        InOrder inOrder = inOrder(receiptService);
+        inOrder.verify(receiptService).buildCartForReceipt(firstBizEvent);
+        inOrder.verify(receiptService).saveCartForReceipt(cartWaiting, firstBizEvent);
+        inOrder.verify(receiptService).buildCartForReceipt(secondBizEvent);
+        inOrder.verify(receiptService).saveCartForReceipt(cartInserted, secondBizEvent);
+        inOrder.verify(receiptService).getCartBizEvents(eq(cartInserted), anyMap());
+        inOrder.verify(receiptService).handleSendCartMessagesToQueue(anyList());
+        verify(receiptService, never()).handleSaveReceipts(anyList());
+        verify(documentdb, never()).setValue(any());
+        verify(cartDocumentdb, never()).setValue(any());
+    }
+
+    @Test
+    @SneakyThrows
+    void runOkDuplicatedEventInTheSameBatchProcessedOnce() {
+        doReturn(notProcessed()).when(receiptService).findAlreadyProcessedBizEvents(anyList());
+        doReturn(CREATION_DATE).when(receiptService).getTransactionCreationDate(any());
+
+        List<BizEvent> bizEventItems = List.of(generateValidBizEvent("1"), generateValidBizEvent("1"));
+
+        // test execution
+        assertDoesNotThrow(() -> sut.processBizEventToReceipt(bizEventItems, documentdb, cartDocumentdb, context));
+
+        verify(receiptService).findAlreadyProcessedBizEvents(List.of(bizEventItems.get(0)));
+        verify(receiptService).handleSaveReceipts(anyList());
+        verify(receiptService).handleSendMessagesToQueue(anyList());
+        verify(documentdb, never()).setValue(any());
+        verify(cartDocumentdb, never()).setValue(any());
+    }
+
+    @Test
+    @SneakyThrows
+    void runOkReceiptAlreadySavedIsDiscarded() {
+        doReturn(notProcessed()).when(receiptService).findAlreadyProcessedBizEvents(anyList());
+        doReturn(CREATION_DATE).when(receiptService).getTransactionCreationDate(any());
+        doAnswer(invocation -> invocation.getArgument(0)).when(receiptService).handleSaveReceipts(anyList());
+
+        List<BizEvent> bizEventItems = List.of(generateValidBizEvent("1"));
+
+        // test execution
+        assertDoesNotThrow(() -> sut.processBizEventToReceipt(bizEventItems, documentdb, cartDocumentdb, context));
+
+        verify(receiptService).handleSaveReceipts(anyList());
+        verify(receiptService, never()).handleSendMessagesToQueue(anyList());
+        verify(documentdb, never()).setValue(any());
+        verify(cartDocumentdb, never()).setValue(any());
+    }
+
+    @Test
+    @SneakyThrows
+    void receiptWithUnknownBulkOutcomeIsNeitherSentNorWrittenAndTheBatchIsRetried() {
+        doReturn(notProcessed()).when(receiptService).findAlreadyProcessedBizEvents(anyList());
+        doReturn(CREATION_DATE).when(receiptService).getTransactionCreationDate(any());
+        doAnswer(invocation -> {
+            List<Receipt> receipts = invocation.getArgument(0);
+            throw new ReceiptBulkSaveException(Collections.emptyList(), List.of(receipts.get(1)), new RuntimeException());
+        }).when(receiptService).handleSaveReceipts(anyList());
+
+        BizEvent savedBizEvent = generateValidBizEvent("1");
+        BizEvent unknownBizEvent = generateValidBizEvent("1");
+        unknownBizEvent.setId(EVENT_ID_2);
+        List<BizEvent> bizEventItems = List.of(savedBizEvent, unknownBizEvent);
+
+        // test execution
+        assertThrows(ReceiptBulkSaveException.class,
+                () -> sut.processBizEventToReceipt(bizEventItems, documentdb, cartDocumentdb, context));
+
+        verify(receiptService).handleSaveReceipts(savedReceiptsCaptor.capture());
+        Receipt savedReceipt = savedReceiptsCaptor.getValue().get(0);
+        verify(receiptService).handleSendMessagesToQueue(receiptMessageCaptor.capture());
+        assertEquals(1, receiptMessageCaptor.getValue().size());
+        assertEquals(savedReceipt, receiptMessageCaptor.getValue().get(0).getDocument());
+        // the receipt with unknown outcome is not downgraded to failed
+        verify(documentdb, never()).setValue(any());
+    }
+
+    @Test
+    @SneakyThrows
+    void errorInALaneCompletesTheOtherLanesAndIsRethrown() {
+        environmentVariables.set("CART_PATCH_ENABLED", "true");
+        BizEventToReceipt function = new BizEventToReceipt(receiptService);
+        CartForReceipt cartForReceipt = buildCartForReceiptInserted();
+        IllegalStateException laneError = new IllegalStateException("lane failure");
+
+        doReturn(notProcessed()).when(receiptService).findAlreadyProcessedBizEvents(anyList());
+        doReturn(cartForReceipt).when(receiptService).appendToCartForReceipt(any());
+        doThrow(laneError).when(receiptService).getTransactionCreationDate(any());
+
+        BizEvent receiptBizEvent = generateValidBizEvent("1");
+        receiptBizEvent.setId(EVENT_ID_2);
+        BizEvent cartBizEvent = generateValidBizEvent(String.valueOf(cartForReceipt.getPayload().getTotalNotice()));
+        List<BizEvent> bizEventItems = List.of(receiptBizEvent, cartBizEvent);
+
+        // test execution
+        IllegalStateException thrown = assertThrows(IllegalStateException.class,
+                () -> function.processBizEventToReceipt(bizEventItems, documentdb, cartDocumentdb, context));
+
+        assertEquals(laneError, thrown);
+        // the cart appended by the other lane is still sent to the queue
+        verify(receiptService).handleSendCartMessagesToQueue(cartMessageCaptor.capture());
+        assertEquals(cartForReceipt, cartMessageCaptor.getValue().get(0).getDocument());
+        verify(receiptService, never()).handleSaveReceipts(anyList());
+    }
+
+    private BizEventDedupResult notProcessed() {
+        return processed();
+    }
+
+    private BizEventDedupResult filterSkipped(String... bizEventIds) {
+        return BizEventDedupResult.builder()
+                .processedBizEventIds(Collections.emptySet())
+                .filterSkippedBizEventIds(Set.of(bizEventIds))
+                .build();
+    }
+
+    private BizEventDedupResult processed(String... bizEventIds) {
+        return BizEventDedupResult.builder()
+                .processedBizEventIds(Set.of(bizEventIds))
+                .build();
+    }
+
+    @Test
+    @SneakyThrows
+    void runOkCartPatchWaiting() {
+        environmentVariables.set("CART_PATCH_ENABLED", "true");
+        BizEventToReceipt function = new BizEventToReceipt(receiptService);
+        CartForReceipt cartForReceipt = buildCartForReceiptWaitingForBiz();
+
+        doReturn(notProcessed()).when(receiptService).findAlreadyProcessedBizEvents(anyList());
+        doReturn(cartForReceipt).when(receiptService).appendToCartForReceipt(any());
+
+        List<BizEvent> bizEventItems = new ArrayList<>();
+        bizEventItems.add(generateValidBizEvent(String.valueOf(cartForReceipt.getPayload().getTotalNotice())));
+
+        // test execution
+        assertDoesNotThrow(() -> function.processBizEventToReceipt(bizEventItems, documentdb, cartDocumentdb, context));
+
+        verify(receiptService).appendToCartForReceipt(List.of(bizEventItems.get(0)));
+        verify(receiptService, never()).buildCartForReceipt(any());
+        verify(receiptService, never()).saveCartForReceipt(any(), any());
+        verify(receiptService, never()).getCartBizEvents(any(), anyMap());
+        verify(receiptService, never()).handleSendCartMessagesToQueue(anyList());
+        verify(cartDocumentdb, never()).setValue(any());
+    }
+
+    @Test
+    @SneakyThrows
+    void runOkCartPatchCompleted() {
+        environmentVariables.set("CART_PATCH_ENABLED", "true");
+        BizEventToReceipt function = new BizEventToReceipt(receiptService);
+        CartForReceipt cartForReceipt = buildCartForReceiptInserted();
+
+        doReturn(notProcessed()).when(receiptService).findAlreadyProcessedBizEvents(anyList());
+        doReturn(cartForReceipt).when(receiptService).appendToCartForReceipt(any());
+
+        List<BizEvent> bizEventItems = new ArrayList<>();
+        bizEventItems.add(generateValidBizEvent(String.valueOf(cartForReceipt.getPayload().getTotalNotice())));
+
+        // test execution
+        assertDoesNotThrow(() -> function.processBizEventToReceipt(bizEventItems, documentdb, cartDocumentdb, context));
+
+        verify(receiptService).appendToCartForReceipt(List.of(bizEventItems.get(0)));
+        verify(receiptService).getCartBizEvents(eq(cartForReceipt), anyMap());
+        verify(receiptService).handleSendCartMessagesToQueue(anyList());
+        verify(cartDocumentdb, never()).setValue(any());
+    }
+
+    @Test
+    @SneakyThrows
+    void runOkCartPatchSameCartEventsAppendedTogether() {
+        environmentVariables.set("CART_PATCH_ENABLED", "true");
+        BizEventToReceipt function = new BizEventToReceipt(receiptService);
+        CartForReceipt cartForReceipt = buildCartForReceiptInserted();
+
+        doReturn(notProcessed()).when(receiptService).findAlreadyProcessedBizEvents(anyList());
+        doReturn(cartForReceipt).when(receiptService).appendToCartForReceipt(any());
+
+        List<BizEvent> bizEventItems = new ArrayList<>();
+        bizEventItems.add(generateValidBizEvent("2"));
+        BizEvent otherBizEvent = generateValidBizEvent("2");
+        otherBizEvent.setId("another event id");
+        bizEventItems.add(otherBizEvent);
+
+        // test execution
+        assertDoesNotThrow(() -> function.processBizEventToReceipt(bizEventItems, documentdb, cartDocumentdb, context));
+
+        verify(receiptService).appendToCartForReceipt(bizEventItems);
+        verify(receiptService).getCartBizEvents(cartForReceipt,
+                Map.of(EVENT_ID, bizEventItems.get(0), "another event id", otherBizEvent));
+        verify(receiptService).handleSendCartMessagesToQueue(cartMessageCaptor.capture());
+        assertEquals(1, cartMessageCaptor.getValue().size());
+        verify(cartDocumentdb, never()).setValue(any());
+    }
+
+    @Test
+    @SneakyThrows
+    void runOkCartPatchItemAlreadyAdded() {
+        environmentVariables.set("CART_PATCH_ENABLED", "true");
+        BizEventToReceipt function = new BizEventToReceipt(receiptService);
+
+        doReturn(notProcessed()).when(receiptService).findAlreadyProcessedBizEvents(anyList());
+        doReturn(null).when(receiptService).appendToCartForReceipt(any());
+
+        List<BizEvent> bizEventItems = new ArrayList<>();
+        bizEventItems.add(generateValidBizEvent("2"));
+
+        // test execution
+        assertDoesNotThrow(() -> function.processBizEventToReceipt(bizEventItems, documentdb, cartDocumentdb, context));
+
+        verify(receiptService).appendToCartForReceipt(List.of(bizEventItems.get(0)));
+        verify(receiptService, never()).getCartBizEvents(any(), anyMap());
+        verify(receiptService, never()).handleSendCartMessagesToQueue(anyList());
+        verify(cartDocumentdb, never()).setValue(any());
+    }
+
+    @Test
+    @SneakyThrows
+    void errorCartPatch() {
+        environmentVariables.set("CART_PATCH_ENABLED", "true");
+        BizEventToReceipt function = new BizEventToReceipt(receiptService);
+        CartForReceipt failedCart = buildCartForReceiptWaitingForBiz();
+        failedCart.setStatus(CartStatusType.FAILED);
+        failedCart.setReasonErr(ReasonError.builder()
+                .code(ReasonErrorCode.ERROR_COSMOS_ETAG_MISMATCH.getCode())
+                .build());
+
+        doReturn(notProcessed()).when(receiptService).findAlreadyProcessedBizEvents(anyList());
+        doReturn(failedCart).when(receiptService).appendToCartForReceipt(any());
+
+        List<BizEvent> bizEventItems = new ArrayList<>();
+        bizEventItems.add(generateValidBizEvent(String.valueOf(failedCart.getPayload().getTotalNotice())));
+
+        // test execution
+        assertDoesNotThrow(() -> function.processBizEventToReceipt(bizEventItems, documentdb, cartDocumentdb, context));
+
+        verify(receiptService, never()).handleSendCartMessagesToQueue(anyList());
+        verify(cartDocumentdb).setValue(cartForReceiptBindingCaptor.capture());
+        assertEquals(1, cartForReceiptBindingCaptor.getValue().size());
+        assertEquals(CartStatusType.FAILED, cartForReceiptBindingCaptor.getValue().get(0).getStatus());
+    }
+
     private CartForReceipt buildCartForReceiptWaitingForBiz() {
         return CartForReceipt.builder()
                 .cartId(CART_ID)
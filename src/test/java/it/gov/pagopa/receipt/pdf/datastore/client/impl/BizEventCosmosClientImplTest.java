@@ -3,6 +3,7 @@ package it.gov.pagopa.receipt.pdf.datastore.client.impl;
 import com.azure.cosmos.CosmosContainer;
 import com.azure.cosmos.CosmosException;
 import com.azure.cosmos.models.CosmosItemResponse;
+import com.azure.cosmos.models.FeedResponse;
 import com.azure.cosmos.models.SqlQuerySpec;
 import com.azure.cosmos.util.CosmosPagedIterable;
 import it.gov.pagopa.receipt.pdf.datastore.entity.event.BizEvent;
@@ -21,6 +22,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
@@ -37,6 +39,8 @@ class BizEventCosmosClientImplTest {
     private CosmosItemResponse<BizEvent> mockResponse;
     @Mock
     private CosmosException mockCosmosException;
+    @Mock
+    private FeedResponse<BizEvent> mockFeedResponse;
 
     @InjectMocks
     private BizEventCosmosClientImpl sut;
@@ -74,6 +78,15 @@ class BizEventCosmosClientImplTest {
         assertEquals(6, result.size());
     }
 
+    @Test
+    void getBizEventDocumentsSuccess() {
+        when(mockContainer.readMany(anyList(), eq(BizEvent.class))).thenReturn(mockFeedResponse);
+
+        FeedResponse<BizEvent> result = assertDoesNotThrow(() -> sut.getBizEventDocuments(List.of("1", "2")));
+
+        assertEquals(mockFeedResponse, result);
+    }
+
     @Test
     void getBizEventDocumentSuccess() {
         when(mockContainer.readItem(anyString(), any(), eq(BizEvent.class))).thenReturn(mockResponse);
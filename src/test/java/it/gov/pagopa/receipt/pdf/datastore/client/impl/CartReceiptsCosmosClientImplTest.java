@@ -3,11 +3,18 @@ package it.gov.pagopa.receipt.pdf.datastore.client.impl;
 import com.azure.cosmos.CosmosContainer;
 import com.azure.cosmos.CosmosException;
 import com.azure.cosmos.models.CosmosItemResponse;
+import com.azure.cosmos.models.CosmosPatchItemRequestOptions;
+import com.azure.cosmos.models.CosmosPatchOperations;
+import com.azure.cosmos.models.CosmosQueryRequestOptions;
+import com.azure.cosmos.models.FeedRange;
 import com.azure.cosmos.models.FeedResponse;
 import com.azure.cosmos.models.SqlQuerySpec;
 import com.azure.cosmos.util.CosmosPagedIterable;
 import it.gov.pagopa.receipt.pdf.datastore.entity.cart.CartForReceipt;
+import it.gov.pagopa.receipt.pdf.datastore.entity.cart.CartPayment;
+import it.gov.pagopa.receipt.pdf.datastore.entity.cart.CartStatusType;
 import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.CartReceiptError;
+import it.gov.pagopa.receipt.pdf.datastore.exception.CartConcurrentUpdateException;
 import it.gov.pagopa.receipt.pdf.datastore.exception.CartNotFoundException;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -15,14 +22,20 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.List;
+import java.util.stream.IntStream;
+
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static uk.org.webcompere.systemstubs.SystemStubs.withEnvironmentVariables;
@@ -44,6 +57,8 @@ class CartReceiptsCosmosClientImplTest {
     private CosmosItemResponse<CartReceiptError> mockReceiptErrorResponse;
     @Mock
     private CosmosException mockCosmosException;
+    @Mock
+    private FeedResponse<CartForReceipt> mockCartFeedResponse;
 
     @InjectMocks
     private CartReceiptsCosmosClientImpl sut;
@@ -72,6 +87,15 @@ class CartReceiptsCosmosClientImplTest {
         assertEquals(CART_ID, result.getId());
     }
 
+    @Test
+    void getCartItemsSuccess() {
+        when(mockContainer.<CartForReceipt>readMany(anyList(), eq(CartForReceipt.class))).thenReturn(mockCartFeedResponse);
+
+        FeedResponse<CartForReceipt> result = assertDoesNotThrow(() -> sut.getCartItems(List.of(CART_ID)));
+
+        assertNotNull(result);
+    }
+
     @Test
     void getCartItem_KO_notFound() {
         when(mockCosmosException.getStatusCode()).thenReturn(404);
@@ -95,6 +119,99 @@ class CartReceiptsCosmosClientImplTest {
         verify(mockContainer).upsertItem(any(), any());
     }
 
+    @Test
+    void createCartSuccess() {
+        CartForReceipt cart = CartForReceipt.builder().id(CART_ID).build();
+        when(mockContainer.createItem(eq(cart), any(), any())).thenReturn(mockReceiptResponse);
+
+        CosmosItemResponse<CartForReceipt> result = assertDoesNotThrow(() -> sut.createCart(cart));
+
+        assertEquals(mockReceiptResponse, result);
+    }
+
+    @Test
+    void createCart_KO_alreadyExists() {
+        when(mockCosmosException.getStatusCode()).thenReturn(409);
+        when(mockContainer.createItem(any(CartForReceipt.class), any(), any())).thenThrow(mockCosmosException);
+
+        CartForReceipt cart = CartForReceipt.builder().id(CART_ID).build();
+        assertThrows(CartConcurrentUpdateException.class, () -> sut.createCart(cart));
+    }
+
+    @Test
+    void appendCartItemsSuccess() {
+        when(mockContainer.patchItem(eq(CART_ID), any(), any(CosmosPatchOperations.class),
+                any(CosmosPatchItemRequestOptions.class), eq(CartForReceipt.class))).thenReturn(mockReceiptResponse);
+
+        CartPayment cartPayment = CartPayment.builder().bizEventId("biz \"event\" id").build();
+        CosmosItemResponse<CartForReceipt> result = assertDoesNotThrow(() -> sut.appendCartItems(CART_ID, List.of(cartPayment)));
+
+        assertEquals(mockReceiptResponse, result);
+    }
+
+    @Test
+    void appendCartItemsSplitsTheItemsInChunksOfTen() {
+        when(mockContainer.patchItem(eq(CART_ID), any(), any(CosmosPatchOperations.class),
+                any(CosmosPatchItemRequestOptions.class), eq(CartForReceipt.class))).thenReturn(mockReceiptResponse);
+
+        List<CartPayment> cartPayments = IntStream.range(0, 12)
+                .mapToObj(i -> CartPayment.builder().bizEventId("biz-event-" + i).build())
+                .toList();
+        CosmosItemResponse<CartForReceipt> result = assertDoesNotThrow(() -> sut.appendCartItems(CART_ID, cartPayments));
+
+        assertEquals(mockReceiptResponse, result);
+        verify(mockContainer, times(2)).patchItem(eq(CART_ID), any(), any(CosmosPatchOperations.class),
+                any(CosmosPatchItemRequestOptions.class), eq(CartForReceipt.class));
+    }
+
+    @Test
+    void appendCartItems_KO_notFound() {
+        when(mockCosmosException.getStatusCode()).thenReturn(404);
+        when(mockContainer.patchItem(eq(CART_ID), any(), any(CosmosPatchOperations.class),
+                any(CosmosPatchItemRequestOptions.class), eq(CartForReceipt.class))).thenThrow(mockCosmosException);
+
+        CartPayment cartPayment = CartPayment.builder().bizEventId("biz-event-id").build();
+        assertThrows(CartNotFoundException.class, () -> sut.appendCartItems(CART_ID, List.of(cartPayment)));
+    }
+
+    @Test
+    void appendCartItems_KO_preconditionFailed() {
+        when(mockCosmosException.getStatusCode()).thenReturn(412);
+        when(mockContainer.patchItem(eq(CART_ID), any(), any(CosmosPatchOperations.class),
+                any(CosmosPatchItemRequestOptions.class), eq(CartForReceipt.class))).thenThrow(mockCosmosException);
+
+        CartPayment cartPayment = CartPayment.builder().bizEventId("biz-event-id").build();
+        assertThrows(CartConcurrentUpdateException.class, () -> sut.appendCartItems(CART_ID, List.of(cartPayment)));
+    }
+
+    @Test
+    void markCartInsertedSuccess() {
+        when(mockContainer.patchItem(eq(CART_ID), any(), any(CosmosPatchOperations.class),
+                any(CosmosPatchItemRequestOptions.class), eq(CartForReceipt.class))).thenReturn(mockReceiptResponse);
+
+        CosmosItemResponse<CartForReceipt> result = assertDoesNotThrow(() -> sut.markCartInserted(CART_ID, 1L));
+
+        assertEquals(mockReceiptResponse, result);
+    }
+
+    @Test
+    void markCartInserted_KO_preconditionFailed() {
+        when(mockCosmosException.getStatusCode()).thenReturn(412);
+        when(mockContainer.patchItem(eq(CART_ID), any(), any(CosmosPatchOperations.class),
+                any(CosmosPatchItemRequestOptions.class), eq(CartForReceipt.class))).thenThrow(mockCosmosException);
+
+        assertThrows(CartConcurrentUpdateException.class, () -> sut.markCartInserted(CART_ID, 1L));
+    }
+
+    @Test
+    void markCartInserted_KO() {
+        when(mockCosmosException.getStatusCode()).thenReturn(500);
+        when(mockContainer.patchItem(eq(CART_ID), any(), any(CosmosPatchOperations.class),
+                any(CosmosPatchItemRequestOptions.class), eq(CartForReceipt.class))).thenThrow(mockCosmosException);
+
+        assertThrows(CosmosException.class, () -> sut.markCartInserted(CART_ID, 1L));
+    }
+
     @Test
     void getCartReceiptErrorSuccess() {
         CartReceiptError receiptError = new CartReceiptError();
@@ -115,9 +232,11 @@ class CartReceiptsCosmosClientImplTest {
         when(mockCartIterable.iterableByPage(anyString(), anyInt())).thenReturn(mockCartIterableByPage);
 
         Iterable<FeedResponse<CartForReceipt>> result =
-                assertDoesNotThrow(() -> sut.getFailedCartReceiptDocuments("1", 0));
+                assertDoesNotThrow(() -> sut.getFailedCartReceiptDocuments("1", 0, CartStatusType.NOT_QUEUE_SENT, null));
 
         assertNotNull(result);
+        verify(mockContainer).queryItems(argThat((SqlQuerySpec querySpec) -> !querySpec.getQueryText().contains(" OR ")),
+                any(), eq(CartForReceipt.class));
     }
 
     @Test
@@ -127,7 +246,7 @@ class CartReceiptsCosmosClientImplTest {
         when(mockCartIterable.iterableByPage(anyString(), anyInt())).thenReturn(mockCartIterableByPage);
 
         Iterable<FeedResponse<CartForReceipt>> result =
-                assertDoesNotThrow(() -> sut.getInsertedCartReceiptDocuments("1", 0));
+                assertDoesNotThrow(() -> sut.getInsertedCartReceiptDocuments("1", 0, CartStatusType.WAITING_FOR_BIZ_EVENT, null));
 
         assertNotNull(result);
     }
@@ -139,7 +258,7 @@ class CartReceiptsCosmosClientImplTest {
         when(mockCartIterable.iterableByPage(anyString(), anyInt())).thenReturn(mockCartIterableByPage);
 
         Iterable<FeedResponse<CartForReceipt>> result =
-                assertDoesNotThrow(() -> sut.getIOErrorToNotifyCartReceiptDocuments("1", 0));
+                assertDoesNotThrow(() -> sut.getIOErrorToNotifyCartReceiptDocuments("1", 0, null));
 
         assertNotNull(result);
     }
@@ -151,8 +270,32 @@ class CartReceiptsCosmosClientImplTest {
         when(mockCartIterable.iterableByPage(anyString(), anyInt())).thenReturn(mockCartIterableByPage);
 
         Iterable<FeedResponse<CartForReceipt>> result =
-                assertDoesNotThrow(() -> sut.getGeneratedCartReceiptDocuments("1", 0));
+                assertDoesNotThrow(() -> sut.getGeneratedCartReceiptDocuments("1", 0, null));
 
         assertNotNull(result);
     }
+
+    @Test
+    void getFailedCartReceiptDocumentsSuccessOnFeedRange() {
+        FeedRange feedRange = FeedRange.forFullRange();
+        when(mockContainer.queryItems(any(SqlQuerySpec.class), any(), eq(CartForReceipt.class)))
+                .thenReturn(mockCartIterable);
+        when(mockCartIterable.iterableByPage(anyString(), anyInt())).thenReturn(mockCartIterableByPage);
+
+        Iterable<FeedResponse<CartForReceipt>> result =
+                assertDoesNotThrow(() -> sut.getFailedCartReceiptDocuments("1", 0, CartStatusType.FAILED, feedRange));
+
+        assertNotNull(result);
+        verify(mockContainer).queryItems(any(SqlQuerySpec.class),
+                argThat((CosmosQueryRequestOptions options) -> feedRange.equals(options.getFeedRange())),
+                eq(CartForReceipt.class));
+    }
+
+    @Test
+    void getFeedRangesSuccess() {
+        List<FeedRange> feedRanges = List.of(FeedRange.forFullRange());
+        when(mockContainer.getFeedRanges()).thenReturn(feedRanges);
+
+        assertEquals(feedRanges, sut.getFeedRanges());
+    }
 }
\ No newline at end of file
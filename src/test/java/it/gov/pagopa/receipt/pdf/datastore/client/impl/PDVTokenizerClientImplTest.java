@@ -1,13 +1,20 @@
 package it.gov.pagopa.receipt.pdf.datastore.client.impl;
 
 import it.gov.pagopa.receipt.pdf.datastore.client.PDVTokenizerClient;
+import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.enumeration.ReasonErrorCode;
 import it.gov.pagopa.receipt.pdf.datastore.exception.PDVTokenizerException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
 import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
@@ -96,4 +103,26 @@ class PDVTokenizerClientImplTest {
 
         verify(clientMock).send(any(), any());
     }
-}
\ No newline at end of file
+
+    @Test
+    void createTokenAsyncSuccess() {
+        HttpResponse<String> responseMock = mock(HttpResponse.class);
+        doReturn(CompletableFuture.completedFuture(responseMock)).when(clientMock).sendAsync(any(), any());
+
+        HttpResponse<String> response = sut.createTokenAsync("body").join();
+
+        assertSame(responseMock, response);
+        verify(clientMock).sendAsync(any(), any());
+    }
+
+    @Test
+    void createTokenAsyncFailWithIOException() {
+        doReturn(CompletableFuture.failedFuture(new IOException())).when(clientMock).sendAsync(any(), any());
+
+        CompletableFuture<HttpResponse<String>> future = sut.createTokenAsync("body");
+        CompletionException e = assertThrows(CompletionException.class, future::join);
+
+        PDVTokenizerException cause = assertInstanceOf(PDVTokenizerException.class, e.getCause());
+        assertEquals(ReasonErrorCode.ERROR_PDV_IO.getCode(), cause.getStatusCode());
+    }
+}
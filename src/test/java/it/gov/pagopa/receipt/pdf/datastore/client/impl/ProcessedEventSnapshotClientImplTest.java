@@ -0,0 +1,114 @@
+package it.gov.pagopa.receipt.pdf.datastore.client.impl;
+
+import com.azure.core.util.BinaryData;
+import com.azure.core.util.Context;
+import com.azure.storage.blob.BlobClient;
+import com.azure.storage.blob.BlobContainerClient;
+import com.azure.storage.blob.models.BlobDownloadContentResponse;
+import com.azure.storage.blob.models.BlobDownloadHeaders;
+import com.azure.storage.blob.models.BlobStorageException;
+import com.azure.storage.blob.options.BlobParallelUploadOptions;
+import it.gov.pagopa.receipt.pdf.datastore.model.ProcessedEventSnapshot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ProcessedEventSnapshotClientImplTest {
+
+    private static final String SNAPSHOT_ID = "processed-biz-events-20000";
+    private static final byte[] SNAPSHOT = {1, 2, 3};
+    private static final String ETAG = "an etag";
+
+    private BlobClient blobClientMock;
+    private ProcessedEventSnapshotClientImpl client;
+
+    @BeforeEach
+    void setUp() {
+        BlobContainerClient containerClientMock = mock(BlobContainerClient.class);
+        blobClientMock = mock(BlobClient.class);
+        when(containerClientMock.getBlobClient(SNAPSHOT_ID)).thenReturn(blobClientMock);
+
+        client = new ProcessedEventSnapshotClientImpl(containerClientMock);
+    }
+
+    @Test
+    void getSnapshotSuccess() {
+        BlobDownloadContentResponse response = mock(BlobDownloadContentResponse.class);
+        when(response.getValue()).thenReturn(BinaryData.fromBytes(SNAPSHOT));
+        when(response.getDeserializedHeaders()).thenReturn(new BlobDownloadHeaders().setETag(ETAG));
+        when(blobClientMock.downloadContentWithResponse(null, null, null, Context.NONE)).thenReturn(response);
+
+        ProcessedEventSnapshot snapshot = client.getSnapshot(SNAPSHOT_ID);
+
+        assertArrayEquals(SNAPSHOT, snapshot.getContent());
+        assertEquals(ETAG, snapshot.getETag());
+    }
+
+    @Test
+    void getSnapshotNotFound() {
+        BlobStorageException exception = mock(BlobStorageException.class);
+        when(exception.getStatusCode()).thenReturn(404);
+        when(blobClientMock.downloadContentWithResponse(null, null, null, Context.NONE)).thenThrow(exception);
+
+        assertNull(client.getSnapshot(SNAPSHOT_ID));
+    }
+
+    @Test
+    void getSnapshotError() {
+        BlobStorageException exception = mock(BlobStorageException.class);
+        when(exception.getStatusCode()).thenReturn(500);
+        when(blobClientMock.downloadContentWithResponse(null, null, null, Context.NONE)).thenThrow(exception);
+
+        assertThrows(BlobStorageException.class, () -> client.getSnapshot(SNAPSHOT_ID));
+    }
+
+    @Test
+    void saveSnapshotSuccess() {
+        assertTrue(client.saveSnapshot(SNAPSHOT_ID, SNAPSHOT, ETAG));
+
+        verify(blobClientMock).uploadWithResponse(
+                argThat((BlobParallelUploadOptions options) -> ETAG.equals(options.getRequestConditions().getIfMatch())),
+                isNull(), any(Context.class));
+    }
+
+    @Test
+    void saveFirstSnapshotSuccess() {
+        assertTrue(client.saveSnapshot(SNAPSHOT_ID, SNAPSHOT, null));
+
+        verify(blobClientMock).uploadWithResponse(
+                argThat((BlobParallelUploadOptions options) -> "*".equals(options.getRequestConditions().getIfNoneMatch())),
+                isNull(), any(Context.class));
+    }
+
+    @Test
+    void saveSnapshotChangedInTheMeantime() {
+        BlobStorageException exception = mock(BlobStorageException.class);
+        when(exception.getStatusCode()).thenReturn(412);
+        when(blobClientMock.uploadWithResponse(any(BlobParallelUploadOptions.class), isNull(), any(Context.class)))
+                .thenThrow(exception);
+
+        assertFalse(client.saveSnapshot(SNAPSHOT_ID, SNAPSHOT, ETAG));
+    }
+
+    @Test
+    void saveSnapshotError() {
+        BlobStorageException exception = mock(BlobStorageException.class);
+        when(exception.getStatusCode()).thenReturn(500);
+        when(blobClientMock.uploadWithResponse(any(BlobParallelUploadOptions.class), isNull(), any(Context.class)))
+                .thenThrow(exception);
+
+        assertThrows(BlobStorageException.class, () -> client.saveSnapshot(SNAPSHOT_ID, SNAPSHOT, ETAG));
+    }
+}
@@ -2,19 +2,29 @@ package it.gov.pagopa.receipt.pdf.datastore.client.impl;
 
 import com.azure.cosmos.CosmosContainer;
 import com.azure.cosmos.CosmosException;
+import com.azure.cosmos.models.CosmosBulkExecutionOptions;
+import com.azure.cosmos.models.CosmosItemOperation;
+import com.azure.cosmos.models.CosmosItemOperationType;
 import com.azure.cosmos.models.CosmosItemResponse;
+import com.azure.cosmos.models.CosmosQueryRequestOptions;
+import com.azure.cosmos.models.FeedRange;
 import com.azure.cosmos.models.FeedResponse;
 import com.azure.cosmos.models.SqlQuerySpec;
 import com.azure.cosmos.util.CosmosPagedIterable;
 import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.Receipt;
 import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.ReceiptError;
+import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.ReceiptEventIndex;
+import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.enumeration.ReceiptStatusType;
 import it.gov.pagopa.receipt.pdf.datastore.exception.ReceiptNotFoundException;
+import it.gov.pagopa.receipt.pdf.datastore.model.ReceiptProjection;
+import lombok.SneakyThrows;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.stream.Stream;
 
@@ -23,8 +33,12 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static uk.org.webcompere.systemstubs.SystemStubs.withEnvironmentVariables;
@@ -44,13 +58,23 @@ class ReceiptCosmosClientImplTest {
     @Mock
     private CosmosPagedIterable<ReceiptError> mockReceiptErrorIterable;
     @Mock
-    private Iterable<FeedResponse<Receipt>> mockReceiptIterableByPage;
-    @Mock
     private Stream<Receipt> mockReceiptStream;
     @Mock
     private Stream<ReceiptError> mockReceiptErrorStream;
     @Mock
     private CosmosException mockCosmosException;
+    @Mock
+    private FeedResponse<Receipt> mockReceiptFeedResponse;
+    @Mock
+    private CosmosPagedIterable<ReceiptProjection> mockProjectionIterable;
+    @Mock
+    private Iterable<FeedResponse<ReceiptProjection>> mockProjectionIterableByPage;
+    @Mock
+    private CosmosPagedIterable<ReceiptEventIndex> mockEventIndexIterable;
+    @Mock
+    private Iterable<FeedResponse<ReceiptEventIndex>> mockEventIndexIterableByPage;
+    @Mock
+    private FeedResponse<ReceiptEventIndex> mockEventIndexFeedResponse;
 
     @InjectMocks
     private ReceiptCosmosClientImpl sut;
@@ -117,6 +141,81 @@ class ReceiptCosmosClientImplTest {
         assertThrows(ReceiptNotFoundException.class, () -> sut.getReceiptDocument("an invalid receipt id"));
     }
 
+    @Test
+    void getReceiptDocuments_Success() {
+        when(mockContainer.<Receipt>readMany(anyList(), eq(Receipt.class))).thenReturn(mockReceiptFeedResponse);
+
+        FeedResponse<Receipt> result = assertDoesNotThrow(() -> sut.getReceiptDocuments(List.of(RECEIPT_ID)));
+
+        assertNotNull(result);
+    }
+
+    @Test
+    void getReceiptEventIndexes_Success_query() {
+        when(mockContainer.queryItems(any(SqlQuerySpec.class), any(), eq(ReceiptEventIndex.class))).thenReturn(mockEventIndexIterable);
+        when(mockEventIndexIterable.iterableByPage()).thenReturn(mockEventIndexIterableByPage);
+
+        Iterable<FeedResponse<ReceiptEventIndex>> result =
+                assertDoesNotThrow(() -> sut.getReceiptEventIndexes(List.of(RECEIPT_ID)));
+
+        assertNotNull(result);
+        verify(mockContainer, never()).readMany(anyList(), eq(ReceiptEventIndex.class));
+    }
+
+    @Test
+    @SneakyThrows
+    void getReceiptEventIndexes_Success_eventIndexEnabled() {
+        CosmosContainer eventIndexContainer = mock(CosmosContainer.class);
+        ReceiptCosmosClientImpl client = withEnvironmentVariables("RECEIPT_EVENT_INDEX_ENABLED", "true")
+                .execute(() -> new ReceiptCosmosClientImpl(mockContainer, mockContainer, eventIndexContainer));
+        when(eventIndexContainer.<ReceiptEventIndex>readMany(anyList(), eq(ReceiptEventIndex.class)))
+                .thenReturn(mockEventIndexFeedResponse);
+
+        Iterable<FeedResponse<ReceiptEventIndex>> result =
+                assertDoesNotThrow(() -> client.getReceiptEventIndexes(List.of(RECEIPT_ID)));
+
+        assertEquals(List.of(mockEventIndexFeedResponse), result);
+        verify(mockContainer, never()).queryItems(any(SqlQuerySpec.class), any(), eq(ReceiptEventIndex.class));
+    }
+
+    @Test
+    @SneakyThrows
+    void getReceiptDocument_OK_eventIndexPointRead() {
+        CosmosContainer eventIndexContainer = mock(CosmosContainer.class);
+        ReceiptCosmosClientImpl client = withEnvironmentVariables("RECEIPT_EVENT_INDEX_ENABLED", "true")
+                .execute(() -> new ReceiptCosmosClientImpl(mockContainer, mockContainer, eventIndexContainer));
+        Receipt receipt = Receipt.builder().id("a receipt id").eventId(RECEIPT_ID).build();
+        CosmosItemResponse<ReceiptEventIndex> eventIndexResponse = mock(CosmosItemResponse.class);
+        when(eventIndexResponse.getItem()).thenReturn(new ReceiptEventIndex(RECEIPT_ID, "a receipt id"));
+        when(eventIndexContainer.readItem(eq(RECEIPT_ID), any(), eq(ReceiptEventIndex.class))).thenReturn(eventIndexResponse);
+        when(mockCosmosException.getStatusCode()).thenReturn(404);
+        when(mockReceiptResponse.getItem()).thenReturn(receipt);
+        when(mockContainer.readItem(any(), any(), eq(Receipt.class)))
+                .thenThrow(mockCosmosException)
+                .thenReturn(mockReceiptResponse);
+
+        Receipt result = assertDoesNotThrow(() -> client.getReceiptDocument(RECEIPT_ID));
+
+        assertEquals(receipt, result);
+        verify(mockContainer).readItem(eq("a receipt id"), any(), eq(Receipt.class));
+        verify(mockContainer, never()).queryItems(any(SqlQuerySpec.class), any(), eq(Receipt.class));
+    }
+
+    @Test
+    @SneakyThrows
+    void getReceiptDocument_KO_eventIndexNotFound() {
+        CosmosContainer eventIndexContainer = mock(CosmosContainer.class);
+        ReceiptCosmosClientImpl client = withEnvironmentVariables("RECEIPT_EVENT_INDEX_ENABLED", "true")
+                .execute(() -> new ReceiptCosmosClientImpl(mockContainer, mockContainer, eventIndexContainer));
+        when(mockCosmosException.getStatusCode()).thenReturn(404);
+        when(mockContainer.readItem(any(), any(), eq(Receipt.class))).thenThrow(mockCosmosException);
+        when(eventIndexContainer.readItem(any(), any(), eq(ReceiptEventIndex.class))).thenThrow(mockCosmosException);
+
+        assertThrows(ReceiptNotFoundException.class, () -> client.getReceiptDocument(RECEIPT_ID));
+
+        verify(mockContainer, never()).queryItems(any(SqlQuerySpec.class), any(), eq(Receipt.class));
+    }
+
     @Test
     void getReceiptErrorOk() {
         ReceiptError receiptError = new ReceiptError();
@@ -136,6 +235,45 @@ class ReceiptCosmosClientImplTest {
         assertDoesNotThrow(() -> sut.saveReceipts(new Receipt()));
 
         verify(mockContainer).createItem(any());
+        verify(mockContainer, never()).upsertItem(any(ReceiptEventIndex.class), any(), any());
+    }
+
+    @Test
+    void updateReceiptsSuccess_eventIndexSaved() {
+        Receipt receipt = Receipt.builder().id("a receipt id").eventId(RECEIPT_ID).build();
+
+        assertDoesNotThrow(() -> sut.updateReceipts(receipt));
+
+        verify(mockContainer).upsertItem(argThat((ReceiptEventIndex eventIndex) ->
+                RECEIPT_ID.equals(eventIndex.getId()) && "a receipt id".equals(eventIndex.getReceiptId())), any(), any());
+        verify(mockContainer).upsertItem(receipt);
+    }
+
+    @Test
+    void saveReceiptsBulkSuccess() {
+        Receipt receipt = Receipt.builder().id(RECEIPT_ID).build();
+
+        assertDoesNotThrow(() -> sut.saveReceipts(List.of(receipt)));
+
+        verify(mockContainer).executeBulkOperations(argThat(operations -> {
+            CosmosItemOperation operation = operations.iterator().next();
+            return CosmosItemOperationType.CREATE.equals(operation.getOperationType())
+                    && receipt == operation.getContext();
+        }));
+    }
+
+    @Test
+    void resetReceiptsNotificationSuccess() {
+        ReceiptProjection receipt = ReceiptProjection.builder().id(RECEIPT_ID).build();
+
+        assertDoesNotThrow(() -> sut.resetReceiptsNotification(List.of(receipt)));
+
+        verify(mockContainer).executeBulkOperations(argThat(operations -> {
+            CosmosItemOperation operation = operations.iterator().next();
+            return CosmosItemOperationType.PATCH.equals(operation.getOperationType())
+                    && RECEIPT_ID.equals(operation.getId())
+                    && receipt == operation.getContext();
+        }), any(CosmosBulkExecutionOptions.class));
     }
 
     @Test
@@ -146,46 +284,84 @@ class ReceiptCosmosClientImplTest {
     }
 
     @Test
-    void runOk_FailedQueryClient() {
-        when(mockContainer.queryItems(any(SqlQuerySpec.class), any(), eq(Receipt.class))).thenReturn(mockIterable);
-        when(mockIterable.iterableByPage(null, 1)).thenReturn(mockReceiptIterableByPage);
+    @SuppressWarnings("unchecked")
+    void countFailedReceiptDocuments_Success() {
+        CosmosPagedIterable<Long> countIterable = mock(CosmosPagedIterable.class);
+        when(countIterable.stream()).thenAnswer(invocation -> Stream.of(2L));
+        when(mockContainer.queryItems(any(SqlQuerySpec.class), any(), eq(Long.class))).thenReturn(countIterable);
+
+        long result = assertDoesNotThrow(() -> sut.countFailedReceiptDocuments());
+
+        // a count query for each failed status, without OR on the status
+        assertEquals(4L, result);
+        verify(mockContainer, times(2)).queryItems(
+                argThat((SqlQuerySpec querySpec) -> !querySpec.getQueryText().contains(" OR ")), any(), eq(Long.class));
+    }
 
-        Iterable<FeedResponse<Receipt>> result =
-                assertDoesNotThrow(() -> sut.getFailedReceiptDocuments(null, 1));
+    @Test
+    void getFailedReceiptProjections_Success() {
+        when(mockContainer.queryItems(any(SqlQuerySpec.class), any(), eq(ReceiptProjection.class))).thenReturn(mockProjectionIterable);
+        when(mockProjectionIterable.iterableByPage(null, 1)).thenReturn(mockProjectionIterableByPage);
+
+        Iterable<FeedResponse<ReceiptProjection>> result =
+                assertDoesNotThrow(() -> sut.getFailedReceiptProjections(null, 1, ReceiptStatusType.NOT_QUEUE_SENT, null));
 
         assertNotNull(result);
     }
 
     @Test
-    void getGeneratedReceiptDocuments_Success() {
-        when(mockContainer.queryItems(any(SqlQuerySpec.class), any(), eq(Receipt.class))).thenReturn(mockIterable);
-        when(mockIterable.iterableByPage(null, 1)).thenReturn(mockReceiptIterableByPage);
+    void getGeneratedReceiptProjections_Success() {
+        when(mockContainer.queryItems(any(SqlQuerySpec.class), any(), eq(ReceiptProjection.class))).thenReturn(mockProjectionIterable);
+        when(mockProjectionIterable.iterableByPage(null, 1)).thenReturn(mockProjectionIterableByPage);
 
-        Iterable<FeedResponse<Receipt>> result =
-                assertDoesNotThrow(() -> sut.getGeneratedReceiptDocuments(null, 1));
+        Iterable<FeedResponse<ReceiptProjection>> result =
+                assertDoesNotThrow(() -> sut.getGeneratedReceiptProjections(null, 1, null));
 
         assertNotNull(result);
     }
 
     @Test
-    void getIOErrorToNotifyReceiptDocuments_Success() {
-        when(mockContainer.queryItems(any(SqlQuerySpec.class), any(), eq(Receipt.class))).thenReturn(mockIterable);
-        when(mockIterable.iterableByPage(null, 1)).thenReturn(mockReceiptIterableByPage);
+    void getIOErrorToNotifyReceiptProjections_Success() {
+        when(mockContainer.queryItems(any(SqlQuerySpec.class), any(), eq(ReceiptProjection.class))).thenReturn(mockProjectionIterable);
+        when(mockProjectionIterable.iterableByPage(null, 1)).thenReturn(mockProjectionIterableByPage);
 
-        Iterable<FeedResponse<Receipt>> result =
-                assertDoesNotThrow(() -> sut.getIOErrorToNotifyReceiptDocuments(null, 1));
+        Iterable<FeedResponse<ReceiptProjection>> result =
+                assertDoesNotThrow(() -> sut.getIOErrorToNotifyReceiptProjections(null, 1, null));
 
         assertNotNull(result);
     }
 
     @Test
-    void getInsertedReceiptDocuments_Success() {
-        when(mockContainer.queryItems(any(SqlQuerySpec.class), any(), eq(Receipt.class))).thenReturn(mockIterable);
-        when(mockIterable.iterableByPage(null, 1)).thenReturn(mockReceiptIterableByPage);
+    void getInsertedReceiptProjections_Success() {
+        when(mockContainer.queryItems(any(SqlQuerySpec.class), any(), eq(ReceiptProjection.class))).thenReturn(mockProjectionIterable);
+        when(mockProjectionIterable.iterableByPage(null, 1)).thenReturn(mockProjectionIterableByPage);
 
-        Iterable<FeedResponse<Receipt>> result =
-                assertDoesNotThrow(() -> sut.getInsertedReceiptDocuments(null, 1));
+        Iterable<FeedResponse<ReceiptProjection>> result =
+                assertDoesNotThrow(() -> sut.getInsertedReceiptProjections(null, 1, null));
 
         assertNotNull(result);
     }
+
+    @Test
+    void getFailedReceiptProjections_Success_onFeedRange() {
+        FeedRange feedRange = FeedRange.forFullRange();
+        when(mockContainer.queryItems(any(SqlQuerySpec.class), any(), eq(ReceiptProjection.class))).thenReturn(mockProjectionIterable);
+        when(mockProjectionIterable.iterableByPage(null, 1)).thenReturn(mockProjectionIterableByPage);
+
+        Iterable<FeedResponse<ReceiptProjection>> result =
+                assertDoesNotThrow(() -> sut.getFailedReceiptProjections(null, 1, ReceiptStatusType.FAILED, feedRange));
+
+        assertNotNull(result);
+        verify(mockContainer).queryItems(any(SqlQuerySpec.class),
+                argThat((CosmosQueryRequestOptions options) -> feedRange.equals(options.getFeedRange())),
+                eq(ReceiptProjection.class));
+    }
+
+    @Test
+    void getFeedRanges_Success() {
+        List<FeedRange> feedRanges = List.of(FeedRange.forFullRange());
+        when(mockContainer.getFeedRanges()).thenReturn(feedRanges);
+
+        assertEquals(feedRanges, sut.getFeedRanges());
+    }
 }
\ No newline at end of file
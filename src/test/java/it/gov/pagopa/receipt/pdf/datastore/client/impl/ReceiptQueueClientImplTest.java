@@ -1,11 +1,13 @@
 package it.gov.pagopa.receipt.pdf.datastore.client.impl;
 
 import com.azure.core.http.rest.Response;
+import com.azure.storage.queue.QueueAsyncClient;
 import com.azure.storage.queue.QueueClient;
 import com.azure.storage.queue.models.SendMessageResult;
 import com.microsoft.azure.functions.HttpStatus;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
@@ -61,4 +63,23 @@ class ReceiptQueueClientImplTest {
 
         Assertions.assertEquals(HttpStatus.NO_CONTENT.value(), clientResponse.getStatusCode());
     }
-}
\ No newline at end of file
+
+    @Test
+    void runOkAsync() {
+        String MESSAGE_TEXT = "a valid message text";
+
+        Response<SendMessageResult> response = mock(Response.class);
+        QueueAsyncClient mockAsyncClient = mock(QueueAsyncClient.class);
+
+        when(response.getStatusCode()).thenReturn(HttpStatus.CREATED.value());
+        when(mockAsyncClient.sendMessageWithResponse(eq(MESSAGE_TEXT), any(), eq(null)))
+                .thenReturn(Mono.just(response));
+
+        ReceiptQueueClientImpl client = new ReceiptQueueClientImpl(mock(QueueClient.class), mockAsyncClient);
+
+        Response<SendMessageResult> clientResponse = client.sendMessageToQueueAsync(MESSAGE_TEXT).block();
+
+        Assertions.assertNotNull(clientResponse);
+        Assertions.assertEquals(HttpStatus.CREATED.value(), clientResponse.getStatusCode());
+    }
+}
@@ -0,0 +1,104 @@
+package it.gov.pagopa.receipt.pdf.datastore.client.impl;
+
+import com.azure.core.util.BinaryData;
+import com.azure.storage.blob.BlobClient;
+import com.azure.storage.blob.BlobContainerClient;
+import com.azure.core.http.rest.PagedIterable;
+import com.azure.storage.blob.models.BlobItem;
+import com.azure.storage.blob.models.BlobStorageException;
+import com.azure.storage.blob.models.ListBlobsOptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RecoveryCheckpointClientImplTest {
+
+    private static final String CHECKPOINT_ID = "failed-receipt-FAILED";
+    private static final String CONTINUATION_TOKEN = "a continuation token";
+
+    private BlobContainerClient containerClientMock;
+    private BlobClient blobClientMock;
+    private RecoveryCheckpointClientImpl client;
+
+    @BeforeEach
+    void setUp() {
+        containerClientMock = mock(BlobContainerClient.class);
+        blobClientMock = mock(BlobClient.class);
+        when(containerClientMock.getBlobClient(CHECKPOINT_ID)).thenReturn(blobClientMock);
+
+        client = new RecoveryCheckpointClientImpl(containerClientMock);
+    }
+
+    @Test
+    void getContinuationTokenSuccess() {
+        when(blobClientMock.downloadContent()).thenReturn(BinaryData.fromString(CONTINUATION_TOKEN));
+
+        assertEquals(CONTINUATION_TOKEN, client.getContinuationToken(CHECKPOINT_ID));
+    }
+
+    @Test
+    void getContinuationTokenNotFound() {
+        BlobStorageException exception = mock(BlobStorageException.class);
+        when(exception.getStatusCode()).thenReturn(404);
+        when(blobClientMock.downloadContent()).thenThrow(exception);
+
+        assertNull(client.getContinuationToken(CHECKPOINT_ID));
+    }
+
+    @Test
+    void getContinuationTokenError() {
+        BlobStorageException exception = mock(BlobStorageException.class);
+        when(exception.getStatusCode()).thenReturn(500);
+        when(blobClientMock.downloadContent()).thenThrow(exception);
+
+        assertThrows(BlobStorageException.class, () -> client.getContinuationToken(CHECKPOINT_ID));
+    }
+
+    @Test
+    void saveContinuationTokenSuccess() {
+        client.saveContinuationToken(CHECKPOINT_ID, CONTINUATION_TOKEN);
+
+        verify(blobClientMock).upload(any(BinaryData.class), eq(true));
+        verify(blobClientMock, never()).deleteIfExists();
+    }
+
+    @Test
+    void saveNullContinuationTokenDeletesTheCheckpoint() {
+        client.saveContinuationToken(CHECKPOINT_ID, null);
+
+        verify(blobClientMock).deleteIfExists();
+        verify(blobClientMock, never()).upload(any(BinaryData.class), eq(true));
+    }
+
+    @Test
+    void deleteCheckpointsDeletesTheBlobsWithThePrefix() {
+        BlobItem firstBlob = new BlobItem().setName("job-id/failed-receipt-FAILED");
+        BlobItem secondBlob = new BlobItem().setName("job-id/failed-receipt-NOT_QUEUE_SENT");
+        PagedIterable<BlobItem> blobs = mock(PagedIterable.class);
+        when(blobs.iterator()).thenReturn(List.of(firstBlob, secondBlob).iterator());
+        when(containerClientMock.listBlobs(argThat((ListBlobsOptions options) -> "job-id/".equals(options.getPrefix())), any()))
+                .thenReturn(blobs);
+        BlobClient firstBlobClientMock = mock(BlobClient.class);
+        BlobClient secondBlobClientMock = mock(BlobClient.class);
+        when(containerClientMock.getBlobClient(firstBlob.getName())).thenReturn(firstBlobClientMock);
+        when(containerClientMock.getBlobClient(secondBlob.getName())).thenReturn(secondBlobClientMock);
+        when(firstBlobClientMock.deleteIfExists()).thenReturn(true);
+        when(secondBlobClientMock.deleteIfExists()).thenReturn(true);
+
+        assertEquals(2, client.deleteCheckpoints("job-id/"));
+
+        verify(blobClientMock, never()).deleteIfExists();
+    }
+}
@@ -0,0 +1,101 @@
+package it.gov.pagopa.receipt.pdf.datastore.client.impl;
+
+import com.azure.core.util.BinaryData;
+import com.azure.storage.blob.BlobClient;
+import com.azure.storage.blob.BlobContainerClient;
+import com.azure.storage.blob.models.BlobStorageException;
+import com.azure.storage.queue.QueueClient;
+import it.gov.pagopa.receipt.pdf.datastore.exception.RecoveryJobNotFoundException;
+import it.gov.pagopa.receipt.pdf.datastore.model.RecoveryJob;
+import it.gov.pagopa.receipt.pdf.datastore.model.enumeration.RecoveryJobStatus;
+import it.gov.pagopa.receipt.pdf.datastore.model.enumeration.RecoveryJobType;
+import it.gov.pagopa.receipt.pdf.datastore.utils.ObjectMapperUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RecoveryJobClientImplTest {
+
+    private static final String JOB_ID = "a valid job id";
+
+    private BlobClient blobClientMock;
+    private QueueClient queueClientMock;
+    private RecoveryJobClientImpl client;
+
+    @BeforeEach
+    void setUp() {
+        BlobContainerClient containerClientMock = mock(BlobContainerClient.class);
+        blobClientMock = mock(BlobClient.class);
+        queueClientMock = mock(QueueClient.class);
+        when(containerClientMock.getBlobClient(JOB_ID)).thenReturn(blobClientMock);
+
+        client = new RecoveryJobClientImpl(containerClientMock, queueClientMock);
+    }
+
+    @Test
+    void getJobSuccess() throws RecoveryJobNotFoundException {
+        RecoveryJob job = buildJob();
+        when(blobClientMock.downloadContent())
+                .thenReturn(BinaryData.fromString(ObjectMapperUtils.writeValueAsString(job)));
+
+        assertEquals(job, client.getJob(JOB_ID));
+    }
+
+    @Test
+    void getJobNotFound() {
+        BlobStorageException exception = mock(BlobStorageException.class);
+        when(exception.getStatusCode()).thenReturn(404);
+        when(blobClientMock.downloadContent()).thenThrow(exception);
+
+        assertThrows(RecoveryJobNotFoundException.class, () -> client.getJob(JOB_ID));
+    }
+
+    @Test
+    void getJobError() {
+        BlobStorageException exception = mock(BlobStorageException.class);
+        when(exception.getStatusCode()).thenReturn(500);
+        when(blobClientMock.downloadContent()).thenThrow(exception);
+
+        assertThrows(BlobStorageException.class, () -> client.getJob(JOB_ID));
+    }
+
+    @Test
+    void getJobNotReadable() {
+        when(blobClientMock.downloadContent()).thenReturn(BinaryData.fromString("not a job"));
+
+        assertThrows(IllegalStateException.class, () -> client.getJob(JOB_ID));
+    }
+
+    @Test
+    void saveJobSuccess() {
+        client.saveJob(buildJob());
+
+        verify(blobClientMock).upload(any(BinaryData.class), eq(true));
+    }
+
+    @Test
+    void sendJobMessageSuccess() {
+        client.sendJobMessage(JOB_ID);
+
+        verify(queueClientMock).sendMessage(JOB_ID);
+    }
+
+    private RecoveryJob buildJob() {
+        return RecoveryJob.builder()
+                .id(JOB_ID)
+                .type(RecoveryJobType.NOT_NOTIFIED_CART)
+                .status("GENERATED")
+                .jobStatus(RecoveryJobStatus.RUNNING)
+                .totalCounter(10L)
+                .processedCounter(5)
+                .startedAt(1_000)
+                .build();
+    }
+}
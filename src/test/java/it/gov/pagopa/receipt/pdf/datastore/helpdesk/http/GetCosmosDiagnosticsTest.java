@@ -0,0 +1,71 @@
+package it.gov.pagopa.receipt.pdf.datastore.helpdesk.http;
+
+import com.microsoft.azure.functions.ExecutionContext;
+import com.microsoft.azure.functions.HttpRequestMessage;
+import com.microsoft.azure.functions.HttpResponseMessage;
+import com.microsoft.azure.functions.HttpStatus;
+import it.gov.pagopa.receipt.pdf.datastore.model.CosmosOperationDiagnostics;
+import it.gov.pagopa.receipt.pdf.datastore.utils.CosmosDiagnosticsRecorder;
+import it.gov.pagopa.receipt.pdf.datastore.utils.HttpResponseMessageMock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.stubbing.Answer;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+
+@ExtendWith(MockitoExtension.class)
+class GetCosmosDiagnosticsTest {
+
+    @Mock
+    private ExecutionContext contextMock;
+    @Mock
+    private CosmosDiagnosticsRecorder cosmosDiagnosticsRecorderMock;
+
+    @Mock
+    private HttpRequestMessage<Optional<String>> requestMock;
+
+    @InjectMocks
+    private GetCosmosDiagnostics sut;
+
+    @BeforeEach
+    void openMocks() {
+        doAnswer((Answer<HttpResponseMessage.Builder>) invocation -> {
+            HttpStatus status = (HttpStatus) invocation.getArguments()[0];
+            return new HttpResponseMessageMock.HttpResponseMessageBuilderMock().status(status);
+        }).when(requestMock).createResponseBuilder(any(HttpStatus.class));
+    }
+
+    @Test
+    void getCosmosDiagnosticsSuccess() {
+        List<CosmosOperationDiagnostics> operations = List.of(CosmosOperationDiagnostics.builder()
+                .containerName("receipts")
+                .operationType("Query")
+                .durationMillis(5000)
+                .requestCharge(120f)
+                .retryCount(2)
+                .contactedRegions(List.of("North Europe"))
+                .diagnostics("{}")
+                .build());
+        doReturn(operations).when(cosmosDiagnosticsRecorderMock).getOperations();
+
+        // test execution
+        HttpResponseMessage response = assertDoesNotThrow(() -> sut.run(requestMock, contextMock));
+
+        // test assertion
+        assertNotNull(response);
+        assertEquals(HttpStatus.OK, response.getStatus());
+        assertEquals(operations, response.getBody());
+    }
+}
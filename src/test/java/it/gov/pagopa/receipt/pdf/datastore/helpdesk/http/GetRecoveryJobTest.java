@@ -0,0 +1,93 @@
+package it.gov.pagopa.receipt.pdf.datastore.helpdesk.http;
+
+import com.microsoft.azure.functions.ExecutionContext;
+import com.microsoft.azure.functions.HttpRequestMessage;
+import com.microsoft.azure.functions.HttpResponseMessage;
+import com.microsoft.azure.functions.HttpStatus;
+import it.gov.pagopa.receipt.pdf.datastore.exception.RecoveryJobNotFoundException;
+import it.gov.pagopa.receipt.pdf.datastore.model.RecoveryJob;
+import it.gov.pagopa.receipt.pdf.datastore.model.enumeration.RecoveryJobStatus;
+import it.gov.pagopa.receipt.pdf.datastore.model.enumeration.RecoveryJobType;
+import it.gov.pagopa.receipt.pdf.datastore.service.RecoveryJobService;
+import it.gov.pagopa.receipt.pdf.datastore.utils.HttpResponseMessageMock;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.stubbing.Answer;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+
+@ExtendWith(MockitoExtension.class)
+class GetRecoveryJobTest {
+
+    private static final String JOB_ID = "a valid job id";
+
+    @Mock
+    private ExecutionContext contextMock;
+    @Mock
+    private RecoveryJobService recoveryJobServiceMock;
+
+    @Mock
+    private HttpRequestMessage<Optional<String>> requestMock;
+
+    @InjectMocks
+    private GetRecoveryJob sut;
+
+    @BeforeEach
+    void openMocks() {
+        doAnswer((Answer<HttpResponseMessage.Builder>) invocation -> {
+            HttpStatus status = (HttpStatus) invocation.getArguments()[0];
+            return new HttpResponseMessageMock.HttpResponseMessageBuilderMock().status(status);
+        }).when(requestMock).createResponseBuilder(any(HttpStatus.class));
+    }
+
+    @Test
+    @SneakyThrows
+    void getRecoveryJobSuccess() {
+        RecoveryJob job = RecoveryJob.builder()
+                .id(JOB_ID)
+                .type(RecoveryJobType.FAILED_RECEIPT)
+                .status("FAILED")
+                .jobStatus(RecoveryJobStatus.RUNNING)
+                .totalCounter(100L)
+                .processedCounter(50)
+                .throughput(10d)
+                .etaSeconds(5L)
+                .build();
+        doReturn(job).when(recoveryJobServiceMock).getJob(JOB_ID);
+
+        // test execution
+        HttpResponseMessage response = assertDoesNotThrow(() -> sut.run(requestMock, JOB_ID, contextMock));
+
+        // test assertion
+        assertNotNull(response);
+        assertEquals(HttpStatus.OK, response.getStatus());
+        assertEquals(job, response.getBody());
+    }
+
+    @Test
+    @SneakyThrows
+    void getRecoveryJobNotFound() {
+        doThrow(RecoveryJobNotFoundException.class).when(recoveryJobServiceMock).getJob(JOB_ID);
+
+        // test execution
+        HttpResponseMessage response = assertDoesNotThrow(() -> sut.run(requestMock, JOB_ID, contextMock));
+
+        // test assertion
+        assertNotNull(response);
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatus());
+        assertNotNull(response.getBody());
+    }
+}
@@ -4,11 +4,11 @@ import com.microsoft.azure.functions.ExecutionContext;
 import com.microsoft.azure.functions.HttpRequestMessage;
 import com.microsoft.azure.functions.HttpResponseMessage;
 import com.microsoft.azure.functions.HttpStatus;
-import com.microsoft.azure.functions.OutputBinding;
-import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.Receipt;
 import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.enumeration.ReceiptStatusType;
-import it.gov.pagopa.receipt.pdf.datastore.model.MassiveRecoverResult;
-import it.gov.pagopa.receipt.pdf.datastore.service.HelpdeskService;
+import it.gov.pagopa.receipt.pdf.datastore.model.RecoveryJob;
+import it.gov.pagopa.receipt.pdf.datastore.model.enumeration.RecoveryJobStatus;
+import it.gov.pagopa.receipt.pdf.datastore.model.enumeration.RecoveryJobType;
+import it.gov.pagopa.receipt.pdf.datastore.service.RecoveryJobService;
 import it.gov.pagopa.receipt.pdf.datastore.utils.HttpResponseMessageMock;
 import lombok.SneakyThrows;
 import org.junit.jupiter.api.BeforeEach;
@@ -16,44 +16,38 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.EnumSource;
-import org.mockito.ArgumentCaptor;
-import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
-import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.stubbing.Answer;
 
 import java.util.Collections;
-import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
-import static org.mockito.Mockito.any;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 
 @ExtendWith(MockitoExtension.class)
 class RecoverFailedReceiptMassiveTest {
 
+    private static final String JOB_ID = "a valid job id";
+
     @Mock
     private ExecutionContext contextMock;
     @Mock
-    private HelpdeskService helpdeskServiceMock;
+    private RecoveryJobService recoveryJobServiceMock;
 
     @Mock
     private HttpRequestMessage<Optional<String>> requestMock;
 
-    @Captor
-    private ArgumentCaptor<List<Receipt>> receiptCaptor;
-
-    @Spy
-    private OutputBinding<List<Receipt>> documentdb;
-
     @InjectMocks
     private RecoverFailedReceiptMassive sut;
 
@@ -69,33 +63,37 @@ class RecoverFailedReceiptMassiveTest {
     @EnumSource(value = ReceiptStatusType.class, names = {"INSERTED", "NOT_QUEUE_SENT", "FAILED"}, mode = EnumSource.Mode.INCLUDE)
     @SneakyThrows
     void recoverFailedReceiptMassiveSuccess(ReceiptStatusType status) {
+        RecoveryJob job = RecoveryJob.builder()
+                .id(JOB_ID)
+                .type(RecoveryJobType.FAILED_RECEIPT)
+                .status(status.name())
+                .jobStatus(RecoveryJobStatus.QUEUED)
+                .build();
         doReturn(Collections.singletonMap("status", status.name())).when(requestMock).getQueryParameters();
-        doReturn(new MassiveRecoverResult()).when(helpdeskServiceMock).massiveRecoverFailedReceipt(any(ReceiptStatusType.class));
+        doReturn(job).when(recoveryJobServiceMock).createJob(RecoveryJobType.FAILED_RECEIPT, status.name());
 
         // test execution
-        HttpResponseMessage response = assertDoesNotThrow(() -> sut.run(requestMock, documentdb, contextMock));
+        HttpResponseMessage response = assertDoesNotThrow(() -> sut.run(requestMock, contextMock));
 
         // test assertion
         assertNotNull(response);
-        assertEquals(HttpStatus.OK, response.getStatus());
-        assertNotNull(response.getBody());
-
-        verify(documentdb, never()).setValue(receiptCaptor.capture());
+        assertEquals(HttpStatus.ACCEPTED, response.getStatus());
+        assertEquals(job, response.getBody());
+        assertEquals("/jobs/" + JOB_ID, response.getHeader("Location"));
     }
 
     @Test
     @SneakyThrows
     void recoverFailedReceiptMassiveFailParamNull() {
         // test execution
-        HttpResponseMessage response = assertDoesNotThrow(() -> sut.run(requestMock, documentdb, contextMock));
+        HttpResponseMessage response = assertDoesNotThrow(() -> sut.run(requestMock, contextMock));
 
         // test assertion
         assertNotNull(response);
         assertEquals(HttpStatus.BAD_REQUEST, response.getStatus());
         assertNotNull(response.getBody());
 
-        verify(helpdeskServiceMock, never()).massiveRecoverFailedReceipt(any(ReceiptStatusType.class));
-        verify(documentdb, never()).setValue(receiptCaptor.capture());
+        verify(recoveryJobServiceMock, never()).createJob(any(), anyString());
     }
 
     @Test
@@ -104,15 +102,14 @@ class RecoverFailedReceiptMassiveTest {
         doReturn(Collections.singletonMap("status", "random")).when(requestMock).getQueryParameters();
 
         // test execution
-        HttpResponseMessage response = assertDoesNotThrow(() -> sut.run(requestMock, documentdb, contextMock));
+        HttpResponseMessage response = assertDoesNotThrow(() -> sut.run(requestMock, contextMock));
 
         // test assertion
         assertNotNull(response);
         assertEquals(HttpStatus.BAD_REQUEST, response.getStatus());
         assertNotNull(response.getBody());
 
-        verify(helpdeskServiceMock, never()).massiveRecoverFailedReceipt(any(ReceiptStatusType.class));
-        verify(documentdb, never()).setValue(receiptCaptor.capture());
+        verify(recoveryJobServiceMock, never()).createJob(any(), anyString());
     }
 
     @ParameterizedTest
@@ -122,38 +119,28 @@ class RecoverFailedReceiptMassiveTest {
         doReturn(Collections.singletonMap("status", status.name())).when(requestMock).getQueryParameters();
 
         // test execution
-        HttpResponseMessage response = assertDoesNotThrow(() -> sut.run(requestMock, documentdb, contextMock));
+        HttpResponseMessage response = assertDoesNotThrow(() -> sut.run(requestMock, contextMock));
 
         // test assertion
         assertNotNull(response);
         assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, response.getStatus());
         assertNotNull(response.getBody());
 
-        verify(helpdeskServiceMock, never()).massiveRecoverFailedReceipt(any(ReceiptStatusType.class));
-        verify(documentdb, never()).setValue(receiptCaptor.capture());
+        verify(recoveryJobServiceMock, never()).createJob(any(), anyString());
     }
 
     @Test
     @SneakyThrows
-    void recoverFailedReceiptMassiveFailRecoverError() {
-        MassiveRecoverResult recoverResult = MassiveRecoverResult.builder()
-                .successCounter(1)
-                .errorCounter(1)
-                .failedReceiptList(List.of(new Receipt()))
-                .build();
-
+    void recoverFailedReceiptMassiveFailJobCreationError() {
         doReturn(Collections.singletonMap("status", ReceiptStatusType.FAILED.name())).when(requestMock).getQueryParameters();
-        doReturn(recoverResult).when(helpdeskServiceMock).massiveRecoverFailedReceipt(any(ReceiptStatusType.class));
+        doThrow(RuntimeException.class).when(recoveryJobServiceMock).createJob(RecoveryJobType.FAILED_RECEIPT, ReceiptStatusType.FAILED.name());
 
         // test execution
-        HttpResponseMessage response = assertDoesNotThrow(() -> sut.run(requestMock, documentdb, contextMock));
+        HttpResponseMessage response = assertDoesNotThrow(() -> sut.run(requestMock, contextMock));
 
         // test assertion
         assertNotNull(response);
         assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatus());
         assertNotNull(response.getBody());
-
-        verify(documentdb).setValue(receiptCaptor.capture());
-        assertNotNull(receiptCaptor.getValue());
     }
-}
\ No newline at end of file
+}
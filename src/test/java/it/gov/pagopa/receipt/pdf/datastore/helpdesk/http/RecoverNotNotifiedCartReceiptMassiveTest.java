@@ -5,9 +5,10 @@ import com.microsoft.azure.functions.HttpRequestMessage;
 import com.microsoft.azure.functions.HttpResponseMessage;
 import com.microsoft.azure.functions.HttpStatus;
 import it.gov.pagopa.receipt.pdf.datastore.entity.cart.CartStatusType;
-import it.gov.pagopa.receipt.pdf.datastore.model.MassiveCartRecoverResult;
-import it.gov.pagopa.receipt.pdf.datastore.model.ProblemJson;
-import it.gov.pagopa.receipt.pdf.datastore.service.HelpdeskService;
+import it.gov.pagopa.receipt.pdf.datastore.model.RecoveryJob;
+import it.gov.pagopa.receipt.pdf.datastore.model.enumeration.RecoveryJobStatus;
+import it.gov.pagopa.receipt.pdf.datastore.model.enumeration.RecoveryJobType;
+import it.gov.pagopa.receipt.pdf.datastore.service.RecoveryJobService;
 import it.gov.pagopa.receipt.pdf.datastore.utils.HttpResponseMessageMock;
 import lombok.SneakyThrows;
 import org.junit.jupiter.api.BeforeEach;
@@ -23,19 +24,27 @@ import org.mockito.stubbing.Answer;
 import java.util.Collections;
 import java.util.Optional;
 
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 @ExtendWith(MockitoExtension.class)
 class RecoverNotNotifiedCartReceiptMassiveTest {
 
+    private static final String JOB_ID = "a valid job id";
+
     @Mock
-    private ExecutionContext executionContextMock;
+    private ExecutionContext contextMock;
     @Mock
-    private HelpdeskService helpdeskServiceMock;
+    private RecoveryJobService recoveryJobServiceMock;
+
     @Mock
     private HttpRequestMessage<Optional<String>> requestMock;
 
@@ -54,61 +63,37 @@ class RecoverNotNotifiedCartReceiptMassiveTest {
     @EnumSource(value = CartStatusType.class, names = {"GENERATED", "IO_ERROR_TO_NOTIFY"}, mode = EnumSource.Mode.INCLUDE)
     @SneakyThrows
     void recoverNotNotifiedCartReceiptMassiveSuccess(CartStatusType status) {
+        RecoveryJob job = RecoveryJob.builder()
+                .id(JOB_ID)
+                .type(RecoveryJobType.NOT_NOTIFIED_CART)
+                .status(status.name())
+                .jobStatus(RecoveryJobStatus.QUEUED)
+                .build();
         doReturn(Collections.singletonMap("status", status.name())).when(requestMock).getQueryParameters();
-        doReturn(createMassiveRecoverResult(1, 0)).when(helpdeskServiceMock).massiveRecoverNoNotifiedCart(status);
-
-        // test execution
-        HttpResponseMessage response = sut.run(requestMock, executionContextMock);
-
-        // test assertion
-        assertNotNull(response);
-        assertEquals(HttpStatus.OK, response.getStatus());
-        assertNotNull(response.getBody());
-    }
-
-    @ParameterizedTest
-    @EnumSource(value = CartStatusType.class, names = {"GENERATED", "IO_ERROR_TO_NOTIFY"}, mode = EnumSource.Mode.INCLUDE)
-    @SneakyThrows
-    void recoverNotNotifiedCartReceiptMassivePartialSuccess(CartStatusType status) {
-        doReturn(Collections.singletonMap("status", status.name())).when(requestMock).getQueryParameters();
-        doReturn(createMassiveRecoverResult(1, 1)).when(helpdeskServiceMock).massiveRecoverNoNotifiedCart(status);
-
-        // test execution
-        HttpResponseMessage response = sut.run(requestMock, executionContextMock);
-
-        // test assertion
-        assertNotNull(response);
-        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatus());
-        assertNotNull(response.getBody());
-        assertEquals(HttpStatus.MULTI_STATUS.value(), ((ProblemJson) response.getBody()).getStatus());
-    }
-
-    @ParameterizedTest
-    @EnumSource(value = CartStatusType.class, names = {"GENERATED", "IO_ERROR_TO_NOTIFY"}, mode = EnumSource.Mode.INCLUDE)
-    @SneakyThrows
-    void recoverNotNotifiedCartReceiptMassiveSuccessWithoutAction(CartStatusType status) {
-        doReturn(Collections.singletonMap("status", status.name())).when(requestMock).getQueryParameters();
-        doReturn(createMassiveRecoverResult(0, 0)).when(helpdeskServiceMock).massiveRecoverNoNotifiedCart(status);
+        doReturn(job).when(recoveryJobServiceMock).createJob(RecoveryJobType.NOT_NOTIFIED_CART, status.name());
 
         // test execution
-        HttpResponseMessage response = sut.run(requestMock, executionContextMock);
+        HttpResponseMessage response = assertDoesNotThrow(() -> sut.run(requestMock, contextMock));
 
         // test assertion
         assertNotNull(response);
-        assertEquals(HttpStatus.OK, response.getStatus());
-        assertNotNull(response.getBody());
+        assertEquals(HttpStatus.ACCEPTED, response.getStatus());
+        assertEquals(job, response.getBody());
+        assertEquals("/jobs/" + JOB_ID, response.getHeader("Location"));
     }
 
     @Test
     @SneakyThrows
     void recoverNotNotifiedCartReceiptMassiveFailParamNull() {
         // test execution
-        HttpResponseMessage response = sut.run(requestMock, executionContextMock);
+        HttpResponseMessage response = assertDoesNotThrow(() -> sut.run(requestMock, contextMock));
 
         // test assertion
         assertNotNull(response);
         assertEquals(HttpStatus.BAD_REQUEST, response.getStatus());
         assertNotNull(response.getBody());
+
+        verify(recoveryJobServiceMock, never()).createJob(any(), anyString());
     }
 
     @Test
@@ -117,33 +102,45 @@ class RecoverNotNotifiedCartReceiptMassiveTest {
         doReturn(Collections.singletonMap("status", "random")).when(requestMock).getQueryParameters();
 
         // test execution
-        HttpResponseMessage response = sut.run(requestMock, executionContextMock);
+        HttpResponseMessage response = assertDoesNotThrow(() -> sut.run(requestMock, contextMock));
 
         // test assertion
         assertNotNull(response);
         assertEquals(HttpStatus.BAD_REQUEST, response.getStatus());
         assertNotNull(response.getBody());
+
+        verify(recoveryJobServiceMock, never()).createJob(any(), anyString());
     }
 
     @ParameterizedTest
     @EnumSource(value = CartStatusType.class, names = {"GENERATED", "IO_ERROR_TO_NOTIFY"}, mode = EnumSource.Mode.EXCLUDE)
     @SneakyThrows
-    void recoverNotNotifiedReceiptMassiveFailParamNotAProcessableStatus(CartStatusType status) {
+    void recoverNotNotifiedCartReceiptMassiveFailStatusParamUnprocessable(CartStatusType status) {
         doReturn(Collections.singletonMap("status", status.name())).when(requestMock).getQueryParameters();
 
         // test execution
-        HttpResponseMessage response = sut.run(requestMock, executionContextMock);
+        HttpResponseMessage response = assertDoesNotThrow(() -> sut.run(requestMock, contextMock));
 
         // test assertion
         assertNotNull(response);
         assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, response.getStatus());
         assertNotNull(response.getBody());
+
+        verify(recoveryJobServiceMock, never()).createJob(any(), anyString());
     }
 
-    private MassiveCartRecoverResult createMassiveRecoverResult(int successCounter, int errorCounter) {
-        return MassiveCartRecoverResult.builder()
-                .successCounter(successCounter)
-                .errorCounter(errorCounter)
-                .build();
+    @Test
+    @SneakyThrows
+    void recoverNotNotifiedCartReceiptMassiveFailJobCreationError() {
+        doReturn(Collections.singletonMap("status", CartStatusType.GENERATED.name())).when(requestMock).getQueryParameters();
+        doThrow(RuntimeException.class).when(recoveryJobServiceMock).createJob(RecoveryJobType.NOT_NOTIFIED_CART, CartStatusType.GENERATED.name());
+
+        // test execution
+        HttpResponseMessage response = assertDoesNotThrow(() -> sut.run(requestMock, contextMock));
+
+        // test assertion
+        assertNotNull(response);
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatus());
+        assertNotNull(response.getBody());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,198 @@
+package it.gov.pagopa.receipt.pdf.datastore.helpdesk.job;
+
+import com.microsoft.azure.functions.ExecutionContext;
+import com.microsoft.azure.functions.OutputBinding;
+import it.gov.pagopa.receipt.pdf.datastore.entity.cart.CartForReceipt;
+import it.gov.pagopa.receipt.pdf.datastore.entity.cart.CartStatusType;
+import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.Receipt;
+import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.enumeration.ReceiptStatusType;
+import it.gov.pagopa.receipt.pdf.datastore.exception.RecoveryJobNotFoundException;
+import it.gov.pagopa.receipt.pdf.datastore.model.MassiveCartRecoverResult;
+import it.gov.pagopa.receipt.pdf.datastore.model.MassiveRecoverResult;
+import it.gov.pagopa.receipt.pdf.datastore.model.RecoveryJob;
+import it.gov.pagopa.receipt.pdf.datastore.model.enumeration.RecoveryJobStatus;
+import it.gov.pagopa.receipt.pdf.datastore.model.enumeration.RecoveryJobType;
+import it.gov.pagopa.receipt.pdf.datastore.service.HelpdeskService;
+import it.gov.pagopa.receipt.pdf.datastore.service.RecoveryJobService;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class RecoveryJobWorkerTest {
+
+    private static final String JOB_ID = "a valid job id";
+
+    @Mock
+    private ExecutionContext contextMock;
+    @Mock
+    private HelpdeskService helpdeskServiceMock;
+    @Mock
+    private RecoveryJobService recoveryJobServiceMock;
+
+    @Captor
+    private ArgumentCaptor<List<Receipt>> receiptCaptor;
+    @Captor
+    private ArgumentCaptor<List<CartForReceipt>> cartCaptor;
+
+    @Spy
+    private OutputBinding<List<Receipt>> receiptDocumentdb;
+    @Spy
+    private OutputBinding<List<CartForReceipt>> cartDocumentdb;
+
+    private RecoveryJobWorker sut;
+
+    @BeforeEach
+    void setUp() {
+        sut = new RecoveryJobWorker(helpdeskServiceMock, recoveryJobServiceMock);
+    }
+
+    @Test
+    @SneakyThrows
+    void runFailedReceiptJobWithErrors() {
+        RecoveryJob job = buildJob(RecoveryJobType.FAILED_RECEIPT, ReceiptStatusType.FAILED.name(), RecoveryJobStatus.RUNNING);
+        MassiveRecoverResult result = MassiveRecoverResult.builder()
+                .processedCounter(3)
+                .successCounter(2)
+                .errorCounter(1)
+                .failedReceiptList(List.of(new Receipt()))
+                .build();
+        doReturn(job).when(recoveryJobServiceMock).startJob(JOB_ID);
+        doReturn(result).when(helpdeskServiceMock).massiveRecoverFailedReceipt(ReceiptStatusType.FAILED, JOB_ID);
+
+        // test execution
+        assertDoesNotThrow(() -> sut.run(JOB_ID, receiptDocumentdb, cartDocumentdb, contextMock));
+
+        verify(receiptDocumentdb).setValue(receiptCaptor.capture());
+        assertEquals(1, receiptCaptor.getValue().size());
+        verify(recoveryJobServiceMock).updateJobProgress(job, 3, 2, 1, false);
+        verify(helpdeskServiceMock).deleteRecoveryJobCheckpoints(JOB_ID);
+    }
+
+    @Test
+    @SneakyThrows
+    void runFailedCartJobWithErrors() {
+        RecoveryJob job = buildJob(RecoveryJobType.FAILED_CART, CartStatusType.INSERTED.name(), RecoveryJobStatus.RUNNING);
+        MassiveCartRecoverResult result = MassiveCartRecoverResult.builder()
+                .processedCounter(2)
+                .successCounter(1)
+                .errorCounter(1)
+                .failedCartList(List.of(new CartForReceipt()))
+                .build();
+        doReturn(job).when(recoveryJobServiceMock).startJob(JOB_ID);
+        doReturn(result).when(helpdeskServiceMock).massiveRecoverFailedCart(CartStatusType.INSERTED, JOB_ID);
+
+        // test execution
+        assertDoesNotThrow(() -> sut.run(JOB_ID, receiptDocumentdb, cartDocumentdb, contextMock));
+
+        verify(cartDocumentdb).setValue(cartCaptor.capture());
+        assertEquals(1, cartCaptor.getValue().size());
+        verify(recoveryJobServiceMock).updateJobProgress(job, 2, 1, 1, false);
+    }
+
+    @Test
+    @SneakyThrows
+    void runNotNotifiedReceiptJobInterrupted() {
+        RecoveryJob job = buildJob(RecoveryJobType.NOT_NOTIFIED_RECEIPT, ReceiptStatusType.GENERATED.name(), RecoveryJobStatus.RUNNING);
+        MassiveRecoverResult result = MassiveRecoverResult.builder()
+                .processedCounter(10)
+                .successCounter(10)
+                .interrupted(true)
+                .build();
+        doReturn(job).when(recoveryJobServiceMock).startJob(JOB_ID);
+        doReturn(result).when(helpdeskServiceMock).massiveRecoverNoNotifiedReceipt(ReceiptStatusType.GENERATED, JOB_ID);
+
+        // test execution
+        assertDoesNotThrow(() -> sut.run(JOB_ID, receiptDocumentdb, cartDocumentdb, contextMock));
+
+        verify(recoveryJobServiceMock).updateJobProgress(job, 10, 10, 0, true);
+        verify(receiptDocumentdb, never()).setValue(any());
+        // the next invocation resumes from the checkpoints of the job
+        verify(helpdeskServiceMock, never()).deleteRecoveryJobCheckpoints(any());
+    }
+
+    @Test
+    @SneakyThrows
+    void runNotNotifiedCartJobSuccess() {
+        RecoveryJob job = buildJob(RecoveryJobType.NOT_NOTIFIED_CART, CartStatusType.IO_ERROR_TO_NOTIFY.name(), RecoveryJobStatus.RUNNING);
+        MassiveCartRecoverResult result = MassiveCartRecoverResult.builder()
+                .processedCounter(4)
+                .successCounter(4)
+                .build();
+        doReturn(job).when(recoveryJobServiceMock).startJob(JOB_ID);
+        doReturn(result).when(helpdeskServiceMock).massiveRecoverNoNotifiedCart(CartStatusType.IO_ERROR_TO_NOTIFY, JOB_ID);
+
+        // test execution
+        assertDoesNotThrow(() -> sut.run(JOB_ID, receiptDocumentdb, cartDocumentdb, contextMock));
+
+        verify(recoveryJobServiceMock).updateJobProgress(job, 4, 4, 0, false);
+        verify(cartDocumentdb, never()).setValue(any());
+        verify(helpdeskServiceMock).deleteRecoveryJobCheckpoints(JOB_ID);
+    }
+
+    @Test
+    @SneakyThrows
+    void runJobNotFound() {
+        doThrow(RecoveryJobNotFoundException.class).when(recoveryJobServiceMock).startJob(JOB_ID);
+
+        // test execution
+        assertDoesNotThrow(() -> sut.run(JOB_ID, receiptDocumentdb, cartDocumentdb, contextMock));
+
+        verify(recoveryJobServiceMock, never()).updateJobProgress(any(), anyInt(), anyInt(), anyInt(), anyBoolean());
+    }
+
+    @Test
+    @SneakyThrows
+    void runJobAlreadyCompleted() {
+        RecoveryJob job = buildJob(RecoveryJobType.FAILED_RECEIPT, ReceiptStatusType.FAILED.name(), RecoveryJobStatus.COMPLETED);
+        doReturn(job).when(recoveryJobServiceMock).startJob(JOB_ID);
+
+        // test execution
+        assertDoesNotThrow(() -> sut.run(JOB_ID, receiptDocumentdb, cartDocumentdb, contextMock));
+
+        verify(helpdeskServiceMock, never()).massiveRecoverFailedReceipt(any(), any());
+        verify(recoveryJobServiceMock, never()).updateJobProgress(any(), anyInt(), anyInt(), anyInt(), anyBoolean());
+    }
+
+    @Test
+    @SneakyThrows
+    void runJobRecoveryError() {
+        RecoveryJob job = buildJob(RecoveryJobType.FAILED_RECEIPT, ReceiptStatusType.FAILED.name(), RecoveryJobStatus.RUNNING);
+        doReturn(job).when(recoveryJobServiceMock).startJob(JOB_ID);
+        doThrow(new IllegalStateException("error")).when(helpdeskServiceMock).massiveRecoverFailedReceipt(ReceiptStatusType.FAILED, JOB_ID);
+
+        // test execution
+        assertDoesNotThrow(() -> sut.run(JOB_ID, receiptDocumentdb, cartDocumentdb, contextMock));
+
+        verify(recoveryJobServiceMock).failJob(job, "error");
+        verify(helpdeskServiceMock).deleteRecoveryJobCheckpoints(JOB_ID);
+        verify(recoveryJobServiceMock, never()).updateJobProgress(any(), anyInt(), anyInt(), anyInt(), anyBoolean());
+    }
+
+    private RecoveryJob buildJob(RecoveryJobType type, String status, RecoveryJobStatus jobStatus) {
+        return RecoveryJob.builder()
+                .id(JOB_ID)
+                .type(type)
+                .status(status)
+                .jobStatus(jobStatus)
+                .build();
+    }
+}
@@ -1,7 +1,12 @@
 package it.gov.pagopa.receipt.pdf.datastore.service.impl;
 
 import com.azure.core.http.rest.Response;
+import com.azure.cosmos.CosmosException;
+import com.azure.cosmos.models.CosmosBulkItemResponse;
+import com.azure.cosmos.models.CosmosBulkOperationResponse;
+import com.azure.cosmos.models.CosmosItemOperation;
 import com.azure.cosmos.models.CosmosItemResponse;
+import com.azure.cosmos.models.FeedResponse;
 import com.azure.storage.queue.models.SendMessageResult;
 import com.microsoft.azure.functions.ExecutionContext;
 import com.microsoft.azure.functions.HttpStatus;
@@ -23,26 +28,37 @@ import it.gov.pagopa.receipt.pdf.datastore.entity.event.TransactionDetails;
 import it.gov.pagopa.receipt.pdf.datastore.entity.event.User;
 import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.EventData;
 import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.Receipt;
+import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.ReceiptEventIndex;
 import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.enumeration.ReasonErrorCode;
 import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.enumeration.ReceiptStatusType;
 import it.gov.pagopa.receipt.pdf.datastore.exception.BizEventNotFoundException;
 import it.gov.pagopa.receipt.pdf.datastore.exception.CartConcurrentUpdateException;
 import it.gov.pagopa.receipt.pdf.datastore.exception.CartNotFoundException;
 import it.gov.pagopa.receipt.pdf.datastore.exception.PDVTokenizerException;
+import it.gov.pagopa.receipt.pdf.datastore.exception.ReceiptBulkSaveException;
 import it.gov.pagopa.receipt.pdf.datastore.exception.ReceiptNotFoundException;
+import it.gov.pagopa.receipt.pdf.datastore.model.BizEventDedupResult;
+import it.gov.pagopa.receipt.pdf.datastore.model.PendingQueueMessage;
 import it.gov.pagopa.receipt.pdf.datastore.service.PDVTokenizerServiceRetryWrapper;
+import it.gov.pagopa.receipt.pdf.datastore.utils.ProcessedEventFilter;
 import lombok.SneakyThrows;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
 import uk.org.webcompere.systemstubs.jupiter.SystemStubsExtension;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
 
 import static it.gov.pagopa.receipt.pdf.datastore.service.impl.BizEventToReceiptServiceImpl.FISCAL_CODE_ANONYMOUS;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
@@ -54,10 +70,15 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -90,6 +111,8 @@ class BizEventToReceiptServiceImplTest {
     private ReceiptQueueClientImpl queueClient;
     @Mock
     private CartQueueClientImpl cartQueueClient;
+    @Mock
+    private ProcessedEventFilter processedEventFilter;
 
     @Mock
     private Response<SendMessageResult> queueResponse;
@@ -97,6 +120,14 @@ class BizEventToReceiptServiceImplTest {
     private CosmosItemResponse<Receipt> cosmosReceiptResponse;
     @Mock
     private CosmosItemResponse<CartForReceipt> cosmosCartResponse;
+    @Mock
+    private FeedResponse<Receipt> receiptFeedResponse;
+    @Mock
+    private FeedResponse<ReceiptEventIndex> receiptFallbackFeedResponse;
+    @Mock
+    private FeedResponse<CartForReceipt> cartFeedResponse;
+    @Mock
+    private FeedResponse<BizEvent> bizEventFeedResponse;
 
     @InjectMocks
     private BizEventToReceiptServiceImpl sut;
@@ -132,6 +163,20 @@ class BizEventToReceiptServiceImplTest {
         assertNotNull(receipt.getReasonErr().getMessage());
     }
 
+    @Test
+    void run_KO_handleSendMessageToQueueEncodingError() {
+        BizEvent bizEvent = spy(BizEvent.builder().id(EVENT_ID).build());
+        doThrow(new IllegalStateException("not serializable")).when(bizEvent).getPaymentInfo();
+
+        Receipt receipt = new Receipt();
+
+        assertDoesNotThrow(() -> sut.handleSendMessageToQueue(Collections.singletonList(bizEvent), receipt));
+
+        assertEquals(ReceiptStatusType.NOT_QUEUE_SENT, receipt.getStatus());
+        assertEquals(ReasonErrorCode.ERROR_QUEUE.getCode(), receipt.getReasonErr().getCode());
+        verify(queueClient, never()).sendMessageToQueue(anyString());
+    }
+
     @Test
     void run_OK_handleSendCartMessageToQueue() {
         doReturn(queueResponse).when(cartQueueClient).sendMessageToQueue(anyString());
@@ -146,6 +191,45 @@ class BizEventToReceiptServiceImplTest {
         assertNull(cartForReceipt.getReasonErr());
     }
 
+    @Test
+    void run_OK_handleSendMessagesToQueueUpdatesOnlyTheFailedReceipt() {
+        doReturn(HttpStatus.CREATED.value()).when(queueResponse).getStatusCode();
+        doReturn(Mono.just(queueResponse), Mono.error(new RuntimeException()))
+                .when(queueClient).sendMessageToQueueAsync(anyString());
+
+        Receipt sentReceipt = new Receipt();
+        Receipt failedReceipt = new Receipt();
+        List<PendingQueueMessage<Receipt>> messages = List.of(
+                new PendingQueueMessage<>(sentReceipt, Collections.singletonList(BizEvent.builder().id(EVENT_ID).build())),
+                new PendingQueueMessage<>(failedReceipt, Collections.singletonList(BizEvent.builder().id(EVENT_ID_2).build()))
+        );
+
+        assertDoesNotThrow(() -> sut.handleSendMessagesToQueue(messages));
+
+        assertNotEquals(ReceiptStatusType.NOT_QUEUE_SENT, sentReceipt.getStatus());
+        assertNull(sentReceipt.getReasonErr());
+        assertEquals(ReceiptStatusType.NOT_QUEUE_SENT, failedReceipt.getStatus());
+        assertEquals(ReasonErrorCode.ERROR_QUEUE.getCode(), failedReceipt.getReasonErr().getCode());
+        verify(queueClient, times(2)).sendMessageToQueueAsync(anyString());
+        verify(queueClient, never()).sendMessageToQueue(anyString());
+    }
+
+    @Test
+    void run_KO_handleSendCartMessagesToQueueWithErrorStatusCode() {
+        doReturn(HttpStatus.INTERNAL_SERVER_ERROR.value()).when(queueResponse).getStatusCode();
+        doReturn(Mono.just(queueResponse)).when(cartQueueClient).sendMessageToQueueAsync(anyString());
+
+        CartForReceipt cartForReceipt = new CartForReceipt();
+        List<PendingQueueMessage<CartForReceipt>> messages = List.of(
+                new PendingQueueMessage<>(cartForReceipt, Collections.singletonList(new BizEvent())));
+
+        assertDoesNotThrow(() -> sut.handleSendCartMessagesToQueue(messages));
+
+        assertEquals(CartStatusType.NOT_QUEUE_SENT, cartForReceipt.getStatus());
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR.value(), cartForReceipt.getReasonErr().getCode());
+        verify(cartQueueClient, never()).sendMessageToQueue(anyString());
+    }
+
     @Test
     void run_KO_handleSendCartMessageToQueue() {
         doThrow(new RuntimeException()).when(cartQueueClient).sendMessageToQueue(anyString());
@@ -188,9 +272,131 @@ class BizEventToReceiptServiceImplTest {
         assertNotNull(e);
     }
 
+    @Test
+    void run_OK_findAlreadyProcessedBizEvents_receiptFoundByReadMany() {
+        BizEvent bizEvent = buildValidBizEvent();
+        bizEvent.getPaymentInfo().setTotalNotice("1");
+
+        doReturn(List.of(Receipt.builder().id(EVENT_ID).eventId(EVENT_ID).build()))
+                .when(receiptFeedResponse).getResults();
+        doReturn(2.0).when(receiptFeedResponse).getRequestCharge();
+        doReturn(receiptFeedResponse).when(receiptCosmosClient).getReceiptDocuments(List.of(EVENT_ID));
+
+        BizEventDedupResult result = assertDoesNotThrow(() -> sut.findAlreadyProcessedBizEvents(List.of(bizEvent)));
+
+        assertTrue(result.getProcessedBizEventIds().contains(EVENT_ID));
+        assertEquals(1, result.getHitCounter());
+        assertEquals(0, result.getMissCounter());
+        assertEquals(2.0, result.getRequestCharge());
+        verify(receiptCosmosClient, never()).getReceiptEventIndexes(anyList());
+        verify(cartReceiptsCosmosClient, never()).getCartItems(anyList());
+    }
+
+    @Test
+    void run_OK_findAlreadyProcessedBizEvents_fallbackOnlyForMissingReceipts() {
+        BizEvent bizEvent = buildValidBizEvent();
+        bizEvent.getPaymentInfo().setTotalNotice("1");
+        BizEvent bizEvent2 = buildValidBizEvent();
+        bizEvent2.setId(EVENT_ID_2);
+        bizEvent2.getPaymentInfo().setTotalNotice("1");
+
+        doReturn(List.of(Receipt.builder().id(EVENT_ID).eventId(EVENT_ID).build()))
+                .when(receiptFeedResponse).getResults();
+        doReturn(2.0).when(receiptFeedResponse).getRequestCharge();
+        doReturn(receiptFeedResponse).when(receiptCosmosClient).getReceiptDocuments(List.of(EVENT_ID, EVENT_ID_2));
+        doReturn(Collections.emptyList()).when(receiptFallbackFeedResponse).getResults();
+        doReturn(3.0).when(receiptFallbackFeedResponse).getRequestCharge();
+        doReturn(List.of(receiptFallbackFeedResponse))
+                .when(receiptCosmosClient).getReceiptEventIndexes(List.of(EVENT_ID_2));
+
+        BizEventDedupResult result =
+                assertDoesNotThrow(() -> sut.findAlreadyProcessedBizEvents(List.of(bizEvent, bizEvent2)));
+
+        assertEquals(1, result.getProcessedBizEventIds().size());
+        assertTrue(result.getProcessedBizEventIds().contains(EVENT_ID));
+        assertEquals(1, result.getHitCounter());
+        assertEquals(1, result.getMissCounter());
+        assertEquals(5.0, result.getRequestCharge());
+    }
+
+    @Test
+    void run_OK_findAlreadyProcessedBizEvents_notRecordedByWarmFilterNotRead() {
+        BizEvent bizEvent = buildValidBizEvent();
+        bizEvent.getPaymentInfo().setTotalNotice("1");
+        BizEvent bizEvent2 = buildValidBizEvent();
+        bizEvent2.setId(EVENT_ID_2);
+        bizEvent2.getPaymentInfo().setTotalNotice("1");
+
+        doReturn(true).when(processedEventFilter).isWarm();
+        doReturn(true).when(processedEventFilter).mightContain(EVENT_ID);
+        doReturn(false).when(processedEventFilter).mightContain(EVENT_ID_2);
+        doReturn(List.of(Receipt.builder().id(EVENT_ID).eventId(EVENT_ID).build()))
+                .when(receiptFeedResponse).getResults();
+        doReturn(2.0).when(receiptFeedResponse).getRequestCharge();
+        doReturn(receiptFeedResponse).when(receiptCosmosClient).getReceiptDocuments(List.of(EVENT_ID));
+
+        BizEventDedupResult result =
+                assertDoesNotThrow(() -> sut.findAlreadyProcessedBizEvents(List.of(bizEvent, bizEvent2)));
+
+        assertEquals(Set.of(EVENT_ID), result.getProcessedBizEventIds());
+        assertEquals(1, result.getHitCounter());
+        assertEquals(1, result.getMissCounter());
+        assertEquals(Set.of(EVENT_ID_2), result.getFilterSkippedBizEventIds());
+        verify(receiptCosmosClient, never()).getReceiptEventIndexes(anyList());
+        verify(processedEventFilter).put(EVENT_ID);
+    }
+
+    @Test
+    void run_OK_findSavedReceiptEventIds_readsCosmosRegardlessOfTheFilter() {
+        doReturn(List.of(Receipt.builder().id(EVENT_ID).eventId(EVENT_ID).build()))
+                .when(receiptFeedResponse).getResults();
+        doReturn(receiptFeedResponse).when(receiptCosmosClient).getReceiptDocuments(List.of(EVENT_ID, EVENT_ID_2));
+        doReturn(Collections.emptyList()).when(receiptCosmosClient).getReceiptEventIndexes(List.of(EVENT_ID_2));
+
+        Set<String> saved = assertDoesNotThrow(() -> sut.findSavedReceiptEventIds(List.of(EVENT_ID, EVENT_ID_2)));
+
+        assertEquals(Set.of(EVENT_ID), saved);
+        verify(processedEventFilter, never()).mightContain(anyString());
+        verify(processedEventFilter).put(EVENT_ID);
+    }
+
+    @Test
+    void run_OK_findAlreadyProcessedBizEvents_cartEvents() {
+        BizEvent bizEvent = buildValidBizEvent();
+        BizEvent bizEvent2 = buildValidBizEvent();
+        bizEvent2.setId(EVENT_ID_2);
+        CartForReceipt cart = buildCartForReceiptWaitingForBiz();
+        cart.setId(CART_ID);
+
+        doReturn(List.of(cart)).when(cartFeedResponse).getResults();
+        doReturn(1.0).when(cartFeedResponse).getRequestCharge();
+        doReturn(cartFeedResponse).when(cartReceiptsCosmosClient).getCartItems(List.of(CART_ID));
+
+        BizEventDedupResult result =
+                assertDoesNotThrow(() -> sut.findAlreadyProcessedBizEvents(List.of(bizEvent, bizEvent2)));
+
+        assertEquals(1, result.getProcessedBizEventIds().size());
+        assertTrue(result.getProcessedBizEventIds().contains(EVENT_ID_2));
+        assertEquals(1, result.getHitCounter());
+        assertEquals(1, result.getMissCounter());
+        assertEquals(1.0, result.getRequestCharge());
+        verify(receiptCosmosClient, never()).getReceiptDocuments(anyList());
+    }
+
+    @Test
+    void run_OK_prefetchFiscalCodeTokens() {
+        BizEvent bizEvent = buildValidBizEvent();
+        BizEvent bizEvent2 = buildValidBizEvent();
+        bizEvent2.setId(EVENT_ID_2);
+
+        sut.prefetchFiscalCodeTokens(List.of(bizEvent, bizEvent2));
+
+        verify(pdvTokenizerServiceMock).generateTokensForFiscalCodesWithRetry(Set.of(DEBTOR_FISCAL_CODE, PAYER_FISCAL_CODE));
+    }
+
     @Test
     void run_OK_handleSaveReceipt() {
-        doReturn(cosmosReceiptResponse).when(receiptCosmosClient).saveReceipts(any());
+        doReturn(cosmosReceiptResponse).when(receiptCosmosClient).saveReceipts(any(Receipt.class));
         doReturn(HttpStatus.CREATED.value()).when(cosmosReceiptResponse).getStatusCode();
 
         Receipt receipt = new Receipt();
@@ -202,9 +408,79 @@ class BizEventToReceiptServiceImplTest {
         assertTrue(receipt.getInserted_at() > 0);
     }
 
+    @Test
+    void run_OK_handleSaveReceiptsMapsEachOutcomeToItsReceipt() {
+        Receipt created = Receipt.builder().id(EVENT_ID).eventId(EVENT_ID).build();
+        Receipt conflict = Receipt.builder().id(EVENT_ID_2).eventId(EVENT_ID_2).build();
+        Receipt throttled = Receipt.builder().id(CART_ID).eventId(CART_ID).build();
+        List<Receipt> receipts = List.of(created, conflict, throttled);
+        List<CosmosBulkOperationResponse<Receipt>> responses = List.of(
+                bulkResponse(created, HttpStatus.CREATED.value()),
+                bulkResponse(conflict, HttpStatus.CONFLICT.value()),
+                bulkResponse(throttled, HttpStatus.TOO_MANY_REQUESTS.value())
+        );
+        doReturn(responses).when(receiptCosmosClient).saveReceipts(receipts);
+
+        List<Receipt> alreadySaved = assertDoesNotThrow(() -> sut.handleSaveReceipts(receipts));
+
+        assertEquals(List.of(conflict), alreadySaved);
+        assertEquals(ReceiptStatusType.INSERTED, created.getStatus());
+        assertTrue(created.getInserted_at() > 0);
+        assertNull(created.getReasonErr());
+        assertNull(conflict.getReasonErr());
+        assertEquals(ReceiptStatusType.FAILED, throttled.getStatus());
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS.value(), throttled.getReasonErr().getCode());
+    }
+
+    @Test
+    void run_KO_handleSaveReceiptsBulkExecutionFailed() {
+        Receipt receipt = new Receipt();
+        List<Receipt> receipts = List.of(receipt);
+        doThrow(new RuntimeException()).when(receiptCosmosClient).saveReceipts(anyList());
+
+        ReceiptBulkSaveException e = assertThrows(ReceiptBulkSaveException.class, () -> sut.handleSaveReceipts(receipts));
+
+        assertTrue(e.getAlreadySavedReceipts().isEmpty());
+        assertEquals(List.of(receipt), e.getUnknownOutcomeReceipts());
+        // the receipt may have been saved, so it is not marked as failed
+        assertEquals(ReceiptStatusType.INSERTED, receipt.getStatus());
+        assertNull(receipt.getReasonErr());
+    }
+
+    @Test
+    void run_KO_handleSaveReceiptsBulkExecutionFailedKeepsTheReceivedOutcomes() {
+        Receipt created = Receipt.builder().id(EVENT_ID).eventId(EVENT_ID).build();
+        Receipt conflict = Receipt.builder().id(EVENT_ID_2).eventId(EVENT_ID_2).build();
+        Receipt unknown = Receipt.builder().id(CART_ID).eventId(CART_ID).build();
+        List<Receipt> receipts = List.of(created, conflict, unknown);
+        List<CosmosBulkOperationResponse<Receipt>> received = List.of(
+                bulkResponse(created, HttpStatus.CREATED.value()),
+                bulkResponse(conflict, HttpStatus.CONFLICT.value())
+        );
+        // the bulk execution fails after the first two outcomes
+        Iterable<CosmosBulkOperationResponse<Receipt>> responses = () -> Stream.of(0, 1, 2)
+                .map(i -> {
+                    if (i == received.size()) {
+                        throw new IllegalStateException("bulk execution failed");
+                    }
+                    return received.get(i);
+                })
+                .iterator();
+        doReturn(responses).when(receiptCosmosClient).saveReceipts(receipts);
+
+        ReceiptBulkSaveException e = assertThrows(ReceiptBulkSaveException.class, () -> sut.handleSaveReceipts(receipts));
+
+        assertEquals(List.of(conflict), e.getAlreadySavedReceipts());
+        assertEquals(List.of(unknown), e.getUnknownOutcomeReceipts());
+        assertEquals(ReceiptStatusType.INSERTED, created.getStatus());
+        assertNull(conflict.getReasonErr());
+        assertEquals(ReceiptStatusType.INSERTED, unknown.getStatus());
+        assertNull(unknown.getReasonErr());
+    }
+
     @Test
     void run_KO_handleSaveReceipt() {
-        doThrow(new RuntimeException()).when(receiptCosmosClient).saveReceipts(any());
+        doThrow(new RuntimeException()).when(receiptCosmosClient).saveReceipts(any(Receipt.class));
 
         Receipt receipt = new Receipt();
 
@@ -717,38 +993,292 @@ class BizEventToReceiptServiceImplTest {
         verify(cartReceiptsCosmosClient, times(2)).updateCart(any());
     }
 
+    @Test
+    @SneakyThrows
+    void run_OK_appendToCartForReceipt_cartWaiting() {
+        CartForReceipt waitingCart = buildCartForReceiptWaitingForBiz();
+        waitingCart.getPayload().setTotalNotice(3);
+        doReturn(TOKENIZED_DEBTOR_FISCAL_CODE).when(pdvTokenizerServiceMock).generateTokenForFiscalCodeWithRetry(DEBTOR_FISCAL_CODE);
+        doReturn(cosmosCartResponse).when(cartReceiptsCosmosClient).appendCartItems(eq(CART_ID), any());
+        doReturn(waitingCart).when(cosmosCartResponse).getItem();
+
+        CartForReceipt result = sut.appendToCartForReceipt(List.of(buildValidBizEvent()));
+
+        assertEquals(CartStatusType.WAITING_FOR_BIZ_EVENT, result.getStatus());
+        ArgumentCaptor<List<CartPayment>> itemsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(cartReceiptsCosmosClient).appendCartItems(eq(CART_ID), itemsCaptor.capture());
+        assertEquals(1, itemsCaptor.getValue().size());
+        assertEquals(EVENT_ID, itemsCaptor.getValue().get(0).getBizEventId());
+        assertEquals(TOKENIZED_DEBTOR_FISCAL_CODE, itemsCaptor.getValue().get(0).getDebtorFiscalCode());
+        verify(cartReceiptsCosmosClient, never()).markCartInserted(anyString(), anyLong());
+        verify(cartReceiptsCosmosClient, never()).updateCart(any());
+    }
+
+    @Test
+    @SneakyThrows
+    void run_OK_appendToCartForReceipt_lastItemCompletesTheCart() {
+        CartForReceipt fullCart = buildCartForReceiptWaitingForBiz();
+        fullCart.getPayload().getCart().add(CartPayment.builder().bizEventId(EVENT_ID).build());
+        CartForReceipt insertedCart = fullCart.toBuilder().status(CartStatusType.INSERTED).build();
+        CosmosItemResponse<CartForReceipt> insertedResponse = mock(CosmosItemResponse.class);
+        doReturn(cosmosCartResponse).when(cartReceiptsCosmosClient).appendCartItems(eq(CART_ID), any());
+        doReturn(fullCart).when(cosmosCartResponse).getItem();
+        doReturn(insertedResponse).when(cartReceiptsCosmosClient).markCartInserted(eq(CART_ID), anyLong());
+        doReturn(insertedCart).when(insertedResponse).getItem();
+
+        CartForReceipt result = sut.appendToCartForReceipt(List.of(buildValidBizEvent()));
+
+        assertEquals(CartStatusType.INSERTED, result.getStatus());
+    }
+
+    @Test
+    @SneakyThrows
+    void run_OK_appendToCartForReceipt_cartCompletedConcurrently() {
+        CartForReceipt fullCart = buildCartForReceiptWaitingForBiz();
+        fullCart.getPayload().getCart().add(CartPayment.builder().bizEventId(EVENT_ID).build());
+        doReturn(cosmosCartResponse).when(cartReceiptsCosmosClient).appendCartItems(eq(CART_ID), any());
+        doReturn(fullCart).when(cosmosCartResponse).getItem();
+        doThrow(CartConcurrentUpdateException.class).when(cartReceiptsCosmosClient).markCartInserted(eq(CART_ID), anyLong());
+
+        CartForReceipt result = sut.appendToCartForReceipt(List.of(buildValidBizEvent()));
+
+        // the message is sent only by the call that moved the cart to INSERTED
+        assertEquals(CartStatusType.WAITING_FOR_BIZ_EVENT, result.getStatus());
+    }
+
+    @Test
+    @SneakyThrows
+    void run_OK_appendToCartForReceipt_createsTheCart() {
+        doReturn(TOKENIZED_DEBTOR_FISCAL_CODE).when(pdvTokenizerServiceMock).generateTokenForFiscalCodeWithRetry(DEBTOR_FISCAL_CODE);
+        doReturn(TOKENIZED_PAYER_FISCAL_CODE).when(pdvTokenizerServiceMock).generateTokenForFiscalCodeWithRetry(PAYER_FISCAL_CODE);
+        doThrow(CartNotFoundException.class).when(cartReceiptsCosmosClient).appendCartItems(eq(CART_ID), any());
+        ArgumentCaptor<CartForReceipt> cartCaptor = ArgumentCaptor.forClass(CartForReceipt.class);
+        doAnswer(invocation -> {
+            doReturn(invocation.getArgument(0)).when(cosmosCartResponse).getItem();
+            return cosmosCartResponse;
+        }).when(cartReceiptsCosmosClient).createCart(cartCaptor.capture());
+
+        CartForReceipt result = sut.appendToCartForReceipt(List.of(buildValidBizEvent()));
+
+        assertEquals(CartStatusType.WAITING_FOR_BIZ_EVENT, result.getStatus());
+        assertEquals(CART_ID, cartCaptor.getValue().getId());
+        assertEquals(TOKENIZED_PAYER_FISCAL_CODE, cartCaptor.getValue().getPayload().getPayerFiscalCode());
+        assertEquals(1, cartCaptor.getValue().getPayload().getCart().size());
+        assertEquals(EVENT_ID, cartCaptor.getValue().getPayload().getCart().get(0).getBizEventId());
+    }
+
+    @Test
+    @SneakyThrows
+    void run_OK_appendToCartForReceipt_cartCreatedConcurrently() {
+        CartForReceipt waitingCart = buildCartForReceiptWaitingForBiz();
+        waitingCart.getPayload().setTotalNotice(3);
+        doThrow(CartNotFoundException.class)
+                .doReturn(cosmosCartResponse)
+                .when(cartReceiptsCosmosClient).appendCartItems(eq(CART_ID), any());
+        doThrow(CartConcurrentUpdateException.class).when(cartReceiptsCosmosClient).createCart(any());
+        doReturn(waitingCart).when(cosmosCartResponse).getItem();
+
+        CartForReceipt result = sut.appendToCartForReceipt(List.of(buildValidBizEvent()));
+
+        assertEquals(waitingCart, result);
+        verify(cartReceiptsCosmosClient, times(2)).appendCartItems(eq(CART_ID), any());
+    }
+
+    @Test
+    @SneakyThrows
+    void run_OK_appendToCartForReceipt_manyItemsWithSingleWrite() {
+        BizEvent otherBizEvent = buildValidBizEvent();
+        otherBizEvent.setId(EVENT_ID_2);
+        CartForReceipt fullCart = buildCartForReceiptWaitingForBiz();
+        fullCart.getPayload().getCart().add(CartPayment.builder().bizEventId(EVENT_ID).build());
+        CartForReceipt insertedCart = fullCart.toBuilder().status(CartStatusType.INSERTED).build();
+        CosmosItemResponse<CartForReceipt> insertedResponse = mock(CosmosItemResponse.class);
+        doReturn(cosmosCartResponse).when(cartReceiptsCosmosClient).appendCartItems(eq(CART_ID), any());
+        doReturn(fullCart).when(cosmosCartResponse).getItem();
+        doReturn(insertedResponse).when(cartReceiptsCosmosClient).markCartInserted(eq(CART_ID), anyLong());
+        doReturn(insertedCart).when(insertedResponse).getItem();
+
+        CartForReceipt result = sut.appendToCartForReceipt(List.of(buildValidBizEvent(), otherBizEvent));
+
+        assertEquals(CartStatusType.INSERTED, result.getStatus());
+        ArgumentCaptor<List<CartPayment>> itemsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(cartReceiptsCosmosClient).appendCartItems(eq(CART_ID), itemsCaptor.capture());
+        assertEquals(List.of(EVENT_ID, EVENT_ID_2), itemsCaptor.getValue().stream().map(CartPayment::getBizEventId).toList());
+    }
+
+    @Test
+    @SneakyThrows
+    void run_OK_appendToCartForReceipt_createsTheCartInserted() {
+        BizEvent otherBizEvent = buildValidBizEvent();
+        otherBizEvent.setId(EVENT_ID_2);
+        doThrow(CartNotFoundException.class).when(cartReceiptsCosmosClient).appendCartItems(eq(CART_ID), any());
+        ArgumentCaptor<CartForReceipt> cartCaptor = ArgumentCaptor.forClass(CartForReceipt.class);
+        doAnswer(invocation -> {
+            doReturn(invocation.getArgument(0)).when(cosmosCartResponse).getItem();
+            return cosmosCartResponse;
+        }).when(cartReceiptsCosmosClient).createCart(cartCaptor.capture());
+
+        CartForReceipt result = sut.appendToCartForReceipt(List.of(buildValidBizEvent(), otherBizEvent));
+
+        // the cart is complete, it is created INSERTED without a further update
+        assertEquals(CartStatusType.INSERTED, result.getStatus());
+        assertTrue(result.getInserted_at() > 0);
+        assertEquals(2, cartCaptor.getValue().getPayload().getCart().size());
+        verify(cartReceiptsCosmosClient, never()).markCartInserted(anyString(), anyLong());
+    }
+
+    @Test
+    @SneakyThrows
+    void run_OK_appendToCartForReceipt_skipsTheItemsAlreadyAdded() {
+        BizEvent otherBizEvent = buildValidBizEvent();
+        otherBizEvent.setId("event id 3");
+        CartForReceipt cart = buildCartForReceiptWaitingForBiz();
+        cart.getPayload().setTotalNotice(4);
+        cart.getPayload().getCart().add(CartPayment.builder().bizEventId(EVENT_ID).build());
+        CartForReceipt updatedCart = buildCartForReceiptWaitingForBiz();
+        doThrow(CartConcurrentUpdateException.class)
+                .doReturn(cosmosCartResponse)
+                .when(cartReceiptsCosmosClient).appendCartItems(eq(CART_ID), any());
+        doReturn(cart).when(cartReceiptsCosmosClient).getCartItem(CART_ID);
+        doReturn(updatedCart).when(cosmosCartResponse).getItem();
+
+        CartForReceipt result = sut.appendToCartForReceipt(List.of(buildValidBizEvent(), otherBizEvent));
+
+        assertEquals(updatedCart, result);
+        ArgumentCaptor<List<CartPayment>> itemsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(cartReceiptsCosmosClient, times(2)).appendCartItems(eq(CART_ID), itemsCaptor.capture());
+        assertEquals(List.of("event id 3"), itemsCaptor.getAllValues().get(1).stream().map(CartPayment::getBizEventId).toList());
+    }
+
+    @Test
+    @SneakyThrows
+    void run_OK_appendToCartForReceipt_itemAlreadyAdded() {
+        CartForReceipt cart = buildCartForReceiptWaitingForBiz();
+        cart.getPayload().setTotalNotice(3);
+        cart.getPayload().getCart().add(CartPayment.builder().bizEventId(EVENT_ID).build());
+        doThrow(CartConcurrentUpdateException.class).when(cartReceiptsCosmosClient).appendCartItems(eq(CART_ID), any());
+        doReturn(cart).when(cartReceiptsCosmosClient).getCartItem(CART_ID);
+
+        assertNull(sut.appendToCartForReceipt(List.of(buildValidBizEvent())));
+
+        verify(cartReceiptsCosmosClient).appendCartItems(eq(CART_ID), any());
+        verify(cartReceiptsCosmosClient, never()).markCartInserted(anyString(), anyLong());
+    }
+
+    @Test
+    @SneakyThrows
+    void run_KO_appendToCartForReceipt_cartAlreadyComplete() {
+        CartForReceipt cart = buildCartForReceiptWaitingForBiz();
+        cart.getPayload().getCart().add(CartPayment.builder().bizEventId("another id").build());
+        cart.setStatus(CartStatusType.INSERTED);
+        doThrow(CartConcurrentUpdateException.class).when(cartReceiptsCosmosClient).appendCartItems(eq(CART_ID), any());
+        doReturn(cart).when(cartReceiptsCosmosClient).getCartItem(CART_ID);
+
+        // the biz-event is discarded, the complete cart is never written back as failed
+        assertNull(sut.appendToCartForReceipt(List.of(buildValidBizEvent())));
+
+        assertEquals(CartStatusType.INSERTED, cart.getStatus());
+        assertNull(cart.getReasonErr());
+        verify(cartReceiptsCosmosClient, never()).markCartInserted(anyString(), anyLong());
+    }
+
+    @Test
+    @SneakyThrows
+    void run_KO_appendToCartForReceipt_unexpectedCosmosErrorIsRethrown() {
+        CosmosException cosmosException = mock(CosmosException.class);
+        doReturn(503).when(cosmosException).getStatusCode();
+        doThrow(cosmosException).when(cartReceiptsCosmosClient).appendCartItems(eq(CART_ID), any());
+
+        List<BizEvent> bizEvents = List.of(buildValidBizEvent());
+        CosmosException thrown = assertThrows(CosmosException.class, () -> sut.appendToCartForReceipt(bizEvents));
+
+        // the batch is retried, no cart without id and payload is returned to be saved as failed
+        assertEquals(503, thrown.getStatusCode());
+        verify(cartReceiptsCosmosClient).appendCartItems(eq(CART_ID), any());
+        verify(cartReceiptsCosmosClient, never()).createCart(any());
+    }
+
+    @Test
+    @SneakyThrows
+    void run_KO_appendToCartForReceipt_concurrentUpdatesExhaustTheAttempts() {
+        CartForReceipt cart = buildCartForReceiptWaitingForBiz();
+        doThrow(CartConcurrentUpdateException.class).when(cartReceiptsCosmosClient).appendCartItems(eq(CART_ID), any());
+        doReturn(cart).when(cartReceiptsCosmosClient).getCartItem(CART_ID);
+
+        List<BizEvent> bizEvents = List.of(buildValidBizEvent());
+
+        // the last read cart may be stale, so it is not returned as failed to be written back: the batch is retried
+        assertThrows(IllegalStateException.class, () -> sut.appendToCartForReceipt(bizEvents));
+
+        assertEquals(CartStatusType.WAITING_FOR_BIZ_EVENT, cart.getStatus());
+        assertNull(cart.getReasonErr());
+        verify(cartReceiptsCosmosClient, times(5)).appendCartItems(eq(CART_ID), any());
+    }
+
+    @Test
+    @SneakyThrows
+    void run_KO_appendToCartForReceipt_tokenizerError() {
+        doThrow(new PDVTokenizerException("error", ReasonErrorCode.ERROR_PDV_IO.getCode()))
+                .when(pdvTokenizerServiceMock).generateTokenForFiscalCodeWithRetry(DEBTOR_FISCAL_CODE);
+
+        CartForReceipt result = sut.appendToCartForReceipt(List.of(buildValidBizEvent()));
+
+        assertEquals(CartStatusType.FAILED, result.getStatus());
+        assertEquals(CART_ID, result.getCartId());
+        assertEquals(ReasonErrorCode.ERROR_PDV_IO.getCode(), result.getReasonErr().getCode());
+        verify(cartReceiptsCosmosClient, never()).appendCartItems(anyString(), any());
+    }
+
     @Test
     void run_OK_getCartBizEvents() throws BizEventNotFoundException {
-        when(bizEventCosmosClientMock.getBizEventDocument("1")).thenReturn(new BizEvent());
+        BizEvent loadedBizEvent = BizEvent.builder().id("1").build();
+        BizEvent readBizEvent = BizEvent.builder().id("2").build();
+        doReturn(List.of(readBizEvent)).when(bizEventFeedResponse).getResults();
+        doReturn(1.5).when(bizEventFeedResponse).getRequestCharge();
+        doReturn(bizEventFeedResponse).when(bizEventCosmosClientMock).getBizEventDocuments(List.of("2"));
+
+        List<BizEvent> result = assertDoesNotThrow(() -> sut.getCartBizEvents(buildCartWithItems("1", "2"),
+                Map.of("1", loadedBizEvent)));
+
+        // the already loaded biz-events are not read again and the order of the cart items is kept
+        assertEquals(List.of(loadedBizEvent, readBizEvent), result);
+        verify(bizEventCosmosClientMock, never()).getBizEventDocument(anyString());
+    }
 
-        assertDoesNotThrow(() -> sut.getCartBizEvents(CartForReceipt.builder()
-                .payload(Payload.builder()
-                        .cart(List.of(CartPayment.builder()
-                                .bizEventId("1")
-                                .build()))
-                        .build())
-                .build()));
+    @Test
+    void run_OK_getCartBizEventsAllAlreadyLoaded() {
+        BizEvent loadedBizEvent = BizEvent.builder().id("1").build();
+        CartForReceipt cartForReceipt = buildCartWithItems("1");
+
+        List<BizEvent> result = assertDoesNotThrow(() -> sut.getCartBizEvents(cartForReceipt, Map.of("1", loadedBizEvent)));
+
+        assertEquals(List.of(loadedBizEvent), result);
+        verify(bizEventCosmosClientMock, never()).getBizEventDocuments(anyList());
     }
 
     @Test
-    void run_KO_getCartBizEvents() throws BizEventNotFoundException {
-        doThrow(BizEventNotFoundException.class).when(bizEventCosmosClientMock).getBizEventDocument("1");
+    void run_KO_getCartBizEvents() {
+        doReturn(List.of()).when(bizEventFeedResponse).getResults();
+        doReturn(bizEventFeedResponse).when(bizEventCosmosClientMock).getBizEventDocuments(List.of("1"));
 
-        CartForReceipt cartForReceipt = CartForReceipt.builder()
-                .payload(Payload.builder()
-                        .cart(List.of(CartPayment.builder()
-                                .bizEventId("1")
-                                .build()))
-                        .build())
-                .build();
+        CartForReceipt cartForReceipt = buildCartWithItems("1");
 
-        assertDoesNotThrow(() -> sut.getCartBizEvents(cartForReceipt));
+        assertDoesNotThrow(() -> sut.getCartBizEvents(cartForReceipt, Map.of()));
 
         assertNotNull(cartForReceipt);
         assertEquals(CartStatusType.FAILED, cartForReceipt.getStatus());
         assertNotNull(cartForReceipt.getReasonErr());
         assertEquals(ReasonErrorCode.GENERIC_ERROR.getCode(), cartForReceipt.getReasonErr().getCode());
-        assertNotNull(cartForReceipt.getReasonErr().getMessage());
+    }
+
+    private CartForReceipt buildCartWithItems(String... bizEventIds) {
+        return CartForReceipt.builder()
+                .payload(Payload.builder()
+                        .cart(Arrays.stream(bizEventIds)
+                                .map(bizEventId -> CartPayment.builder().bizEventId(bizEventId).build())
+                                .toList())
+                        .build())
+                .build();
     }
 
     @Test
@@ -828,4 +1358,14 @@ class BizEventToReceiptServiceImplTest {
                 .build();
     }
 
+    private CosmosBulkOperationResponse<Receipt> bulkResponse(Receipt receipt, int statusCode) {
+        CosmosItemOperation operation = mock(CosmosItemOperation.class);
+        doReturn(receipt).when(operation).getContext();
+        CosmosBulkItemResponse itemResponse = mock(CosmosBulkItemResponse.class);
+        doReturn(statusCode).when(itemResponse).getStatusCode();
+        CosmosBulkOperationResponse<Receipt> response = mock(CosmosBulkOperationResponse.class);
+        doReturn(operation).when(response).getOperation();
+        doReturn(itemResponse).when(response).getResponse();
+        return response;
+    }
 }
@@ -1,5 +1,6 @@
 package it.gov.pagopa.receipt.pdf.datastore.service.impl;
 
+import com.azure.cosmos.models.FeedRange;
 import com.azure.cosmos.models.FeedResponse;
 import it.gov.pagopa.receipt.pdf.datastore.client.CartReceiptsCosmosClient;
 import it.gov.pagopa.receipt.pdf.datastore.entity.cart.CartForReceipt;
@@ -15,6 +16,7 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
@@ -27,6 +29,8 @@ import static org.mockito.Mockito.verify;
 @ExtendWith(MockitoExtension.class)
 class CartReceiptCosmosServiceImplTest {
 
+    private static final FeedRange FEED_RANGE = FeedRange.forFullRange();
+
     @Mock
     private CartReceiptsCosmosClient cartReceiptsCosmosClient;
     @Mock
@@ -60,31 +64,31 @@ class CartReceiptCosmosServiceImplTest {
 
     @Test
     void getNotNotifiedCartReceiptByStatus_OK_IO_ERROR_TO_NOTIFY() {
-        doReturn(iterableMock).when(cartReceiptsCosmosClient).getIOErrorToNotifyCartReceiptDocuments(anyString(), any());
+        doReturn(iterableMock).when(cartReceiptsCosmosClient).getIOErrorToNotifyCartReceiptDocuments(anyString(), any(), any());
 
-        assertDoesNotThrow(() -> sut.getNotNotifiedCartReceiptByStatus("", 1, CartStatusType.IO_ERROR_TO_NOTIFY));
+        assertDoesNotThrow(() -> sut.getNotNotifiedCartReceiptByStatus("", 1, CartStatusType.IO_ERROR_TO_NOTIFY, FEED_RANGE));
 
-        verify(cartReceiptsCosmosClient, never()).getGeneratedCartReceiptDocuments(anyString(), any());
+        verify(cartReceiptsCosmosClient, never()).getGeneratedCartReceiptDocuments(anyString(), any(), any());
     }
 
     @Test
     void getNotNotifiedCartReceiptByStatus_OK_GENERATED() {
-        doReturn(iterableMock).when(cartReceiptsCosmosClient).getGeneratedCartReceiptDocuments(anyString(), any());
+        doReturn(iterableMock).when(cartReceiptsCosmosClient).getGeneratedCartReceiptDocuments(anyString(), any(), any());
 
-        assertDoesNotThrow(() -> sut.getNotNotifiedCartReceiptByStatus("", 1, CartStatusType.GENERATED));
+        assertDoesNotThrow(() -> sut.getNotNotifiedCartReceiptByStatus("", 1, CartStatusType.GENERATED, FEED_RANGE));
 
-        verify(cartReceiptsCosmosClient, never()).getIOErrorToNotifyCartReceiptDocuments(anyString(), any());
+        verify(cartReceiptsCosmosClient, never()).getIOErrorToNotifyCartReceiptDocuments(anyString(), any(), any());
     }
 
     @Test
     void getNotNotifiedCartReceiptByStatus_KO_StatusNull() {
         assertThrows(
                 IllegalArgumentException.class,
-                () -> sut.getNotNotifiedCartReceiptByStatus("", 1, null)
+                () -> sut.getNotNotifiedCartReceiptByStatus("", 1, null, FEED_RANGE)
         );
 
-        verify(cartReceiptsCosmosClient, never()).getGeneratedCartReceiptDocuments(anyString(), any());
-        verify(cartReceiptsCosmosClient, never()).getIOErrorToNotifyCartReceiptDocuments(anyString(), any());
+        verify(cartReceiptsCosmosClient, never()).getGeneratedCartReceiptDocuments(anyString(), any(), any());
+        verify(cartReceiptsCosmosClient, never()).getIOErrorToNotifyCartReceiptDocuments(anyString(), any(), any());
     }
 
     @ParameterizedTest
@@ -92,42 +96,42 @@ class CartReceiptCosmosServiceImplTest {
     void getNotNotifiedCartReceiptByStatus_KO_InvalidStatus(CartStatusType status) {
         assertThrows(
                 IllegalStateException.class,
-                () -> sut.getNotNotifiedCartReceiptByStatus("", 1, status)
+                () -> sut.getNotNotifiedCartReceiptByStatus("", 1, status, FEED_RANGE)
         );
 
-        verify(cartReceiptsCosmosClient, never()).getGeneratedCartReceiptDocuments(anyString(), any());
-        verify(cartReceiptsCosmosClient, never()).getIOErrorToNotifyCartReceiptDocuments(anyString(), any());
+        verify(cartReceiptsCosmosClient, never()).getGeneratedCartReceiptDocuments(anyString(), any(), any());
+        verify(cartReceiptsCosmosClient, never()).getIOErrorToNotifyCartReceiptDocuments(anyString(), any(), any());
     }
 
     @ParameterizedTest
     @EnumSource(value = CartStatusType.class, names = {"FAILED", "NOT_QUEUE_SENT"})
     void getFailedCartReceiptByStatus_OK_FAILED(CartStatusType status) {
-        doReturn(iterableMock).when(cartReceiptsCosmosClient).getFailedCartReceiptDocuments(anyString(), any());
+        doReturn(iterableMock).when(cartReceiptsCosmosClient).getFailedCartReceiptDocuments("", 1, status, FEED_RANGE);
 
-        assertDoesNotThrow(() -> sut.getFailedCartReceiptByStatus("", 1, status));
+        assertDoesNotThrow(() -> sut.getFailedCartReceiptByStatus("", 1, status, FEED_RANGE));
 
-        verify(cartReceiptsCosmosClient, never()).getInsertedCartReceiptDocuments(anyString(), any());
+        verify(cartReceiptsCosmosClient, never()).getInsertedCartReceiptDocuments(anyString(), any(), any(), any());
     }
 
     @ParameterizedTest
     @EnumSource(value = CartStatusType.class, names = {"INSERTED", "WAITING_FOR_BIZ_EVENT"})
     void getFailedCartReceiptByStatus_OK_INSERTED(CartStatusType status) {
-        doReturn(iterableMock).when(cartReceiptsCosmosClient).getInsertedCartReceiptDocuments(anyString(), any());
+        doReturn(iterableMock).when(cartReceiptsCosmosClient).getInsertedCartReceiptDocuments("", 1, status, FEED_RANGE);
 
-        assertDoesNotThrow(() -> sut.getFailedCartReceiptByStatus("", 1, status));
+        assertDoesNotThrow(() -> sut.getFailedCartReceiptByStatus("", 1, status, FEED_RANGE));
 
-        verify(cartReceiptsCosmosClient, never()).getFailedCartReceiptDocuments(anyString(), any());
+        verify(cartReceiptsCosmosClient, never()).getFailedCartReceiptDocuments(anyString(), any(), any(), any());
     }
 
     @Test
     void getFailedCartReceiptByStatus_KO_StatusNull() {
         assertThrows(
                 IllegalArgumentException.class,
-                () -> sut.getFailedCartReceiptByStatus("", 1, null)
+                () -> sut.getFailedCartReceiptByStatus("", 1, null, FEED_RANGE)
         );
 
-        verify(cartReceiptsCosmosClient, never()).getFailedCartReceiptDocuments(anyString(), any());
-        verify(cartReceiptsCosmosClient, never()).getInsertedCartReceiptDocuments(anyString(), any());
+        verify(cartReceiptsCosmosClient, never()).getFailedCartReceiptDocuments(anyString(), any(), any(), any());
+        verify(cartReceiptsCosmosClient, never()).getInsertedCartReceiptDocuments(anyString(), any(), any(), any());
     }
 
     @ParameterizedTest
@@ -135,11 +139,11 @@ class CartReceiptCosmosServiceImplTest {
     void getFailedCartReceiptByStatus_KO_InvalidStatus(CartStatusType status) {
         assertThrows(
                 IllegalStateException.class,
-                () -> sut.getFailedCartReceiptByStatus("", 1, status)
+                () -> sut.getFailedCartReceiptByStatus("", 1, status, FEED_RANGE)
         );
 
-        verify(cartReceiptsCosmosClient, never()).getFailedCartReceiptDocuments(anyString(), any());
-        verify(cartReceiptsCosmosClient, never()).getInsertedCartReceiptDocuments(anyString(), any());
+        verify(cartReceiptsCosmosClient, never()).getFailedCartReceiptDocuments(anyString(), any(), any(), any());
+        verify(cartReceiptsCosmosClient, never()).getInsertedCartReceiptDocuments(anyString(), any(), any(), any());
     }
 
     @Test
@@ -165,4 +169,29 @@ class CartReceiptCosmosServiceImplTest {
         assertNotNull(e);
     }
 
-}
\ No newline at end of file
+    @Test
+    void countNotNotifiedCartReceiptByStatus_OK_IO_ERROR_TO_NOTIFY() {
+        doReturn(5L).when(cartReceiptsCosmosClient).countIOErrorToNotifyCartReceiptDocuments();
+
+        assertEquals(5L, sut.countNotNotifiedCartReceiptByStatus(CartStatusType.IO_ERROR_TO_NOTIFY));
+        verify(cartReceiptsCosmosClient, never()).countGeneratedCartReceiptDocuments();
+    }
+
+    @Test
+    void countNotNotifiedCartReceiptByStatus_KO_StatusNull() {
+        assertThrows(IllegalArgumentException.class, () -> sut.countNotNotifiedCartReceiptByStatus(null));
+    }
+
+    @Test
+    void countFailedCartReceiptByStatus_OK_FAILED() {
+        doReturn(3L).when(cartReceiptsCosmosClient).countFailedCartReceiptDocuments();
+
+        assertEquals(3L, sut.countFailedCartReceiptByStatus(CartStatusType.NOT_QUEUE_SENT));
+        verify(cartReceiptsCosmosClient, never()).countInsertedCartReceiptDocuments();
+    }
+
+    @Test
+    void countFailedCartReceiptByStatus_KO_InvalidStatus() {
+        assertThrows(IllegalStateException.class, () -> sut.countFailedCartReceiptByStatus(CartStatusType.GENERATED));
+    }
+}
@@ -1,8 +1,11 @@
 package it.gov.pagopa.receipt.pdf.datastore.service.impl;
 
+import com.azure.cosmos.models.FeedRange;
 import com.azure.cosmos.models.FeedResponse;
 import com.azure.cosmos.models.ModelBridgeInternal;
+import com.azure.cosmos.models.PartitionKey;
 import it.gov.pagopa.receipt.pdf.datastore.client.BizEventCosmosClient;
+import it.gov.pagopa.receipt.pdf.datastore.client.RecoveryCheckpointClient;
 import it.gov.pagopa.receipt.pdf.datastore.entity.cart.CartForReceipt;
 import it.gov.pagopa.receipt.pdf.datastore.entity.cart.CartPayment;
 import it.gov.pagopa.receipt.pdf.datastore.entity.cart.CartStatusType;
@@ -27,6 +30,7 @@ import it.gov.pagopa.receipt.pdf.datastore.exception.BizEventUnprocessableEntity
 import it.gov.pagopa.receipt.pdf.datastore.exception.PDVTokenizerException;
 import it.gov.pagopa.receipt.pdf.datastore.model.MassiveCartRecoverResult;
 import it.gov.pagopa.receipt.pdf.datastore.model.MassiveRecoverResult;
+import it.gov.pagopa.receipt.pdf.datastore.model.ReceiptProjection;
 import it.gov.pagopa.receipt.pdf.datastore.service.BizEventToReceiptService;
 import it.gov.pagopa.receipt.pdf.datastore.service.CartReceiptCosmosService;
 import it.gov.pagopa.receipt.pdf.datastore.service.ReceiptCosmosService;
@@ -44,20 +48,28 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static uk.org.webcompere.systemstubs.SystemStubs.withEnvironmentVariables;
 
 @ExtendWith(MockitoExtension.class)
 class HelpdeskServiceImplTest {
@@ -80,6 +92,8 @@ class HelpdeskServiceImplTest {
     private BizEventToReceiptService bizEventToReceiptServiceMock;
     @Mock
     private BizEventCosmosClient bizEventCosmosClientMock;
+    @Mock
+    private RecoveryCheckpointClient recoveryCheckpointClientMock;
 
     @InjectMocks
     @Spy
@@ -466,8 +480,13 @@ class HelpdeskServiceImplTest {
     @SneakyThrows
     void massiveRecoverFailedReceipt_OK(ReceiptStatusType status) {
         doReturn(createIteratorFeedResponse(status))
-                .when(receiptCosmosServiceMock).getFailedReceiptByStatus(null, 100, status);
-        doReturn(Receipt.builder().status(ReceiptStatusType.INSERTED).build()).when(sut).recoverFailedReceipt(any());
+                .when(receiptCosmosServiceMock).getFailedReceiptByStatus(null, 100, status, null);
+        if (status != ReceiptStatusType.INSERTED) {
+            // the other failed status is scanned together
+            doReturn(Collections.emptyList()).when(receiptCosmosServiceMock).getFailedReceiptByStatus(null, 100,
+                    status == ReceiptStatusType.FAILED ? ReceiptStatusType.NOT_QUEUE_SENT : ReceiptStatusType.FAILED, null);
+        }
+        doReturn(Receipt.builder().status(ReceiptStatusType.INSERTED).build()).when(sut).recoverFailedReceipt(any(), any());
 
         MassiveRecoverResult result = assertDoesNotThrow(() -> sut.massiveRecoverFailedReceipt(status));
 
@@ -481,8 +500,10 @@ class HelpdeskServiceImplTest {
     @SneakyThrows
     void massiveRecoverFailedReceipt_KO_recoverError() {
         doReturn(createIteratorFeedResponse(ReceiptStatusType.FAILED))
-                .when(receiptCosmosServiceMock).getFailedReceiptByStatus(null, 100, ReceiptStatusType.FAILED);
-        doReturn(Receipt.builder().status(ReceiptStatusType.FAILED).build()).when(sut).recoverFailedReceipt(any());
+                .when(receiptCosmosServiceMock).getFailedReceiptByStatus(null, 100, ReceiptStatusType.FAILED, null);
+        doReturn(Collections.emptyList())
+                .when(receiptCosmosServiceMock).getFailedReceiptByStatus(null, 100, ReceiptStatusType.NOT_QUEUE_SENT, null);
+        doReturn(Receipt.builder().status(ReceiptStatusType.FAILED).build()).when(sut).recoverFailedReceipt(any(), any());
 
         MassiveRecoverResult result = assertDoesNotThrow(() -> sut.massiveRecoverFailedReceipt(ReceiptStatusType.FAILED));
 
@@ -497,8 +518,10 @@ class HelpdeskServiceImplTest {
     @SneakyThrows
     void massiveRecoverFailedReceipt_KO_recoverThrowException() {
         doReturn(createIteratorFeedResponse(ReceiptStatusType.FAILED))
-                .when(receiptCosmosServiceMock).getFailedReceiptByStatus(null, 100, ReceiptStatusType.FAILED);
-        doThrow(BizEventBadRequestException.class).when(sut).recoverFailedReceipt(any());
+                .when(receiptCosmosServiceMock).getFailedReceiptByStatus(null, 100, ReceiptStatusType.FAILED, null);
+        doReturn(Collections.emptyList())
+                .when(receiptCosmosServiceMock).getFailedReceiptByStatus(null, 100, ReceiptStatusType.NOT_QUEUE_SENT, null);
+        doThrow(BizEventBadRequestException.class).when(sut).recoverFailedReceipt(any(), any());
 
         MassiveRecoverResult result = assertDoesNotThrow(() -> sut.massiveRecoverFailedReceipt(ReceiptStatusType.FAILED));
 
@@ -508,12 +531,99 @@ class HelpdeskServiceImplTest {
         assertEquals(0, result.getFailedReceiptList().size());
     }
 
+    @Test
+    @SneakyThrows
+    void massiveRecoverFailedReceipt_OK_bizEventsReadWithReadMany() {
+        doReturn(createIteratorFeedResponseWithEventIds("1", "2"))
+                .when(receiptCosmosServiceMock).getFailedReceiptByStatus(null, 100, ReceiptStatusType.FAILED, null);
+        doReturn(Collections.emptyList())
+                .when(receiptCosmosServiceMock).getFailedReceiptByStatus(null, 100, ReceiptStatusType.NOT_QUEUE_SENT, null);
+        doReturn(createBizEventFeedResponse("1", "2")).when(bizEventCosmosClientMock).getBizEventDocuments(List.of("1", "2"));
+        doReturn(Receipt.builder().status(ReceiptStatusType.INSERTED).build()).when(sut).recoverFailedReceipt(any(), any());
+
+        MassiveRecoverResult result = assertDoesNotThrow(() -> sut.massiveRecoverFailedReceipt(ReceiptStatusType.FAILED));
+
+        assertNotNull(result);
+        assertEquals(2, result.getSuccessCounter());
+        assertEquals(0, result.getErrorCounter());
+        assertEquals(2, result.getProcessedCounter());
+        assertTrue(result.getMissingBizEventIds().isEmpty());
+        verify(bizEventCosmosClientMock, never()).getBizEventDocument(anyString());
+    }
+
+    @Test
+    @SneakyThrows
+    void massiveRecoverFailedReceipt_KO_bizEventNotFound() {
+        doReturn(createIteratorFeedResponseWithEventIds("1", "2"))
+                .when(receiptCosmosServiceMock).getFailedReceiptByStatus(null, 100, ReceiptStatusType.FAILED, null);
+        doReturn(Collections.emptyList())
+                .when(receiptCosmosServiceMock).getFailedReceiptByStatus(null, 100, ReceiptStatusType.NOT_QUEUE_SENT, null);
+        doReturn(createBizEventFeedResponse("1")).when(bizEventCosmosClientMock).getBizEventDocuments(List.of("1", "2"));
+        doReturn(Receipt.builder().status(ReceiptStatusType.INSERTED).build()).when(sut).recoverFailedReceipt(any(), any());
+
+        MassiveRecoverResult result = assertDoesNotThrow(() -> sut.massiveRecoverFailedReceipt(ReceiptStatusType.FAILED));
+
+        assertNotNull(result);
+        assertEquals(1, result.getSuccessCounter());
+        assertEquals(1, result.getErrorCounter());
+        assertEquals(2, result.getProcessedCounter());
+        assertEquals(List.of("2"), result.getMissingBizEventIds());
+        assertEquals(0, result.getFailedReceiptList().size());
+        verify(bizEventCosmosClientMock, never()).getBizEventDocument(anyString());
+    }
+
+    @Test
+    @SneakyThrows
+    void massiveRecoverFailedReceipt_OK_readManyErrorFallbackToPointRead() {
+        doReturn(createIteratorFeedResponseWithEventIds("1", "2"))
+                .when(receiptCosmosServiceMock).getFailedReceiptByStatus(null, 100, ReceiptStatusType.FAILED, null);
+        doReturn(Collections.emptyList())
+                .when(receiptCosmosServiceMock).getFailedReceiptByStatus(null, 100, ReceiptStatusType.NOT_QUEUE_SENT, null);
+        doThrow(RuntimeException.class).when(bizEventCosmosClientMock).getBizEventDocuments(anyList());
+        doReturn(Receipt.builder().status(ReceiptStatusType.INSERTED).build()).when(sut).recoverFailedReceipt(any(), any());
+
+        MassiveRecoverResult result = assertDoesNotThrow(() -> sut.massiveRecoverFailedReceipt(ReceiptStatusType.FAILED));
+
+        assertNotNull(result);
+        assertEquals(2, result.getSuccessCounter());
+        assertEquals(0, result.getErrorCounter());
+        assertTrue(result.getMissingBizEventIds().isEmpty());
+        verify(bizEventCosmosClientMock).getBizEventDocument("1");
+        verify(bizEventCosmosClientMock).getBizEventDocument("2");
+    }
+
+    @Test
+    @SneakyThrows
+    void massiveRecoverFailedReceipt_OK_failedStatusesScannedTogether() {
+        doReturn(createIteratorFeedResponse(ReceiptStatusType.FAILED))
+                .when(receiptCosmosServiceMock).getFailedReceiptByStatus(null, 100, ReceiptStatusType.FAILED, null);
+        doReturn(createIteratorFeedResponse(ReceiptStatusType.NOT_QUEUE_SENT))
+                .when(receiptCosmosServiceMock).getFailedReceiptByStatus(null, 100, ReceiptStatusType.NOT_QUEUE_SENT, null);
+        doReturn(Receipt.builder().status(ReceiptStatusType.INSERTED).build()).when(sut).recoverFailedReceipt(any(), any());
+
+        MassiveRecoverResult result = assertDoesNotThrow(() -> sut.massiveRecoverFailedReceipt(ReceiptStatusType.NOT_QUEUE_SENT));
+
+        assertNotNull(result);
+        assertEquals(4, result.getSuccessCounter());
+        assertEquals(0, result.getErrorCounter());
+        assertEquals(4, result.getProcessedCounter());
+        // each status has its own checkpoint
+        verify(recoveryCheckpointClientMock).getContinuationToken("failed-receipt-FAILED");
+        verify(recoveryCheckpointClientMock).getContinuationToken("failed-receipt-NOT_QUEUE_SENT");
+    }
+
     @ParameterizedTest
     @EnumSource(value = CartStatusType.class, names = {"FAILED", "NOT_QUEUE_SENT", "INSERTED"}, mode = EnumSource.Mode.INCLUDE)
     @SneakyThrows
     void massiveRecoverFailedCart_OK(CartStatusType status) {
         doReturn(createIterableFeedResponse(status))
-                .when(cartReceiptCosmosServiceMock).getFailedCartReceiptByStatus(null, 100, status);
+                .when(cartReceiptCosmosServiceMock).getFailedCartReceiptByStatus(null, 100, status, null);
+        // the other status is scanned together
+        doReturn(Collections.emptyList()).when(cartReceiptCosmosServiceMock).getFailedCartReceiptByStatus(null, 100, switch (status) {
+            case FAILED -> CartStatusType.NOT_QUEUE_SENT;
+            case NOT_QUEUE_SENT -> CartStatusType.FAILED;
+            default -> CartStatusType.WAITING_FOR_BIZ_EVENT;
+        }, null);
         doReturn(CartForReceipt.builder().status(CartStatusType.INSERTED).build()).when(sut).recoverFailedCart(any());
 
         MassiveCartRecoverResult result = assertDoesNotThrow(() -> sut.massiveRecoverFailedCart(status));
@@ -528,7 +638,9 @@ class HelpdeskServiceImplTest {
     @SneakyThrows
     void massiveRecoverFailedCart_KO_recoverError() {
         doReturn(createIterableFeedResponse(CartStatusType.FAILED))
-                .when(cartReceiptCosmosServiceMock).getFailedCartReceiptByStatus(null, 100, CartStatusType.FAILED);
+                .when(cartReceiptCosmosServiceMock).getFailedCartReceiptByStatus(null, 100, CartStatusType.FAILED, null);
+        doReturn(Collections.emptyList())
+                .when(cartReceiptCosmosServiceMock).getFailedCartReceiptByStatus(null, 100, CartStatusType.NOT_QUEUE_SENT, null);
         doReturn(CartForReceipt.builder().status(CartStatusType.FAILED).build()).when(sut).recoverFailedCart(any());
 
         MassiveCartRecoverResult result = assertDoesNotThrow(() -> sut.massiveRecoverFailedCart(CartStatusType.FAILED));
@@ -544,7 +656,9 @@ class HelpdeskServiceImplTest {
     @SneakyThrows
     void massiveRecoverFailedCart_KO_recoverThrowException() {
         doReturn(createIterableFeedResponse(CartStatusType.FAILED))
-                .when(cartReceiptCosmosServiceMock).getFailedCartReceiptByStatus(null, 100, CartStatusType.FAILED);
+                .when(cartReceiptCosmosServiceMock).getFailedCartReceiptByStatus(null, 100, CartStatusType.FAILED, null);
+        doReturn(Collections.emptyList())
+                .when(cartReceiptCosmosServiceMock).getFailedCartReceiptByStatus(null, 100, CartStatusType.NOT_QUEUE_SENT, null);
         doThrow(BizEventBadRequestException.class).when(sut).recoverFailedCart(any());
 
         MassiveCartRecoverResult result = assertDoesNotThrow(() -> sut.massiveRecoverFailedCart(CartStatusType.FAILED));
@@ -559,13 +673,11 @@ class HelpdeskServiceImplTest {
     @EnumSource(value = ReceiptStatusType.class, names = {"GENERATED", "IO_ERROR_TO_NOTIFY"}, mode = EnumSource.Mode.INCLUDE)
     @SneakyThrows
     void massiveRecoverNoNotifiedReceipt_OK(ReceiptStatusType status) {
-        doReturn(createIteratorFeedResponse(status))
-                .when(receiptCosmosServiceMock).getNotNotifiedReceiptByStatus(null, 100, status);
-        doReturn(Receipt.builder().status(ReceiptStatusType.GENERATED).build()).when(sut).recoverNoNotifiedReceipt(any());
-        doReturn(Receipt.builder().status(ReceiptStatusType.GENERATED).build())
-                .doReturn(Receipt.builder().status(ReceiptStatusType.FAILED).build())
-                .when(bizEventToReceiptServiceMock).updateReceipt(any());
-
+        List<FeedResponse<ReceiptProjection>> pages = createIteratorFeedResponse(status);
+        doReturn(pages).when(receiptCosmosServiceMock).getNotNotifiedReceiptByStatus(null, 100, status, null);
+        // the second receipt of the page is not reset
+        doReturn(List.of(pages.get(0).getResults().get(1)))
+                .when(receiptCosmosServiceMock).resetReceiptsNotification(pages.get(0).getResults());
 
         MassiveRecoverResult result = assertDoesNotThrow(() -> sut.massiveRecoverNoNotifiedReceipt(status));
 
@@ -580,7 +692,7 @@ class HelpdeskServiceImplTest {
     @SneakyThrows
     void massiveRecoverNoNotifiedCart_OK(CartStatusType status) {
         doReturn(createIterableFeedResponse(status))
-                .when(cartReceiptCosmosServiceMock).getNotNotifiedCartReceiptByStatus(null, 100, status);
+                .when(cartReceiptCosmosServiceMock).getNotNotifiedCartReceiptByStatus(null, 100, status, null);
         doReturn(CartForReceipt.builder().status(CartStatusType.GENERATED).build()).when(sut).recoverNoNotifiedCart(any());
         doReturn(CartForReceipt.builder().status(CartStatusType.GENERATED).build())
                 .doReturn(CartForReceipt.builder().status(CartStatusType.FAILED).build())
@@ -594,6 +706,183 @@ class HelpdeskServiceImplTest {
         assertEquals(1, result.getErrorCounter());
     }
 
+    @Test
+    @SneakyThrows
+    void massiveRecoverFailedReceipt_OK_resumedFromCheckpoint() {
+        doReturn("checkpoint-token").when(recoveryCheckpointClientMock).getContinuationToken("failed-receipt-FAILED");
+        doReturn(createIteratorFeedResponse(ReceiptStatusType.FAILED))
+                .when(receiptCosmosServiceMock).getFailedReceiptByStatus("checkpoint-token", 100, ReceiptStatusType.FAILED, null);
+        doReturn(Collections.emptyList())
+                .when(receiptCosmosServiceMock).getFailedReceiptByStatus(null, 100, ReceiptStatusType.NOT_QUEUE_SENT, null);
+        doReturn(Receipt.builder().status(ReceiptStatusType.INSERTED).build()).when(sut).recoverFailedReceipt(any(), any());
+
+        MassiveRecoverResult result = assertDoesNotThrow(() -> sut.massiveRecoverFailedReceipt(ReceiptStatusType.FAILED));
+
+        assertNotNull(result);
+        assertEquals(2, result.getSuccessCounter());
+        assertEquals(0, result.getErrorCounter());
+        assertEquals(2, result.getProcessedCounter());
+        assertFalse(result.isInterrupted());
+        // the last page has been processed, the checkpoint is removed
+        verify(recoveryCheckpointClientMock).saveContinuationToken("failed-receipt-FAILED", null);
+    }
+
+    @Test
+    @SneakyThrows
+    void massiveRecoverFailedReceipt_OK_jobStartedWhileTimerCheckpointExists() {
+        // the scheduled recovery of the same status was interrupted
+        lenient().doReturn("timer-checkpoint-token").when(recoveryCheckpointClientMock).getContinuationToken("failed-receipt-FAILED");
+        doReturn(createIteratorFeedResponse(ReceiptStatusType.FAILED))
+                .when(receiptCosmosServiceMock).getFailedReceiptByStatus(null, 100, ReceiptStatusType.FAILED, null);
+        doReturn(Collections.emptyList())
+                .when(receiptCosmosServiceMock).getFailedReceiptByStatus(null, 100, ReceiptStatusType.NOT_QUEUE_SENT, null);
+        doReturn(Receipt.builder().status(ReceiptStatusType.INSERTED).build()).when(sut).recoverFailedReceipt(any(), any());
+
+        MassiveRecoverResult result =
+                assertDoesNotThrow(() -> sut.massiveRecoverFailedReceipt(ReceiptStatusType.FAILED, "a-job-id"));
+
+        assertNotNull(result);
+        assertEquals(2, result.getSuccessCounter());
+        assertEquals(2, result.getProcessedCounter());
+        // the job scans from the beginning with its own checkpoints and leaves the timer one untouched
+        verify(recoveryCheckpointClientMock).getContinuationToken("job-a-job-id/failed-receipt-FAILED");
+        verify(recoveryCheckpointClientMock).getContinuationToken("job-a-job-id/failed-receipt-NOT_QUEUE_SENT");
+        verify(recoveryCheckpointClientMock, never()).getContinuationToken("failed-receipt-FAILED");
+        verify(recoveryCheckpointClientMock, never()).saveContinuationToken(eq("failed-receipt-FAILED"), any());
+        verify(receiptCosmosServiceMock, never())
+                .getFailedReceiptByStatus("timer-checkpoint-token", 100, ReceiptStatusType.FAILED, null);
+    }
+
+    @Test
+    void deleteRecoveryJobCheckpoints_OK() {
+        doReturn(3).when(recoveryCheckpointClientMock).deleteCheckpoints("job-a-job-id/");
+
+        assertDoesNotThrow(() -> sut.deleteRecoveryJobCheckpoints("a-job-id"));
+
+        verify(recoveryCheckpointClientMock).deleteCheckpoints("job-a-job-id/");
+    }
+
+    @Test
+    void deleteRecoveryJobCheckpoints_KO_errorIsNotPropagated() {
+        doThrow(RuntimeException.class).when(recoveryCheckpointClientMock).deleteCheckpoints(anyString());
+
+        assertDoesNotThrow(() -> sut.deleteRecoveryJobCheckpoints("a-job-id"));
+    }
+
+    @Test
+    @SneakyThrows
+    void massiveRecoverFailedReceipt_OK_rejectedCheckpointRestartsFromTheBeginning() {
+        doReturn("stale-checkpoint-token").when(recoveryCheckpointClientMock).getContinuationToken("failed-receipt-FAILED");
+        // the continuation token is rejected when the first page is read
+        Iterable<FeedResponse<ReceiptProjection>> rejectedQuery = () -> {
+            throw new IllegalStateException("invalid continuation token");
+        };
+        doReturn(rejectedQuery)
+                .when(receiptCosmosServiceMock).getFailedReceiptByStatus("stale-checkpoint-token", 100, ReceiptStatusType.FAILED, null);
+        doReturn(createIteratorFeedResponse(ReceiptStatusType.FAILED))
+                .when(receiptCosmosServiceMock).getFailedReceiptByStatus(null, 100, ReceiptStatusType.FAILED, null);
+        doReturn(Collections.emptyList())
+                .when(receiptCosmosServiceMock).getFailedReceiptByStatus(null, 100, ReceiptStatusType.NOT_QUEUE_SENT, null);
+        doReturn(Receipt.builder().status(ReceiptStatusType.INSERTED).build()).when(sut).recoverFailedReceipt(any(), any());
+
+        MassiveRecoverResult result = assertDoesNotThrow(() -> sut.massiveRecoverFailedReceipt(ReceiptStatusType.FAILED));
+
+        assertNotNull(result);
+        assertEquals(2, result.getSuccessCounter());
+        assertEquals(2, result.getProcessedCounter());
+        assertFalse(result.isInterrupted());
+        // the rejected checkpoint is removed, so that the next invocations do not fail on it
+        verify(recoveryCheckpointClientMock, atLeastOnce()).saveContinuationToken("failed-receipt-FAILED", null);
+        verify(receiptCosmosServiceMock).getFailedReceiptByStatus(null, 100, ReceiptStatusType.FAILED, null);
+    }
+
+    @Test
+    @SneakyThrows
+    void massiveRecoverFailedReceipt_OK_checkpointReadError() {
+        doThrow(RuntimeException.class).when(recoveryCheckpointClientMock).getContinuationToken(anyString());
+        doReturn(createIteratorFeedResponse(ReceiptStatusType.FAILED))
+                .when(receiptCosmosServiceMock).getFailedReceiptByStatus(null, 100, ReceiptStatusType.FAILED, null);
+        doReturn(Collections.emptyList())
+                .when(receiptCosmosServiceMock).getFailedReceiptByStatus(null, 100, ReceiptStatusType.NOT_QUEUE_SENT, null);
+        doReturn(Receipt.builder().status(ReceiptStatusType.INSERTED).build()).when(sut).recoverFailedReceipt(any(), any());
+
+        MassiveRecoverResult result = assertDoesNotThrow(() -> sut.massiveRecoverFailedReceipt(ReceiptStatusType.FAILED));
+
+        assertNotNull(result);
+        assertEquals(2, result.getSuccessCounter());
+        assertEquals(0, result.getErrorCounter());
+    }
+
+    @Test
+    @SneakyThrows
+    void massiveRecoverNoNotifiedCart_OK_emptyResumedQueryRemovesCheckpoint() {
+        doReturn("checkpoint-token").when(recoveryCheckpointClientMock).getContinuationToken("not-notified-cart-GENERATED");
+        doReturn(Collections.emptyList())
+                .when(cartReceiptCosmosServiceMock).getNotNotifiedCartReceiptByStatus("checkpoint-token", 100, CartStatusType.GENERATED, null);
+
+        MassiveCartRecoverResult result = assertDoesNotThrow(() -> sut.massiveRecoverNoNotifiedCart(CartStatusType.GENERATED));
+
+        assertNotNull(result);
+        assertEquals(0, result.getProcessedCounter());
+        assertFalse(result.isInterrupted());
+        verify(recoveryCheckpointClientMock).saveContinuationToken("not-notified-cart-GENERATED", null);
+    }
+
+    @Test
+    @SneakyThrows
+    void massiveRecoverNoNotifiedReceipt_OK_interruptedAtMaxProcessableItems() {
+        HelpdeskServiceImpl helpdeskService = withEnvironmentVariables("MASSIVE_OPERATION_MAX_PROCESSABLE_ITEMS", "2")
+                .execute(() -> new HelpdeskServiceImpl(receiptCosmosServiceMock, cartReceiptCosmosServiceMock,
+                        bizEventToReceiptServiceMock, bizEventCosmosClientMock, recoveryCheckpointClientMock));
+        FeedResponse<ReceiptProjection> firstPage = ModelBridgeInternal.createFeedResponse(
+                List.of(ReceiptProjection.builder().build(), ReceiptProjection.builder().build()),
+                Map.of("x-ms-continuation", "next-page-token"));
+        FeedResponse<ReceiptProjection> secondPage = mock(FeedResponse.class);
+        doReturn(List.of(firstPage, secondPage))
+                .when(receiptCosmosServiceMock).getNotNotifiedReceiptByStatus(null, 100, ReceiptStatusType.GENERATED, null);
+        doReturn(Collections.emptyList()).when(receiptCosmosServiceMock).resetReceiptsNotification(firstPage.getResults());
+
+        MassiveRecoverResult result =
+                assertDoesNotThrow(() -> helpdeskService.massiveRecoverNoNotifiedReceipt(ReceiptStatusType.GENERATED));
+
+        assertNotNull(result);
+        assertEquals(2, result.getSuccessCounter());
+        assertEquals(0, result.getErrorCounter());
+        assertEquals(2, result.getProcessedCounter());
+        assertTrue(result.isInterrupted());
+        assertTrue(result.getElapsedMillis() >= 0);
+        // the next invocation resumes from the second page
+        verify(recoveryCheckpointClientMock).saveContinuationToken("not-notified-receipt-GENERATED", "next-page-token");
+    }
+
+    @Test
+    @SneakyThrows
+    void massiveRecoverNoNotifiedReceipt_OK_scannedByFeedRange() {
+        FeedRange firstFeedRange = FeedRange.forLogicalPartition(new PartitionKey("a"));
+        FeedRange secondFeedRange = FeedRange.forLogicalPartition(new PartitionKey("b"));
+        doReturn(List.of(firstFeedRange, secondFeedRange)).when(receiptCosmosServiceMock).getFeedRanges();
+        doReturn(createIteratorFeedResponse(ReceiptStatusType.GENERATED))
+                .when(receiptCosmosServiceMock).getNotNotifiedReceiptByStatus(null, 100, ReceiptStatusType.GENERATED, firstFeedRange);
+        doReturn(createIteratorFeedResponse(ReceiptStatusType.GENERATED))
+                .when(receiptCosmosServiceMock).getNotNotifiedReceiptByStatus(null, 100, ReceiptStatusType.GENERATED, secondFeedRange);
+        doReturn(Collections.emptyList()).when(receiptCosmosServiceMock).resetReceiptsNotification(anyList());
+
+        MassiveRecoverResult result = assertDoesNotThrow(() -> sut.massiveRecoverNoNotifiedReceipt(ReceiptStatusType.GENERATED));
+
+        assertNotNull(result);
+        assertEquals(4, result.getSuccessCounter());
+        assertEquals(0, result.getErrorCounter());
+        assertEquals(4, result.getProcessedCounter());
+        assertFalse(result.isInterrupted());
+        // each feed range is scanned with its own checkpoint
+        verify(recoveryCheckpointClientMock).getContinuationToken(
+                "not-notified-receipt-GENERATED-" + Integer.toHexString(firstFeedRange.toString().hashCode()));
+        verify(recoveryCheckpointClientMock).getContinuationToken(
+                "not-notified-receipt-GENERATED-" + Integer.toHexString(secondFeedRange.toString().hashCode()));
+        verify(recoveryCheckpointClientMock, never()).getContinuationToken("not-notified-receipt-GENERATED");
+        verify(receiptCosmosServiceMock, never()).getNotNotifiedReceiptByStatus(null, 100, ReceiptStatusType.GENERATED, null);
+    }
+
     private BizEvent generateValidBizEvent(String totalNotice) {
         BizEvent item = new BizEvent();
 
@@ -686,10 +975,28 @@ class HelpdeskServiceImplTest {
                         Collections.emptyMap()));
     }
 
-    private List<FeedResponse<Receipt>> createIteratorFeedResponse(ReceiptStatusType failed) {
+    private List<FeedResponse<ReceiptProjection>> createIteratorFeedResponseWithEventIds(String... eventIds) {
+        List<ReceiptProjection> receipts = new ArrayList<>();
+        for (String eventId : eventIds) {
+            receipts.add(ReceiptProjection.builder().id(eventId).eventId(eventId).status(ReceiptStatusType.FAILED).build());
+        }
+        return List.of(ModelBridgeInternal.createFeedResponse(receipts, Collections.emptyMap()));
+    }
+
+    private FeedResponse<BizEvent> createBizEventFeedResponse(String... bizEventIds) {
+        List<BizEvent> bizEvents = new ArrayList<>();
+        for (String bizEventId : bizEventIds) {
+            BizEvent bizEvent = generateValidBizEvent("1");
+            bizEvent.setId(bizEventId);
+            bizEvents.add(bizEvent);
+        }
+        return ModelBridgeInternal.createFeedResponse(bizEvents, Collections.emptyMap());
+    }
+
+    private List<FeedResponse<ReceiptProjection>> createIteratorFeedResponse(ReceiptStatusType failed) {
         return List.of(
                 ModelBridgeInternal.createFeedResponse(
-                        List.of(Receipt.builder().status(failed).build(), Receipt.builder().status(failed).build()),
+                        List.of(ReceiptProjection.builder().status(failed).build(), ReceiptProjection.builder().status(failed).build()),
                         Collections.emptyMap()));
     }
 }
\ No newline at end of file
@@ -12,6 +12,8 @@ import org.junit.jupiter.api.Test;
 
 import java.net.http.HttpResponse;
 import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.anyString;
@@ -87,6 +89,37 @@ class PDVTokenizerServiceImplTest {
         verify(pdvTokenizerClientMock).createToken(anyString());
     }
 
+    @Test
+    void generateTokenForFiscalCodeAsyncSuccess() throws JsonProcessingException {
+        TokenResource tokenResource = TokenResource.builder().token(TOKEN).build();
+        String responseBody = objectMapper.writeValueAsString(tokenResource);
+
+        doReturn(HttpStatus.SC_OK).when(httpResponseMock).statusCode();
+        doReturn(responseBody).when(httpResponseMock).body();
+        doReturn(CompletableFuture.completedFuture(httpResponseMock)).when(pdvTokenizerClientMock).createTokenAsync(anyString());
+
+        String token = sut.generateTokenForFiscalCodeAsync(FISCAL_CODE).join();
+
+        assertEquals(TOKEN, token);
+        verify(pdvTokenizerClientMock).createTokenAsync(anyString());
+    }
+
+    @Test
+    void generateTokenForFiscalCodeAsyncFailResponse429() throws JsonProcessingException {
+        ErrorMessage errorMessage = ErrorMessage.builder().message("Too many requests").build();
+        String responseBody = objectMapper.writeValueAsString(errorMessage);
+
+        doReturn(HttpStatus.SC_TOO_MANY_REQUESTS).when(httpResponseMock).statusCode();
+        doReturn(responseBody).when(httpResponseMock).body();
+        doReturn(CompletableFuture.completedFuture(httpResponseMock)).when(pdvTokenizerClientMock).createTokenAsync(anyString());
+
+        CompletableFuture<String> future = sut.generateTokenForFiscalCodeAsync(FISCAL_CODE);
+        CompletionException e = assertThrows(CompletionException.class, future::join);
+
+        PDVTokenizerException cause = assertInstanceOf(PDVTokenizerException.class, e.getCause());
+        assertEquals(HttpStatus.SC_TOO_MANY_REQUESTS, cause.getStatusCode());
+    }
+
     @Test
     void getTokenFailClientThrowsPDVTokenizerException() throws PDVTokenizerException {
         doThrow(PDVTokenizerException.class).when(pdvTokenizerClientMock).searchTokenByPII(anyString());
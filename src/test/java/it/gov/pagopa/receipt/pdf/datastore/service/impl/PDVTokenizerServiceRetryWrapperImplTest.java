@@ -1,16 +1,24 @@
 package it.gov.pagopa.receipt.pdf.datastore.service.impl;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 import io.github.resilience4j.retry.Retry;
 import io.github.resilience4j.retry.RetryConfig;
+import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.enumeration.ReasonErrorCode;
 import it.gov.pagopa.receipt.pdf.datastore.exception.PDVTokenizerException;
 import it.gov.pagopa.receipt.pdf.datastore.exception.PDVTokenizerUnexpectedException;
 import it.gov.pagopa.receipt.pdf.datastore.service.PDVTokenizerService;
 import it.gov.pagopa.receipt.pdf.datastore.service.PDVTokenizerServiceRetryWrapper;
+import it.gov.pagopa.receipt.pdf.datastore.utils.AdaptiveConcurrencyLimiter;
+import it.gov.pagopa.receipt.pdf.datastore.utils.TokenCache;
 import org.apache.http.HttpStatus;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
@@ -25,6 +33,8 @@ class PDVTokenizerServiceRetryWrapperImplTest {
 
     private PDVTokenizerServiceRetryWrapper sut;
 
+    private Retry retry;
+
     @BeforeEach
     void setUp() {
         pdvTokenizerServiceMock = mock(PDVTokenizerService.class);
@@ -33,7 +43,7 @@ class PDVTokenizerServiceRetryWrapperImplTest {
                 .maxAttempts(MAX_ATTEMPTS)
                 .retryOnException(e -> (e instanceof PDVTokenizerException tokenizerException) && tokenizerException.getStatusCode() == 429)
                 .build();
-        Retry retry = Retry.of("id", config);
+        retry = Retry.of("id", config);
 
         sut = spy(new PDVTokenizerServiceRetryWrapperImpl(pdvTokenizerServiceMock, retry));
     }
@@ -211,4 +221,119 @@ class PDVTokenizerServiceRetryWrapperImplTest {
         assertEquals(TOKEN, token);
         verify(pdvTokenizerServiceMock).generateTokenForFiscalCode(anyString());
     }
-}
\ No newline at end of file
+
+    @Test
+    void generateTokenForFiscalCodeServedFromCache() throws PDVTokenizerException, JsonProcessingException {
+        TokenCache tokenCache = new TokenCache(10, 60000, System::currentTimeMillis);
+        PDVTokenizerServiceRetryWrapper cachedSut = new PDVTokenizerServiceRetryWrapperImpl(
+                pdvTokenizerServiceMock, Retry.ofDefaults("id"), tokenCache);
+        doReturn(TOKEN).when(pdvTokenizerServiceMock).generateTokenForFiscalCode(anyString());
+
+        assertEquals(TOKEN, cachedSut.generateTokenForFiscalCodeWithRetry(FISCAL_CODE));
+        assertEquals(TOKEN, cachedSut.getTokenWithRetry(FISCAL_CODE));
+
+        verify(pdvTokenizerServiceMock).generateTokenForFiscalCode(anyString());
+        verify(pdvTokenizerServiceMock, never()).getToken(anyString());
+        assertEquals(1, tokenCache.getHitCount());
+    }
+
+    @Test
+    void generateTokensForFiscalCodesRetryFor429AndSkipFailures() throws PDVTokenizerException, JsonProcessingException {
+        String failingFiscalCode = "failingFiscalCode";
+        TokenCache tokenCache = new TokenCache(10, 60000, System::currentTimeMillis);
+        PDVTokenizerServiceRetryWrapper cachedSut = new PDVTokenizerServiceRetryWrapperImpl(
+                pdvTokenizerServiceMock,
+                Retry.of("id", RetryConfig.custom()
+                        .maxAttempts(MAX_ATTEMPTS)
+                        .retryOnException(e -> (e instanceof PDVTokenizerException tokenizerException) && tokenizerException.getStatusCode() == 429)
+                        .build()),
+                tokenCache);
+        doReturn(CompletableFuture.failedFuture(new PDVTokenizerException("Error", 429)), CompletableFuture.completedFuture(TOKEN))
+                .when(pdvTokenizerServiceMock).generateTokenForFiscalCodeAsync(FISCAL_CODE);
+        doReturn(CompletableFuture.failedFuture(new PDVTokenizerException("Error", HttpStatus.SC_INTERNAL_SERVER_ERROR)))
+                .when(pdvTokenizerServiceMock).generateTokenForFiscalCodeAsync(failingFiscalCode);
+
+        Map<String, String> tokens = cachedSut.generateTokensForFiscalCodesWithRetry(Set.of(FISCAL_CODE, failingFiscalCode));
+
+        assertEquals(Map.of(FISCAL_CODE, TOKEN), tokens);
+        verify(pdvTokenizerServiceMock, times(2)).generateTokenForFiscalCodeAsync(FISCAL_CODE);
+        verify(pdvTokenizerServiceMock).generateTokenForFiscalCodeAsync(failingFiscalCode);
+
+        // the generated token is served from the cache
+        assertEquals(TOKEN, cachedSut.generateTokenForFiscalCodeWithRetry(FISCAL_CODE));
+        verify(pdvTokenizerServiceMock, never()).generateTokenForFiscalCode(anyString());
+    }
+
+    @Test
+    void generateTokenForFiscalCodeFailFastWhenCircuitBreakerIsOpen() throws PDVTokenizerException, JsonProcessingException {
+        CircuitBreaker circuitBreaker = CircuitBreaker.ofDefaults("id");
+        circuitBreaker.transitionToOpenState();
+        PDVTokenizerServiceRetryWrapper guardedSut = new PDVTokenizerServiceRetryWrapperImpl(
+                pdvTokenizerServiceMock,
+                retry,
+                new TokenCache(0, 0, System::currentTimeMillis),
+                new AdaptiveConcurrencyLimiter("test", 1, 4, 0.5, 1000, 0),
+                circuitBreaker);
+
+        PDVTokenizerException e = assertThrows(PDVTokenizerException.class,
+                () -> guardedSut.generateTokenForFiscalCodeWithRetry(FISCAL_CODE));
+
+        assertEquals(ReasonErrorCode.ERROR_PDV_UNAVAILABLE.getCode(), e.getStatusCode());
+        verify(pdvTokenizerServiceMock, never()).generateTokenForFiscalCode(anyString());
+    }
+
+    @Test
+    void generateTokenForFiscalCodeFailFastWhenConcurrencyLimitIsReached() throws PDVTokenizerException, JsonProcessingException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 1, 1, 0.5, 1000, 0);
+        assertTrue(limiter.tryAcquire());
+        PDVTokenizerServiceRetryWrapper guardedSut = new PDVTokenizerServiceRetryWrapperImpl(
+                pdvTokenizerServiceMock,
+                retry,
+                new TokenCache(0, 0, System::currentTimeMillis),
+                limiter,
+                CircuitBreaker.ofDefaults("id"));
+
+        PDVTokenizerException e = assertThrows(PDVTokenizerException.class,
+                () -> guardedSut.generateTokenForFiscalCodeWithRetry(FISCAL_CODE));
+
+        assertEquals(ReasonErrorCode.ERROR_PDV_UNAVAILABLE.getCode(), e.getStatusCode());
+        verify(pdvTokenizerServiceMock, never()).generateTokenForFiscalCode(anyString());
+    }
+
+    @Test
+    void generateTokenForFiscalCodeDecreaseConcurrencyLimitOn429() throws PDVTokenizerException, JsonProcessingException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 1, 8, 0.5, 1000, 0);
+        PDVTokenizerServiceRetryWrapper guardedSut = new PDVTokenizerServiceRetryWrapperImpl(
+                pdvTokenizerServiceMock,
+                retry,
+                new TokenCache(0, 0, System::currentTimeMillis),
+                limiter,
+                CircuitBreaker.ofDefaults("id"));
+        doThrow(new PDVTokenizerException("Error", 429)).when(pdvTokenizerServiceMock).generateTokenForFiscalCode(anyString());
+
+        assertThrows(PDVTokenizerException.class, () -> guardedSut.generateTokenForFiscalCodeWithRetry(FISCAL_CODE));
+
+        assertEquals(1, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+        verify(pdvTokenizerServiceMock, times(MAX_ATTEMPTS)).generateTokenForFiscalCode(anyString());
+    }
+
+    @Test
+    void generateTokensForFiscalCodesSkippedWhenCircuitBreakerIsOpen() {
+        CircuitBreaker circuitBreaker = CircuitBreaker.ofDefaults("id");
+        circuitBreaker.transitionToOpenState();
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 1, 4, 0.5, 1000, 0);
+        PDVTokenizerServiceRetryWrapper guardedSut = new PDVTokenizerServiceRetryWrapperImpl(
+                pdvTokenizerServiceMock,
+                retry,
+                new TokenCache(0, 0, System::currentTimeMillis),
+                limiter,
+                circuitBreaker);
+
+        Map<String, String> tokens = guardedSut.generateTokensForFiscalCodesWithRetry(Set.of(FISCAL_CODE));
+
+        assertTrue(tokens.isEmpty());
+        assertEquals(0, limiter.getInFlight());
+        verify(pdvTokenizerServiceMock, never()).generateTokenForFiscalCodeAsync(anyString());
+    }
+}
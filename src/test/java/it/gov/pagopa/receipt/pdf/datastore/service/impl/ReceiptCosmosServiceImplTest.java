@@ -1,11 +1,16 @@
 package it.gov.pagopa.receipt.pdf.datastore.service.impl;
 
+import com.azure.cosmos.models.CosmosBulkItemResponse;
+import com.azure.cosmos.models.CosmosBulkOperationResponse;
+import com.azure.cosmos.models.CosmosItemOperation;
+import com.azure.cosmos.models.FeedRange;
 import com.azure.cosmos.models.FeedResponse;
 import it.gov.pagopa.receipt.pdf.datastore.client.impl.ReceiptCosmosClientImpl;
 import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.Receipt;
 import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.ReceiptError;
 import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.enumeration.ReceiptStatusType;
 import it.gov.pagopa.receipt.pdf.datastore.exception.ReceiptNotFoundException;
+import it.gov.pagopa.receipt.pdf.datastore.model.ReceiptProjection;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
@@ -13,10 +18,13 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import uk.org.webcompere.systemstubs.jupiter.SystemStubsExtension;
 
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doReturn;
@@ -31,6 +39,7 @@ class ReceiptCosmosServiceImplTest {
 
     private static final String CONTINUATION_TOKEN = "continuationToken";
     private static final int PAGE_SIZE = 100;
+    private static final FeedRange FEED_RANGE = FeedRange.forFullRange();
 
     @Mock
     private ReceiptCosmosClientImpl receiptCosmosClient;
@@ -78,91 +87,173 @@ class ReceiptCosmosServiceImplTest {
 
     @Test
     void getNotNotifiedReceiptByStatus_KO_nullStatus() {
-        assertThrows(IllegalArgumentException.class, () -> sut.getNotNotifiedReceiptByStatus(CONTINUATION_TOKEN, PAGE_SIZE, null));
+        assertThrows(IllegalArgumentException.class, () -> sut.getNotNotifiedReceiptByStatus(CONTINUATION_TOKEN, PAGE_SIZE, null, FEED_RANGE));
     }
 
     @Test
     void getNotNotifiedReceiptByStatus_KO_unexpectedStatus() {
-        assertThrows(IllegalStateException.class, () -> sut.getNotNotifiedReceiptByStatus(CONTINUATION_TOKEN, PAGE_SIZE, ReceiptStatusType.FAILED));
+        assertThrows(IllegalStateException.class, () -> sut.getNotNotifiedReceiptByStatus(CONTINUATION_TOKEN, PAGE_SIZE, ReceiptStatusType.FAILED, FEED_RANGE));
     }
 
     @Test
     void getNotNotifiedReceiptByStatus_OK_IOErrorToNotify() {
         @SuppressWarnings("unchecked")
-        Iterable<FeedResponse<Receipt>> expectedIterable = mock(Iterable.class);
-        when(receiptCosmosClient.getIOErrorToNotifyReceiptDocuments(CONTINUATION_TOKEN, PAGE_SIZE)).thenReturn(expectedIterable);
+        Iterable<FeedResponse<ReceiptProjection>> expectedIterable = mock(Iterable.class);
+        when(receiptCosmosClient.getIOErrorToNotifyReceiptProjections(CONTINUATION_TOKEN, PAGE_SIZE, FEED_RANGE)).thenReturn(expectedIterable);
 
-        Iterable<FeedResponse<Receipt>> actualIterable = sut.getNotNotifiedReceiptByStatus(CONTINUATION_TOKEN, PAGE_SIZE, ReceiptStatusType.IO_ERROR_TO_NOTIFY);
+        Iterable<FeedResponse<ReceiptProjection>> actualIterable = sut.getNotNotifiedReceiptByStatus(CONTINUATION_TOKEN, PAGE_SIZE, ReceiptStatusType.IO_ERROR_TO_NOTIFY, FEED_RANGE);
 
         assertNotNull(actualIterable);
         assertEquals(expectedIterable, actualIterable);
-        verify(receiptCosmosClient).getIOErrorToNotifyReceiptDocuments(CONTINUATION_TOKEN, PAGE_SIZE);
-        verify(receiptCosmosClient, never()).getGeneratedReceiptDocuments(any(), any());
+        verify(receiptCosmosClient).getIOErrorToNotifyReceiptProjections(CONTINUATION_TOKEN, PAGE_SIZE, FEED_RANGE);
+        verify(receiptCosmosClient, never()).getGeneratedReceiptProjections(any(), any(), any());
     }
 
     @Test
     void getNotNotifiedReceiptByStatus_OK_Generated() {
         @SuppressWarnings("unchecked")
-        Iterable<FeedResponse<Receipt>> expectedIterable = mock(Iterable.class);
-        when(receiptCosmosClient.getGeneratedReceiptDocuments(CONTINUATION_TOKEN, PAGE_SIZE)).thenReturn(expectedIterable);
+        Iterable<FeedResponse<ReceiptProjection>> expectedIterable = mock(Iterable.class);
+        when(receiptCosmosClient.getGeneratedReceiptProjections(CONTINUATION_TOKEN, PAGE_SIZE, FEED_RANGE)).thenReturn(expectedIterable);
 
-        Iterable<FeedResponse<Receipt>> actualIterable = sut.getNotNotifiedReceiptByStatus(CONTINUATION_TOKEN, PAGE_SIZE, ReceiptStatusType.GENERATED);
+        Iterable<FeedResponse<ReceiptProjection>> actualIterable = sut.getNotNotifiedReceiptByStatus(CONTINUATION_TOKEN, PAGE_SIZE, ReceiptStatusType.GENERATED, FEED_RANGE);
 
         assertNotNull(actualIterable);
         assertEquals(expectedIterable, actualIterable);
-        verify(receiptCosmosClient).getGeneratedReceiptDocuments(CONTINUATION_TOKEN, PAGE_SIZE);
-        verify(receiptCosmosClient, never()).getIOErrorToNotifyReceiptDocuments(any(), any());
+        verify(receiptCosmosClient).getGeneratedReceiptProjections(CONTINUATION_TOKEN, PAGE_SIZE, FEED_RANGE);
+        verify(receiptCosmosClient, never()).getIOErrorToNotifyReceiptProjections(any(), any(), any());
     }
 
     @Test
     void getFailedReceiptByStatus_KO_nullStatus() {
-        assertThrows(IllegalArgumentException.class, () -> sut.getFailedReceiptByStatus(CONTINUATION_TOKEN, PAGE_SIZE, null));
+        assertThrows(IllegalArgumentException.class, () -> sut.getFailedReceiptByStatus(CONTINUATION_TOKEN, PAGE_SIZE, null, FEED_RANGE));
     }
 
     @Test
     void getFailedReceiptByStatus_KO_unexpectedStatus() {
-        assertThrows(IllegalStateException.class, () -> sut.getFailedReceiptByStatus(CONTINUATION_TOKEN, PAGE_SIZE, ReceiptStatusType.GENERATED));
+        assertThrows(IllegalStateException.class, () -> sut.getFailedReceiptByStatus(CONTINUATION_TOKEN, PAGE_SIZE, ReceiptStatusType.GENERATED, FEED_RANGE));
     }
 
     @Test
     void getFailedReceiptByStatus_OK_Failed() {
         @SuppressWarnings("unchecked")
-        Iterable<FeedResponse<Receipt>> expectedIterable = mock(Iterable.class);
-        when(receiptCosmosClient.getFailedReceiptDocuments(CONTINUATION_TOKEN, PAGE_SIZE)).thenReturn(expectedIterable);
+        Iterable<FeedResponse<ReceiptProjection>> expectedIterable = mock(Iterable.class);
+        when(receiptCosmosClient.getFailedReceiptProjections(CONTINUATION_TOKEN, PAGE_SIZE, ReceiptStatusType.FAILED, FEED_RANGE)).thenReturn(expectedIterable);
 
-        Iterable<FeedResponse<Receipt>> actualIterable = sut.getFailedReceiptByStatus(CONTINUATION_TOKEN, PAGE_SIZE, ReceiptStatusType.FAILED);
+        Iterable<FeedResponse<ReceiptProjection>> actualIterable = sut.getFailedReceiptByStatus(CONTINUATION_TOKEN, PAGE_SIZE, ReceiptStatusType.FAILED, FEED_RANGE);
 
         assertNotNull(actualIterable);
         assertEquals(expectedIterable, actualIterable);
-        verify(receiptCosmosClient).getFailedReceiptDocuments(CONTINUATION_TOKEN, PAGE_SIZE);
-        verify(receiptCosmosClient, never()).getInsertedReceiptDocuments(any(), any());
+        verify(receiptCosmosClient).getFailedReceiptProjections(CONTINUATION_TOKEN, PAGE_SIZE, ReceiptStatusType.FAILED, FEED_RANGE);
+        verify(receiptCosmosClient, never()).getInsertedReceiptProjections(any(), any(), any());
     }
 
     @Test
     void getFailedReceiptByStatus_OK_NotQueueSent() {
         @SuppressWarnings("unchecked")
-        Iterable<FeedResponse<Receipt>> expectedIterable = mock(Iterable.class);
-        when(receiptCosmosClient.getFailedReceiptDocuments(CONTINUATION_TOKEN, PAGE_SIZE)).thenReturn(expectedIterable);
+        Iterable<FeedResponse<ReceiptProjection>> expectedIterable = mock(Iterable.class);
+        when(receiptCosmosClient.getFailedReceiptProjections(CONTINUATION_TOKEN, PAGE_SIZE, ReceiptStatusType.NOT_QUEUE_SENT, FEED_RANGE)).thenReturn(expectedIterable);
 
-        Iterable<FeedResponse<Receipt>> actualIterable = sut.getFailedReceiptByStatus(CONTINUATION_TOKEN, PAGE_SIZE, ReceiptStatusType.NOT_QUEUE_SENT);
+        Iterable<FeedResponse<ReceiptProjection>> actualIterable = sut.getFailedReceiptByStatus(CONTINUATION_TOKEN, PAGE_SIZE, ReceiptStatusType.NOT_QUEUE_SENT, FEED_RANGE);
 
         assertNotNull(actualIterable);
         assertEquals(expectedIterable, actualIterable);
-        verify(receiptCosmosClient).getFailedReceiptDocuments(CONTINUATION_TOKEN, PAGE_SIZE);
-        verify(receiptCosmosClient, never()).getInsertedReceiptDocuments(any(), any());
+        verify(receiptCosmosClient).getFailedReceiptProjections(CONTINUATION_TOKEN, PAGE_SIZE, ReceiptStatusType.NOT_QUEUE_SENT, FEED_RANGE);
+        verify(receiptCosmosClient, never()).getInsertedReceiptProjections(any(), any(), any());
     }
 
     @Test
     void getFailedReceiptByStatus_OK_Inserted() {
         @SuppressWarnings("unchecked")
-        Iterable<FeedResponse<Receipt>> expectedIterable = mock(Iterable.class);
-        when(receiptCosmosClient.getInsertedReceiptDocuments(CONTINUATION_TOKEN, PAGE_SIZE)).thenReturn(expectedIterable);
+        Iterable<FeedResponse<ReceiptProjection>> expectedIterable = mock(Iterable.class);
+        when(receiptCosmosClient.getInsertedReceiptProjections(CONTINUATION_TOKEN, PAGE_SIZE, FEED_RANGE)).thenReturn(expectedIterable);
 
-        Iterable<FeedResponse<Receipt>> actualIterable = sut.getFailedReceiptByStatus(CONTINUATION_TOKEN, PAGE_SIZE, ReceiptStatusType.INSERTED);
+        Iterable<FeedResponse<ReceiptProjection>> actualIterable = sut.getFailedReceiptByStatus(CONTINUATION_TOKEN, PAGE_SIZE, ReceiptStatusType.INSERTED, FEED_RANGE);
 
         assertNotNull(actualIterable);
         assertEquals(expectedIterable, actualIterable);
-        verify(receiptCosmosClient).getInsertedReceiptDocuments(CONTINUATION_TOKEN, PAGE_SIZE);
-        verify(receiptCosmosClient, never()).getFailedReceiptDocuments(any(), any());
+        verify(receiptCosmosClient).getInsertedReceiptProjections(CONTINUATION_TOKEN, PAGE_SIZE, FEED_RANGE);
+        verify(receiptCosmosClient, never()).getFailedReceiptProjections(any(), any(), any(), any());
+    }
+
+    @Test
+    void getFeedRanges_OK() {
+        List<FeedRange> feedRanges = List.of(FEED_RANGE);
+        when(receiptCosmosClient.getFeedRanges()).thenReturn(feedRanges);
+
+        assertEquals(feedRanges, sut.getFeedRanges());
+    }
+
+    @Test
+    void countNotNotifiedReceiptByStatus_OK_Generated() {
+        when(receiptCosmosClient.countGeneratedReceiptDocuments()).thenReturn(5L);
+
+        assertEquals(5L, sut.countNotNotifiedReceiptByStatus(ReceiptStatusType.GENERATED));
+        verify(receiptCosmosClient, never()).countIOErrorToNotifyReceiptDocuments();
+    }
+
+    @Test
+    void countNotNotifiedReceiptByStatus_KO_unexpectedStatus() {
+        assertThrows(IllegalStateException.class, () -> sut.countNotNotifiedReceiptByStatus(ReceiptStatusType.FAILED));
+    }
+
+    @Test
+    void countFailedReceiptByStatus_OK_Inserted() {
+        when(receiptCosmosClient.countInsertedReceiptDocuments()).thenReturn(3L);
+
+        assertEquals(3L, sut.countFailedReceiptByStatus(ReceiptStatusType.INSERTED));
+        verify(receiptCosmosClient, never()).countFailedReceiptDocuments();
+    }
+
+    @Test
+    void countFailedReceiptByStatus_KO_nullStatus() {
+        assertThrows(IllegalArgumentException.class, () -> sut.countFailedReceiptByStatus(null));
+    }
+
+    @Test
+    void resetReceiptsNotification_OK() {
+        ReceiptProjection first = ReceiptProjection.builder().id("1").eventId("1").build();
+        ReceiptProjection second = ReceiptProjection.builder().id("2").eventId("2").build();
+        List<CosmosBulkOperationResponse<ReceiptProjection>> responses = List.of(bulkResponse(first, 200), bulkResponse(second, 200));
+        doReturn(responses).when(receiptCosmosClient).resetReceiptsNotification(List.of(first, second));
+
+        List<ReceiptProjection> notReset = sut.resetReceiptsNotification(List.of(first, second));
+
+        assertTrue(notReset.isEmpty());
+    }
+
+    @Test
+    void resetReceiptsNotification_KO_patchFailed() {
+        ReceiptProjection first = ReceiptProjection.builder().id("1").eventId("1").build();
+        ReceiptProjection second = ReceiptProjection.builder().id("2").eventId("2").build();
+        ReceiptProjection third = ReceiptProjection.builder().id("3").eventId("3").build();
+        // the second receipt is not in a not notified status anymore, the third has no outcome
+        List<CosmosBulkOperationResponse<ReceiptProjection>> responses = List.of(bulkResponse(first, 200), bulkResponse(second, 412));
+        doReturn(responses).when(receiptCosmosClient).resetReceiptsNotification(List.of(first, second, third));
+
+        List<ReceiptProjection> notReset = sut.resetReceiptsNotification(List.of(first, second, third));
+
+        assertEquals(List.of(second, third), notReset);
+    }
+
+    @Test
+    void resetReceiptsNotification_KO_bulkError() {
+        ReceiptProjection first = ReceiptProjection.builder().id("1").eventId("1").build();
+        doThrow(RuntimeException.class).when(receiptCosmosClient).resetReceiptsNotification(List.of(first));
+
+        List<ReceiptProjection> notReset = sut.resetReceiptsNotification(List.of(first));
+
+        assertEquals(List.of(first), notReset);
+    }
+
+    @SuppressWarnings("unchecked")
+    private CosmosBulkOperationResponse<ReceiptProjection> bulkResponse(ReceiptProjection receipt, int statusCode) {
+        CosmosItemOperation operation = mock(CosmosItemOperation.class);
+        doReturn(receipt).when(operation).getContext();
+        CosmosBulkItemResponse itemResponse = mock(CosmosBulkItemResponse.class);
+        doReturn(statusCode).when(itemResponse).getStatusCode();
+        CosmosBulkOperationResponse<ReceiptProjection> response = mock(CosmosBulkOperationResponse.class);
+        doReturn(operation).when(response).getOperation();
+        doReturn(itemResponse).when(response).getResponse();
+        return response;
     }
-}
\ No newline at end of file
+}
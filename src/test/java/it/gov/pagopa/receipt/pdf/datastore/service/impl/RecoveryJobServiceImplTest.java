@@ -0,0 +1,242 @@
+package it.gov.pagopa.receipt.pdf.datastore.service.impl;
+
+import it.gov.pagopa.receipt.pdf.datastore.client.RecoveryJobClient;
+import it.gov.pagopa.receipt.pdf.datastore.entity.cart.CartStatusType;
+import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.enumeration.ReceiptStatusType;
+import it.gov.pagopa.receipt.pdf.datastore.model.RecoveryJob;
+import it.gov.pagopa.receipt.pdf.datastore.model.enumeration.RecoveryJobStatus;
+import it.gov.pagopa.receipt.pdf.datastore.model.enumeration.RecoveryJobType;
+import it.gov.pagopa.receipt.pdf.datastore.service.CartReceiptCosmosService;
+import it.gov.pagopa.receipt.pdf.datastore.service.ReceiptCosmosService;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class RecoveryJobServiceImplTest {
+
+    private static final String JOB_ID = "a valid job id";
+
+    @Mock
+    private RecoveryJobClient recoveryJobClientMock;
+    @Mock
+    private ReceiptCosmosService receiptCosmosServiceMock;
+    @Mock
+    private CartReceiptCosmosService cartReceiptCosmosServiceMock;
+
+    private RecoveryJobServiceImpl sut;
+
+    @BeforeEach
+    void setUp() {
+        sut = new RecoveryJobServiceImpl(recoveryJobClientMock, receiptCosmosServiceMock, cartReceiptCosmosServiceMock);
+    }
+
+    @Test
+    void createJobSuccess() {
+        RecoveryJob job = sut.createJob(RecoveryJobType.FAILED_RECEIPT, ReceiptStatusType.FAILED.name());
+
+        assertNotNull(job.getId());
+        assertEquals(RecoveryJobType.FAILED_RECEIPT, job.getType());
+        assertEquals(ReceiptStatusType.FAILED.name(), job.getStatus());
+        assertEquals(RecoveryJobStatus.QUEUED, job.getJobStatus());
+        assertNotEquals(0, job.getCreatedAt());
+
+        verify(recoveryJobClientMock).saveJob(job);
+        verify(recoveryJobClientMock).sendJobMessage(job.getId());
+    }
+
+    @Test
+    @SneakyThrows
+    void getJobNotStarted() {
+        RecoveryJob job = buildJob(RecoveryJobType.FAILED_RECEIPT, RecoveryJobStatus.QUEUED);
+        doReturn(job).when(recoveryJobClientMock).getJob(JOB_ID);
+
+        RecoveryJob result = sut.getJob(JOB_ID);
+
+        assertNull(result.getThroughput());
+        assertNull(result.getEtaSeconds());
+    }
+
+    @Test
+    @SneakyThrows
+    void getJobRunningWithThroughputAndEta() {
+        RecoveryJob job = buildJob(RecoveryJobType.FAILED_RECEIPT, RecoveryJobStatus.RUNNING);
+        job.setStartedAt(System.currentTimeMillis() - 10_000);
+        job.setTotalCounter(1000L);
+        job.setProcessedCounter(100);
+        doReturn(job).when(recoveryJobClientMock).getJob(JOB_ID);
+
+        RecoveryJob result = sut.getJob(JOB_ID);
+
+        assertNotNull(result.getThroughput());
+        assertTrue(result.getThroughput() > 0 && result.getThroughput() <= 10);
+        assertNotNull(result.getEtaSeconds());
+        assertTrue(result.getEtaSeconds() >= 90);
+    }
+
+    @Test
+    @SneakyThrows
+    void getJobRunningWithoutTotal() {
+        RecoveryJob job = buildJob(RecoveryJobType.FAILED_RECEIPT, RecoveryJobStatus.RUNNING);
+        job.setStartedAt(System.currentTimeMillis() - 10_000);
+        job.setProcessedCounter(100);
+        doReturn(job).when(recoveryJobClientMock).getJob(JOB_ID);
+
+        RecoveryJob result = sut.getJob(JOB_ID);
+
+        assertNotNull(result.getThroughput());
+        assertNull(result.getEtaSeconds());
+    }
+
+    @Test
+    @SneakyThrows
+    void getJobCompleted() {
+        RecoveryJob job = buildJob(RecoveryJobType.FAILED_RECEIPT, RecoveryJobStatus.COMPLETED);
+        job.setStartedAt(1_000);
+        job.setCompletedAt(3_000);
+        job.setTotalCounter(100L);
+        job.setProcessedCounter(100);
+        doReturn(job).when(recoveryJobClientMock).getJob(JOB_ID);
+
+        RecoveryJob result = sut.getJob(JOB_ID);
+
+        assertEquals(50d, result.getThroughput());
+        assertEquals(0L, result.getEtaSeconds());
+    }
+
+    @Test
+    @SneakyThrows
+    void startJobCountsTheReceipts() {
+        RecoveryJob job = buildJob(RecoveryJobType.NOT_NOTIFIED_RECEIPT, RecoveryJobStatus.QUEUED);
+        job.setStatus(ReceiptStatusType.GENERATED.name());
+        doReturn(job).when(recoveryJobClientMock).getJob(JOB_ID);
+        doReturn(42L).when(receiptCosmosServiceMock).countNotNotifiedReceiptByStatus(ReceiptStatusType.GENERATED);
+
+        RecoveryJob result = sut.startJob(JOB_ID);
+
+        assertEquals(RecoveryJobStatus.RUNNING, result.getJobStatus());
+        assertEquals(42L, result.getTotalCounter());
+        assertNotEquals(0, result.getStartedAt());
+        verify(recoveryJobClientMock).saveJob(job);
+    }
+
+    @Test
+    @SneakyThrows
+    void startJobCountsTheCarts() {
+        RecoveryJob job = buildJob(RecoveryJobType.FAILED_CART, RecoveryJobStatus.QUEUED);
+        job.setStatus(CartStatusType.FAILED.name());
+        doReturn(job).when(recoveryJobClientMock).getJob(JOB_ID);
+        doReturn(7L).when(cartReceiptCosmosServiceMock).countFailedCartReceiptByStatus(CartStatusType.FAILED);
+
+        RecoveryJob result = sut.startJob(JOB_ID);
+
+        assertEquals(RecoveryJobStatus.RUNNING, result.getJobStatus());
+        assertEquals(7L, result.getTotalCounter());
+    }
+
+    @Test
+    @SneakyThrows
+    void startJobResumedKeepsStartAndTotal() {
+        RecoveryJob job = buildJob(RecoveryJobType.FAILED_RECEIPT, RecoveryJobStatus.RUNNING);
+        job.setStartedAt(1_000);
+        job.setTotalCounter(10L);
+        doReturn(job).when(recoveryJobClientMock).getJob(JOB_ID);
+
+        RecoveryJob result = sut.startJob(JOB_ID);
+
+        assertEquals(1_000, result.getStartedAt());
+        assertEquals(10L, result.getTotalCounter());
+        verify(receiptCosmosServiceMock, never()).countFailedReceiptByStatus(any());
+    }
+
+    @Test
+    @SneakyThrows
+    void startJobCountErrorRunsWithoutTotal() {
+        RecoveryJob job = buildJob(RecoveryJobType.FAILED_RECEIPT, RecoveryJobStatus.QUEUED);
+        doReturn(job).when(recoveryJobClientMock).getJob(JOB_ID);
+        doThrow(RuntimeException.class).when(receiptCosmosServiceMock).countFailedReceiptByStatus(ReceiptStatusType.FAILED);
+
+        RecoveryJob result = sut.startJob(JOB_ID);
+
+        assertEquals(RecoveryJobStatus.RUNNING, result.getJobStatus());
+        assertNull(result.getTotalCounter());
+        verify(recoveryJobClientMock).saveJob(job);
+    }
+
+    @Test
+    @SneakyThrows
+    void startJobAlreadyTerminal() {
+        RecoveryJob job = buildJob(RecoveryJobType.FAILED_RECEIPT, RecoveryJobStatus.FAILED);
+        doReturn(job).when(recoveryJobClientMock).getJob(JOB_ID);
+
+        RecoveryJob result = sut.startJob(JOB_ID);
+
+        assertEquals(RecoveryJobStatus.FAILED, result.getJobStatus());
+        verify(recoveryJobClientMock, never()).saveJob(any());
+    }
+
+    @Test
+    void updateJobProgressCompleted() {
+        RecoveryJob job = buildJob(RecoveryJobType.FAILED_RECEIPT, RecoveryJobStatus.RUNNING);
+        job.setProcessedCounter(10);
+        job.setSuccessCounter(10);
+
+        sut.updateJobProgress(job, 5, 4, 1, false);
+
+        assertEquals(15, job.getProcessedCounter());
+        assertEquals(14, job.getSuccessCounter());
+        assertEquals(1, job.getErrorCounter());
+        assertEquals(RecoveryJobStatus.COMPLETED, job.getJobStatus());
+        assertNotEquals(0, job.getCompletedAt());
+        verify(recoveryJobClientMock).saveJob(job);
+        verify(recoveryJobClientMock, never()).sendJobMessage(any());
+    }
+
+    @Test
+    void updateJobProgressInterrupted() {
+        RecoveryJob job = buildJob(RecoveryJobType.FAILED_RECEIPT, RecoveryJobStatus.RUNNING);
+
+        sut.updateJobProgress(job, 5, 5, 0, true);
+
+        assertEquals(5, job.getProcessedCounter());
+        assertEquals(RecoveryJobStatus.RUNNING, job.getJobStatus());
+        assertEquals(0, job.getCompletedAt());
+        verify(recoveryJobClientMock).saveJob(job);
+        verify(recoveryJobClientMock).sendJobMessage(JOB_ID);
+    }
+
+    @Test
+    void failJobSuccess() {
+        RecoveryJob job = buildJob(RecoveryJobType.FAILED_RECEIPT, RecoveryJobStatus.RUNNING);
+
+        sut.failJob(job, "error");
+
+        assertEquals(RecoveryJobStatus.FAILED, job.getJobStatus());
+        assertEquals("error", job.getErrorMessage());
+        assertNotEquals(0, job.getCompletedAt());
+        verify(recoveryJobClientMock).saveJob(job);
+    }
+
+    private RecoveryJob buildJob(RecoveryJobType type, RecoveryJobStatus jobStatus) {
+        return RecoveryJob.builder()
+                .id(JOB_ID)
+                .type(type)
+                .status(ReceiptStatusType.FAILED.name())
+                .jobStatus(jobStatus)
+                .build();
+    }
+}
@@ -0,0 +1,87 @@
+package it.gov.pagopa.receipt.pdf.datastore.utils;
+
+import it.gov.pagopa.receipt.pdf.datastore.utils.AdaptiveConcurrencyLimiter.Outcome;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    void tryAcquireFailsWhenLimitIsReached() {
+        AdaptiveConcurrencyLimiter sut = new AdaptiveConcurrencyLimiter("test", 1, 2, 0.5, 1000, 0);
+
+        assertTrue(sut.tryAcquire());
+        assertTrue(sut.tryAcquire());
+        assertFalse(sut.tryAcquire());
+        assertEquals(2, sut.getInFlight());
+
+        sut.release();
+
+        assertTrue(sut.tryAcquire());
+    }
+
+    @Test
+    void onSampleThrottledDecreasesLimitOncePerCongestion() {
+        AdaptiveConcurrencyLimiter sut = new AdaptiveConcurrencyLimiter("test", 1, 8, 0.5, 1000, 0);
+        long startNanos = System.nanoTime();
+
+        sut.onSample(startNanos, Outcome.THROTTLED);
+        // call started before the decrease, same congestion
+        sut.onSample(startNanos, Outcome.THROTTLED);
+
+        assertEquals(4, sut.getLimit());
+
+        sut.onSample(System.nanoTime(), Outcome.THROTTLED);
+
+        assertEquals(2, sut.getLimit());
+    }
+
+    @Test
+    void onSampleThrottledNeverGoesUnderMinLimit() {
+        AdaptiveConcurrencyLimiter sut = new AdaptiveConcurrencyLimiter("test", 2, 4, 0.1, 1000, 0);
+
+        sut.onSample(System.nanoTime(), Outcome.THROTTLED);
+
+        assertEquals(2, sut.getLimit());
+    }
+
+    @Test
+    void onSampleSlowSuccessDecreasesLimit() {
+        AdaptiveConcurrencyLimiter sut = new AdaptiveConcurrencyLimiter("test", 1, 8, 0.5, 0, 0);
+
+        sut.onSample(System.nanoTime() - 1_000_000, Outcome.SUCCESS);
+
+        assertEquals(4, sut.getLimit());
+    }
+
+    @Test
+    void onSampleSuccessIncreasesLimitUpToMax() {
+        AdaptiveConcurrencyLimiter sut = new AdaptiveConcurrencyLimiter("test", 1, 4, 0.5, 1000, 0);
+        sut.onSample(System.nanoTime(), Outcome.THROTTLED);
+        assertEquals(2, sut.getLimit());
+
+        // each successful call increases the limit by 1/limit (2 -> 2.5 -> 2.9 -> 3.24)
+        sut.onSample(System.nanoTime(), Outcome.SUCCESS);
+        sut.onSample(System.nanoTime(), Outcome.SUCCESS);
+        assertEquals(2, sut.getLimit());
+        sut.onSample(System.nanoTime(), Outcome.SUCCESS);
+        assertEquals(3, sut.getLimit());
+
+        for (int i = 0; i < 100; i++) {
+            sut.onSample(System.nanoTime(), Outcome.SUCCESS);
+        }
+        assertEquals(4, sut.getLimit());
+    }
+
+    @Test
+    void onSampleIgnoredDoesNotChangeLimit() {
+        AdaptiveConcurrencyLimiter sut = new AdaptiveConcurrencyLimiter("test", 1, 4, 0.5, 0, 0);
+
+        sut.onSample(System.nanoTime() - 1_000_000, Outcome.IGNORED);
+
+        assertEquals(4, sut.getLimit());
+    }
+}
@@ -228,6 +228,25 @@ class BizEventToReceiptUtilsTest {
         assertEquals(REMITTANCE_INFORMATION_PAYMENT_INFO, receipt.getEventData().getCart().get(0).getSubject());
     }
 
+    @Test
+    void fiscalCodesValidityIsTheSameWhenCheckedAgain() {
+        BizEvent bizEvent = generateValidBizEvent(false, false);
+        bizEvent.getPayer().setEntityUniqueIdentifierValue("invalid");
+
+        assertFalse(BizEventToReceiptUtils.isBizEventInvalid(bizEvent).invalid());
+
+        // the identifiers already validated are found in the memo
+        assertTrue(BizEventToReceiptUtils.isBizEventDebtorFiscalCodeValid(bizEvent));
+        assertFalse(BizEventToReceiptUtils.isBizEventPayerFiscalCodeValid(bizEvent));
+
+        // a changed identifier is validated again
+        bizEvent.getPayer().setEntityUniqueIdentifierValue(PAYER_FISCAL_CODE);
+        assertTrue(BizEventToReceiptUtils.isBizEventPayerFiscalCodeValid(bizEvent));
+        // a different instance with the content of an already validated identifier
+        bizEvent.getDebtor().setEntityUniqueIdentifierValue(new String("invalid"));
+        assertFalse(BizEventToReceiptUtils.isBizEventDebtorFiscalCodeValid(bizEvent));
+    }
+
     private BizEvent generateValidBizEvent(boolean withoutRemittanceInformation, boolean withTransferList) {
         BizEvent item = new BizEvent();
 
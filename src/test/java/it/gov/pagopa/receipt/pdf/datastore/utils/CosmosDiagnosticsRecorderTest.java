@@ -0,0 +1,107 @@
+package it.gov.pagopa.receipt.pdf.datastore.utils;
+
+import com.azure.core.util.Context;
+import com.azure.cosmos.CosmosClientBuilder;
+import com.azure.cosmos.CosmosDiagnosticsContext;
+import com.azure.cosmos.models.CosmosClientTelemetryConfig;
+import it.gov.pagopa.receipt.pdf.datastore.model.CosmosOperationDiagnostics;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+class CosmosDiagnosticsRecorderTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+
+    @Test
+    void operationExceedingTheThresholdsIsRecorded() {
+        CosmosDiagnosticsRecorder sut = buildRecorder(true, 10);
+
+        sut.handleDiagnostics(buildDiagnosticsContext(true, "receipts", 2), Context.NONE);
+
+        List<CosmosOperationDiagnostics> operations = sut.getOperations();
+        assertEquals(1, operations.size());
+        CosmosOperationDiagnostics operation = operations.get(0);
+        assertEquals(NOW, operation.getCapturedAt());
+        assertEquals("receipts", operation.getContainerName());
+        assertEquals("Query", operation.getOperationType());
+        assertEquals(429, operation.getStatusCode());
+        assertEquals(3500, operation.getDurationMillis());
+        assertEquals(250f, operation.getRequestCharge());
+        assertEquals(2, operation.getRetryCount());
+        assertEquals(List.of("North Europe"), operation.getContactedRegions());
+        assertEquals("{\"diagnostics\":true}", operation.getDiagnostics());
+    }
+
+    @Test
+    void operationWithinTheThresholdsIsNotRecorded() {
+        CosmosDiagnosticsRecorder sut = buildRecorder(true, 10);
+
+        sut.handleDiagnostics(buildDiagnosticsContext(false, "receipts", 0), Context.NONE);
+        sut.handleDiagnostics(null, Context.NONE);
+
+        assertTrue(sut.getOperations().isEmpty());
+    }
+
+    @Test
+    void oldestOperationsAreOverwrittenWhenTheBufferIsFull() {
+        CosmosDiagnosticsRecorder sut = buildRecorder(true, 2);
+
+        sut.handleDiagnostics(buildDiagnosticsContext(true, "first", 0), Context.NONE);
+        sut.handleDiagnostics(buildDiagnosticsContext(true, "second", 0), Context.NONE);
+        sut.handleDiagnostics(buildDiagnosticsContext(true, "third", 0), Context.NONE);
+
+        List<CosmosOperationDiagnostics> operations = sut.getOperations();
+        assertEquals(2, operations.size());
+        assertEquals("third", operations.get(0).getContainerName());
+        assertEquals("second", operations.get(1).getContainerName());
+    }
+
+    @Test
+    void configureSetsTheTelemetryConfigOnlyIfEnabled() {
+        CosmosClientBuilder enabledBuilder = spy(new CosmosClientBuilder());
+        CosmosClientBuilder disabledBuilder = mock(CosmosClientBuilder.class);
+
+        assertSame(enabledBuilder, buildRecorder(true, 10).configure(enabledBuilder));
+        assertSame(disabledBuilder, buildRecorder(false, 10).configure(disabledBuilder));
+
+        verify(enabledBuilder).clientTelemetryConfig(any(CosmosClientTelemetryConfig.class));
+        verifyNoInteractions(disabledBuilder);
+    }
+
+    private CosmosDiagnosticsRecorder buildRecorder(boolean enabled, int bufferSize) {
+        return new CosmosDiagnosticsRecorder(enabled, bufferSize, Duration.ofSeconds(1), Duration.ofSeconds(3),
+                1000f, 1, () -> NOW);
+    }
+
+    private CosmosDiagnosticsContext buildDiagnosticsContext(boolean thresholdViolated, String containerName, int retryCount) {
+        CosmosDiagnosticsContext diagnosticsContext = mock(CosmosDiagnosticsContext.class);
+        doReturn(thresholdViolated).when(diagnosticsContext).isThresholdViolated();
+        if (thresholdViolated) {
+            doReturn("receipts-db").when(diagnosticsContext).getDatabaseName();
+            doReturn(containerName).when(diagnosticsContext).getContainerName();
+            doReturn("Query").when(diagnosticsContext).getOperationType();
+            doReturn("Document").when(diagnosticsContext).getResourceType();
+            doReturn(429).when(diagnosticsContext).getStatusCode();
+            doReturn(3200).when(diagnosticsContext).getSubStatusCode();
+            doReturn(Duration.ofMillis(3500)).when(diagnosticsContext).getDuration();
+            doReturn(250f).when(diagnosticsContext).getTotalRequestCharge();
+            doReturn(retryCount).when(diagnosticsContext).getRetryCount();
+            doReturn(Set.of("North Europe")).when(diagnosticsContext).getContactedRegionNames();
+            doReturn("{\"diagnostics\":true}").when(diagnosticsContext).toJson();
+        }
+        return diagnosticsContext;
+    }
+}
@@ -0,0 +1,50 @@
+package it.gov.pagopa.receipt.pdf.datastore.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FiscalCodeValidatorTest {
+
+    private static final Pattern PATTERN_CF = Pattern.compile(
+            "^[A-Z]{6}[0-9LMNPQRSTUV]{2}[ABCDEHLMPRST][0-9LMNPQRSTUV]{2}[A-Z][0-9LMNPQRSTUV]{3}[A-Z]$", Pattern.CASE_INSENSITIVE);
+    private static final Pattern PATTERN_PIVA = Pattern.compile("^\\d{11}$");
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "RSSMRA80A01H501U", "rssmra80a01h501u", "RSSMRA80A01H50MM", "AAAAAA00A00A000D", "RSSMRA80Z01H501U",
+            "RSSMRA8OA01H501U", "RSSMRA80A01H501", "RSSMRA80A01H501UU", "RSSMRA80A01H5O1U", "RSSMRA80A01H5011",
+            "00743110157", "01234567890", "0074311015A", "007431101577", "", "ÀSSMRA80A01H501U", "٠٠٧٤٣١١٠١٥٧"
+    })
+    void isValidWithoutChecksumMatchesTheRegularExpressions(String fiscalCode) {
+        boolean expected = PATTERN_CF.matcher(fiscalCode).matches() || PATTERN_PIVA.matcher(fiscalCode).matches();
+
+        assertEquals(expected, FiscalCodeValidator.isValid(fiscalCode, false));
+    }
+
+    @Test
+    void isValidNullFiscalCode() {
+        assertFalse(FiscalCodeValidator.isValid(null, false));
+        assertFalse(FiscalCodeValidator.isValidCodiceFiscale(null, true));
+        assertFalse(FiscalCodeValidator.isValidPartitaIva(null, true));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"RSSMRA80A01H501U", "rssmra80a01h501u", "RSSMRA80A01H50MM", "BNCGLI85M41F205B", "00743110157"})
+    void isValidWithChecksumSuccess(String fiscalCode) {
+        assertTrue(FiscalCodeValidator.isValid(fiscalCode, true));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"RSSMRA80A01H501A", "RSSMRA80A01H50MU", "AAAAAA00A00A000D", "00743110158", "01234567890"})
+    void isValidWithChecksumFailsOnWrongCheckCharacter(String fiscalCode) {
+        assertTrue(FiscalCodeValidator.isValid(fiscalCode, false));
+        assertFalse(FiscalCodeValidator.isValid(fiscalCode, true));
+    }
+}
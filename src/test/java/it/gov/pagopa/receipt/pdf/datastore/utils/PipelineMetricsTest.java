@@ -0,0 +1,136 @@
+package it.gov.pagopa.receipt.pdf.datastore.utils;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.gov.pagopa.receipt.pdf.datastore.entity.receipt.enumeration.ReasonErrorCode;
+import it.gov.pagopa.receipt.pdf.datastore.utils.PipelineMetrics.Stage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class PipelineMetricsTest {
+
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        Metrics.addRegistry(registry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        Metrics.removeRegistry(registry);
+        Metrics.globalRegistry.clear();
+    }
+
+    @Test
+    void recordStage() {
+        PipelineMetrics.recordStage(Stage.DEDUP, System.nanoTime());
+
+        assertEquals(1, registry.get("receipt.datastore.stage.duration").tag("stage", "dedup").timer().count());
+    }
+
+    @Test
+    void recordChangeFeedLag() {
+        PipelineMetrics.recordChangeFeedLag(System.currentTimeMillis() - 1000);
+        PipelineMetrics.recordChangeFeedLag(null);
+
+        assertEquals(2, registry.get("receipt.datastore.biz_events.received").counter().count());
+        assertEquals(1, registry.get("receipt.datastore.change_feed.lag").timer().count());
+    }
+
+    @Test
+    void countDiscarded() {
+        PipelineMetrics.countDiscarded("invalid_status");
+        PipelineMetrics.countDiscarded("invalid_status");
+        PipelineMetrics.countDiscarded("already_processed");
+        PipelineMetrics.countDiscarded("rejected_by_cart", 3);
+        PipelineMetrics.countDiscarded("already_in_cart", 0);
+
+        assertEquals(2, registry.get("receipt.datastore.biz_events.discarded").tag("reason", "invalid_status").counter().count());
+        assertEquals(1, registry.get("receipt.datastore.biz_events.discarded").tag("reason", "already_processed").counter().count());
+        assertEquals(3, registry.get("receipt.datastore.biz_events.discarded").tag("reason", "rejected_by_cart").counter().count());
+        assertNull(registry.find("receipt.datastore.biz_events.discarded").tag("reason", "already_in_cart").counter());
+    }
+
+    @Test
+    void countErrorByReasonErrorCode() {
+        PipelineMetrics.countError("receipt", ReasonErrorCode.ERROR_QUEUE.getCode());
+        PipelineMetrics.countError("cart", 429);
+
+        assertEquals(1, registry.get("receipt.datastore.errors")
+                .tags("type", "receipt", "code", "902", "reason", "ERROR_QUEUE").counter().count());
+        assertEquals(1, registry.get("receipt.datastore.errors")
+                .tags("type", "cart", "code", "429", "reason", "HTTP_STATUS").counter().count());
+        assertNull(registry.find("receipt.datastore.errors").tag("reason", "GENERIC_ERROR").counter());
+    }
+
+    @Test
+    void countDedup() {
+        PipelineMetrics.countDedup(2, 3);
+        PipelineMetrics.countDedup(1, 0);
+
+        assertEquals(3, registry.get("receipt.datastore.dedup.lookups").tag("result", "hit").counter().count());
+        assertEquals(3, registry.get("receipt.datastore.dedup.lookups").tag("result", "miss").counter().count());
+    }
+
+    @Test
+    void registerTokenizerLimiter() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 1, 8, 0.5, 1000, 10);
+        assertSame(limiter, PipelineMetrics.registerTokenizerLimiter(limiter));
+        limiter.tryAcquire();
+
+        assertEquals(8, registry.get("receipt.datastore.pdv_tokenizer.limiter.limit").gauge().value());
+        assertEquals(1, registry.get("receipt.datastore.pdv_tokenizer.limiter.in_flight").gauge().value());
+    }
+
+    @Test
+    void registerTokenizerCircuitBreaker() {
+        CircuitBreaker circuitBreaker = CircuitBreaker.ofDefaults("test");
+        assertSame(circuitBreaker, PipelineMetrics.registerTokenizerCircuitBreaker(circuitBreaker));
+        circuitBreaker.transitionToOpenState();
+
+        assertEquals(1, registry.get("receipt.datastore.pdv_tokenizer.circuit_breaker.state").tag("state", "open").gauge().value());
+        assertEquals(0, registry.get("receipt.datastore.pdv_tokenizer.circuit_breaker.state").tag("state", "closed").gauge().value());
+    }
+
+    @Test
+    void registerTokenCache() {
+        TokenCache tokenCache = new TokenCache(10, 60_000, System::currentTimeMillis);
+        assertSame(tokenCache, PipelineMetrics.registerTokenCache(tokenCache));
+        tokenCache.put("a fiscal code", "a token");
+        tokenCache.getIfPresent("a fiscal code");
+        tokenCache.getIfPresent("another fiscal code");
+        tokenCache.getIfPresent("another fiscal code");
+
+        assertEquals(1, registry.get("receipt.datastore.pdv_tokenizer.cache.lookups").tag("result", "hit").functionCounter().count());
+        assertEquals(2, registry.get("receipt.datastore.pdv_tokenizer.cache.lookups").tag("result", "miss").functionCounter().count());
+        assertEquals(1 / 3d, registry.get("receipt.datastore.pdv_tokenizer.cache.hit_ratio").gauge().value(), 1e-9);
+    }
+
+    @Test
+    void registerProcessedEventFilter() {
+        ProcessedEventFilter filter = new ProcessedEventFilter(1000, 0.01, 2, System::currentTimeMillis, null, 0);
+        assertSame(filter, PipelineMetrics.registerProcessedEventFilter(filter));
+        filter.put("a biz-event id");
+
+        assertEquals(filter.getMemoryBytes(), registry.get("receipt.datastore.dedup.filter.memory").gauge().value());
+        assertEquals(filter.getFalsePositiveRate(),
+                registry.get("receipt.datastore.dedup.filter.false_positive_rate").gauge().value(), 1e-12);
+    }
+
+    @Test
+    void recordRequestCharge() {
+        PipelineMetrics.recordRequestCharge("receipt_read_many", 2.5);
+        PipelineMetrics.recordRequestCharge("receipt_read_many", 1.5);
+
+        assertEquals(4.0, registry.get("receipt.datastore.cosmos.request_charge")
+                .tag("operation", "receipt_read_many").summary().totalAmount());
+    }
+}
@@ -0,0 +1,39 @@
+package it.gov.pagopa.receipt.pdf.datastore.utils;
+
+import com.azure.core.util.Context;
+import com.azure.core.util.tracing.SpanKind;
+import it.gov.pagopa.receipt.pdf.datastore.exception.CartNotFoundException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PipelineTracingTest {
+
+    @Test
+    void traceReturnsTheResultOfTheCall() {
+        assertEquals("result", PipelineTracing.trace("span", () -> "result"));
+    }
+
+    @Test
+    void traceRethrowsTheErrorOfTheCall() {
+        CartNotFoundException exception = new CartNotFoundException("cart not found");
+
+        CartNotFoundException thrown = assertThrows(CartNotFoundException.class,
+                () -> PipelineTracing.trace("span", () -> {
+                    throw exception;
+                }));
+
+        assertEquals(exception, thrown);
+    }
+
+    @Test
+    void noTraceContextWithoutTheAgent() {
+        Context span = PipelineTracing.startSpan("span", SpanKind.PRODUCER);
+
+        assertNull(PipelineTracing.getTraceparent(span));
+        assertDoesNotThrow(() -> PipelineTracing.endSpan(span, new RuntimeException()));
+    }
+}
@@ -0,0 +1,221 @@
+package it.gov.pagopa.receipt.pdf.datastore.utils;
+
+import it.gov.pagopa.receipt.pdf.datastore.client.ProcessedEventSnapshotClient;
+import it.gov.pagopa.receipt.pdf.datastore.model.ProcessedEventSnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProcessedEventFilterTest {
+
+    private static final long DAY = 86_400_000L;
+    private static final long MINUTE = 60_000L;
+    private static final int EXPECTED_ITEMS = 10_000;
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    private final AtomicLong now = new AtomicLong(20_000 * DAY + 60 * MINUTE);
+
+    @Test
+    void recordedBizEventsAreAlwaysFound() {
+        ProcessedEventFilter sut = new ProcessedEventFilter(EXPECTED_ITEMS, FALSE_POSITIVE_RATE, 2, now::get, null, 0);
+
+        for (int i = 0; i < EXPECTED_ITEMS; i++) {
+            sut.put("biz-event-" + i);
+        }
+
+        for (int i = 0; i < EXPECTED_ITEMS; i++) {
+            assertTrue(sut.mightContain("biz-event-" + i));
+        }
+    }
+
+    @Test
+    void falsePositiveRateStaysBelowTheConfiguredOne() {
+        ProcessedEventFilter sut = new ProcessedEventFilter(EXPECTED_ITEMS, FALSE_POSITIVE_RATE, 2, now::get, null, 0);
+
+        for (int i = 0; i < EXPECTED_ITEMS; i++) {
+            sut.put("biz-event-" + i);
+        }
+
+        assertTrue(sut.getFalsePositiveRate() <= FALSE_POSITIVE_RATE);
+        assertTrue(countFalsePositives(sut) <= EXPECTED_ITEMS * FALSE_POSITIVE_RATE * 1.5);
+    }
+
+    @Test
+    void filterScalesBeyondTheExpectedItems() {
+        ProcessedEventFilter sut = new ProcessedEventFilter(EXPECTED_ITEMS, FALSE_POSITIVE_RATE, 2, now::get, null, 0);
+        sut.put("biz-event-0");
+        long initialMemory = sut.getMemoryBytes();
+
+        for (int i = 1; i < EXPECTED_ITEMS * 3; i++) {
+            sut.put("biz-event-" + i);
+        }
+
+        assertTrue(sut.getMemoryBytes() > initialMemory);
+        assertTrue(sut.getFalsePositiveRate() <= FALSE_POSITIVE_RATE);
+        assertTrue(countFalsePositives(sut) <= EXPECTED_ITEMS * FALSE_POSITIVE_RATE * 1.5);
+    }
+
+    @Test
+    void oldestDayIsDroppedWhenItLeavesTheWindow() {
+        ProcessedEventFilter sut = new ProcessedEventFilter(EXPECTED_ITEMS, FALSE_POSITIVE_RATE, 2, now::get, null, 0);
+        sut.put("biz-event-0");
+
+        now.addAndGet(DAY);
+        sut.put("biz-event-1");
+        assertTrue(sut.mightContain("biz-event-0"));
+
+        now.addAndGet(DAY);
+        assertFalse(sut.mightContain("biz-event-0"));
+        assertTrue(sut.mightContain("biz-event-1"));
+    }
+
+    @Test
+    void filterIsWarmOnceItCoversTheWholeWindow() {
+        ProcessedEventFilter sut = new ProcessedEventFilter(EXPECTED_ITEMS, FALSE_POSITIVE_RATE, 2, now::get, null, 0);
+        assertFalse(sut.isWarm());
+
+        now.addAndGet(DAY);
+        assertFalse(sut.isWarm());
+
+        now.addAndGet(DAY);
+        assertTrue(sut.isWarm());
+    }
+
+    @Test
+    void disabledFilterNeverSkipsTheCheck() {
+        ProcessedEventFilter sut = new ProcessedEventFilter(EXPECTED_ITEMS, FALSE_POSITIVE_RATE, 0, now::get, null, 0);
+        sut.put("biz-event-0");
+        now.addAndGet(2 * DAY);
+
+        assertFalse(sut.isEnabled());
+        assertFalse(sut.isWarm());
+        assertTrue(sut.mightContain("biz-event-1"));
+        assertEquals(0, sut.getMemoryBytes());
+    }
+
+    @Test
+    void newFilterWarmsUpFromTheSnapshots() {
+        InMemorySnapshotClient snapshotClient = new InMemorySnapshotClient();
+        ProcessedEventFilter running =
+                new ProcessedEventFilter(EXPECTED_ITEMS, FALSE_POSITIVE_RATE, 2, now::get, snapshotClient, 5 * MINUTE);
+
+        now.addAndGet(DAY);
+        running.put("biz-event-0");
+        running.snapshotIfDue();
+        now.addAndGet(DAY);
+        running.put("biz-event-1");
+        running.snapshotIfDue();
+        assertEquals(2, snapshotClient.snapshots.size());
+
+        ProcessedEventFilter started =
+                new ProcessedEventFilter(EXPECTED_ITEMS, FALSE_POSITIVE_RATE, 2, now::get, snapshotClient, 5 * MINUTE);
+        assertFalse(started.isWarm());
+        started.loadSnapshots();
+
+        assertTrue(started.isWarm());
+        assertTrue(started.mightContain("biz-event-0"));
+        assertTrue(started.mightContain("biz-event-1"));
+    }
+
+    @Test
+    void newFilterIsNotWarmWithAMissingSnapshot() {
+        InMemorySnapshotClient snapshotClient = new InMemorySnapshotClient();
+        ProcessedEventFilter running =
+                new ProcessedEventFilter(EXPECTED_ITEMS, FALSE_POSITIVE_RATE, 2, now::get, snapshotClient, 5 * MINUTE);
+
+        now.addAndGet(2 * DAY);
+        running.put("biz-event-1");
+        running.snapshotIfDue();
+
+        ProcessedEventFilter started =
+                new ProcessedEventFilter(EXPECTED_ITEMS, FALSE_POSITIVE_RATE, 2, now::get, snapshotClient, 5 * MINUTE);
+        started.loadSnapshots();
+
+        assertFalse(started.isWarm());
+        assertTrue(started.mightContain("biz-event-1"));
+    }
+
+    @Test
+    void snapshotIsNotSavedBeforeTheInterval() {
+        InMemorySnapshotClient snapshotClient = new InMemorySnapshotClient();
+        ProcessedEventFilter sut =
+                new ProcessedEventFilter(EXPECTED_ITEMS, FALSE_POSITIVE_RATE, 2, now::get, snapshotClient, 5 * MINUTE);
+
+        sut.put("biz-event-0");
+        now.addAndGet(MINUTE);
+        sut.snapshotIfDue();
+        assertTrue(snapshotClient.snapshots.isEmpty());
+
+        now.addAndGet(5 * MINUTE);
+        sut.snapshotIfDue();
+        assertEquals(1, snapshotClient.snapshots.size());
+    }
+
+    @Test
+    void snapshotSavedByAnotherHostInTheMeantimeIsMergedAgain() {
+        InMemorySnapshotClient snapshotClient = new InMemorySnapshotClient();
+        ProcessedEventFilter firstHost =
+                new ProcessedEventFilter(EXPECTED_ITEMS, FALSE_POSITIVE_RATE, 2, now::get, snapshotClient, 5 * MINUTE);
+        ProcessedEventFilter secondHost =
+                new ProcessedEventFilter(EXPECTED_ITEMS, FALSE_POSITIVE_RATE, 2, now::get, snapshotClient, 5 * MINUTE);
+        firstHost.put("biz-event-0");
+        secondHost.put("biz-event-1");
+        now.addAndGet(5 * MINUTE);
+
+        // the second host saves the snapshot between the read and the save of the first host
+        snapshotClient.beforeSave = () -> {
+            snapshotClient.beforeSave = null;
+            secondHost.snapshotIfDue();
+        };
+        firstHost.snapshotIfDue();
+
+        ProcessedEventFilter started =
+                new ProcessedEventFilter(EXPECTED_ITEMS, FALSE_POSITIVE_RATE, 2, now::get, snapshotClient, 5 * MINUTE);
+        started.loadSnapshots();
+        assertTrue(started.mightContain("biz-event-0"));
+        assertTrue(started.mightContain("biz-event-1"));
+        assertEquals(2, snapshotClient.versions);
+    }
+
+    private static int countFalsePositives(ProcessedEventFilter sut) {
+        int falsePositives = 0;
+        for (int i = 0; i < EXPECTED_ITEMS; i++) {
+            if (sut.mightContain("not-processed-" + i)) {
+                falsePositives++;
+            }
+        }
+        return falsePositives;
+    }
+
+    private static class InMemorySnapshotClient implements ProcessedEventSnapshotClient {
+
+        private final Map<String, ProcessedEventSnapshot> snapshots = new HashMap<>();
+        private Runnable beforeSave;
+        private int versions;
+
+        @Override
+        public ProcessedEventSnapshot getSnapshot(String snapshotId) {
+            return snapshots.get(snapshotId);
+        }
+
+        @Override
+        public boolean saveSnapshot(String snapshotId, byte[] snapshot, String eTag) {
+            if (beforeSave != null) {
+                beforeSave.run();
+            }
+            ProcessedEventSnapshot current = snapshots.get(snapshotId);
+            if (current == null ? eTag != null : !current.getETag().equals(eTag)) {
+                return false;
+            }
+            versions++;
+            snapshots.put(snapshotId, new ProcessedEventSnapshot(snapshot, "etag-" + versions));
+            return true;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package it.gov.pagopa.receipt.pdf.datastore.utils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import it.gov.pagopa.receipt.pdf.datastore.entity.event.BizEvent;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QueueMessageEncoderTest {
+
+    @Test
+    void encodeProducesTheSameJsonOfTheObjectMapper() {
+        QueueMessageEncoder sut = new QueueMessageEncoder(Collections.emptySet());
+        List<BizEvent> bizEvents = List.of(buildBizEvent("1"), buildBizEvent("2"));
+
+        String message = sut.encode(bizEvents);
+
+        assertEquals(ObjectMapperUtils.writeValueAsString(bizEvents), decode(message));
+        // the legacy MIME decoder still accepts the message
+        assertEquals(ObjectMapperUtils.writeValueAsString(bizEvents),
+                new String(Base64.getMimeDecoder().decode(message), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void encodeLargeMessageWithoutLineSeparators() {
+        QueueMessageEncoder sut = new QueueMessageEncoder(Collections.emptySet());
+        BizEvent bizEvent = buildBizEvent("1");
+        bizEvent.setProperties(Map.of("key", "x".repeat(2 * 1024 * 1024)));
+
+        String message = sut.encode(List.of(bizEvent));
+
+        assertFalse(message.contains("\r\n"));
+        assertEquals(ObjectMapperUtils.writeValueAsString(List.of(bizEvent)), decode(message));
+    }
+
+    @Test
+    void encodeDropsTheExcludedFields() {
+        QueueMessageEncoder sut = new QueueMessageEncoder(Set.of("properties", "missingInfo"));
+
+        String json = decode(sut.encode(List.of(buildBizEvent("1"))));
+
+        assertFalse(json.contains("\"properties\""));
+        assertFalse(json.contains("\"missingInfo\""));
+        assertTrue(json.contains("\"id\":\"1\""));
+    }
+
+    @Test
+    void encodeReusesTheBufferWithoutMixingMessages() {
+        QueueMessageEncoder sut = new QueueMessageEncoder(Collections.emptySet());
+
+        String first = sut.encode(List.of(buildBizEvent("first-long-id")));
+        String second = sut.encode(List.of(buildBizEvent("2")));
+
+        assertTrue(decode(first).contains("\"id\":\"first-long-id\""));
+        assertEquals(ObjectMapperUtils.writeValueAsString(List.of(buildBizEvent("2"))), decode(second));
+    }
+
+    @Test
+    void encodeWrapsThePayloadInTheTraceContextEnvelope() throws JsonProcessingException {
+        QueueMessageEncoder sut = new QueueMessageEncoder(Collections.emptySet(), true);
+        String traceparent = "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01";
+        List<BizEvent> bizEvents = List.of(buildBizEvent("1"));
+
+        String message = sut.encode(bizEvents, traceparent);
+
+        EnvelopeMessage envelope = ObjectMapperUtils.mapString(message, EnvelopeMessage.class);
+        assertEquals(traceparent, envelope.traceparent);
+        assertEquals(ObjectMapperUtils.writeValueAsString(bizEvents), decode(envelope.payload));
+    }
+
+    @Test
+    void encodeWithoutEnvelopeIfDisabledOrWithoutTraceContext() {
+        QueueMessageEncoder disabled = new QueueMessageEncoder(Collections.emptySet());
+        QueueMessageEncoder enabled = new QueueMessageEncoder(Collections.emptySet(), true);
+        List<BizEvent> bizEvents = List.of(buildBizEvent("1"));
+
+        assertEquals(disabled.encode(bizEvents), disabled.encode(bizEvents, "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01"));
+        assertEquals(disabled.encode(bizEvents), enabled.encode(bizEvents, null));
+    }
+
+    private BizEvent buildBizEvent(String id) {
+        return BizEvent.builder()
+                .id(id)
+                .missingInfo(List.of("psp"))
+                .properties(Map.of("key", "value"))
+                .build();
+    }
+
+    private String decode(String message) {
+        return new String(Base64.getDecoder().decode(message), StandardCharsets.UTF_8);
+    }
+
+    static class EnvelopeMessage {
+        public String traceparent;
+        public String payload;
+    }
+}
@@ -0,0 +1,169 @@
+package it.gov.pagopa.receipt.pdf.datastore.utils;
+
+import it.gov.pagopa.receipt.pdf.datastore.exception.PDVTokenizerException;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TokenCacheTest {
+
+    private static final String FISCAL_CODE = "AAAAAA00A00A000A";
+    private static final String FISCAL_CODE_2 = "BBBBBB00B00B000B";
+    private static final String TOKEN = "token";
+    private static final String TOKEN_2 = "token2";
+
+    private final AtomicLong now = new AtomicLong(1000);
+
+    @Test
+    @SneakyThrows
+    void getLoadsOnceAndThenServesFromCache() {
+        TokenCache sut = new TokenCache(10, 1000, now::get);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals(TOKEN, sut.get(FISCAL_CODE, code -> load(loads, TOKEN)));
+        assertEquals(TOKEN, sut.get(FISCAL_CODE, code -> load(loads, TOKEN_2)));
+
+        assertEquals(1, loads.get());
+        assertEquals(1, sut.getHitCount());
+        assertEquals(1, sut.getMissCount());
+        assertEquals(0.5, sut.getHitRatio());
+    }
+
+    @Test
+    @SneakyThrows
+    void getReloadsExpiredToken() {
+        TokenCache sut = new TokenCache(10, 1000, now::get);
+        AtomicInteger loads = new AtomicInteger();
+
+        sut.get(FISCAL_CODE, code -> load(loads, TOKEN));
+        now.addAndGet(1000);
+
+        assertEquals(TOKEN_2, sut.get(FISCAL_CODE, code -> load(loads, TOKEN_2)));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    @SneakyThrows
+    void getEvictsLeastRecentlyUsedToken() {
+        TokenCache sut = new TokenCache(1, 1000, now::get);
+        AtomicInteger loads = new AtomicInteger();
+
+        sut.get(FISCAL_CODE, code -> load(loads, TOKEN));
+        sut.get(FISCAL_CODE_2, code -> load(loads, TOKEN_2));
+        sut.get(FISCAL_CODE, code -> load(loads, TOKEN));
+
+        assertEquals(3, loads.get());
+        assertEquals(1, sut.size());
+    }
+
+    @Test
+    @SneakyThrows
+    void getDoesNotCacheFailures() {
+        TokenCache sut = new TokenCache(10, 1000, now::get);
+
+        assertThrows(PDVTokenizerException.class, () -> sut.get(FISCAL_CODE, code -> {
+            throw new PDVTokenizerException("error", 429);
+        }));
+
+        assertEquals(TOKEN, sut.get(FISCAL_CODE, code -> TOKEN));
+        assertEquals(0, sut.getHitCount());
+        assertEquals(2, sut.getMissCount());
+    }
+
+    @Test
+    @SneakyThrows
+    void getWithDisabledCacheAlwaysLoads() {
+        TokenCache sut = new TokenCache(0, 1000, now::get);
+        AtomicInteger loads = new AtomicInteger();
+
+        sut.get(FISCAL_CODE, code -> load(loads, TOKEN));
+        sut.get(FISCAL_CODE, code -> load(loads, TOKEN));
+
+        assertEquals(2, loads.get());
+        assertEquals(0, sut.size());
+    }
+
+    @Test
+    @SneakyThrows
+    void getDeduplicatesConcurrentLoadsOfTheSameFiscalCode() {
+        TokenCache sut = new TokenCache(10, 1000, now::get);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> first = executor.submit(() -> sut.get(FISCAL_CODE, code -> {
+                loading.countDown();
+                awaitLatch(release);
+                return load(loads, TOKEN);
+            }));
+            loading.await();
+            Future<String> second = executor.submit(() -> sut.get(FISCAL_CODE, code -> load(loads, TOKEN_2)));
+            // wait until the second lookup is waiting for the first one
+            while (sut.getHitCount() == 0) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+
+            assertEquals(TOKEN, first.get(5, TimeUnit.SECONDS));
+            assertEquals(TOKEN, second.get(5, TimeUnit.SECONDS));
+            assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @SneakyThrows
+    void getReleasesTheConcurrentLoadsWhenTheLoaderThrowsAnError() {
+        TokenCache sut = new TokenCache(10, 1000, now::get);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> first = executor.submit(() -> sut.get(FISCAL_CODE, code -> {
+                loading.countDown();
+                awaitLatch(release);
+                throw new LinkageError("loader error");
+            }));
+            loading.await();
+            Future<String> second = executor.submit(() -> sut.get(FISCAL_CODE, code -> TOKEN_2));
+            // wait until the second lookup is waiting for the first one
+            while (sut.getHitCount() == 0) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+
+            ExecutionException firstError = assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(LinkageError.class, firstError.getCause());
+            ExecutionException secondError = assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(LinkageError.class, secondError.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @SneakyThrows
+    private void awaitLatch(CountDownLatch latch) {
+        latch.await();
+    }
+
+    private String load(AtomicInteger loads, String token) {
+        loads.incrementAndGet();
+        return token;
+    }
+}